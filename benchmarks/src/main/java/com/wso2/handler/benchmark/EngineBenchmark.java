@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler.benchmark;
+
+import com.wso2.handler.OperationIndex;
+import com.wso2.handler.ValidationEngine;
+import com.wso2.handler.ValidationEngineRegistry;
+import com.wso2.handler.ValidationResult;
+import com.wso2.handler.ValidationSchema;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the validation engines over the same swagger and payload corpus. The built-in engines are benchmarked by
+ * default; other engines are benchmarked by passing the class name of the engine as the engine parameter, e.g.
+ * -p engine=everit,compiled,com.example.FastValidationEngine, with the engine on the class path.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EngineBenchmark {
+
+    @Param({"everit", "compiled"})
+    public String engine;
+
+    @Param({SwaggerCorpus.SWAGGER2, SwaggerCorpus.OPENAPI3, SwaggerCorpus.ENTERPRISE_SWAGGER2,
+            SwaggerCorpus.ENTERPRISE_OPENAPI3})
+    public String swagger;
+
+    @Param({"small", "large"})
+    public String payloadSize;
+
+    @Param({"true", "false"})
+    public boolean valid;
+
+    private ValidationEngine validationEngine;
+    private JSONObject requestSchema;
+    private ValidationSchema schema;
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws Exception {
+        validationEngine = ValidationEngineRegistry.getEngine(engine);
+        if (validationEngine == null) {
+            validationEngine = (ValidationEngine) Class.forName(engine).newInstance();
+        }
+        MessageContexts messageContexts = new MessageContexts(SwaggerCorpus.swagger(swagger));
+        OperationIndex index = OperationIndex.build(messageContexts.getLocalEntry());
+        requestSchema = index.getRequestSchema(SwaggerCorpus.RESOURCE, SwaggerCorpus.METHOD);
+        schema = validationEngine.compile(requestSchema);
+        if (schema == null) {
+            throw new IllegalStateException("Validation engine " + engine + " cannot compile the request schema");
+        }
+        payload = SwaggerCorpus.petPayload(payloadSize, valid).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public ValidationSchema compileSchema() {
+        return validationEngine.compile(requestSchema);
+    }
+
+    @Benchmark
+    public ValidationResult validatePayload() throws IOException {
+        return schema.validate(payload, 0);
+    }
+
+    @Benchmark
+    public ValidationResult validatePayloadFailFast() throws IOException {
+        return schema.validate(payload, 1);
+    }
+}
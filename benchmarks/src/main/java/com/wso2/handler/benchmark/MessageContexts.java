@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler.benchmark;
+
+import com.wso2.handler.SchemaValidatorConstant;
+import org.apache.axiom.om.OMAbstractFactory;
+import org.apache.axis2.AxisFault;
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.commons.json.JsonUtil;
+import org.apache.synapse.config.Entry;
+import org.apache.synapse.config.SynapseConfiguration;
+import org.apache.synapse.core.SynapseEnvironment;
+import org.apache.synapse.core.axis2.Axis2MessageContext;
+import org.apache.synapse.core.axis2.Axis2SynapseEnvironment;
+import org.apache.synapse.transport.passthru.PassThroughConstants;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Lightweight message contexts for the benchmarks. The swagger is kept in the local registry of a Synapse
+ * configuration under the API UUID, the same way the gateway deploys it.
+ */
+public final class MessageContexts {
+
+    public static final String API_UUID = "benchmark-api-uuid";
+
+    private final SynapseConfiguration synapseConfiguration;
+    private final SynapseEnvironment synapseEnvironment;
+
+    /**
+     * Create the message contexts of an API.
+     *
+     * @param swagger Swagger definition of the API
+     */
+    public MessageContexts(String swagger) {
+        synapseConfiguration = new SynapseConfiguration();
+        Entry entry = new Entry(API_UUID);
+        entry.setType(Entry.INLINE_TEXT);
+        entry.setValue(swagger);
+        synapseConfiguration.addEntry(API_UUID, entry);
+        synapseEnvironment = new Axis2SynapseEnvironment(synapseConfiguration);
+    }
+
+    /**
+     * Get the swagger local entry of the API.
+     *
+     * @return Local entry
+     */
+    public Entry getLocalEntry() {
+        return (Entry) synapseConfiguration.getLocalRegistry().get(API_UUID);
+    }
+
+    /**
+     * Create a request message context.
+     *
+     * @param payload   JSON payload
+     * @param streaming true to keep the payload in the relay buffer, false to keep it as a built message
+     * @return Message context
+     * @throws AxisFault Throws if the payload cannot be set
+     */
+    public MessageContext request(String payload, boolean streaming) throws AxisFault {
+        return create(payload, streaming);
+    }
+
+    /**
+     * Create a response message context.
+     *
+     * @param payload JSON payload
+     * @return Message context
+     * @throws AxisFault Throws if the payload cannot be set
+     */
+    public MessageContext response(String payload) throws AxisFault {
+        Axis2MessageContext messageContext = create(payload, false);
+        messageContext.setResponse(true);
+        messageContext.getAxis2MessageContext().setProperty(SchemaValidatorConstant.HTTP_SC,
+                SwaggerCorpus.CREATED);
+        return messageContext;
+    }
+
+    private Axis2MessageContext create(String payload, boolean streaming) throws AxisFault {
+        org.apache.axis2.context.MessageContext axis2MC = new org.apache.axis2.context.MessageContext();
+        axis2MC.setEnvelope(OMAbstractFactory.getSOAP11Factory().getDefaultEnvelope());
+        axis2MC.setProperty(SchemaValidatorConstant.REST_CONTENT_TYPE, SchemaValidatorConstant.APPLICATION_JSON);
+        axis2MC.setProperty(SchemaValidatorConstant.HTTP_REQUEST_METHOD, SwaggerCorpus.METHOD);
+        if (streaming) {
+            axis2MC.setProperty(PassThroughConstants.BUFFERED_INPUT_STREAM,
+                    new BufferedInputStream(new ByteArrayInputStream(payload.getBytes(StandardCharsets.UTF_8))));
+        } else {
+            JsonUtil.getNewJsonPayload(axis2MC, payload, true, true);
+        }
+        Axis2MessageContext messageContext = new Axis2MessageContext(axis2MC, synapseConfiguration,
+                synapseEnvironment);
+        messageContext.setProperty(SchemaValidatorConstant.API_ELECTED_RESOURCE, SwaggerCorpus.RESOURCE);
+        messageContext.setProperty(SchemaValidatorConstant.ELECTED_REQUEST_METHOD, SwaggerCorpus.METHOD);
+        return messageContext;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler.benchmark;
+
+import com.wso2.handler.SchemaValidator;
+import org.apache.synapse.MessageContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.wso2.carbon.apimgt.gateway.APIMgtGatewayConstants;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures SchemaValidator.handleResponse.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ResponseValidationBenchmark {
+
+    @Param({SwaggerCorpus.SWAGGER2, SwaggerCorpus.OPENAPI3, SwaggerCorpus.ENTERPRISE_SWAGGER2,
+            SwaggerCorpus.ENTERPRISE_OPENAPI3})
+    public String swagger;
+
+    @Param({"small", "large"})
+    public String payloadSize;
+
+    @Param({"true", "false"})
+    public boolean valid;
+
+    private MessageContexts messageContexts;
+    private SchemaValidator schemaValidator;
+    private String payload;
+    private MessageContext messageContext;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        messageContexts = new MessageContexts(SwaggerCorpus.swagger(swagger));
+        schemaValidator = new SchemaValidator();
+        schemaValidator.setApiUUID(MessageContexts.API_UUID);
+        payload = SwaggerCorpus.petPayload(payloadSize, valid);
+    }
+
+    @Setup(Level.Invocation)
+    public void createMessageContext() throws Exception {
+        messageContext = messageContexts.response(payload);
+    }
+
+    @Benchmark
+    public Object handleResponse() {
+        schemaValidator.handleResponse(messageContext);
+        return messageContext.getProperty(APIMgtGatewayConstants.THREAT_FOUND);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler.benchmark;
+
+import com.wso2.handler.JsonPayloadReader;
+import com.wso2.handler.OperationIndex;
+import org.everit.json.schema.Schema;
+import org.everit.json.schema.ValidationException;
+import org.everit.json.schema.loader.SchemaLoader;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.wso2.carbon.apimgt.api.APIManagementException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the phases behind the handler separately: indexing and resolving the swagger, compiling an operation
+ * schema, and validating a payload against a compiled schema.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SchemaBenchmark {
+
+    @Param({SwaggerCorpus.SWAGGER2, SwaggerCorpus.OPENAPI3, SwaggerCorpus.ENTERPRISE_SWAGGER2,
+            SwaggerCorpus.ENTERPRISE_OPENAPI3})
+    public String swagger;
+
+    @Param({"small", "large"})
+    public String payloadSize;
+
+    @Param({"true", "false"})
+    public boolean valid;
+
+    private MessageContexts messageContexts;
+    private JSONObject requestSchema;
+    private Schema schema;
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws Exception {
+        messageContexts = new MessageContexts(SwaggerCorpus.swagger(swagger));
+        OperationIndex index = OperationIndex.build(messageContexts.getLocalEntry());
+        requestSchema = index.getRequestSchema(SwaggerCorpus.RESOURCE, SwaggerCorpus.METHOD);
+        schema = SchemaLoader.load(requestSchema);
+        payload = SwaggerCorpus.petPayload(payloadSize, valid).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public OperationIndex buildOperationIndex() throws APIManagementException {
+        return OperationIndex.build(messageContexts.getLocalEntry());
+    }
+
+    @Benchmark
+    public Schema compileSchema() {
+        return SchemaLoader.load(requestSchema);
+    }
+
+    @Benchmark
+    public Object validatePayload() throws IOException {
+        Object payloadObject = JsonPayloadReader.parse(payload);
+        try {
+            schema.validate(payloadObject);
+            return payloadObject;
+        } catch (ValidationException e) {
+            return e.getAllMessages();
+        }
+    }
+}
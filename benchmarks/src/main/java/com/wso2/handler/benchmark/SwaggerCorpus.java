@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Swagger definitions and payloads used by the benchmarks. Every definition defines the petstore operations, so the
+ * same payloads are valid for all of them; the enterprise definitions add a large number of unrelated operations and
+ * models to get a swagger of several hundred KB.
+ */
+public final class SwaggerCorpus {
+
+    public static final String SWAGGER2 = "swagger2";
+    public static final String OPENAPI3 = "openapi3";
+    public static final String ENTERPRISE_SWAGGER2 = "enterprise-swagger2";
+    public static final String ENTERPRISE_OPENAPI3 = "enterprise-openapi3";
+
+    public static final String RESOURCE = "/pets";
+    public static final String METHOD = "POST";
+    public static final String CREATED = "201";
+
+    private static final int ENTERPRISE_OPERATIONS = 400;
+    private static final int SMALL_PAYLOAD_TAGS = 2;
+    private static final int LARGE_PAYLOAD_TAGS = 20000;
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private SwaggerCorpus() {
+    }
+
+    /**
+     * Get a swagger definition of the corpus.
+     *
+     * @param name Name of the definition
+     * @return Swagger definition
+     * @throws IOException Throws if the definition cannot be loaded
+     */
+    public static String swagger(String name) throws IOException {
+        switch (name) {
+            case SWAGGER2:
+                return load("petstore-swagger2.json");
+            case OPENAPI3:
+                return load("petstore-openapi3.json");
+            case ENTERPRISE_SWAGGER2:
+                return enterprise(load("petstore-swagger2.json"), false);
+            case ENTERPRISE_OPENAPI3:
+                return enterprise(load("petstore-openapi3.json"), true);
+            default:
+                throw new IllegalArgumentException("Unknown swagger definition " + name);
+        }
+    }
+
+    /**
+     * Get a pet payload.
+     *
+     * @param size  small or large
+     * @param valid Whether the payload conforms to the Pet schema
+     * @return JSON payload
+     */
+    public static String petPayload(String size, boolean valid) {
+        int tags = "large".equals(size) ? LARGE_PAYLOAD_TAGS : SMALL_PAYLOAD_TAGS;
+        StringBuilder payload = new StringBuilder(64 + tags * 32);
+        payload.append("{\"id\":1,\"name\":\"doggie\",\"status\":\"available\",")
+                .append("\"category\":{\"id\":1,\"name\":\"dogs\",\"parent\":{\"id\":0,\"name\":\"animals\"}},")
+                .append("\"owner\":{\"name\":\"john\",\"email\":\"john@example.com\",")
+                .append("\"address\":{\"street\":\"main\",\"city\":\"colombo\",\"zip\":\"00100\"}},")
+                .append("\"tags\":[");
+        for (int i = 0; i < tags; i++) {
+            if (i > 0) {
+                payload.append(',');
+            }
+            // Invalid payloads break the tag pattern and the id type of every element.
+            if (valid) {
+                payload.append("{\"id\":").append(i).append(",\"name\":\"tag-").append(i).append("\"}");
+            } else {
+                payload.append("{\"id\":\"").append(i).append("\",\"name\":\"Tag ").append(i).append("\"}");
+            }
+        }
+        return payload.append("]}").toString();
+    }
+
+    private static String load(String name) throws IOException {
+        try (InputStream inputStream = SwaggerCorpus.class.getResourceAsStream("/corpus/" + name)) {
+            if (inputStream == null) {
+                throw new IOException("Swagger definition " + name + " is not found");
+            }
+            return mapper.readTree(inputStream).toString();
+        }
+    }
+
+    private static String enterprise(String petstore, boolean openAPI) throws IOException {
+        ObjectNode root = (ObjectNode) mapper.readTree(petstore);
+        ObjectNode paths = (ObjectNode) root.get("paths");
+        ObjectNode models = openAPI ? (ObjectNode) root.get("components").get("schemas") :
+                (ObjectNode) root.get("definitions");
+        String referencePrefix = openAPI ? "#/components/schemas/" : "#/definitions/";
+        models.set("Money", money());
+        models.set("Party", party(referencePrefix));
+        for (int i = 0; i < ENTERPRISE_OPERATIONS; i++) {
+            String model = "Resource" + i;
+            models.set(model, resourceModel(referencePrefix));
+            ObjectNode operation = mapper.createObjectNode();
+            JsonNode schema = reference(referencePrefix + model);
+            if (openAPI) {
+                operation.putObject("requestBody").putObject("content").putObject("application/json")
+                        .set("schema", schema);
+                operation.putObject("responses").putObject("200").putObject("content")
+                        .putObject("application/json").set("schema", schema);
+            } else {
+                ObjectNode body = operation.putArray("parameters").addObject();
+                body.put("in", "body").put("name", "body").set("schema", schema);
+                operation.putObject("responses").putObject("200").set("schema", schema);
+            }
+            ObjectNode pathItem = paths.putObject("/resources" + i + "/{id}");
+            pathItem.set("post", operation);
+            pathItem.set("put", operation.deepCopy());
+        }
+        return root.toString();
+    }
+
+    private static ObjectNode resourceModel(String referencePrefix) {
+        ObjectNode model = mapper.createObjectNode();
+        model.put("type", "object");
+        model.putArray("required").add("id").add("owner");
+        ObjectNode properties = model.putObject("properties");
+        properties.putObject("id").put("type", "string").put("format", "uuid");
+        properties.putObject("description").put("type", "string").put("maxLength", 1024);
+        properties.set("owner", reference(referencePrefix + "Party"));
+        properties.set("amount", reference(referencePrefix + "Money"));
+        ObjectNode lines = properties.putObject("lines");
+        lines.put("type", "array");
+        ObjectNode line = lines.putObject("items");
+        line.put("type", "object");
+        ObjectNode lineProperties = line.putObject("properties");
+        lineProperties.putObject("sku").put("type", "string").put("pattern", "^[A-Z]{3}-[0-9]{6}$");
+        lineProperties.putObject("quantity").put("type", "integer").put("minimum", 1);
+        lineProperties.set("price", reference(referencePrefix + "Money"));
+        return model;
+    }
+
+    private static ObjectNode party(String referencePrefix) {
+        ObjectNode party = mapper.createObjectNode();
+        party.put("type", "object");
+        ObjectNode properties = party.putObject("properties");
+        properties.putObject("name").put("type", "string");
+        properties.set("address", reference(referencePrefix + "Address"));
+        properties.set("parent", reference(referencePrefix + "Party"));
+        return party;
+    }
+
+    private static ObjectNode money() {
+        ObjectNode money = mapper.createObjectNode();
+        money.put("type", "object");
+        money.putArray("required").add("currency").add("value");
+        ObjectNode properties = money.putObject("properties");
+        ArrayNode currencies = properties.putObject("currency").put("type", "string").putArray("enum");
+        currencies.add("USD").add("EUR").add("GBP").add("LKR");
+        properties.putObject("value").put("type", "number").put("minimum", 0);
+        return money;
+    }
+
+    private static ObjectNode reference(String reference) {
+        ObjectNode node = mapper.createObjectNode();
+        node.put("$ref", reference);
+        return node;
+    }
+}
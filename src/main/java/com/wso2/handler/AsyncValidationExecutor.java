@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded executor which validates messages off the mediation thread. The executor is shared by all the handler
+ * instances and is only started when a handler validates asynchronously. When the queue is full new validations
+ * are rejected instead of blocking the mediation thread.
+ */
+public final class AsyncValidationExecutor {
+
+    private static final Log logger = LogFactory.getLog(AsyncValidationExecutor.class);
+    private static final Object lock = new Object();
+    private static volatile ThreadPoolExecutor executor;
+
+    private AsyncValidationExecutor() {
+    }
+
+    /**
+     * Submit a validation.
+     *
+     * @param validation Validation to be run
+     * @return false if the validation is rejected because the executor is saturated or shut down
+     */
+    static boolean submit(Runnable validation) {
+        try {
+            getExecutor().execute(validation);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Stop the executor. Queued validations are discarded.
+     */
+    public static void shutdown() {
+        synchronized (lock) {
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
+        }
+    }
+
+    private static ThreadPoolExecutor getExecutor() {
+        // Only the start of the executor takes the lock, a started one is read without it.
+        ThreadPoolExecutor current = executor;
+        if (current != null) {
+            return current;
+        }
+        synchronized (lock) {
+            if (executor == null) {
+                int threads = Integer.getInteger(SchemaValidatorConstant.ASYNC_VALIDATION_THREADS,
+                        Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+                int queueSize = Integer.getInteger(SchemaValidatorConstant.ASYNC_VALIDATION_QUEUE_SIZE,
+                        SchemaValidatorConstant.DEFAULT_ASYNC_VALIDATION_QUEUE_SIZE);
+                executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<Runnable>(queueSize), new ValidationThreadFactory(),
+                        new ThreadPoolExecutor.AbortPolicy());
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Started the asynchronous validation executor with " + threads +
+                            " threads and a queue of " + queueSize);
+                }
+            }
+            return executor;
+        }
+    }
+
+    /**
+     * Creates low priority daemon threads, so pending validations never hold back the gateway shutdown.
+     */
+    private static final class ValidationThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "SchemaValidator-async-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    }
+}
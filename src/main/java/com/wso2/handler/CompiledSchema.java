@@ -0,0 +1,879 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.JsonParserSequence;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import org.everit.json.schema.FormatValidator;
+import org.everit.json.schema.internal.DateTimeFormatValidator;
+import org.everit.json.schema.internal.EmailFormatValidator;
+import org.everit.json.schema.internal.HostnameFormatValidator;
+import org.everit.json.schema.internal.IPV4Validator;
+import org.everit.json.schema.internal.IPV6Validator;
+import org.everit.json.schema.internal.URIFormatValidator;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Schema compiled into a tree of specialized validators which validate a JSON payload straight from the Jackson
+ * token stream, without building the JSON model of the payload. Every node only holds the checks its schema
+ * declares, so validating a payload does not interpret the schema document.
+ * Only the commonly used keywords are compiled: type, properties, required, additionalProperties, items, enum,
+ * the numeric, length and size bounds, pattern, format, oneOf and anyOf with an OpenAPI discriminator, and local
+ * references to definitions. Schemas which use any other validation keyword, such as allOf, not or uniqueItems, are
+ * not compiled and are validated by everit.
+ * A compiled schema is immutable, apart from the statistics used to order the oneOf and anyOf branches, and can be
+ * used by concurrent messages.
+ */
+public final class CompiledSchema implements ValidationSchema {
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    private static final String REFERENCE_PREFIX = "#/" + SchemaValidatorConstant.DEFINITIONS + "/";
+    private static final Set<String> UNSUPPORTED_KEYWORDS = new HashSet<>(Arrays.asList("allOf", "not",
+            "uniqueItems", "multipleOf", "patternProperties", "dependencies", "additionalItems", "const",
+            "contains", "propertyNames", "if", "then", "else"));
+    private static final Map<String, FormatValidator> formatValidators = new HashMap<>();
+
+    static {
+        formatValidators.put("date-time", new DateTimeFormatValidator());
+        formatValidators.put("email", new EmailFormatValidator());
+        formatValidators.put("hostname", new HostnameFormatValidator());
+        formatValidators.put("ipv4", new IPV4Validator());
+        formatValidators.put("ipv6", new IPV6Validator());
+        formatValidators.put("uri", new URIFormatValidator());
+    }
+
+    private static final int OBJECT = 1;
+    private static final int ARRAY = 1 << 1;
+    private static final int STRING = 1 << 2;
+    private static final int INTEGER = 1 << 3;
+    private static final int NUMBER = 1 << 4;
+    private static final int BOOLEAN = 1 << 5;
+    private static final int NULL = 1 << 6;
+    private static final int BRANCH_REORDER_INTERVAL = 1024;
+
+    private final Node root;
+
+    private CompiledSchema(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Compile a resolved schema.
+     *
+     * @param schema Resolved schema from the operation index
+     * @return Compiled schema or null if the schema uses a keyword which is not supported by the compiler
+     */
+    public static CompiledSchema compile(JSONObject schema) {
+        if (schema == null) {
+            return null;
+        }
+        try {
+            return new CompiledSchema(new Compiler(schema).compile(schema));
+        } catch (UnsupportedSchemaException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Validate a JSON payload.
+     *
+     * @param payload       Raw JSON payload
+     * @param maxViolations Number of violations after which the validation stops, or 0 to find all the violations
+     * @return Result of the validation
+     * @throws JsonParseException Throws if the payload is not well-formed JSON
+     * @throws IOException        Throws if the payload cannot be read
+     */
+    @Override
+    public ValidationResult validate(byte[] payload, int maxViolations) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(payload)) {
+            return validate(parser, maxViolations);
+        }
+    }
+
+    /**
+     * Validate a JSON payload read from a stream. Only the token being validated is held, so the memory used does
+     * not depend on the size of the payload.
+     *
+     * @param payload       Stream of the JSON payload
+     * @param maxViolations Number of violations after which the validation stops, or 0 to find all the violations
+     * @return Result of the validation
+     * @throws JsonParseException Throws if the payload is not well-formed JSON
+     * @throws IOException        Throws if the payload cannot be read
+     */
+    @Override
+    public ValidationResult validate(InputStream payload, int maxViolations) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(payload)) {
+            return validate(parser, maxViolations);
+        }
+    }
+
+    private ValidationResult validate(JsonParser parser, int maxViolations) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == null) {
+            return ValidationResult.VALID;
+        }
+        Violations violations = new Violations(maxViolations);
+        try {
+            root.validate(parser, token, violations);
+        } catch (ViolationLimitException e) {
+            return new ValidationResult(violations.violations);
+        }
+        if (parser.nextToken() != null) {
+            throw new JsonParseException(parser, "Unexpected content after the end of the JSON payload");
+        }
+        return violations.violations.isEmpty() ? ValidationResult.VALID : new ValidationResult(violations.violations);
+    }
+
+    /**
+     * Get the validator of a format. Unknown formats are not validated, the same as everit. The validators are
+     * stateless, so a single validator of every format is shared by all the schemas.
+     *
+     * @param format Name of the format
+     * @return Format validator or null if the format is not validated
+     */
+    static FormatValidator getFormatValidator(String format) {
+        return format != null ? formatValidators.get(format) : null;
+    }
+
+    /**
+     * Compiles the schema nodes. Each definition is compiled once, and a reference to a definition which is
+     * still being compiled links to the same node, hence recursive definitions compile to a cyclic tree.
+     */
+    private static final class Compiler {
+
+        private final JSONObject definitions;
+        private final Map<String, Node> definitionNodes = new HashMap<>();
+
+        Compiler(JSONObject root) {
+            definitions = root.optJSONObject(SchemaValidatorConstant.DEFINITIONS);
+        }
+
+        Node compile(JSONObject schema) throws UnsupportedSchemaException {
+            String reference = schema.optString(SchemaValidatorConstant.SCHEMA_REFERENCE, null);
+            if (reference != null) {
+                return compileReference(reference);
+            }
+            Node node = new Node();
+            compileInto(node, schema);
+            return node;
+        }
+
+        private Node compileReference(String reference) throws UnsupportedSchemaException {
+            if (!reference.startsWith(REFERENCE_PREFIX) || definitions == null) {
+                throw new UnsupportedSchemaException();
+            }
+            String name = reference.substring(REFERENCE_PREFIX.length());
+            Node node = definitionNodes.get(name);
+            if (node == null) {
+                JSONObject definition = definitions.optJSONObject(name);
+                if (definition == null) {
+                    throw new UnsupportedSchemaException();
+                }
+                node = new Node();
+                definitionNodes.put(name, node);
+                compileInto(node, definition);
+            }
+            return node;
+        }
+
+        private void compileInto(Node node, JSONObject schema) throws UnsupportedSchemaException {
+            for (String keyword : schema.keySet()) {
+                if (UNSUPPORTED_KEYWORDS.contains(keyword)) {
+                    throw new UnsupportedSchemaException();
+                }
+            }
+            if (schema.has(SchemaValidatorConstant.SCHEMA_REFERENCE)) {
+                // A reference inside a definition is followed by the node which refers the definition.
+                throw new UnsupportedSchemaException();
+            }
+            node.types = compileTypes(schema.opt("type"));
+            JSONObject properties = schema.optJSONObject("properties");
+            if (properties != null) {
+                node.properties = new HashMap<>();
+                for (String name : properties.keySet()) {
+                    node.properties.put(name, compile(jsonObject(properties.get(name))));
+                }
+            }
+            JSONArray required = schema.optJSONArray("required");
+            if (required != null && required.length() > 0) {
+                node.required = new HashMap<>();
+                for (int i = 0; i < required.length(); i++) {
+                    node.required.put(required.getString(i), node.required.size());
+                }
+            }
+            Object additionalProperties = schema.opt("additionalProperties");
+            if (additionalProperties instanceof Boolean) {
+                node.additionalPropertiesAllowed = (Boolean) additionalProperties;
+            } else if (additionalProperties instanceof JSONObject) {
+                node.additionalProperties = compile((JSONObject) additionalProperties);
+            } else if (additionalProperties != null) {
+                throw new UnsupportedSchemaException();
+            }
+            node.minProperties = integer(schema, "minProperties");
+            node.maxProperties = integer(schema, "maxProperties");
+            Object items = schema.opt("items");
+            if (items instanceof JSONObject) {
+                node.items = compile((JSONObject) items);
+            } else if (items != null) {
+                throw new UnsupportedSchemaException();
+            }
+            node.minItems = integer(schema, "minItems");
+            node.maxItems = integer(schema, "maxItems");
+            node.minLength = integer(schema, "minLength");
+            node.maxLength = integer(schema, "maxLength");
+            String pattern = schema.optString("pattern", null);
+            if (pattern != null) {
+                try {
+                    node.pattern = PatternCache.getPattern(pattern);
+                } catch (PatternSyntaxException e) {
+                    throw new UnsupportedSchemaException();
+                }
+            }
+            node.format = getFormatValidator(schema.optString("format", null));
+            node.minimum = decimal(schema, "minimum");
+            node.maximum = decimal(schema, "maximum");
+            node.exclusiveMinimum = schema.optBoolean("exclusiveMinimum");
+            node.exclusiveMaximum = schema.optBoolean("exclusiveMaximum");
+            JSONArray enumValues = schema.optJSONArray("enum");
+            if (enumValues != null) {
+                node.enumValues = new HashSet<>();
+                for (int i = 0; i < enumValues.length(); i++) {
+                    node.enumValues.add(enumValue(enumValues.get(i)));
+                }
+            }
+            Object oneOf = schema.opt(SchemaValidatorConstant.ONE_OF);
+            Object anyOf = schema.opt(SchemaValidatorConstant.ANY_OF);
+            if (oneOf != null && anyOf != null) {
+                throw new UnsupportedSchemaException();
+            }
+            if (oneOf != null || anyOf != null) {
+                node.branches = compileBranches(oneOf != null, oneOf != null ? oneOf : anyOf,
+                        schema.optJSONObject(SchemaValidatorConstant.DISCRIMINATOR));
+            }
+            node.valueChecks = node.hasValueChecks();
+        }
+
+        /**
+         * Compile the oneOf or anyOf branches of a schema. The discriminator mapping of a resolved schema refers the
+         * branches by their position, see SchemaResolver.
+         */
+        private Branches compileBranches(boolean oneOf, Object schemas, JSONObject discriminator)
+                throws UnsupportedSchemaException {
+            if (!(schemas instanceof JSONArray) || ((JSONArray) schemas).length() == 0) {
+                throw new UnsupportedSchemaException();
+            }
+            JSONArray branchSchemas = (JSONArray) schemas;
+            Node[] nodes = new Node[branchSchemas.length()];
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] = compile(jsonObject(branchSchemas.get(i)));
+            }
+            JSONObject values = discriminator != null ?
+                    discriminator.optJSONObject(SchemaValidatorConstant.MAPPING) : null;
+            if (values == null) {
+                return new Branches(nodes, oneOf, null, null);
+            }
+            String prefix = "#/" + (oneOf ? SchemaValidatorConstant.ONE_OF : SchemaValidatorConstant.ANY_OF) + "/";
+            Map<String, Node> mapping = new HashMap<>();
+            for (String value : values.keySet()) {
+                String target = values.optString(value, SchemaValidatorConstant.EMPTY);
+                if (target.startsWith(prefix)) {
+                    try {
+                        int index = Integer.parseInt(target.substring(prefix.length()));
+                        if (index >= 0 && index < nodes.length) {
+                            mapping.put(value, nodes[index]);
+                        }
+                    } catch (NumberFormatException e) {
+                        // Not a resolved mapping, the value is matched against every branch.
+                    }
+                }
+            }
+            String propertyName = discriminator.optString(SchemaValidatorConstant.PROPERTY_NAME, null);
+            return propertyName != null && !mapping.isEmpty() ? new Branches(nodes, oneOf, propertyName, mapping) :
+                    new Branches(nodes, oneOf, null, null);
+        }
+
+        private static int compileTypes(Object type) throws UnsupportedSchemaException {
+            if (type == null) {
+                return 0;
+            }
+            if (type instanceof JSONArray) {
+                int types = 0;
+                for (Object element : (JSONArray) type) {
+                    types |= compileType(element);
+                }
+                return types;
+            }
+            return compileType(type);
+        }
+
+        private static int compileType(Object type) throws UnsupportedSchemaException {
+            switch (String.valueOf(type)) {
+                case "object":
+                    return OBJECT;
+                case "array":
+                    return ARRAY;
+                case "string":
+                    return STRING;
+                case "integer":
+                    return INTEGER;
+                case "number":
+                    return NUMBER | INTEGER;
+                case "boolean":
+                    return BOOLEAN;
+                case "null":
+                    return NULL;
+                default:
+                    throw new UnsupportedSchemaException();
+            }
+        }
+
+        private static JSONObject jsonObject(Object schema) throws UnsupportedSchemaException {
+            if (!(schema instanceof JSONObject)) {
+                throw new UnsupportedSchemaException();
+            }
+            return (JSONObject) schema;
+        }
+
+        private static Integer integer(JSONObject schema, String keyword) throws UnsupportedSchemaException {
+            Object value = schema.opt(keyword);
+            if (value == null) {
+                return null;
+            }
+            if (!(value instanceof Number)) {
+                throw new UnsupportedSchemaException();
+            }
+            return ((Number) value).intValue();
+        }
+
+        private static BigDecimal decimal(JSONObject schema, String keyword) throws UnsupportedSchemaException {
+            Object value = schema.opt(keyword);
+            if (value == null) {
+                return null;
+            }
+            if (!(value instanceof Number)) {
+                throw new UnsupportedSchemaException();
+            }
+            return new BigDecimal(value.toString());
+        }
+
+        private static Object enumValue(Object value) throws UnsupportedSchemaException {
+            if (value instanceof Number) {
+                return new BigDecimal(value.toString()).stripTrailingZeros();
+            }
+            if (value instanceof String || value instanceof Boolean || JSONObject.NULL.equals(value)) {
+                return value;
+            }
+            throw new UnsupportedSchemaException();
+        }
+    }
+
+    /**
+     * Compiled validator of a single schema. Nodes are only modified while the schema is compiled.
+     */
+    private static final class Node {
+
+        private int types;
+        private Set<Object> enumValues;
+        private Map<String, Node> properties;
+        private Map<String, Integer> required;
+        private boolean additionalPropertiesAllowed = true;
+        private Node additionalProperties;
+        private Integer minProperties;
+        private Integer maxProperties;
+        private Node items;
+        private Integer minItems;
+        private Integer maxItems;
+        private Integer minLength;
+        private Integer maxLength;
+        private PatternMatcher pattern;
+        private FormatValidator format;
+        private BigDecimal minimum;
+        private BigDecimal maximum;
+        private boolean exclusiveMinimum;
+        private boolean exclusiveMaximum;
+        private Branches branches;
+        private boolean valueChecks;
+
+        void validate(JsonParser parser, JsonToken token, Violations violations) throws IOException {
+            int type = typeOf(token);
+            if (types != 0 && (types & type) == 0) {
+                violations.add("expected type: " + typeNames(types) + ", found: " +
+                        (type == NUMBER ? "Double" : typeName(type)));
+                parser.skipChildren();
+                return;
+            }
+            if (branches != null) {
+                branches.validate(this, parser, token, violations);
+            } else {
+                validateValue(parser, token, violations);
+            }
+        }
+
+        /**
+         * Validate a value against the checks of the node other than its type and branches.
+         */
+        void validateValue(JsonParser parser, JsonToken token, Violations violations) throws IOException {
+            switch (token) {
+                case START_OBJECT:
+                    validateObject(parser, violations);
+                    break;
+                case START_ARRAY:
+                    validateArray(parser, violations);
+                    break;
+                case VALUE_STRING:
+                    validateString(parser, violations);
+                    break;
+                case VALUE_NUMBER_INT:
+                case VALUE_NUMBER_FLOAT:
+                    validateNumber(parser, violations);
+                    break;
+                case VALUE_TRUE:
+                case VALUE_FALSE:
+                    validateEnum(parser.getBooleanValue(), parser, violations);
+                    break;
+                default:
+                    validateEnum(JSONObject.NULL, parser, violations);
+                    break;
+            }
+        }
+
+        private void validateObject(JsonParser parser, Violations violations) throws IOException {
+            if (enumValues != null) {
+                violations.add("the object is not a valid enum value");
+            }
+            boolean[] found = required != null ? new boolean[required.size()] : null;
+            int propertyCount = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken valueToken = parser.nextToken();
+                propertyCount++;
+                if (found != null) {
+                    Integer requiredIndex = required.get(name);
+                    if (requiredIndex != null) {
+                        found[requiredIndex] = true;
+                    }
+                }
+                Node property = properties != null ? properties.get(name) : null;
+                if (property == null) {
+                    if (!additionalPropertiesAllowed) {
+                        violations.add("extraneous key [" + name + "] is not permitted");
+                        parser.skipChildren();
+                        continue;
+                    }
+                    property = additionalProperties;
+                }
+                if (property != null) {
+                    violations.push(name);
+                    property.validate(parser, valueToken, violations);
+                    violations.pop();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (found != null) {
+                for (Map.Entry<String, Integer> requiredProperty : required.entrySet()) {
+                    if (!found[requiredProperty.getValue()]) {
+                        violations.add("required key [" + requiredProperty.getKey() + "] not found");
+                    }
+                }
+            }
+            if (minProperties != null && propertyCount < minProperties) {
+                violations.add("minimum size: [" + minProperties + "], found: [" + propertyCount + "]");
+            }
+            if (maxProperties != null && propertyCount > maxProperties) {
+                violations.add("maximum size: [" + maxProperties + "], found: [" + propertyCount + "]");
+            }
+        }
+
+        private void validateArray(JsonParser parser, Violations violations) throws IOException {
+            if (enumValues != null) {
+                violations.add("the array is not a valid enum value");
+            }
+            int itemCount = 0;
+            JsonToken itemToken;
+            while ((itemToken = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (items != null) {
+                    violations.push(itemCount);
+                    items.validate(parser, itemToken, violations);
+                    violations.pop();
+                } else {
+                    parser.skipChildren();
+                }
+                itemCount++;
+            }
+            if (minItems != null && itemCount < minItems) {
+                violations.add("expected minimum item count: " + minItems + ", found: " + itemCount);
+            }
+            if (maxItems != null && itemCount > maxItems) {
+                violations.add("expected maximum item count: " + maxItems + ", found: " + itemCount);
+            }
+        }
+
+        private void validateString(JsonParser parser, Violations violations) throws IOException {
+            String value = parser.getText();
+            if (minLength != null || maxLength != null) {
+                int length = value.codePointCount(0, value.length());
+                if (minLength != null && length < minLength) {
+                    violations.add("expected minLength: " + minLength + ", actual: " + length);
+                }
+                if (maxLength != null && length > maxLength) {
+                    violations.add("expected maxLength: " + maxLength + ", actual: " + length);
+                }
+            }
+            if (pattern != null) {
+                String patternViolation = pattern.validate(value);
+                if (patternViolation != null) {
+                    violations.add(patternViolation);
+                }
+            }
+            if (format != null) {
+                Optional<String> formatViolation = format.validate(value);
+                if (formatViolation.isPresent()) {
+                    violations.add(formatViolation.get());
+                }
+            }
+            validateEnum(value, parser, violations);
+        }
+
+        private void validateNumber(JsonParser parser, Violations violations) throws IOException {
+            if (minimum == null && maximum == null && enumValues == null) {
+                return;
+            }
+            BigDecimal value = parser.getDecimalValue();
+            if (minimum != null) {
+                int comparison = value.compareTo(minimum);
+                if (exclusiveMinimum ? comparison <= 0 : comparison < 0) {
+                    violations.add(parser.getText() + (exclusiveMinimum ? " is not higher than " :
+                            " is not higher or equal to ") + minimum);
+                }
+            }
+            if (maximum != null) {
+                int comparison = value.compareTo(maximum);
+                if (exclusiveMaximum ? comparison >= 0 : comparison > 0) {
+                    violations.add(parser.getText() + (exclusiveMaximum ? " is not lower than " :
+                            " is not lower or equal to ") + maximum);
+                }
+            }
+            if (enumValues != null && !enumValues.contains(value.stripTrailingZeros())) {
+                violations.add(parser.getText() + " is not a valid enum value");
+            }
+        }
+
+        private void validateEnum(Object value, JsonParser parser, Violations violations) throws IOException {
+            if (enumValues != null && !enumValues.contains(value)) {
+                violations.add(parser.getText() + " is not a valid enum value");
+            }
+        }
+
+        /**
+         * Whether the node checks the value beyond its type, in which case the value is validated by both the node
+         * and one of its branches.
+         */
+        private boolean hasValueChecks() {
+            return enumValues != null || properties != null || required != null || !additionalPropertiesAllowed ||
+                    additionalProperties != null || minProperties != null || maxProperties != null || items != null ||
+                    minItems != null || maxItems != null || minLength != null || maxLength != null ||
+                    pattern != null || format != null || minimum != null || maximum != null;
+        }
+
+        private static int typeOf(JsonToken token) {
+            switch (token) {
+                case START_OBJECT:
+                    return OBJECT;
+                case START_ARRAY:
+                    return ARRAY;
+                case VALUE_STRING:
+                    return STRING;
+                case VALUE_NUMBER_INT:
+                    return INTEGER;
+                case VALUE_NUMBER_FLOAT:
+                    return NUMBER;
+                case VALUE_TRUE:
+                case VALUE_FALSE:
+                    return BOOLEAN;
+                default:
+                    return NULL;
+            }
+        }
+
+        private static String typeNames(int types) {
+            List<String> names = new ArrayList<>();
+            for (int type = OBJECT; type <= NULL; type <<= 1) {
+                // Integer is implied by Number.
+                if ((types & type) != 0 && !(type == INTEGER && (types & NUMBER) != 0)) {
+                    names.add(typeName(type));
+                }
+            }
+            return names.size() == 1 ? names.get(0) : names.toString();
+        }
+
+        private static String typeName(int type) {
+            switch (type) {
+                case OBJECT:
+                    return "JSONObject";
+                case ARRAY:
+                    return "JSONArray";
+                case STRING:
+                    return "String";
+                case INTEGER:
+                    return "Integer";
+                case NUMBER:
+                    return "Number";
+                case BOOLEAN:
+                    return "Boolean";
+                default:
+                    return "Null";
+            }
+        }
+    }
+
+    /**
+     * Compiled oneOf or anyOf branches of a schema. An object with a discriminator is validated only against the
+     * branch mapped to the value of its discriminator property: the object is streamed until the property is found,
+     * and the branch is given the properties read before it followed by the rest of the object from the payload.
+     * Other values are buffered and matched against the branches in the order of how often each branch matched, so
+     * an anyOf value stops at the branch which matches most of the payloads. The branches which do not match stop at
+     * their first violation, and a value which does not match is reported with a single violation instead of the
+     * violations of every branch.
+     */
+    private static final class Branches {
+
+        private final Node[] nodes;
+        private final boolean oneOf;
+        private final String discriminator;
+        private final Map<String, Node> mapping;
+        private final LongAdder[] matchCounts;
+        private final AtomicInteger matchedValues = new AtomicInteger();
+        private volatile int[] order;
+
+        Branches(Node[] nodes, boolean oneOf, String discriminator, Map<String, Node> mapping) {
+            this.nodes = nodes;
+            this.oneOf = oneOf;
+            this.discriminator = discriminator;
+            this.mapping = mapping;
+            matchCounts = new LongAdder[nodes.length];
+            order = new int[nodes.length];
+            for (int i = 0; i < nodes.length; i++) {
+                matchCounts[i] = new LongAdder();
+                order[i] = i;
+            }
+        }
+
+        void validate(Node node, JsonParser parser, JsonToken token, Violations violations) throws IOException {
+            boolean discriminated = discriminator != null && token == JsonToken.START_OBJECT;
+            if (discriminated && !node.valueChecks) {
+                dispatch(parser, violations);
+                return;
+            }
+            TokenBuffer value = new TokenBuffer(parser);
+            value.copyCurrentStructure(parser);
+            if (node.valueChecks) {
+                JsonParser valueParser = value.asParser();
+                node.validateValue(valueParser, valueParser.nextToken(), violations);
+            }
+            Node branch = discriminated ? mapping.get(discriminatorValue(value.asParser())) : null;
+            if (branch != null) {
+                JsonParser valueParser = value.asParser();
+                branch.validate(valueParser, valueParser.nextToken(), violations);
+            } else {
+                match(value, violations);
+            }
+        }
+
+        /**
+         * Validate an object against the branch mapped to its discriminator value, reading the object only once.
+         */
+        private void dispatch(JsonParser parser, Violations violations) throws IOException {
+            TokenBuffer prefix = new TokenBuffer(parser);
+            prefix.writeStartObject();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                prefix.writeFieldName(name);
+                JsonToken valueToken = parser.nextToken();
+                Node branch = valueToken == JsonToken.VALUE_STRING && discriminator.equals(name) ?
+                        mapping.get(parser.getText()) : null;
+                prefix.copyCurrentStructure(parser);
+                if (branch != null) {
+                    JsonParser replay = JsonParserSequence.createFlattened(false, prefix.asParser(), parser);
+                    branch.validate(replay, replay.nextToken(), violations);
+                    return;
+                }
+            }
+            // The object has no mapped discriminator value, hence it is matched against every branch.
+            prefix.writeEndObject();
+            match(prefix, violations);
+        }
+
+        private String discriminatorValue(JsonParser parser) throws IOException {
+            parser.nextToken();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                if (parser.nextToken() == JsonToken.VALUE_STRING && discriminator.equals(name)) {
+                    return parser.getText();
+                }
+                parser.skipChildren();
+            }
+            return null;
+        }
+
+        private void match(TokenBuffer value, Violations violations) throws IOException {
+            int matched = 0;
+            for (int index : order) {
+                if (matches(nodes[index], value)) {
+                    matchCounts[index].increment();
+                    if (++matched > 1 || !oneOf) {
+                        break;
+                    }
+                }
+            }
+            if (matchedValues.incrementAndGet() % BRANCH_REORDER_INTERVAL == 0) {
+                reorder();
+            }
+            if (oneOf && matched != 1) {
+                violations.add(matched + " subschemas matched instead of one");
+            } else if (matched == 0) {
+                violations.add("no subschema matched out of the total " + nodes.length + " subschemas");
+            }
+        }
+
+        private static boolean matches(Node branch, TokenBuffer value) throws IOException {
+            JsonParser parser = value.asParser();
+            try {
+                branch.validate(parser, parser.nextToken(), new Violations(1));
+                return true;
+            } catch (ViolationLimitException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Order the branches by their match counts, keeping the declared order of the branches which matched as
+         * often. Concurrent messages may reorder at the same time; either order is a valid one.
+         */
+        private void reorder() {
+            final long[] counts = new long[nodes.length];
+            Integer[] indexes = new Integer[nodes.length];
+            for (int i = 0; i < nodes.length; i++) {
+                counts[i] = matchCounts[i].sum();
+                indexes[i] = i;
+            }
+            Arrays.sort(indexes, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer first, Integer second) {
+                    return Long.compare(counts[second], counts[first]);
+                }
+            });
+            int[] newOrder = new int[nodes.length];
+            for (int i = 0; i < nodes.length; i++) {
+                newOrder[i] = indexes[i];
+            }
+            order = newOrder;
+        }
+    }
+
+    /**
+     * Collects the violations together with the JSON pointer of the value being validated. The pointer is only
+     * rendered when a violation is found. The XML schemas collect their violations the same way.
+     */
+    static final class Violations {
+
+        private final int maxViolations;
+        private final List<Violation> violations = new ArrayList<>();
+        private Object[] path = new Object[16];
+        private int depth;
+
+        Violations(int maxViolations) {
+            this.maxViolations = maxViolations;
+        }
+
+        void push(Object segment) {
+            if (depth == path.length) {
+                path = Arrays.copyOf(path, depth * 2);
+            }
+            path[depth++] = segment;
+        }
+
+        void pop() {
+            path[--depth] = null;
+        }
+
+        List<Violation> getViolations() {
+            return violations;
+        }
+
+        void add(String message) throws ViolationLimitException {
+            StringBuilder pointer = new StringBuilder().append(SchemaValidatorConstant.HASH);
+            for (int i = 0; i < depth; i++) {
+                pointer.append(SchemaValidatorConstant.FORWARD_SLASH).append(path[i]);
+            }
+            violations.add(new Violation(pointer.toString(), message));
+            if (violations.size() == maxViolations) {
+                throw ViolationLimitException.INSTANCE;
+            }
+        }
+    }
+
+    /**
+     * Stops the validation once the violation limit is reached.
+     */
+    static final class ViolationLimitException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+        private static final ViolationLimitException INSTANCE = new ViolationLimitException();
+
+        private ViolationLimitException() {
+            super("Violation limit reached");
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    /**
+     * Thrown while compiling a schema which uses a keyword the compiler does not support.
+     */
+    private static final class UnsupportedSchemaException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedSchemaException() {
+            super(null, null, false, false);
+        }
+    }
+}
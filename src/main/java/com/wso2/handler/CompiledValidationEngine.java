@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import org.json.JSONObject;
+
+/**
+ * Validation engine which compiles the schemas into validators over the JSON token stream. See CompiledSchema for
+ * the keywords it supports; schemas using any other keyword are left to the default engine.
+ */
+public class CompiledValidationEngine implements ValidationEngine {
+
+    @Override
+    public String getName() {
+        return SchemaValidatorConstant.VALIDATION_ENGINE_COMPILED;
+    }
+
+    @Override
+    public ValidationSchema compile(JSONObject schema) {
+        return CompiledSchema.compile(schema);
+    }
+}
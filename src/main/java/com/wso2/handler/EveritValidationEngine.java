@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.everit.json.schema.FormatValidator;
+import org.everit.json.schema.Schema;
+import org.everit.json.schema.SchemaException;
+import org.everit.json.schema.ValidationException;
+import org.everit.json.schema.loader.SchemaLoader;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Validation engine backed by the everit JSON schema library. The payload is parsed into the JSON model of everit
+ * before it is validated. This is the default engine, and it validates the schemas other engines cannot compile.
+ */
+public class EveritValidationEngine implements ValidationEngine {
+
+    private static final Log logger = LogFactory.getLog(EveritValidationEngine.class);
+    private static final String PATTERN = "pattern";
+    private static final String FORMAT = "format";
+    private static final String ALL_OF = "allOf";
+    private static final String PATTERN_FORMAT_PREFIX = "pattern:";
+    private static final Set<String> SCHEMA_KEYWORDS = new HashSet<>(Arrays.asList("additionalProperties",
+            "items", "additionalItems", "not", "contains", "propertyNames", "if", "then", "else"));
+    private static final Set<String> SCHEMA_ARRAY_KEYWORDS = new HashSet<>(Arrays.asList("items", ALL_OF,
+            "anyOf", "oneOf"));
+    private static final Set<String> SCHEMA_MAP_KEYWORDS = new HashSet<>(Arrays.asList("properties",
+            "patternProperties", SchemaValidatorConstant.DEFINITIONS, "dependencies"));
+
+    @Override
+    public String getName() {
+        return SchemaValidatorConstant.VALIDATION_ENGINE_EVERIT;
+    }
+
+    @Override
+    public ValidationSchema compile(JSONObject schema) {
+        if (schema == null) {
+            return null;
+        }
+        try {
+            Map<String, PatternMatcher> patterns = new HashMap<>();
+            SchemaLoader.SchemaLoaderBuilder loader = SchemaLoader.builder().schemaJson(rewritePatterns(schema,
+                    patterns));
+            for (Map.Entry<String, PatternMatcher> pattern : patterns.entrySet()) {
+                loader.addFormatValidator(new PatternFormatValidator(pattern.getKey(), pattern.getValue()));
+            }
+            return new EveritSchema(loader.build().load().build());
+        } catch (SchemaException e) {
+            logger.error("Error occurred while loading the schema", e);
+            return null;
+        }
+    }
+
+    /**
+     * Replace the pattern keywords of a schema with formats validated by the shared matchers of the PatternCache,
+     * so the patterns are compiled once for all the schemas and evaluated with a budget if they are risky. A schema
+     * which also declares a format gets the pattern format as an allOf branch. The schema is not modified, the
+     * schemas which contain a pattern are copied.
+     *
+     * @param schema   Schema
+     * @param patterns Matchers of the rewritten patterns by their format name
+     * @return Rewritten schema, or the given schema if it has no pattern
+     */
+    private static JSONObject rewritePatterns(JSONObject schema, Map<String, PatternMatcher> patterns) {
+        JSONObject rewritten = schema;
+        for (String keyword : schema.keySet()) {
+            Object value = schema.get(keyword);
+            Object rewrittenValue = value;
+            if (value instanceof JSONObject && SCHEMA_MAP_KEYWORDS.contains(keyword)) {
+                rewrittenValue = rewriteSchemaMap((JSONObject) value, patterns);
+            } else if (value instanceof JSONObject && (SCHEMA_KEYWORDS.contains(keyword) ||
+                    SCHEMA_ARRAY_KEYWORDS.contains(keyword))) {
+                rewrittenValue = rewritePatterns((JSONObject) value, patterns);
+            } else if (value instanceof JSONArray && SCHEMA_ARRAY_KEYWORDS.contains(keyword)) {
+                rewrittenValue = rewriteSchemaArray((JSONArray) value, patterns);
+            }
+            if (rewrittenValue != value) {
+                rewritten = copyOnWrite(schema, rewritten);
+                rewritten.put(keyword, rewrittenValue);
+            }
+        }
+        Object regex = schema.opt(PATTERN);
+        if (!(regex instanceof String)) {
+            return rewritten;
+        }
+        PatternMatcher matcher;
+        try {
+            matcher = PatternCache.getPattern((String) regex);
+        } catch (PatternSyntaxException e) {
+            // Leave the pattern to everit, which reports the invalid pattern.
+            return rewritten;
+        }
+        String format = PATTERN_FORMAT_PREFIX + regex;
+        patterns.put(format, matcher);
+        rewritten = copyOnWrite(schema, rewritten);
+        rewritten.remove(PATTERN);
+        if (rewritten.has(FORMAT)) {
+            JSONArray allOf = rewritten.optJSONArray(ALL_OF);
+            allOf = allOf != null ? copy(allOf) : new JSONArray();
+            allOf.put(new JSONObject().put(FORMAT, format));
+            rewritten.put(ALL_OF, allOf);
+        } else {
+            rewritten.put(FORMAT, format);
+        }
+        return rewritten;
+    }
+
+    private static JSONObject rewriteSchemaMap(JSONObject schemas, Map<String, PatternMatcher> patterns) {
+        JSONObject rewritten = schemas;
+        for (String name : schemas.keySet()) {
+            Object schema = schemas.get(name);
+            if (schema instanceof JSONObject) {
+                JSONObject rewrittenSchema = rewritePatterns((JSONObject) schema, patterns);
+                if (rewrittenSchema != schema) {
+                    rewritten = copyOnWrite(schemas, rewritten);
+                    rewritten.put(name, rewrittenSchema);
+                }
+            }
+        }
+        return rewritten;
+    }
+
+    private static JSONArray rewriteSchemaArray(JSONArray schemas, Map<String, PatternMatcher> patterns) {
+        JSONArray rewritten = schemas;
+        for (int i = 0; i < schemas.length(); i++) {
+            Object schema = schemas.get(i);
+            if (schema instanceof JSONObject) {
+                JSONObject rewrittenSchema = rewritePatterns((JSONObject) schema, patterns);
+                if (rewrittenSchema != schema) {
+                    if (rewritten == schemas) {
+                        rewritten = copy(schemas);
+                    }
+                    rewritten.put(i, rewrittenSchema);
+                }
+            }
+        }
+        return rewritten;
+    }
+
+    private static JSONArray copy(JSONArray array) {
+        JSONArray copy = new JSONArray();
+        for (int i = 0; i < array.length(); i++) {
+            copy.put(array.get(i));
+        }
+        return copy;
+    }
+
+    private static JSONObject copyOnWrite(JSONObject original, JSONObject current) {
+        return current == original ? new JSONObject(original, JSONObject.getNames(original)) : current;
+    }
+
+    /**
+     * Format which validates a rewritten pattern, named by the format the pattern is rewritten to.
+     */
+    private static final class PatternFormatValidator implements FormatValidator {
+
+        private final String formatName;
+        private final PatternMatcher matcher;
+
+        PatternFormatValidator(String formatName, PatternMatcher matcher) {
+            this.formatName = formatName;
+            this.matcher = matcher;
+        }
+
+        @Override
+        public String formatName() {
+            return formatName;
+        }
+
+        @Override
+        public Optional<String> validate(String subject) {
+            return Optional.ofNullable(matcher.validate(subject));
+        }
+    }
+
+    /**
+     * Schema loaded by everit.
+     */
+    private static final class EveritSchema implements ValidationSchema {
+
+        private final Schema schema;
+
+        EveritSchema(Schema schema) {
+            this.schema = schema;
+        }
+
+        @Override
+        public ValidationResult validate(byte[] payload, int maxViolations) throws IOException {
+            return validate(JsonPayloadReader.parse(payload), maxViolations);
+        }
+
+        @Override
+        public ValidationResult validate(InputStream payload, int maxViolations) throws IOException {
+            return validate(JsonPayloadReader.parse(payload), maxViolations);
+        }
+
+        private ValidationResult validate(Object payloadObject, int maxViolations) {
+            if (payloadObject == null) {
+                return ValidationResult.VALID;
+            }
+            try {
+                schema.validate(payloadObject);
+                return ValidationResult.VALID;
+            } catch (ValidationException e) {
+                return new ValidationResult(collectViolations(e, maxViolations), e.getViolationCount());
+            }
+        }
+
+        /**
+         * Collect the violations from the exception tree in the order of ValidationException.getAllMessages, but
+         * only up to the given number of violations, so a payload with a large number of violations is reported
+         * in bounded time.
+         *
+         * @param e             Validation exception thrown by the schema
+         * @param maxViolations Number of violations to collect, or 0 to collect all the violations
+         * @return Violations
+         */
+        private static List<Violation> collectViolations(ValidationException e, int maxViolations) {
+            List<Violation> violations = new ArrayList<>();
+            Deque<ValidationException> pending = new ArrayDeque<>();
+            pending.push(e);
+            while (!pending.isEmpty() && (maxViolations == 0 || violations.size() < maxViolations)) {
+                ValidationException violation = pending.pop();
+                List<ValidationException> causes = violation.getCausingExceptions();
+                if (causes.isEmpty()) {
+                    violations.add(new Violation(violation.getPointerToViolation(), violation.getErrorMessage()));
+                    continue;
+                }
+                for (int i = causes.size() - 1; i >= 0; i--) {
+                    pending.push(causes.get(i));
+                }
+            }
+            return violations;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Inflates a gzip or deflate compressed payload while it is read, through buffers of a fixed size, so a compressed
+ * payload can be validated in a single pass without holding the inflated payload. The inflated size is limited,
+ * which guards against compression bombs: the read fails with an InflatedSizeException once the payload inflates to
+ * more than the limit.
+ */
+final class InflatingInputStream extends FilterInputStream {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final long maxInflatedBytes;
+    private long inflatedBytes;
+
+    private InflatingInputStream(InputStream in, long maxInflatedBytes) {
+        super(in);
+        this.maxInflatedBytes = maxInflatedBytes;
+    }
+
+    /**
+     * Create a stream which inflates a compressed payload.
+     *
+     * @param payload          Compressed payload
+     * @param encoding         Content-Encoding of the payload, gzip, x-gzip or deflate
+     * @param maxInflatedBytes Maximum inflated size in bytes
+     * @return Stream of the inflated payload or null if the encoding is not supported
+     * @throws IOException Throws if the gzip header of the payload is not valid
+     */
+    static InflatingInputStream create(byte[] payload, String encoding, long maxInflatedBytes) throws IOException {
+        InputStream compressed = new ByteArrayInputStream(payload);
+        if (isGzip(encoding)) {
+            return new InflatingInputStream(new GZIPInputStream(compressed, BUFFER_SIZE), maxInflatedBytes);
+        }
+        if (SchemaValidatorConstant.DEFLATE.equals(encoding)) {
+            // Deflate is meant to be zlib wrapped, but some clients send the raw deflate stream.
+            Inflater inflater = new Inflater(!hasZlibHeader(payload));
+            return new InflatingInputStream(new InflaterInputStream(compressed, inflater, BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    inf.end();
+                }
+            }, maxInflatedBytes);
+        }
+        return null;
+    }
+
+    /**
+     * Check whether a Content-Encoding is one of the encodings inflated by this stream.
+     *
+     * @param encoding Content-Encoding in lower case
+     * @return true if the payload can be inflated
+     */
+    static boolean isSupported(String encoding) {
+        return isGzip(encoding) || SchemaValidatorConstant.DEFLATE.equals(encoding);
+    }
+
+    private static boolean isGzip(String encoding) {
+        return SchemaValidatorConstant.GZIP.equals(encoding) || SchemaValidatorConstant.X_GZIP.equals(encoding);
+    }
+
+    private static boolean hasZlibHeader(byte[] payload) {
+        return payload.length >= 2 && (payload[0] & 0x0F) == 8 &&
+                (((payload[0] & 0xFF) << 8) | (payload[1] & 0xFF)) % 31 == 0;
+    }
+
+    /**
+     * Get the number of inflated bytes read so far.
+     *
+     * @return Inflated size in bytes
+     */
+    long getInflatedBytes() {
+        return inflatedBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            count(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int read = super.read(buffer, offset, length);
+        if (read > 0) {
+            count(read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        count(skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void count(long bytes) throws InflatedSizeException {
+        inflatedBytes += bytes;
+        if (inflatedBytes > maxInflatedBytes) {
+            throw new InflatedSizeException("Payload inflates to more than the maximum size of " +
+                    maxInflatedBytes + " bytes");
+        }
+    }
+
+    /**
+     * Thrown when a compressed payload inflates to more than the limit.
+     */
+    static final class InflatedSizeException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        InflatedSizeException(String message) {
+            super(message);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+}
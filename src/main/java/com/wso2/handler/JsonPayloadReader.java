@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.apache.synapse.transport.passthru.PassThroughConstants;
+import org.apache.synapse.transport.passthru.Pipe;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+
+/**
+ * Reads JSON payloads straight from the PassThrough relay buffer without building the Axiom tree of the message.
+ * The payload is parsed once with the Jackson streaming parser into the JSON model used by the schema engine.
+ */
+public class JsonPayloadReader {
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    private static final int BUFFER_SIZE = 8192;
+
+    private JsonPayloadReader() {
+    }
+
+    /**
+     * Read the raw body of the message from the relay buffer. The buffer is replaced with one over the read bytes,
+     * so the message can still be built afterwards. The pass-through pipe is drained by the read, hence the message
+     * has to be built before it is sent to the backend.
+     *
+     * @param axis2MC Axis2 message context
+     * @return Raw body of the message or null if the body is not available in the relay buffer
+     * @throws IOException Throws if the body cannot be read
+     */
+    public static byte[] readRelayBuffer(org.apache.axis2.context.MessageContext axis2MC) throws IOException {
+        return readRelayBuffer(axis2MC, 0);
+    }
+
+    /**
+     * Read the raw body of the message from the relay buffer, but stop reading once the body is found to exceed the
+     * given size. The body left unread remains in the relay buffer after the read bytes.
+     *
+     * @param axis2MC  Axis2 message context
+     * @param maxBytes Number of bytes after which the reading stops, or 0 to read the whole body
+     * @return Raw body of the message, which is longer than maxBytes if the body exceeds the size, or null if the body
+     * is not available in the relay buffer
+     * @throws IOException Throws if the body cannot be read
+     */
+    public static byte[] readRelayBuffer(org.apache.axis2.context.MessageContext axis2MC, long maxBytes)
+            throws IOException {
+        InputStream inputStream = getRelayStream(axis2MC);
+        if (inputStream == null) {
+            return null;
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream(BUFFER_SIZE);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int length;
+        boolean exceeded = false;
+        while ((length = inputStream.read(buffer)) != -1) {
+            body.write(buffer, 0, length);
+            if (maxBytes > 0 && body.size() > maxBytes) {
+                exceeded = true;
+                break;
+            }
+        }
+        byte[] bytes = body.toByteArray();
+        InputStream relayStream = new ByteArrayInputStream(bytes);
+        if (exceeded) {
+            relayStream = new SequenceInputStream(relayStream, inputStream);
+        }
+        setRelayStream(axis2MC, relayStream);
+        return bytes;
+    }
+
+    /**
+     * Get the stream of the body of the message in the relay buffer, positioned at the start of the body.
+     *
+     * @param axis2MC Axis2 message context
+     * @return Stream of the body or null if the body is not available in the relay buffer
+     */
+    public static InputStream getRelayStream(org.apache.axis2.context.MessageContext axis2MC) {
+        if (Boolean.TRUE.equals(axis2MC.getProperty(PassThroughConstants.MESSAGE_BUILDER_INVOKED))) {
+            return null;
+        }
+        InputStream inputStream = (InputStream) axis2MC.getProperty(PassThroughConstants.BUFFERED_INPUT_STREAM);
+        if (inputStream != null) {
+            try {
+                inputStream.reset();
+            } catch (IOException e) {
+                // The buffered stream has not been read yet.
+            }
+            return inputStream;
+        }
+        Pipe pipe = (Pipe) axis2MC.getProperty(PassThroughConstants.PASS_THROUGH_PIPE);
+        return pipe != null ? pipe.getInputStream() : null;
+    }
+
+    /**
+     * Replace the body of the message in the relay buffer. The message is built from the given stream, which the
+     * body is read from when the built message is sent to the backend.
+     *
+     * @param axis2MC     Axis2 message context
+     * @param inputStream Stream of the body
+     */
+    public static void setRelayStream(org.apache.axis2.context.MessageContext axis2MC, InputStream inputStream) {
+        axis2MC.setProperty(PassThroughConstants.BUFFERED_INPUT_STREAM, new BufferedInputStream(inputStream));
+    }
+
+    /**
+     * Parse a JSON payload.
+     *
+     * @param payload Raw JSON payload
+     * @return JSONObject or JSONArray of the payload, or null if the payload is empty
+     * @throws JsonParseException Throws if the payload is not well-formed JSON
+     * @throws IOException        Throws if the payload cannot be read
+     */
+    public static Object parse(byte[] payload) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(payload)) {
+            return parse(parser);
+        }
+    }
+
+    /**
+     * Parse a JSON payload read from a stream. The stream is closed.
+     *
+     * @param payload Stream of the JSON payload
+     * @return JSONObject or JSONArray of the payload, or null if the payload is empty
+     * @throws JsonParseException Throws if the payload is not well-formed JSON
+     * @throws IOException        Throws if the payload cannot be read
+     */
+    public static Object parse(InputStream payload) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(payload)) {
+            return parse(parser);
+        }
+    }
+
+    private static Object parse(JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == null) {
+            return null;
+        }
+        Object value = readValue(parser, token);
+        if (parser.nextToken() != null) {
+            throw new JsonParseException(parser, "Unexpected content after the end of the JSON payload");
+        }
+        return value;
+    }
+
+    private static Object readValue(JsonParser parser, JsonToken token) throws IOException {
+        switch (token) {
+            case START_OBJECT:
+                JSONObject object = new JSONObject();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    object.put(name, readValue(parser, parser.nextToken()));
+                }
+                return object;
+            case START_ARRAY:
+                JSONArray array = new JSONArray();
+                JsonToken element;
+                while ((element = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    array.put(readValue(parser, element));
+                }
+                return array;
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getNumberValue();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            case VALUE_NULL:
+                return JSONObject.NULL;
+            default:
+                throw new JsonParseException(parser, "Unexpected token " + token + " in the JSON payload");
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Dispatch table from the media types of a request body or a response to their schemas. The media types are
+ * normalized when the table is built, and a content type is looked up in place, ignoring its parameters, case and
+ * surrounding whitespace, so a lookup neither allocates nor rebuilds the content type.
+ * A content type which is not declared is dispatched to the most specific declared match: a JSON media type, such as
+ * application/problem+json or text/json, falls back to application/json, then to the wildcard of its type, such as
+ * application/*, and then to the wildcard of all media types. A table is immutable and can be shared by concurrent
+ * messages.
+ */
+final class MediaTypeTable {
+
+    static final MediaTypeTable EMPTY = new MediaTypeTable(new String[0], new JSONObject[0]);
+
+    private static final String WILDCARD_SUBTYPE = "/*";
+    private static final String WILDCARD = "*/*";
+
+    private final String[] mediaTypes;
+    private final JSONObject[] schemas;
+    private final int[] slots;
+    private final int[] hashes;
+    private final int jsonIndex;
+    private final int wildcardIndex;
+
+    private MediaTypeTable(String[] mediaTypes, JSONObject[] schemas) {
+        this.mediaTypes = mediaTypes;
+        this.schemas = schemas;
+        int capacity = Integer.highestOneBit(Math.max(mediaTypes.length, 1) * 2) * 2;
+        slots = new int[capacity];
+        hashes = new int[capacity];
+        Arrays.fill(slots, -1);
+        for (int i = 0; i < mediaTypes.length; i++) {
+            int hash = hash(mediaTypes[i], 0, mediaTypes[i].length(), null);
+            int slot = hash & (capacity - 1);
+            while (slots[slot] != -1) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            slots[slot] = i;
+            hashes[slot] = hash;
+        }
+        jsonIndex = find(SchemaValidatorConstant.APPLICATION_JSON, 0,
+                SchemaValidatorConstant.APPLICATION_JSON.length(), null);
+        wildcardIndex = find(WILDCARD, 0, WILDCARD.length(), null);
+    }
+
+    /**
+     * Build a table from the schemas of the media types.
+     *
+     * @param schemas Schemas by media type, in the order of the swagger
+     * @return Table of the media types, which is EMPTY if there are no schemas
+     */
+    static MediaTypeTable of(Map<String, JSONObject> schemas) {
+        if (schemas.isEmpty()) {
+            return EMPTY;
+        }
+        String[] mediaTypes = new String[schemas.size()];
+        JSONObject[] schemaArray = new JSONObject[schemas.size()];
+        int size = 0;
+        for (Map.Entry<String, JSONObject> schema : schemas.entrySet()) {
+            String mediaType = normalize(schema.getKey());
+            if (indexOf(mediaTypes, size, mediaType) < 0) {
+                mediaTypes[size] = mediaType;
+                schemaArray[size++] = schema.getValue();
+            }
+        }
+        return new MediaTypeTable(Arrays.copyOf(mediaTypes, size), Arrays.copyOf(schemaArray, size));
+    }
+
+    private static int indexOf(String[] mediaTypes, int size, String mediaType) {
+        for (int i = 0; i < size; i++) {
+            if (mediaTypes[i].equals(mediaType)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Normalize a media type: the parameters and surrounding whitespace are removed and the media type is lower
+     * cased.
+     *
+     * @param mediaType Media type or content type
+     * @return Normalized media type
+     */
+    static String normalize(String mediaType) {
+        int end = mediaTypeEnd(mediaType);
+        int start = mediaTypeStart(mediaType, end);
+        return mediaType.substring(start, end).toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Check whether a content type is the given media type.
+     *
+     * @param contentType Content type of a message
+     * @param mediaType   Normalized media type
+     * @return true if the media type of the content type is the given media type
+     */
+    static boolean is(String contentType, String mediaType) {
+        int end = mediaTypeEnd(contentType);
+        int start = mediaTypeStart(contentType, end);
+        return end - start == mediaType.length() && contentType.regionMatches(true, start, mediaType, 0,
+                mediaType.length());
+    }
+
+    /**
+     * Check whether the media type of a content type has a structured syntax suffix, such as +json.
+     *
+     * @param contentType Content type of a message
+     * @param suffix      Suffix in lower case
+     * @return true if the media type ends with the suffix
+     */
+    static boolean hasSuffix(String contentType, String suffix) {
+        int end = mediaTypeEnd(contentType);
+        int start = mediaTypeStart(contentType, end);
+        return end - start > suffix.length() && contentType.regionMatches(true, end - suffix.length(), suffix, 0,
+                suffix.length());
+    }
+
+    /**
+     * Check whether a content type is a JSON media type: application/json, text/json or a +json media type.
+     *
+     * @param contentType Content type of a message
+     * @return true if the body is JSON
+     */
+    static boolean isJson(String contentType) {
+        return is(contentType, SchemaValidatorConstant.APPLICATION_JSON) ||
+                is(contentType, SchemaValidatorConstant.TEXT_JSON) ||
+                hasSuffix(contentType, SchemaValidatorConstant.JSON_SUFFIX);
+    }
+
+    /**
+     * Find the entry of the media type of a content type.
+     *
+     * @param contentType Content type of a message, or null for the application/json entry
+     * @return Index of the entry or -1 if no declared media type matches the content type
+     */
+    int indexOf(String contentType) {
+        if (contentType == null) {
+            return jsonIndex;
+        }
+        int end = mediaTypeEnd(contentType);
+        int start = mediaTypeStart(contentType, end);
+        int index = find(contentType, start, end, null);
+        if (index >= 0) {
+            return index;
+        }
+        if (jsonIndex >= 0 && isJson(contentType)) {
+            return jsonIndex;
+        }
+        int slash = contentType.indexOf('/', start);
+        if (slash > start && slash < end) {
+            index = find(contentType, start, slash, WILDCARD_SUBTYPE);
+            if (index >= 0) {
+                return index;
+            }
+        }
+        return wildcardIndex;
+    }
+
+    /**
+     * Get the normalized media type of an entry.
+     *
+     * @param index Index of the entry
+     * @return Media type
+     */
+    String getMediaType(int index) {
+        return mediaTypes[index];
+    }
+
+    /**
+     * Get the schema of an entry.
+     *
+     * @param index Index of the entry
+     * @return Schema of the media type
+     */
+    JSONObject getSchema(int index) {
+        return schemas[index];
+    }
+
+    /**
+     * Get the schema of the media type of a content type.
+     *
+     * @param contentType Content type of a message, or null for the application/json schema
+     * @return Schema or null if no declared media type matches the content type
+     */
+    JSONObject getSchema(String contentType) {
+        int index = indexOf(contentType);
+        return index >= 0 ? schemas[index] : null;
+    }
+
+    int size() {
+        return mediaTypes.length;
+    }
+
+    boolean isEmpty() {
+        return mediaTypes.length == 0;
+    }
+
+    private int find(String text, int start, int end, String suffix) {
+        int hash = hash(text, start, end, suffix);
+        int length = end - start + (suffix != null ? suffix.length() : 0);
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; slots[slot] != -1; slot = (slot + 1) & mask) {
+            String mediaType = mediaTypes[slots[slot]];
+            if (hashes[slot] == hash && mediaType.length() == length &&
+                    text.regionMatches(true, start, mediaType, 0, end - start) &&
+                    (suffix == null || mediaType.endsWith(suffix))) {
+                return slots[slot];
+            }
+        }
+        return -1;
+    }
+
+    private static int hash(String text, int start, int end, String suffix) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + Character.toLowerCase(text.charAt(i));
+        }
+        if (suffix != null) {
+            for (int i = 0; i < suffix.length(); i++) {
+                hash = 31 * hash + suffix.charAt(i);
+            }
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int mediaTypeEnd(String contentType) {
+        int end = contentType.indexOf(';');
+        end = end >= 0 ? end : contentType.length();
+        while (end > 0 && Character.isWhitespace(contentType.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    private static int mediaTypeStart(String contentType, int end) {
+        int start = 0;
+        while (start < end && Character.isWhitespace(contentType.charAt(start))) {
+            start++;
+        }
+        return start;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Memory budget shared by the schema caches of all the APIs. Every cache charges the estimated size of the entries
+ * it adds to the budget, and once the budget is exceeded the least recently used entries across all the caches are
+ * evicted until the caches fit in the budget again. The budget is charged after an entry is added, so the caches
+ * may exceed the budget by the size of the entries being added.
+ */
+public final class MemoryBudget {
+
+    private final long maxWeight;
+    private final AtomicLong weight = new AtomicLong();
+    private final LongAdder evictionCount = new LongAdder();
+    private final List<Evictable> evictables = new CopyOnWriteArrayList<>();
+
+    /**
+     * Create a memory budget.
+     *
+     * @param maxWeight Estimated size in bytes of the entries the caches may hold, or 0 for an unbounded budget
+     */
+    public MemoryBudget(long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Add a cache, or a part of a cache, whose entries are evicted to keep within the budget.
+     *
+     * @param evictable Cache whose entries can be evicted
+     */
+    void register(Evictable evictable) {
+        evictables.add(evictable);
+    }
+
+    /**
+     * Charge the size of the added entries to the budget, evicting entries if the budget is exceeded. Must not be
+     * called while holding the lock of an evictable cache.
+     *
+     * @param delta Estimated size of the added entries, negative if entries were removed
+     */
+    void charge(long delta) {
+        long current = weight.addAndGet(delta);
+        if (delta <= 0 || maxWeight <= 0 || current <= maxWeight) {
+            return;
+        }
+        while (weight.get() > maxWeight) {
+            Evictable eldest = null;
+            long eldestAccessTime = Long.MAX_VALUE;
+            for (Evictable evictable : evictables) {
+                long accessTime = evictable.getEldestAccessTime();
+                if (accessTime < eldestAccessTime) {
+                    eldest = evictable;
+                    eldestAccessTime = accessTime;
+                }
+            }
+            if (eldest == null) {
+                return;
+            }
+            long freed = eldest.evictEldest();
+            if (freed > 0) {
+                weight.addAndGet(-freed);
+                evictionCount.increment();
+            }
+        }
+    }
+
+    /**
+     * @return Maximum estimated size in bytes, or 0 if the budget is unbounded
+     */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * @return Estimated size in bytes of the entries held by the caches
+     */
+    public long getWeight() {
+        return weight.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * Cache whose least recently used entries can be evicted by the budget.
+     */
+    interface Evictable {
+
+        /**
+         * Get the time the least recently used entry was last accessed, as given by System.nanoTime.
+         *
+         * @return Access time or Long.MAX_VALUE if there is no entry
+         */
+        long getEldestAccessTime();
+
+        /**
+         * Evict the least recently used entry.
+         *
+         * @return Estimated size of the evicted entry, or 0 if there is no entry to evict
+         */
+        long evictEldest();
+    }
+}
@@ -0,0 +1,871 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.config.Entry;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.wso2.carbon.apimgt.api.APIManagementException;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Index of the request and response schemas of every operation defined in the swagger of an API. The schemas are
+ * resolved with a SchemaResolver while the index is built and are kept in the JSON model of the schema engine.
+ * The path, query and header parameters of every operation are compiled into a ParameterValidator. The schemas
+ * are interned in the SchemaStore, so identical schemas of different APIs are held once.
+ * The index is built once from the swagger local entry and is rebuilt only when the content or the version
+ * of the local entry changes. An index is never modified after it is built, and the schemas it returns
+ * must not be modified by the callers, so that a single index can be shared by concurrent messages.
+ */
+public class OperationIndex {
+
+    private static final Log logger = LogFactory.getLog(OperationIndex.class);
+    private static final AtomicInteger generations = new AtomicInteger();
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final int INT_SIZE = 4;
+
+    private final String apiUUID;
+    private final Object source;
+    private final long version;
+    private final int generation;
+    private final boolean openAPI;
+    private final Map<String, Operation> operations;
+
+    private OperationIndex(String apiUUID, Object source, long version, boolean openAPI,
+                           Map<String, Operation> operations) {
+        this.apiUUID = apiUUID;
+        this.source = source;
+        this.version = version;
+        this.generation = generations.incrementAndGet();
+        this.openAPI = openAPI;
+        this.operations = Collections.unmodifiableMap(operations);
+    }
+
+    /**
+     * Build the operation index of the swagger stored in the given local entry. The index is built in memory, the
+     * operation index artifact is neither read nor written.
+     *
+     * @param localEntry Local entry which contains the swagger of the API
+     * @return Operation index of the swagger
+     * @throws APIManagementException Throws if the swagger cannot be parsed
+     */
+    public static OperationIndex build(Entry localEntry) throws APIManagementException {
+        Object source = localEntry.getValue();
+        try {
+            JsonNode rootNode = mapper.readTree(source.toString());
+            boolean openAPI = rootNode.has(SchemaValidatorConstant.OPEN_API);
+            return new OperationIndex(localEntry.getKey(), source, localEntry.getVersion(), openAPI,
+                    new Indexer(rootNode).indexOperations(openAPI));
+        } catch (IOException e) {
+            throw new APIManagementException("Error occurred while parsing the swagger of the API", e);
+        }
+    }
+
+    /**
+     * Load the operation index of the swagger stored in the given local entry from its operation index artifact,
+     * or build it and store it in the artifact if there is no artifact of the swagger. The artifact is read and
+     * written on the calling thread, hence the index is only loaded by the warm-up and never on a message.
+     *
+     * @param localEntry Local entry which contains the swagger of the API
+     * @return Operation index of the swagger
+     * @throws APIManagementException Throws if the swagger cannot be parsed
+     */
+    public static OperationIndex load(Entry localEntry) throws APIManagementException {
+        OperationIndexArtifact artifact = OperationIndexArtifact.of(localEntry.getKey(),
+                localEntry.getValue().toString());
+        if (artifact != null) {
+            OperationIndex index = artifact.load(localEntry);
+            if (index != null) {
+                return index;
+            }
+        }
+        OperationIndex index = build(localEntry);
+        if (artifact != null) {
+            artifact.store(index);
+        }
+        return index;
+    }
+
+    /**
+     * Restore an index from the body of an operation index artifact written by writeTo.
+     *
+     * @param localEntry Local entry which contains the swagger the artifact was built from
+     * @param buffer     Buffer positioned at the body of the artifact
+     * @return Operation index of the swagger
+     * @throws IOException Throws if the body is not well-formed, including a length or string index out of the
+     *                     range of the body
+     */
+    static OperationIndex readFrom(Entry localEntry, ByteBuffer buffer) throws IOException {
+        boolean openAPI = buffer.get() != 0;
+        String[] strings = new String[readLength(buffer, INT_SIZE)];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[readLength(buffer, 1)];
+            buffer.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        // Schemas shared by several operations are shared by the restored operations as well.
+        Map<Integer, JSONObject> schemas = new HashMap<>();
+        Map<String, Operation> operationMap = new HashMap<>();
+        int operationCount = readLength(buffer, INT_SIZE);
+        try {
+            for (int i = 0; i < operationCount; i++) {
+                String resource = readString(buffer, strings);
+                String method = readString(buffer, strings);
+                Map<String, JSONObject> requestSchemas = readSchemas(buffer, strings, schemas);
+                JSONObject recordSchema = readSchema(buffer, strings, schemas);
+                int parameterIndex = readIndex(buffer, strings);
+                List<JsonNode> parameters = new ArrayList<>();
+                if (parameterIndex >= 0) {
+                    for (JsonNode parameter : mapper.readTree(strings[parameterIndex])) {
+                        parameters.add(parameter);
+                    }
+                }
+                Map<String, Map<String, JSONObject>> responseSchemas = new HashMap<>();
+                int responseCount = readLength(buffer, 2 * INT_SIZE);
+                for (int j = 0; j < responseCount; j++) {
+                    String statusCode = readString(buffer, strings);
+                    responseSchemas.put(statusCode, readSchemas(buffer, strings, schemas));
+                }
+                operationMap.put(operationKey(resource, method), new Operation(resource, method, requestSchemas,
+                        recordSchema, responseSchemas, parameters, openAPI));
+            }
+        } catch (JSONException e) {
+            throw new IOException("Invalid schema in the operation index artifact", e);
+        }
+        return new OperationIndex(localEntry.getKey(), localEntry.getValue(), localEntry.getVersion(), openAPI,
+                operationMap);
+    }
+
+    /**
+     * Write the operations of the index as the body of an operation index artifact. Every distinct string,
+     * including the serialized schemas, is written once to a string table which the operations refer to. The
+     * media types of a request body or response are written as their count followed by the media type and schema
+     * of every entry.
+     *
+     * @param output Output of the artifact
+     * @throws IOException Throws if the body cannot be written
+     */
+    void writeTo(DataOutputStream output) throws IOException {
+        Map<String, Integer> stringIndexes = new LinkedHashMap<>();
+        List<List<Integer>> operationRecords = new ArrayList<>(operations.size());
+        for (Operation operation : operations.values()) {
+            List<Integer> record = new ArrayList<>();
+            record.add(stringIndex(operation.resource, stringIndexes));
+            record.add(stringIndex(operation.method, stringIndexes));
+            addSchemas(record, operation.requestContent, stringIndexes);
+            record.add(schemaIndex(operation.recordSchema, stringIndexes));
+            record.add(operation.parameters.isEmpty() ? -1 :
+                    stringIndex(mapper.writeValueAsString(operation.parameters), stringIndexes));
+            record.add(operation.responseContent.size());
+            for (Map.Entry<String, MediaTypeTable> response : operation.responseContent.entrySet()) {
+                record.add(stringIndex(response.getKey(), stringIndexes));
+                addSchemas(record, response.getValue(), stringIndexes);
+            }
+            operationRecords.add(record);
+        }
+        output.writeBoolean(openAPI);
+        output.writeInt(stringIndexes.size());
+        for (String string : stringIndexes.keySet()) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+        output.writeInt(operationRecords.size());
+        for (List<Integer> record : operationRecords) {
+            for (int value : record) {
+                output.writeInt(value);
+            }
+        }
+    }
+
+    private static void addSchemas(List<Integer> record, MediaTypeTable content, Map<String, Integer> stringIndexes) {
+        record.add(content.size());
+        for (int i = 0; i < content.size(); i++) {
+            record.add(stringIndex(content.getMediaType(i), stringIndexes));
+            record.add(stringIndex(content.getSchema(i).toString(), stringIndexes));
+        }
+    }
+
+    private static int schemaIndex(JSONObject schema, Map<String, Integer> stringIndexes) {
+        return schema != null ? stringIndex(schema.toString(), stringIndexes) : -1;
+    }
+
+    private static int stringIndex(String string, Map<String, Integer> stringIndexes) {
+        Integer index = stringIndexes.get(string);
+        if (index == null) {
+            index = stringIndexes.size();
+            stringIndexes.put(string, index);
+        }
+        return index;
+    }
+
+    private static Map<String, JSONObject> readSchemas(ByteBuffer buffer, String[] strings,
+                                                       Map<Integer, JSONObject> schemas) throws IOException {
+        Map<String, JSONObject> content = new LinkedHashMap<>();
+        int count = readLength(buffer, 2 * INT_SIZE);
+        for (int i = 0; i < count; i++) {
+            String mediaType = readString(buffer, strings);
+            content.put(mediaType, readSchema(buffer, strings, schemas));
+        }
+        return content;
+    }
+
+    private static JSONObject readSchema(ByteBuffer buffer, String[] strings, Map<Integer, JSONObject> schemas)
+            throws IOException {
+        int index = readIndex(buffer, strings);
+        if (index < 0) {
+            return null;
+        }
+        JSONObject schema = schemas.get(index);
+        if (schema == null) {
+            schema = new JSONObject(strings[index]);
+            schemas.put(index, schema);
+        }
+        return schema;
+    }
+
+    /**
+     * Read a length or count of the body of an artifact, each unit of which takes at least the given number of
+     * bytes. The length is checked against the rest of the body before anything is allocated for it, so a corrupt
+     * artifact is rejected rather than exhausting the memory.
+     *
+     * @param buffer   Buffer positioned at the length
+     * @param unitSize Minimum size in bytes of each unit
+     * @return Length
+     * @throws IOException Throws if the length is negative or does not fit in the rest of the body
+     */
+    private static int readLength(ByteBuffer buffer, int unitSize) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining() / unitSize) {
+            throw new IOException("Invalid length " + length + " at " + (buffer.position() - INT_SIZE) +
+                    " in the operation index artifact");
+        }
+        return length;
+    }
+
+    /**
+     * Read an index into the string table of the body of an artifact.
+     *
+     * @param buffer  Buffer positioned at the index
+     * @param strings String table of the body
+     * @return Index of a string, or -1 for none
+     * @throws IOException Throws if the index is out of the range of the string table
+     */
+    private static int readIndex(ByteBuffer buffer, String[] strings) throws IOException {
+        int index = buffer.getInt();
+        if (index < -1 || index >= strings.length) {
+            throw new IOException("Invalid string index " + index + " at " + (buffer.position() - INT_SIZE) +
+                    " in the operation index artifact");
+        }
+        return index;
+    }
+
+    private static String readString(ByteBuffer buffer, String[] strings) throws IOException {
+        int index = readIndex(buffer, strings);
+        if (index < 0) {
+            throw new IOException("Missing string at " + (buffer.position() - INT_SIZE) +
+                    " in the operation index artifact");
+        }
+        return strings[index];
+    }
+
+    /**
+     * Check whether this index was built from the current content of the given local entry.
+     *
+     * @param localEntry Swagger local entry of the API
+     * @return true if the local entry has not changed since the index was built
+     */
+    public boolean isBuiltFrom(Entry localEntry) {
+        Object value = localEntry.getValue();
+        return version == localEntry.getVersion() && (source == value || source.equals(value));
+    }
+
+    /**
+     * Get the UUID of the API whose swagger is indexed, which is the key of the swagger local entry.
+     *
+     * @return API UUID
+     */
+    public String getApiUUID() {
+        return apiUUID;
+    }
+
+    /**
+     * Get the generation of the index. Every index gets a new generation, hence schemas derived from
+     * different swagger revisions never share the generation.
+     *
+     * @return Generation of the index
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Get the application/json request body schema of an operation.
+     *
+     * @param resource Elected API resource
+     * @param method   HTTP method of the request
+     * @return Request schema or null if the operation does not define an application/json request body schema
+     */
+    public JSONObject getRequestSchema(String resource, String method) {
+        return getRequestSchema(resource, method, null);
+    }
+
+    /**
+     * Get the request body schema of an operation for the content type of a request.
+     *
+     * @param resource    Elected API resource
+     * @param method      HTTP method of the request
+     * @param contentType Content type of the request, or null for the application/json schema
+     * @return Request schema or null if the operation does not define a schema for the content type
+     */
+    public JSONObject getRequestSchema(String resource, String method, String contentType) {
+        Operation operation = getOperation(resource, method);
+        return operation != null ? operation.requestContent.getSchema(contentType) : null;
+    }
+
+    /**
+     * Get the declared request body media type of an operation which the content type of a request dispatches to.
+     *
+     * @param resource    Elected API resource
+     * @param method      HTTP method of the request
+     * @param contentType Content type of the request
+     * @return Normalized media type or null if the operation does not define a schema for the content type
+     */
+    public String getRequestMediaType(String resource, String method, String contentType) {
+        Operation operation = getOperation(resource, method);
+        return operation != null ? mediaType(operation.requestContent, contentType) : null;
+    }
+
+    /**
+     * Get the request body media types of an operation which define a schema.
+     *
+     * @param resource Resource path of the operation
+     * @param method   HTTP method of the operation
+     * @return Normalized media types
+     */
+    public List<String> getRequestMediaTypes(String resource, String method) {
+        Operation operation = getOperation(resource, method);
+        return operation != null ? mediaTypes(operation.requestContent) : Collections.<String>emptyList();
+    }
+
+    /**
+     * Get the schema of the records of a request body streamed as NDJSON or a JSON text sequence.
+     *
+     * @param resource Elected API resource
+     * @param method   HTTP method of the request
+     * @return Record schema or null if the operation does not define a request body schema
+     */
+    public JSONObject getRequestRecordSchema(String resource, String method) {
+        Operation operation = getOperation(resource, method);
+        return operation != null ? operation.recordSchema : null;
+    }
+
+    /**
+     * Get the application/json response schema of an operation. The default response is used if the status code
+     * is not defined.
+     *
+     * @param resource   Elected API resource
+     * @param method     HTTP method of the request
+     * @param statusCode Status code of the response
+     * @return Response schema or null if the operation does not define an application/json response schema for
+     * the status code
+     */
+    public JSONObject getResponseSchema(String resource, String method, String statusCode) {
+        return getResponseSchema(resource, method, statusCode, null);
+    }
+
+    /**
+     * Get the response schema of an operation for the content type of a response. The default response is used if
+     * the status code is not defined.
+     *
+     * @param resource    Elected API resource
+     * @param method      HTTP method of the request
+     * @param statusCode  Status code of the response
+     * @param contentType Content type of the response, or null for the application/json schema
+     * @return Response schema or null if the operation does not define a schema for the status code and content type
+     */
+    public JSONObject getResponseSchema(String resource, String method, String statusCode, String contentType) {
+        MediaTypeTable content = getResponseContent(resource, method, statusCode);
+        return content != null ? content.getSchema(contentType) : null;
+    }
+
+    /**
+     * Get the declared media type of a response which the content type of the response dispatches to.
+     *
+     * @param resource    Elected API resource
+     * @param method      HTTP method of the request
+     * @param statusCode  Status code of the response
+     * @param contentType Content type of the response
+     * @return Normalized media type or null if the operation does not define a schema for the status code and
+     * content type
+     */
+    public String getResponseMediaType(String resource, String method, String statusCode, String contentType) {
+        MediaTypeTable content = getResponseContent(resource, method, statusCode);
+        return content != null ? mediaType(content, contentType) : null;
+    }
+
+    /**
+     * Get the media types of a response of an operation which define a schema.
+     *
+     * @param resource   Resource path of the operation
+     * @param method     HTTP method of the operation
+     * @param statusCode Status code of the response, including default
+     * @return Normalized media types
+     */
+    public List<String> getResponseMediaTypes(String resource, String method, String statusCode) {
+        Operation operation = getOperation(resource, method);
+        MediaTypeTable content = operation != null ? operation.responseContent.get(statusCode) : null;
+        return content != null ? mediaTypes(content) : Collections.<String>emptyList();
+    }
+
+    private MediaTypeTable getResponseContent(String resource, String method, String statusCode) {
+        Operation operation = getOperation(resource, method);
+        if (operation == null) {
+            return null;
+        }
+        MediaTypeTable content = statusCode != null ? operation.responseContent.get(statusCode) : null;
+        if (content == null) {
+            content = operation.responseContent.get(SchemaValidatorConstant.DEFAULT_RESPONSE);
+        }
+        return content;
+    }
+
+    private static String mediaType(MediaTypeTable content, String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        int index = content.indexOf(contentType);
+        return index >= 0 ? content.getMediaType(index) : null;
+    }
+
+    private static List<String> mediaTypes(MediaTypeTable content) {
+        List<String> mediaTypes = new ArrayList<>(content.size());
+        for (int i = 0; i < content.size(); i++) {
+            mediaTypes.add(content.getMediaType(i));
+        }
+        return mediaTypes;
+    }
+
+    /**
+     * Get the validator of the path, query and header parameters of an operation.
+     *
+     * @param resource Elected API resource
+     * @param method   HTTP method of the request
+     * @return Parameter validator or null if the operation has no parameter which can be validated
+     */
+    ParameterValidator getParameterValidator(String resource, String method) {
+        Operation operation = getOperation(resource, method);
+        return operation != null ? operation.parameterValidator : null;
+    }
+
+    /**
+     * Check whether an operation defines a request body schema for the content type of a request.
+     *
+     * @param resource    Elected API resource
+     * @param method      HTTP method of the request
+     * @param contentType Content type of the request
+     * @return true if there is a request schema
+     */
+    public boolean hasRequestSchema(String resource, String method, String contentType) {
+        return getRequestMediaType(resource, method, contentType) != null;
+    }
+
+    /**
+     * Check whether an operation defines a schema for a response status code, or a default response schema, and
+     * the content type of the response.
+     *
+     * @param resource    Elected API resource
+     * @param method      HTTP method of the request
+     * @param statusCode  Status code of the response
+     * @param contentType Content type of the response
+     * @return true if there is a response schema
+     */
+    public boolean hasResponseSchema(String resource, String method, String statusCode, String contentType) {
+        return getResponseMediaType(resource, method, statusCode, contentType) != null;
+    }
+
+    /**
+     * Get the operations of the swagger.
+     *
+     * @return Resource path and HTTP method of every operation
+     */
+    public List<Map.Entry<String, String>> getOperations() {
+        List<Map.Entry<String, String>> operationList = new ArrayList<>(operations.size());
+        for (Operation operation : operations.values()) {
+            operationList.add(new AbstractMap.SimpleImmutableEntry<>(operation.resource, operation.method));
+        }
+        return operationList;
+    }
+
+    /**
+     * Get the response status codes, including default, for which an operation defines a schema.
+     *
+     * @param resource Resource path of the operation
+     * @param method   HTTP method of the operation
+     * @return Status codes of the response schemas
+     */
+    public Set<String> getResponseStatusCodes(String resource, String method) {
+        Operation operation = getOperation(resource, method);
+        return operation != null ? operation.responseContent.keySet() : Collections.<String>emptySet();
+    }
+
+    private Operation getOperation(String resource, String method) {
+        if (resource == null || method == null) {
+            return null;
+        }
+        return operations.get(operationKey(resource, method));
+    }
+
+    private static String operationKey(String resource, String method) {
+        return method.toLowerCase(Locale.ENGLISH) + ' ' + resource;
+    }
+
+    /**
+     * Indexes the operations of a parsed swagger. The schemas are resolved with a single SchemaResolver, so the
+     * definitions shared by the operations are resolved once.
+     */
+    private static final class Indexer {
+
+        private static final int MAX_INLINED_DEPTH = 3;
+
+        private final JsonNode rootNode;
+        private final SchemaResolver resolver;
+
+        Indexer(JsonNode rootNode) {
+            this.rootNode = rootNode;
+            this.resolver = new SchemaResolver(rootNode);
+        }
+
+        private Map<String, Operation> indexOperations(boolean openAPI) {
+            Map<String, Operation> operationMap = new HashMap<>();
+            JsonNode paths = rootNode.get(SchemaValidatorConstant.SWAGGER_PATHS);
+            if (paths == null) {
+                return operationMap;
+            }
+            Iterator<Map.Entry<String, JsonNode>> pathItems = paths.fields();
+            while (pathItems.hasNext()) {
+                Map.Entry<String, JsonNode> pathItem = pathItems.next();
+                Iterator<Map.Entry<String, JsonNode>> methods = pathItem.getValue().fields();
+                while (methods.hasNext()) {
+                    Map.Entry<String, JsonNode> method = methods.next();
+                    if (!method.getValue().isObject() || SchemaValidatorConstant.PARAMETERS.equals(method.getKey())) {
+                        continue;
+                    }
+                    Map<String, JSONObject> requestSchemas = openAPI ? extractRequestBodySchemas(method.getValue()) :
+                            extractBodyParameterSchemas(method.getValue());
+                    JSONObject recordSchema = extractRecordSchema(method.getValue(), openAPI);
+                    Map<String, Map<String, JSONObject>> responseSchemas = new HashMap<>();
+                    JsonNode responses = method.getValue().get(SchemaValidatorConstant.RESPONSES);
+                    if (responses != null) {
+                        Iterator<Map.Entry<String, JsonNode>> responseItems = responses.fields();
+                        while (responseItems.hasNext()) {
+                            Map.Entry<String, JsonNode> response = responseItems.next();
+                            Map<String, JSONObject> schemas = extractResponseSchemas(response.getValue(),
+                                    method.getValue(), openAPI);
+                            if (!schemas.isEmpty()) {
+                                responseSchemas.put(response.getKey(), schemas);
+                            }
+                        }
+                    }
+                    operationMap.put(operationKey(pathItem.getKey(), method.getKey()), new Operation(pathItem.getKey(),
+                            method.getKey(), requestSchemas, recordSchema, responseSchemas,
+                            mergeParameters(pathItem.getValue(), method.getValue()), openAPI));
+                }
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("Indexed " + operationMap.size() + " operations of the swagger");
+            }
+            return operationMap;
+        }
+
+        /**
+         * Merge the parameters of a path item and an operation. An operation parameter overrides the path item
+         * parameter with the same name and location.
+         *
+         * @param pathItem  Path item node
+         * @param operation Operation node
+         * @return Dereferenced parameter nodes with inlined schemas
+         */
+        private List<JsonNode> mergeParameters(JsonNode pathItem, JsonNode operation) {
+            Map<String, JsonNode> parameters = new LinkedHashMap<>();
+            for (JsonNode node : new JsonNode[]{pathItem.get(SchemaValidatorConstant.PARAMETERS),
+                    operation.get(SchemaValidatorConstant.PARAMETERS)}) {
+                if (node == null) {
+                    continue;
+                }
+                for (JsonNode parameter : node) {
+                    parameter = inlineReferences(parameter, MAX_INLINED_DEPTH);
+                    if (parameter != null) {
+                        parameters.put(parameter.path("in").asText() + ' ' + parameter.path("name").asText(),
+                                parameter);
+                    }
+                }
+            }
+            return new ArrayList<>(parameters.values());
+        }
+
+        /**
+         * Inline the references of the schema and the items of a parameter, so the parameter can be compiled without
+         * the swagger. Only the given depth of nested items is inlined, which also stops at recursive items.
+         *
+         * @param node  Parameter, schema or items node
+         * @param depth Number of nested schema and items nodes to inline
+         * @return Node with inlined references or null if a reference cannot be found
+         */
+        private JsonNode inlineReferences(JsonNode node, int depth) {
+            node = resolver.dereference(node);
+            if (node == null || !node.isObject() || depth == 0) {
+                return node;
+            }
+            ObjectNode inlined = null;
+            for (String field : new String[]{SchemaValidatorConstant.SCHEMA, SchemaValidatorConstant.ITEMS}) {
+                JsonNode child = node.get(field);
+                if (child == null) {
+                    continue;
+                }
+                JsonNode inlinedChild = inlineReferences(child, depth - 1);
+                if (inlinedChild != child) {
+                    if (inlined == null) {
+                        inlined = ((ObjectNode) node).deepCopy();
+                    }
+                    if (inlinedChild == null) {
+                        inlined.remove(field);
+                    } else {
+                        inlined.set(field, inlinedChild);
+                    }
+                }
+            }
+            return inlined != null ? inlined : node;
+        }
+
+        /**
+         * Extract the schemas of the media types of the OpenAPI 3 request body.
+         *
+         * @param operation Operation node
+         * @return Resolved schemas by media type, which is empty if there is no request body schema
+         */
+        private Map<String, JSONObject> extractRequestBodySchemas(JsonNode operation) {
+            JsonNode requestBody = resolver.dereference(operation.get(SchemaValidatorConstant.REQUEST_BODY));
+            if (requestBody == null) {
+                return Collections.emptyMap();
+            }
+            return contentSchemas(requestBody);
+        }
+
+        /**
+         * Extract the schema of the Swagger 2.0 body parameter, for every media type the operation consumes.
+         *
+         * @param operation Operation node
+         * @return Resolved schemas by media type, which is empty if there is no body parameter
+         */
+        private Map<String, JSONObject> extractBodyParameterSchemas(JsonNode operation) {
+            return schemasOf(mediaTypes(operation, SchemaValidatorConstant.CONSUMES),
+                    resolver.resolveSchema(bodyParameterSchema(operation)));
+        }
+
+        private JsonNode bodyParameterSchema(JsonNode operation) {
+            JsonNode parameters = operation.get(SchemaValidatorConstant.PARAMETERS);
+            if (parameters == null) {
+                return null;
+            }
+            for (JsonNode parameter : parameters) {
+                parameter = resolver.dereference(parameter);
+                if (parameter != null && parameter.has(SchemaValidatorConstant.SCHEMA)) {
+                    return parameter.get(SchemaValidatorConstant.SCHEMA);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Extract the schema of the records of a request body streamed as NDJSON or a JSON text sequence. The
+         * records are the items of the array schema of the body, or the body schema itself if it is not an array.
+         * An OpenAPI 3 request body uses the schema of a record stream media type, or the JSON schema otherwise.
+         *
+         * @param operation Operation node
+         * @param openAPI   Whether the swagger is an OpenAPI 3 definition
+         * @return Resolved record schema or null if there is no request body schema
+         */
+        private JSONObject extractRecordSchema(JsonNode operation, boolean openAPI) {
+            JsonNode schema;
+            if (openAPI) {
+                JsonNode requestBody = resolver.dereference(operation.get(SchemaValidatorConstant.REQUEST_BODY));
+                schema = requestBody != null ? recordContentSchema(requestBody) : null;
+            } else {
+                schema = bodyParameterSchema(operation);
+            }
+            schema = resolver.dereferenceSchema(schema);
+            if (schema == null) {
+                return null;
+            }
+            JsonNode items = schema.get(SchemaValidatorConstant.ITEMS);
+            return resolver.resolveSchema(items != null && items.isObject() ? items : schema);
+        }
+
+        private JsonNode recordContentSchema(JsonNode requestBody) {
+            JsonNode content = requestBody.get(SchemaValidatorConstant.CONTENT);
+            if (content != null) {
+                for (String mediaType : SchemaValidatorConstant.RECORD_STREAM_MEDIA_TYPES) {
+                    if (content.has(mediaType)) {
+                        return content.get(mediaType).get(SchemaValidatorConstant.SCHEMA);
+                    }
+                }
+            }
+            return jsonContentSchema(requestBody);
+        }
+
+        /**
+         * Extract the schemas of the media types of a response. The schema of a Swagger 2.0 response is used for
+         * every media type the operation produces.
+         *
+         * @param response  Response node
+         * @param operation Operation node
+         * @param openAPI   Whether the swagger is an OpenAPI 3 definition
+         * @return Resolved schemas by media type, which is empty if the response does not define a schema
+         */
+        private Map<String, JSONObject> extractResponseSchemas(JsonNode response, JsonNode operation,
+                                                               boolean openAPI) {
+            response = resolver.dereference(response);
+            if (response == null) {
+                return Collections.emptyMap();
+            }
+            if (openAPI) {
+                return contentSchemas(response);
+            }
+            return schemasOf(mediaTypes(operation, SchemaValidatorConstant.PRODUCES),
+                    resolver.resolveSchema(response.get(SchemaValidatorConstant.SCHEMA)));
+        }
+
+        private Map<String, JSONObject> contentSchemas(JsonNode node) {
+            Map<String, JSONObject> schemas = new LinkedHashMap<>();
+            JsonNode content = node.get(SchemaValidatorConstant.CONTENT);
+            if (content != null) {
+                Iterator<Map.Entry<String, JsonNode>> mediaTypes = content.fields();
+                while (mediaTypes.hasNext()) {
+                    Map.Entry<String, JsonNode> mediaType = mediaTypes.next();
+                    JSONObject schema =
+                            resolver.resolveSchema(mediaType.getValue().get(SchemaValidatorConstant.SCHEMA));
+                    if (schema != null) {
+                        schemas.put(mediaType.getKey(), schema);
+                    }
+                }
+            }
+            return schemas;
+        }
+
+        private static Map<String, JSONObject> schemasOf(List<String> mediaTypes, JSONObject schema) {
+            if (schema == null) {
+                return Collections.emptyMap();
+            }
+            Map<String, JSONObject> schemas = new LinkedHashMap<>();
+            for (String mediaType : mediaTypes) {
+                schemas.put(mediaType, schema);
+            }
+            return schemas;
+        }
+
+        /**
+         * Get the media types a Swagger 2.0 operation consumes or produces. The media types of the swagger apply if
+         * the operation does not declare its own, and application/json applies if neither declares any.
+         *
+         * @param operation Operation node
+         * @param field     consumes or produces
+         * @return Media types
+         */
+        private List<String> mediaTypes(JsonNode operation, String field) {
+            JsonNode mediaTypes = operation.get(field);
+            if (mediaTypes == null || !mediaTypes.isArray()) {
+                mediaTypes = rootNode.get(field);
+            }
+            List<String> mediaTypeList = new ArrayList<>();
+            if (mediaTypes != null && mediaTypes.isArray()) {
+                for (JsonNode mediaType : mediaTypes) {
+                    mediaTypeList.add(mediaType.asText());
+                }
+            }
+            if (mediaTypeList.isEmpty()) {
+                mediaTypeList.add(SchemaValidatorConstant.APPLICATION_JSON);
+            }
+            return mediaTypeList;
+        }
+
+        private JsonNode jsonContentSchema(JsonNode node) {
+            JsonNode content = node.get(SchemaValidatorConstant.CONTENT);
+            if (content == null || !content.has(SchemaValidatorConstant.APPLICATION_JSON)) {
+                return null;
+            }
+            return content.get(SchemaValidatorConstant.APPLICATION_JSON).get(SchemaValidatorConstant.SCHEMA);
+        }
+    }
+
+    /**
+     * Schemas of a single operation.
+     */
+    private static final class Operation {
+
+        private final String resource;
+        private final String method;
+        private final MediaTypeTable requestContent;
+        private final JSONObject recordSchema;
+        private final Map<String, MediaTypeTable> responseContent;
+        private final List<JsonNode> parameters;
+        private final ParameterValidator parameterValidator;
+
+        Operation(String resource, String method, Map<String, JSONObject> requestSchemas, JSONObject recordSchema,
+                  Map<String, Map<String, JSONObject>> responseSchemas, List<JsonNode> parameters, boolean openAPI) {
+            this.resource = resource;
+            this.method = method;
+            SchemaStore schemaStore = SchemaStore.getInstance();
+            this.requestContent = internedTable(requestSchemas, schemaStore);
+            this.recordSchema = schemaStore.intern(recordSchema);
+            Map<String, MediaTypeTable> responseTables = new HashMap<>();
+            for (Map.Entry<String, Map<String, JSONObject>> response : responseSchemas.entrySet()) {
+                responseTables.put(response.getKey(), internedTable(response.getValue(), schemaStore));
+            }
+            this.responseContent = Collections.unmodifiableMap(responseTables);
+            this.parameters = Collections.unmodifiableList(parameters);
+            this.parameterValidator = ParameterValidator.create(parameters, openAPI);
+        }
+
+        private static MediaTypeTable internedTable(Map<String, JSONObject> schemas, SchemaStore schemaStore) {
+            Map<String, JSONObject> interned = new LinkedHashMap<>();
+            for (Map.Entry<String, JSONObject> schema : schemas.entrySet()) {
+                interned.put(schema.getKey(), schemaStore.intern(schema.getValue()));
+            }
+            return MediaTypeTable.of(interned);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.config.Entry;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Binary artifact of the operation index of an API, stored under the API UUID in the artifact directory. The
+ * artifact holds the resolved schemas and the parameters of every operation, so a gateway node which finds the
+ * artifact of the current swagger restores the index without parsing the swagger and resolving its schemas. The
+ * artifact is written by the first node which builds the index, and is memory mapped when it is loaded. Artifacts
+ * are only read and written by the warm-up threads, never while a message is mediated. An artifact
+ * is only used if it was built from the same swagger content by the same artifact format version; otherwise the
+ * index is built from the swagger and the artifact is replaced.
+ */
+final class OperationIndexArtifact {
+
+    private static final Log logger = LogFactory.getLog(OperationIndexArtifact.class);
+    private static final int MAGIC = 0x53564958;
+    private static final int FORMAT_VERSION = 4;
+    private static final String EXTENSION = ".idx";
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final Path directory = artifactDirectory();
+
+    private final Path path;
+    private final byte[] digest;
+
+    private OperationIndexArtifact(Path path, byte[] digest) {
+        this.path = path;
+        this.digest = digest;
+    }
+
+    /**
+     * Get the artifact of an API.
+     *
+     * @param apiUUID UUID of the API, which is the key of the swagger local entry
+     * @param swagger Content of the swagger
+     * @return Artifact of the API or null if the artifacts are disabled
+     */
+    static OperationIndexArtifact of(String apiUUID, String swagger) {
+        if (directory == null || apiUUID == null) {
+            return null;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance(DIGEST_ALGORITHM).digest(
+                    swagger.getBytes(StandardCharsets.UTF_8));
+            return new OperationIndexArtifact(directory.resolve(fileName(apiUUID)), digest);
+        } catch (NoSuchAlgorithmException e) {
+            logger.error("Operation index artifacts are disabled, " + DIGEST_ALGORITHM + " is not available", e);
+            return null;
+        }
+    }
+
+    /**
+     * Load the operation index from the artifact. An artifact which cannot be read, such as a truncated artifact or
+     * one with a length out of the range of its body, is treated as stale, so the index is built from the swagger and
+     * replaces the artifact.
+     *
+     * @param localEntry Swagger local entry of the API
+     * @return Operation index or null if there is no valid artifact of the current swagger
+     */
+    OperationIndex load(Entry localEntry) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                logger.info("Ignoring the operation index artifact " + path + " of an unknown format");
+                return null;
+            }
+            byte[] artifactDigest = new byte[digest.length];
+            buffer.get(artifactDigest);
+            if (!Arrays.equals(digest, artifactDigest)) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("The operation index artifact " + path + " is built from another swagger");
+                }
+                return null;
+            }
+            OperationIndex index = OperationIndex.readFrom(localEntry, buffer);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Loaded the operation index of the API " + localEntry.getKey() + " from " + path);
+            }
+            return index;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Ignoring the corrupt operation index artifact " + path +
+                    ", the index is built from the swagger", e);
+            return null;
+        }
+    }
+
+    /**
+     * Store an operation index in the artifact. The artifact is written to a temporary file which replaces the
+     * artifact, so concurrent nodes never load a partially written artifact.
+     *
+     * @param index Operation index built from the swagger of the artifact
+     */
+    void store(OperationIndex index) {
+        Path temporary = null;
+        try {
+            Files.createDirectories(path.getParent());
+            temporary = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+            try (OutputStream outputStream = Files.newOutputStream(temporary);
+                 DataOutputStream output = new DataOutputStream(new BufferedOutputStream(outputStream))) {
+                output.writeInt(MAGIC);
+                output.writeInt(FORMAT_VERSION);
+                output.write(digest);
+                index.writeTo(output);
+            }
+            try {
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            temporary = null;
+            if (logger.isDebugEnabled()) {
+                logger.debug("Stored the operation index of the API " + index.getApiUUID() + " in " + path);
+            }
+        } catch (IOException e) {
+            logger.warn("Error occurred while storing the operation index artifact " + path, e);
+        } finally {
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException e) {
+                    logger.debug("Error occurred while deleting " + temporary, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the file name of the artifact of an API. Characters which are not safe in a file name are replaced, so
+     * an API UUID can never refer to a file outside the artifact directory.
+     */
+    private static String fileName(String apiUUID) {
+        StringBuilder fileName = new StringBuilder(apiUUID.length() + EXTENSION.length());
+        for (int i = 0; i < apiUUID.length(); i++) {
+            char character = apiUUID.charAt(i);
+            fileName.append(Character.isLetterOrDigit(character) || character == '-' || character == '_' ?
+                    character : '_');
+        }
+        return fileName.append(EXTENSION).toString();
+    }
+
+    /**
+     * Get the artifact directory, which is the directory set with the artifact directory system property, or the
+     * schema validator directory of the Carbon data directory by default.
+     *
+     * @return Artifact directory or null if the artifacts are disabled
+     */
+    private static Path artifactDirectory() {
+        String configured = System.getProperty(SchemaValidatorConstant.ARTIFACT_DIRECTORY);
+        if (configured != null) {
+            return configured.trim().isEmpty() ? null : Paths.get(configured.trim());
+        }
+        String carbonHome = System.getProperty(SchemaValidatorConstant.CARBON_HOME);
+        return carbonHome != null ? Paths.get(carbonHome, "repository", "data", "schema-validator") : null;
+    }
+}
@@ -0,0 +1,511 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Validates payloads whose top-level array, or an array property of the top-level object, is large by splitting
+ * the items of the array into chunks which are validated in parallel by the ParallelValidationExecutor. The chunks
+ * are validated against the items schema of the array. The rest of the payload, with the items of that array cut
+ * out, is validated against the schema without the items schema and the item count bounds of the array, which are
+ * checked against the scanned item count, hence every keyword of the schema is still validated once and no item is
+ * parsed more than once after the scan. An array is only split if its schema, and the schema of the object which
+ * holds it, have no other keyword which depends on the items of the array. The violations are merged
+ * in the order of the chunks with the item pointers renumbered, so the result does not depend on the order in
+ * which the chunks complete. A validator is shared by concurrent messages; the schemas of the chunks are compiled
+ * when the first payload is split.
+ */
+final class ParallelArrayValidator {
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    private static final String ROOT = "";
+    private static final String ITEMS = "items";
+    private static final String PROPERTIES = "properties";
+    private static final String TYPE = "type";
+    private static final String ARRAY = "array";
+    private static final String MIN_ITEMS = "minItems";
+    private static final String MAX_ITEMS = "maxItems";
+    private static final Set<String> ARRAY_KEYWORDS = new HashSet<>(Arrays.asList(TYPE, ITEMS, MIN_ITEMS, MAX_ITEMS,
+            "title", "description", "example", "nullable", "readOnly", "writeOnly", "deprecated", "xml",
+            "externalDocs"));
+    private static final Set<String> ITEM_DEPENDENT_KEYWORDS = new HashSet<>(Arrays.asList("allOf", "anyOf",
+            "oneOf", "not", "if", "then", "else", "patternProperties", "dependencies", "enum", "const"));
+
+    private final String engine;
+    private final Map<String, SplitSchema> splitSchemas;
+
+    private ParallelArrayValidator(String engine, Map<String, SplitSchema> splitSchemas) {
+        this.engine = engine;
+        this.splitSchemas = splitSchemas;
+    }
+
+    /**
+     * Find the arrays of a schema whose items can be validated in chunks: the top-level array, or the array
+     * properties of the top-level object, which have a single items schema.
+     *
+     * @param schema Resolved schema from the operation index
+     * @param engine Name of the validation engine which compiles the schemas of the chunks
+     * @return Validator, which is empty if there is no array to split
+     */
+    static ParallelArrayValidator create(JSONObject schema, String engine) {
+        Map<String, SplitSchema> splitSchemas = new HashMap<>();
+        JSONObject definitions = schema.optJSONObject(SchemaValidatorConstant.DEFINITIONS);
+        JSONObject root = dereference(schema, definitions);
+        if (root != null && !hasAny(root, ITEM_DEPENDENT_KEYWORDS)) {
+            JSONObject items = root.optJSONObject(ITEMS);
+            if (items != null && isSplittable(root)) {
+                splitSchemas.put(ROOT, new SplitSchema(withDefinitions(envelopeArray(root), definitions),
+                        chunkSchema(items, definitions), root));
+            }
+            JSONObject properties = root.optJSONObject(PROPERTIES);
+            if (properties != null) {
+                Iterator<String> names = properties.keys();
+                while (names.hasNext()) {
+                    String name = names.next();
+                    JSONObject property = dereference(properties.optJSONObject(name), definitions);
+                    if (property == null || property.optJSONObject(ITEMS) == null || !isSplittable(property)) {
+                        continue;
+                    }
+                    JSONObject envelopeProperties = copy(properties);
+                    envelopeProperties.put(name, envelopeArray(property));
+                    JSONObject envelope = copy(root);
+                    envelope.put(PROPERTIES, envelopeProperties);
+                    splitSchemas.put(name, new SplitSchema(withDefinitions(envelope, definitions),
+                            chunkSchema(property.getJSONObject(ITEMS), definitions), property));
+                }
+            }
+        }
+        return new ParallelArrayValidator(engine, splitSchemas);
+    }
+
+    /**
+     * Check whether the schema has an array which can be split.
+     *
+     * @return true if no payload of the schema is split
+     */
+    boolean isEmpty() {
+        return splitSchemas.isEmpty();
+    }
+
+    /**
+     * Validate a payload in parallel if it has an array with at least the given number of items.
+     *
+     * @param payload       Raw JSON payload
+     * @param maxViolations Number of violations to report, or 0 to report all the violations
+     * @param threshold     Number of items from which an array is split
+     * @return Result of the validation, or null if the payload is not split and has to be validated as a whole
+     * @throws com.fasterxml.jackson.core.JsonProcessingException Throws if the payload is not well-formed JSON
+     * @throws IOException                                        Throws if the payload cannot be read
+     */
+    ValidationResult validate(byte[] payload, int maxViolations, int threshold) throws IOException {
+        // Every item takes at least two bytes, so smaller payloads are not scanned at all.
+        if (splitSchemas.isEmpty() || payload.length < 2L * threshold) {
+            return null;
+        }
+        ArrayScan scan = scan(payload);
+        if (scan == null || scan.size < threshold) {
+            return null;
+        }
+        SplitSchema splitSchema = splitSchemas.get(scan.property);
+        if (!splitSchema.compile(engine)) {
+            return null;
+        }
+        int chunkCount = Math.max(2, scan.size / SchemaValidatorConstant.MIN_PARALLEL_CHUNK_ITEMS);
+        int forks = ParallelValidationExecutor.reserve(chunkCount - 1);
+        if (forks == 0) {
+            // The pool is saturated, so the payload is validated on the mediation thread without splitting it.
+            return null;
+        }
+        chunkCount = forks + 1;
+        ChunkValidation[] chunks = new ChunkValidation[chunkCount];
+        for (int i = 0; i < chunkCount; i++) {
+            int first = (int) ((long) scan.size * i / chunkCount);
+            int last = (int) ((long) scan.size * (i + 1) / chunkCount);
+            chunks[i] = new ChunkValidation(splitSchema.chunk, scan.chunk(payload, first, last), first,
+                    maxViolations);
+        }
+        for (int i = 1; i < chunkCount; i++) {
+            chunks[i].forked = true;
+            if (!ParallelValidationExecutor.fork(chunks[i])) {
+                chunks[i].forked = false;
+            }
+        }
+        try {
+            ValidationResult envelopeResult = splitSchema.envelope.validate(scan.envelope(payload), maxViolations);
+            List<ValidationResult> chunkResults = new ArrayList<>(chunkCount);
+            for (ChunkValidation chunk : chunks) {
+                chunkResults.add(chunk.forked ? chunk.join() : chunk.invoke());
+            }
+            return merge(envelopeResult, splitSchema.checkItemCount(scan.size, pointer(scan.property)), chunks,
+                    chunkResults, scan.property, maxViolations);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static ValidationResult merge(ValidationResult envelopeResult, List<Violation> itemCountViolations,
+                                          ChunkValidation[] chunks, List<ValidationResult> chunkResults,
+                                          String property, int maxViolations) {
+        int violationCount = envelopeResult.getViolationCount() + itemCountViolations.size();
+        List<Violation> violations = new ArrayList<>(envelopeResult.getViolations());
+        violations.addAll(itemCountViolations);
+        String prefix = pointer(property);
+        for (int i = 0; i < chunks.length; i++) {
+            ValidationResult chunkResult = chunkResults.get(i);
+            violationCount += chunkResult.getViolationCount();
+            for (Violation violation : chunkResult.getViolations()) {
+                if (maxViolations > 0 && violations.size() == maxViolations) {
+                    break;
+                }
+                violations.add(new Violation(renumber(violation.getPointer(), prefix, chunks[i].offset),
+                        violation.getMessage()));
+            }
+        }
+        if (violationCount == 0) {
+            return ValidationResult.VALID;
+        }
+        if (maxViolations > 0 && violations.size() > maxViolations) {
+            violations = violations.subList(0, maxViolations);
+        }
+        return new ValidationResult(violations, violationCount);
+    }
+
+    /**
+     * Get the pointer of a split array in the payload.
+     *
+     * @param property Name of the array property, or ROOT for the top-level array
+     * @return Pointer of the array
+     */
+    private static String pointer(String property) {
+        return ROOT.equals(property) ? String.valueOf(SchemaValidatorConstant.HASH) :
+                String.valueOf(SchemaValidatorConstant.HASH) + SchemaValidatorConstant.FORWARD_SLASH + property;
+    }
+
+    /**
+     * Map the pointer of a violation in a chunk, e.g. #/3/name, to the pointer in the payload.
+     *
+     * @param pointer Pointer of the violation in the chunk
+     * @param prefix  Pointer of the array in the payload
+     * @param offset  Index of the first item of the chunk in the array
+     * @return Pointer of the violation in the payload
+     */
+    private static String renumber(String pointer, String prefix, int offset) {
+        if (pointer == null || pointer.length() < 3 || pointer.charAt(1) != SchemaValidatorConstant.FORWARD_SLASH) {
+            return prefix;
+        }
+        int end = pointer.indexOf(SchemaValidatorConstant.FORWARD_SLASH, 2);
+        if (end < 0) {
+            end = pointer.length();
+        }
+        try {
+            int index = Integer.parseInt(pointer.substring(2, end)) + offset;
+            return prefix + SchemaValidatorConstant.FORWARD_SLASH + index + pointer.substring(end);
+        } catch (NumberFormatException e) {
+            return prefix + pointer.substring(1);
+        }
+    }
+
+    /**
+     * Find the largest array of the payload which can be split, and the offsets of its items.
+     *
+     * @param payload Raw JSON payload
+     * @return Scanned array or null if the payload has no array to split
+     * @throws IOException Throws if the payload is not well-formed JSON
+     */
+    private ArrayScan scan(byte[] payload) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(payload)) {
+            JsonToken token = parser.nextToken();
+            ArrayScan largest = null;
+            if (token == JsonToken.START_ARRAY && splitSchemas.containsKey(ROOT)) {
+                largest = scanArray(parser, ROOT);
+            } else if (token == JsonToken.START_OBJECT) {
+                Set<String> scanned = new HashSet<>();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    if (parser.nextToken() == JsonToken.START_ARRAY && splitSchemas.containsKey(name)) {
+                        if (!scanned.add(name)) {
+                            // A duplicate property is left to the validation of the whole payload.
+                            return null;
+                        }
+                        ArrayScan arrayScan = scanArray(parser, name);
+                        if (largest == null || arrayScan.size > largest.size) {
+                            largest = arrayScan;
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                return null;
+            }
+            // Trailing content is reported by the validation of the whole payload.
+            return parser.nextToken() == null ? largest : null;
+        }
+    }
+
+    private static ArrayScan scanArray(JsonParser parser, String property) throws IOException {
+        int open = (int) parser.getTokenLocation().getByteOffset();
+        int[] starts = new int[64];
+        int size = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+            }
+            starts[size++] = (int) parser.getTokenLocation().getByteOffset();
+            parser.skipChildren();
+        }
+        return new ArrayScan(property, open, starts, size, (int) parser.getTokenLocation().getByteOffset());
+    }
+
+    private static JSONObject dereference(JSONObject schema, JSONObject definitions) {
+        Set<String> visited = new HashSet<>();
+        while (schema != null && schema.has(SchemaValidatorConstant.SCHEMA_REFERENCE)) {
+            String reference = schema.optString(SchemaValidatorConstant.SCHEMA_REFERENCE);
+            String prefix = "#/" + SchemaValidatorConstant.DEFINITIONS + "/";
+            if (definitions == null || !reference.startsWith(prefix) || !visited.add(reference)) {
+                return null;
+            }
+            schema = definitions.optJSONObject(reference.substring(prefix.length()));
+        }
+        return schema;
+    }
+
+    /**
+     * Check whether the schema of an array only has keywords which are validated by the chunks or against the
+     * scanned item count, or which have no effect on the validation.
+     */
+    private static boolean isSplittable(JSONObject arraySchema) {
+        for (String keyword : arraySchema.keySet()) {
+            if (!ARRAY_KEYWORDS.contains(keyword)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasAny(JSONObject schema, Set<String> keywords) {
+        for (String keyword : keywords) {
+            if (schema.has(keyword)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static JSONObject envelopeArray(JSONObject arraySchema) {
+        JSONObject envelope = without(arraySchema, ITEMS);
+        envelope.remove(MIN_ITEMS);
+        envelope.remove(MAX_ITEMS);
+        return envelope;
+    }
+
+    private static JSONObject chunkSchema(JSONObject items, JSONObject definitions) {
+        JSONObject chunk = new JSONObject();
+        chunk.put(TYPE, ARRAY);
+        chunk.put(ITEMS, items);
+        return withDefinitions(chunk, definitions);
+    }
+
+    private static JSONObject withDefinitions(JSONObject schema, JSONObject definitions) {
+        if (definitions != null) {
+            schema.put(SchemaValidatorConstant.DEFINITIONS, definitions);
+        }
+        return schema;
+    }
+
+    private static JSONObject without(JSONObject schema, String keyword) {
+        JSONObject copy = copy(schema);
+        copy.remove(keyword);
+        return copy;
+    }
+
+    private static JSONObject copy(JSONObject schema) {
+        String[] names = JSONObject.getNames(schema);
+        return names != null ? new JSONObject(schema, names) : new JSONObject();
+    }
+
+    /**
+     * Schemas of a payload split at one of its arrays.
+     */
+    private static final class SplitSchema {
+
+        private final JSONObject envelopeSchema;
+        private final JSONObject chunkSchema;
+        private final Integer minItems;
+        private final Integer maxItems;
+        private volatile ValidationSchema envelope;
+        private volatile ValidationSchema chunk;
+
+        SplitSchema(JSONObject envelopeSchema, JSONObject chunkSchema, JSONObject arraySchema) {
+            this.envelopeSchema = envelopeSchema;
+            this.chunkSchema = chunkSchema;
+            this.minItems = arraySchema.has(MIN_ITEMS) ? arraySchema.optInt(MIN_ITEMS) : null;
+            this.maxItems = arraySchema.has(MAX_ITEMS) ? arraySchema.optInt(MAX_ITEMS) : null;
+        }
+
+        /**
+         * Check the item count bounds of the split array, which are left out of the envelope schema, with the
+         * messages of the validation engines.
+         *
+         * @param itemCount Number of items of the array
+         * @param pointer   Pointer of the array in the payload
+         * @return Violations of the item count bounds
+         */
+        List<Violation> checkItemCount(int itemCount, String pointer) {
+            List<Violation> violations = new ArrayList<>(1);
+            if (minItems != null && itemCount < minItems) {
+                violations.add(new Violation(pointer, "expected minimum item count: " + minItems + ", found: " +
+                        itemCount));
+            }
+            if (maxItems != null && itemCount > maxItems) {
+                violations.add(new Violation(pointer, "expected maximum item count: " + maxItems + ", found: " +
+                        itemCount));
+            }
+            return violations;
+        }
+
+        /**
+         * Compile the schemas when the first payload is split. Concurrent messages may compile them more than once,
+         * which is harmless as the compiled schemas are equivalent.
+         *
+         * @param engine Name of the validation engine
+         * @return false if the schemas cannot be compiled
+         */
+        boolean compile(String engine) {
+            if (chunk == null) {
+                ValidationSchema compiledEnvelope = ValidationEngineRegistry.compile(engine, envelopeSchema);
+                ValidationSchema compiledChunk = ValidationEngineRegistry.compile(engine, chunkSchema);
+                if (compiledEnvelope == null || compiledChunk == null) {
+                    return false;
+                }
+                envelope = compiledEnvelope;
+                chunk = compiledChunk;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Offsets of the items of an array in the payload.
+     */
+    private static final class ArrayScan {
+
+        private final String property;
+        private final int open;
+        private final int[] starts;
+        private final int size;
+        private final int end;
+
+        ArrayScan(String property, int open, int[] starts, int size, int end) {
+            this.property = property;
+            this.open = open;
+            this.starts = starts;
+            this.size = size;
+            this.end = end;
+        }
+
+        /**
+         * Copy a range of items into a JSON array of their own.
+         *
+         * @param payload Raw JSON payload
+         * @param first   Index of the first item
+         * @param last    Index after the last item
+         * @return JSON array of the items
+         */
+        byte[] chunk(byte[] payload, int first, int last) {
+            int start = starts[first];
+            int chunkEnd = last < size ? starts[last] : end;
+            while (chunkEnd > start && isWhitespace(payload[chunkEnd - 1])) {
+                chunkEnd--;
+            }
+            if (last < size && chunkEnd > start && payload[chunkEnd - 1] == ',') {
+                chunkEnd--;
+            }
+            byte[] chunk = new byte[chunkEnd - start + 2];
+            chunk[0] = '[';
+            System.arraycopy(payload, start, chunk, 1, chunkEnd - start);
+            chunk[chunk.length - 1] = ']';
+            return chunk;
+        }
+
+        /**
+         * Copy the payload with the items of the array cut out, leaving an empty array in its place.
+         *
+         * @param payload Raw JSON payload
+         * @return Payload without the items of the array
+         */
+        byte[] envelope(byte[] payload) {
+            byte[] envelope = new byte[open + 1 + payload.length - end];
+            System.arraycopy(payload, 0, envelope, 0, open + 1);
+            System.arraycopy(payload, end, envelope, open + 1, payload.length - end);
+            return envelope;
+        }
+
+        private static boolean isWhitespace(byte character) {
+            return character == ' ' || character == '\n' || character == '\r' || character == '\t';
+        }
+    }
+
+    /**
+     * Validation of a chunk of items, which is forked into the pool or run by the mediation thread.
+     */
+    private static final class ChunkValidation extends RecursiveTask<ValidationResult> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ValidationSchema schema;
+        private final byte[] chunk;
+        private final int offset;
+        private final int maxViolations;
+        private boolean forked;
+
+        ChunkValidation(ValidationSchema schema, byte[] chunk, int offset, int maxViolations) {
+            this.schema = schema;
+            this.chunk = chunk;
+            this.offset = offset;
+            this.maxViolations = maxViolations;
+        }
+
+        @Override
+        protected ValidationResult compute() {
+            try {
+                return schema.validate(chunk, maxViolations);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                if (forked) {
+                    ParallelValidationExecutor.release();
+                }
+            }
+        }
+    }
+}
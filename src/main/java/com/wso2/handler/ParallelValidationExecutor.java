@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded fork-join pool which validates the chunks of large JSON arrays. The pool is shared by all the handler
+ * instances and is only started when a handler splits a payload. The number of chunks waiting for or being
+ * validated in the pool is bounded: a message only forks the chunks it gets permits for and validates the rest on
+ * the mediation thread, so the pool never queues up work when it is saturated. A single message never gets more
+ * than half of the pool.
+ */
+public final class ParallelValidationExecutor {
+
+    private static final Log logger = LogFactory.getLog(ParallelValidationExecutor.class);
+    private static final Object lock = new Object();
+    private static final int parallelism = Math.max(1, Integer.getInteger(
+            SchemaValidatorConstant.PARALLEL_VALIDATION_THREADS, Runtime.getRuntime().availableProcessors()));
+    private static final Semaphore permits = new Semaphore(Math.max(1, Integer.getInteger(
+            SchemaValidatorConstant.PARALLEL_VALIDATION_QUEUE_SIZE, parallelism * 2)));
+    private static volatile ForkJoinPool pool;
+
+    private ParallelValidationExecutor() {
+    }
+
+    /**
+     * Reserve permits to fork chunks of a message into the pool.
+     *
+     * @param chunks Number of chunks the message would like to fork
+     * @return Number of chunks which may be forked, which is 0 when the pool is saturated
+     */
+    static int reserve(int chunks) {
+        for (int granted = Math.min(chunks, Math.max(1, parallelism / 2)); granted > 0; granted--) {
+            if (permits.tryAcquire(granted)) {
+                return granted;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Fork a chunk validation which was reserved with {@link #reserve(int)}. The permit of the chunk is released
+     * when the validation completes, or right away if the pool rejects it.
+     *
+     * @param task Chunk validation
+     * @return true if the task is forked, false if it has to be run by the caller
+     */
+    static boolean fork(ForkJoinTask<?> task) {
+        try {
+            getPool().execute(task);
+            return true;
+        } catch (RuntimeException e) {
+            release();
+            return false;
+        }
+    }
+
+    /**
+     * Release the permit of a forked chunk.
+     */
+    static void release() {
+        permits.release();
+    }
+
+    /**
+     * Stop the pool. Running chunk validations are left to complete.
+     */
+    public static void shutdown() {
+        synchronized (lock) {
+            if (pool != null) {
+                pool.shutdown();
+                pool = null;
+            }
+        }
+    }
+
+    private static ForkJoinPool getPool() {
+        ForkJoinPool current = pool;
+        if (current != null) {
+            return current;
+        }
+        synchronized (lock) {
+            if (pool == null) {
+                pool = new ForkJoinPool(parallelism, new ValidationThreadFactory(), null, true);
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Started the parallel validation pool with " + parallelism + " threads");
+                }
+            }
+            return pool;
+        }
+    }
+
+    /**
+     * Creates named daemon worker threads.
+     */
+    private static final class ValidationThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public ForkJoinWorkerThread newThread(ForkJoinPool forkJoinPool) {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("SchemaValidator-parallel-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,526 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.core.axis2.Axis2MessageContext;
+import org.everit.json.schema.FormatValidator;
+
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Validator of the path, query and header parameters of an operation, compiled once when the operation index is
+ * built. Every parameter is compiled into checks specialized for its primitive type, which validate the raw string
+ * values of the request, so the parameters are validated without building the message or a JSON document.
+ * Parameters of an object type, or serialized in a style which is not supported, are not validated.
+ * A validator is immutable and shared by concurrent messages.
+ */
+final class ParameterValidator {
+
+    private static final Log logger = LogFactory.getLog(ParameterValidator.class);
+    private static final String IN_PATH = "path";
+    private static final String IN_QUERY = "query";
+    private static final String IN_HEADER = "header";
+    private static final int STRING = 0;
+    private static final int INTEGER = 1;
+    private static final int NUMBER = 2;
+    private static final int BOOLEAN = 3;
+    private static final int ARRAY = 4;
+    private static final BigDecimal INT32_MIN = BigDecimal.valueOf(Integer.MIN_VALUE);
+    private static final BigDecimal INT32_MAX = BigDecimal.valueOf(Integer.MAX_VALUE);
+    private static final BigDecimal INT64_MIN = BigDecimal.valueOf(Long.MIN_VALUE);
+    private static final BigDecimal INT64_MAX = BigDecimal.valueOf(Long.MAX_VALUE);
+
+    private final Parameter[] parameters;
+    private final boolean hasQueryParameters;
+
+    private ParameterValidator(List<Parameter> parameters) {
+        this.parameters = parameters.toArray(new Parameter[parameters.size()]);
+        boolean query = false;
+        for (Parameter parameter : parameters) {
+            query |= IN_QUERY.equals(parameter.in);
+        }
+        this.hasQueryParameters = query;
+    }
+
+    /**
+     * Compile the parameters of an operation.
+     *
+     * @param parameterNodes Parameter nodes of the path item and the operation, where the operation parameters
+     *                       override the path item parameters with the same name and location, and the references
+     *                       of the parameter schemas and items are inlined
+     * @param openAPI        Whether the swagger is an OpenAPI 3 definition
+     * @return Parameter validator or null if the operation has no parameter which can be validated
+     */
+    static ParameterValidator create(List<JsonNode> parameterNodes, boolean openAPI) {
+        List<Parameter> parameters = new ArrayList<>();
+        for (JsonNode node : parameterNodes) {
+            String in = node.path("in").asText();
+            String name = node.path("name").asText(null);
+            if (name == null || !(IN_PATH.equals(in) || IN_QUERY.equals(in) || IN_HEADER.equals(in))) {
+                continue;
+            }
+            JsonNode schema = openAPI ? node.get(SchemaValidatorConstant.SCHEMA) : node;
+            Check check = schema != null ? compileCheck(schema) : null;
+            if (check == null) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("The " + in + " parameter " + name + " is not validated");
+                }
+                continue;
+            }
+            Parameter parameter = new Parameter(name, in, IN_PATH.equals(in) || node.path("required").asBoolean(),
+                    node.path("allowEmptyValue").asBoolean(), check);
+            if (check.type == ARRAY && !setSeparator(parameter, node, openAPI)) {
+                continue;
+            }
+            parameters.add(parameter);
+        }
+        return parameters.isEmpty() ? null : new ParameterValidator(parameters);
+    }
+
+    /**
+     * Validate the parameters of a request.
+     *
+     * @param messageContext Message context of the request
+     * @param maxViolations  Number of violations after which the validation stops, or 0 to find all the violations
+     * @return Result of the validation
+     */
+    ValidationResult validate(MessageContext messageContext, int maxViolations) {
+        Map<String, List<String>> queryParameters = hasQueryParameters ? parseQuery(messageContext) : null;
+        Map<String, String> headers = null;
+        List<Violation> violations = null;
+        for (Parameter parameter : parameters) {
+            List<String> values;
+            switch (parameter.in) {
+                case IN_PATH:
+                    Object pathValue = messageContext.getProperty(
+                            SchemaValidatorConstant.REST_URI_VARIABLE_PREFIX + parameter.name);
+                    values = pathValue != null ? Collections.singletonList(pathValue.toString()) : null;
+                    break;
+                case IN_QUERY:
+                    values = queryParameters.get(parameter.name);
+                    break;
+                default:
+                    if (headers == null) {
+                        headers = getTransportHeaders(
+                                ((Axis2MessageContext) messageContext).getAxis2MessageContext());
+                    }
+                    String header = getHeader(headers, parameter.name);
+                    values = header != null ? Collections.singletonList(header) : null;
+            }
+            String violation = parameter.validate(values);
+            if (violation != null) {
+                if (violations == null) {
+                    violations = new ArrayList<>();
+                }
+                violations.add(new Violation(parameter.in + " parameter " + parameter.name, violation));
+                if (violations.size() == maxViolations) {
+                    break;
+                }
+            }
+        }
+        return violations == null ? ValidationResult.VALID : new ValidationResult(violations);
+    }
+
+    /**
+     * Compile the checks of a parameter schema, which is the parameter itself in Swagger 2.0.
+     *
+     * @param schema Parameter schema
+     * @return Compiled checks or null if the schema is not of a primitive or an array type
+     */
+    private static Check compileCheck(JsonNode schema) {
+        String typeName = schema.path("type").asText();
+        Check check = new Check();
+        switch (typeName) {
+            case "string":
+                check.type = STRING;
+                break;
+            case "integer":
+                check.type = INTEGER;
+                break;
+            case "number":
+                check.type = NUMBER;
+                break;
+            case "boolean":
+                check.type = BOOLEAN;
+                break;
+            case "array":
+                check.type = ARRAY;
+                JsonNode items = schema.get(SchemaValidatorConstant.ITEMS);
+                check.items = items != null ? compileCheck(items) : null;
+                if (check.items == null || check.items.type == ARRAY) {
+                    return null;
+                }
+                break;
+            default:
+                return null;
+        }
+        check.minimum = decimal(schema.get("minimum"));
+        check.maximum = decimal(schema.get("maximum"));
+        check.exclusiveMinimum = schema.path("exclusiveMinimum").asBoolean();
+        check.exclusiveMaximum = schema.path("exclusiveMaximum").asBoolean();
+        check.minLength = integer(schema.get("minLength"));
+        check.maxLength = integer(schema.get("maxLength"));
+        check.minItems = integer(schema.get("minItems"));
+        check.maxItems = integer(schema.get("maxItems"));
+        String format = schema.path("format").asText(null);
+        if (check.type == INTEGER && "int32".equals(format)) {
+            check.formatMinimum = INT32_MIN;
+            check.formatMaximum = INT32_MAX;
+        } else if (check.type == INTEGER && "int64".equals(format)) {
+            check.formatMinimum = INT64_MIN;
+            check.formatMaximum = INT64_MAX;
+        } else if (check.type == STRING) {
+            check.format = CompiledSchema.getFormatValidator(format);
+        }
+        JsonNode pattern = schema.get("pattern");
+        if (pattern != null && check.type == STRING) {
+            try {
+                check.pattern = PatternCache.getPattern(pattern.asText());
+            } catch (PatternSyntaxException e) {
+                logger.error("Invalid pattern in the swagger parameter : " + pattern.asText(), e);
+            }
+        }
+        JsonNode enumValues = schema.get("enum");
+        if (enumValues != null && enumValues.isArray()) {
+            check.enumValues = new HashSet<>();
+            for (JsonNode enumValue : enumValues) {
+                if (enumValue.isNumber()) {
+                    check.enumValues.add(enumValue.decimalValue().stripTrailingZeros());
+                } else if (!enumValue.isContainerNode()) {
+                    check.enumValues.add(enumValue.asText());
+                }
+            }
+        }
+        return check;
+    }
+
+    /**
+     * Set the separator of the values of an array parameter from the Swagger 2.0 collectionFormat or the OpenAPI 3
+     * style of the parameter.
+     *
+     * @param parameter Compiled array parameter
+     * @param node      Parameter node
+     * @param openAPI   Whether the swagger is an OpenAPI 3 definition
+     * @return false if the array is serialized in a style which is not supported
+     */
+    private static boolean setSeparator(Parameter parameter, JsonNode node, boolean openAPI) {
+        String style;
+        boolean explode;
+        if (openAPI) {
+            style = node.path("style").asText(IN_QUERY.equals(parameter.in) ? "form" : "simple");
+            explode = node.path("explode").asBoolean("form".equals(style));
+        } else {
+            style = node.path("collectionFormat").asText("csv");
+            explode = "multi".equals(style);
+        }
+        if (explode) {
+            // Exploded arrays are sent as a repeated query parameter.
+            parameter.multiple = IN_QUERY.equals(parameter.in);
+            return parameter.multiple;
+        }
+        switch (style) {
+            case "csv":
+            case "form":
+            case "simple":
+                parameter.separator = Pattern.compile(",");
+                return true;
+            case "ssv":
+            case "spaceDelimited":
+                parameter.separator = Pattern.compile(" ");
+                return true;
+            case "tsv":
+                parameter.separator = Pattern.compile("\t");
+                return true;
+            case "pipes":
+            case "pipeDelimited":
+                parameter.separator = Pattern.compile("\\|");
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Parse the query string of the request. Names and values are URL decoded.
+     *
+     * @param messageContext Message context of the request
+     * @return Values of every query parameter
+     */
+    private static Map<String, List<String>> parseQuery(MessageContext messageContext) {
+        Object path = messageContext.getProperty(SchemaValidatorConstant.REST_FULL_REQUEST_PATH);
+        int queryStart = path != null ? path.toString().indexOf('?') : -1;
+        if (queryStart < 0) {
+            return Collections.emptyMap();
+        }
+        Map<String, List<String>> queryParameters = new HashMap<>();
+        String query = path.toString();
+        int start = queryStart + 1;
+        while (start <= query.length()) {
+            int end = query.indexOf('&', start);
+            if (end < 0) {
+                end = query.length();
+            }
+            if (end > start) {
+                int separator = query.indexOf('=', start);
+                String name;
+                String value;
+                if (separator < 0 || separator > end) {
+                    name = decode(query.substring(start, end));
+                    value = SchemaValidatorConstant.EMPTY;
+                } else {
+                    name = decode(query.substring(start, separator));
+                    value = decode(query.substring(separator + 1, end));
+                }
+                List<String> values = queryParameters.get(name);
+                if (values == null) {
+                    values = new ArrayList<>(1);
+                    queryParameters.put(name, values);
+                }
+                values.add(value);
+            }
+            start = end + 1;
+        }
+        return queryParameters;
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            // A value which is not properly encoded is validated as it is.
+            return value;
+        }
+    }
+
+    /**
+     * Get the transport headers of a message. The transport sets them as a map of header names to values.
+     *
+     * @param axis2MC Axis2 message context
+     * @return Transport headers, or an empty map if the message has none
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, String> getTransportHeaders(org.apache.axis2.context.MessageContext axis2MC) {
+        Object headers = axis2MC.getProperty(org.apache.axis2.context.MessageContext.TRANSPORT_HEADERS);
+        return headers instanceof Map ? (Map<String, String>) headers : Collections.<String, String>emptyMap();
+    }
+
+    /**
+     * Get a header of the request. The transport headers are case insensitive, but a plain map is searched
+     * ignoring the case as well.
+     */
+    private static String getHeader(Map<String, String> headers, String name) {
+        String value = headers.get(name);
+        if (value == null) {
+            for (Map.Entry<String, String> entry : headers.entrySet()) {
+                if (name.equalsIgnoreCase(entry.getKey())) {
+                    value = entry.getValue();
+                    break;
+                }
+            }
+        }
+        return value;
+    }
+
+    private static BigDecimal decimal(JsonNode node) {
+        return node != null && node.isNumber() ? node.decimalValue() : null;
+    }
+
+    private static Integer integer(JsonNode node) {
+        return node != null && node.canConvertToInt() ? node.intValue() : null;
+    }
+
+    /**
+     * Compiled parameter.
+     */
+    private static final class Parameter {
+
+        private final String name;
+        private final String in;
+        private final boolean required;
+        private final boolean allowEmptyValue;
+        private final Check check;
+        private Pattern separator;
+        private boolean multiple;
+
+        Parameter(String name, String in, boolean required, boolean allowEmptyValue, Check check) {
+            this.name = name;
+            this.in = in;
+            this.required = required;
+            this.allowEmptyValue = allowEmptyValue;
+            this.check = check;
+        }
+
+        /**
+         * Validate the values of the parameter in the request.
+         *
+         * @param values Raw values of the parameter, or null if the parameter is not in the request
+         * @return Description of the violation or null if the parameter is valid
+         */
+        String validate(List<String> values) {
+            if (values == null || values.isEmpty()) {
+                return required ? "required parameter is missing" : null;
+            }
+            if (check.type != ARRAY) {
+                String value = values.get(values.size() - 1);
+                return allowEmptyValue && value.isEmpty() ? null : check.validate(value);
+            }
+            List<String> items;
+            if (multiple) {
+                items = values;
+            } else {
+                String value = values.get(values.size() - 1);
+                if (allowEmptyValue && value.isEmpty()) {
+                    return null;
+                }
+                items = value.isEmpty() ? Collections.<String>emptyList() :
+                        Arrays.asList(separator.split(value, -1));
+            }
+            if (check.minItems != null && items.size() < check.minItems) {
+                return "expected minimum item count: " + check.minItems + ", found: " + items.size();
+            }
+            if (check.maxItems != null && items.size() > check.maxItems) {
+                return "expected maximum item count: " + check.maxItems + ", found: " + items.size();
+            }
+            for (int i = 0; i < items.size(); i++) {
+                String violation = check.items.validate(items.get(i));
+                if (violation != null) {
+                    return "item " + i + ": " + violation;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Checks of a primitive value. Only the checks declared by the parameter schema are set.
+     */
+    private static final class Check {
+
+        private int type;
+        private Check items;
+        private BigDecimal minimum;
+        private BigDecimal maximum;
+        private boolean exclusiveMinimum;
+        private boolean exclusiveMaximum;
+        private BigDecimal formatMinimum;
+        private BigDecimal formatMaximum;
+        private Integer minLength;
+        private Integer maxLength;
+        private Integer minItems;
+        private Integer maxItems;
+        private PatternMatcher pattern;
+        private FormatValidator format;
+        private Set<Object> enumValues;
+
+        /**
+         * Validate a raw value.
+         *
+         * @param value Raw value
+         * @return Description of the violation or null if the value is valid
+         */
+        String validate(String value) {
+            switch (type) {
+                case STRING:
+                    return validateString(value);
+                case BOOLEAN:
+                    if (!"true".equals(value) && !"false".equals(value)) {
+                        return "expected type: Boolean, found: [" + value + "]";
+                    }
+                    return enumValues != null && !enumValues.contains(value) ? notInEnum(value) : null;
+                default:
+                    return validateNumber(value);
+            }
+        }
+
+        private String validateString(String value) {
+            if (minLength != null || maxLength != null) {
+                int length = value.codePointCount(0, value.length());
+                if (minLength != null && length < minLength) {
+                    return "expected minLength: " + minLength + ", actual: " + length;
+                }
+                if (maxLength != null && length > maxLength) {
+                    return "expected maxLength: " + maxLength + ", actual: " + length;
+                }
+            }
+            if (pattern != null) {
+                String violation = pattern.validate(value);
+                if (violation != null) {
+                    return violation;
+                }
+            }
+            if (format != null) {
+                Optional<String> violation = format.validate(value);
+                if (violation.isPresent()) {
+                    return violation.get();
+                }
+            }
+            return enumValues != null && !enumValues.contains(value) ? notInEnum(value) : null;
+        }
+
+        private String validateNumber(String value) {
+            BigDecimal number;
+            try {
+                number = new BigDecimal(value.trim());
+            } catch (NumberFormatException e) {
+                return "expected type: " + (type == INTEGER ? "Integer" : "Number") + ", found: [" + value + "]";
+            }
+            if (type == INTEGER && number.scale() > 0) {
+                return "expected type: Integer, found: [" + value + "]";
+            }
+            if (formatMinimum != null && (number.compareTo(formatMinimum) < 0 ||
+                    number.compareTo(formatMaximum) > 0)) {
+                return value + " is out of the range of the " + (formatMaximum == INT32_MAX ? "int32" : "int64") +
+                        " format";
+            }
+            if (minimum != null) {
+                int comparison = number.compareTo(minimum);
+                if (comparison < 0 || (exclusiveMinimum && comparison == 0)) {
+                    return value + " is not " + (exclusiveMinimum ? "greater than " : "greater or equal to ") +
+                            minimum;
+                }
+            }
+            if (maximum != null) {
+                int comparison = number.compareTo(maximum);
+                if (comparison > 0 || (exclusiveMaximum && comparison == 0)) {
+                    return value + " is not " + (exclusiveMaximum ? "less than " : "less or equal to ") + maximum;
+                }
+            }
+            return enumValues != null && !enumValues.contains(number.stripTrailingZeros()) ? notInEnum(value) : null;
+        }
+
+        private static String notInEnum(String value) {
+            return value + " is not a valid enum value";
+        }
+    }
+}
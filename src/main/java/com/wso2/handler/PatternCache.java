@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded cache of the compiled pattern and format regular expressions, shared by the schemas of every API and every
+ * validation engine. A pattern used by many schemas is compiled once and its evaluation metrics are aggregated
+ * across them. The least recently used pattern is evicted once the cache is full.
+ */
+public final class PatternCache {
+
+    private static final int maxSize = Math.max(1, Integer.getInteger(SchemaValidatorConstant.PATTERN_CACHE_SIZE,
+            SchemaValidatorConstant.DEFAULT_PATTERN_CACHE_SIZE));
+    private static final Map<String, PatternMatcher> patterns =
+            new LinkedHashMap<String, PatternMatcher>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PatternMatcher> eldest) {
+                    return size() > maxSize;
+                }
+            };
+
+    private PatternCache() {
+    }
+
+    /**
+     * Get the compiled matcher of a regular expression, compiling it if it is not cached.
+     *
+     * @param regex Regular expression
+     * @return Pattern matcher
+     * @throws java.util.regex.PatternSyntaxException Throws if the regular expression is not valid
+     */
+    public static PatternMatcher getPattern(String regex) {
+        synchronized (patterns) {
+            PatternMatcher matcher = patterns.get(regex);
+            if (matcher != null) {
+                return matcher;
+            }
+        }
+        // Compile outside the lock, if another thread cached the pattern meanwhile its matcher is kept.
+        PatternMatcher matcher = new PatternMatcher(regex);
+        synchronized (patterns) {
+            PatternMatcher existing = patterns.get(regex);
+            if (existing != null) {
+                return existing;
+            }
+            patterns.put(regex, matcher);
+        }
+        return matcher;
+    }
+
+    /**
+     * Get the evaluation metrics of the cached patterns, the most expensive first.
+     *
+     * @return Statistics of every cached pattern
+     */
+    public static List<PatternStatistics> getStatistics() {
+        List<PatternMatcher> matchers;
+        synchronized (patterns) {
+            matchers = new ArrayList<>(patterns.values());
+        }
+        List<PatternStatistics> statistics = new ArrayList<>(matchers.size());
+        for (PatternMatcher matcher : matchers) {
+            statistics.add(matcher.snapshot());
+        }
+        Collections.sort(statistics, new Comparator<PatternStatistics>() {
+            @Override
+            public int compare(PatternStatistics first, PatternStatistics second) {
+                return Double.compare(totalTime(second), totalTime(first));
+            }
+        });
+        return statistics;
+    }
+
+    /**
+     * Reset the evaluation metrics of the cached patterns.
+     */
+    public static void resetStatistics() {
+        List<PatternMatcher> matchers;
+        synchronized (patterns) {
+            matchers = new ArrayList<>(patterns.values());
+        }
+        for (PatternMatcher matcher : matchers) {
+            matcher.reset();
+        }
+    }
+
+    public static int size() {
+        synchronized (patterns) {
+            return patterns.size();
+        }
+    }
+
+    private static double totalTime(PatternStatistics statistics) {
+        return statistics.getEvaluationTime().getMean() * statistics.getEvaluationTime().getCount();
+    }
+}
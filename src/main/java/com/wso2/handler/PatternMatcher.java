@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Precompiled matcher of a schema pattern, shared by every schema which uses the same pattern through the
+ * PatternCache. Every evaluation is timed. Patterns which are prone to catastrophic backtracking, such as nested
+ * quantifiers or back references, are evaluated with a step budget proportional to the length of the input, so a
+ * hostile input stops the evaluation in bounded time instead of holding the thread. An evaluation which runs out of
+ * budget is neither a match nor a mismatch: it is logged and counted, and the string is accepted or rejected as the
+ * budget policy says. A rejected string is reported with the mismatch description. A matcher is thread safe.
+ */
+public final class PatternMatcher {
+
+    private static final Log logger = LogFactory.getLog(PatternMatcher.class);
+    private static final long STEP_BUDGET_PER_CHARACTER = Long.getLong(
+            SchemaValidatorConstant.PATTERN_STEP_BUDGET, SchemaValidatorConstant.DEFAULT_PATTERN_STEP_BUDGET);
+    private static final boolean FAIL_OPEN = SchemaValidatorConstant.PATTERN_BUDGET_FAIL_OPEN.equals(System.getProperty(
+            SchemaValidatorConstant.PATTERN_BUDGET_POLICY, SchemaValidatorConstant.PATTERN_BUDGET_FAIL_CLOSED));
+
+    private final Pattern pattern;
+    private final boolean risky;
+    private final LatencyHistogram evaluationTime = new LatencyHistogram();
+    private final LongAdder budgetExceeded = new LongAdder();
+
+    /**
+     * Compile a pattern.
+     *
+     * @param regex Regular expression of the pattern keyword
+     * @throws java.util.regex.PatternSyntaxException Throws if the regular expression is not valid
+     */
+    PatternMatcher(String regex) {
+        this.pattern = Pattern.compile(regex);
+        this.risky = isRisky(regex);
+    }
+
+    /**
+     * Validate a string against the pattern, which matches if it is found anywhere in the string. An evaluation
+     * which runs out of budget is handled as the configured budget policy says.
+     *
+     * @param value String value
+     * @return Description of the violation or null if the string matches the pattern
+     */
+    public String validate(String value) {
+        return validate(value, FAIL_OPEN);
+    }
+
+    /**
+     * Validate a string against the pattern with the given budget policy.
+     *
+     * @param value    String value
+     * @param failOpen true to accept a string whose evaluation runs out of budget, false to reject it
+     * @return Description of the violation or null if the string matches the pattern
+     */
+    String validate(String value, boolean failOpen) {
+        long start = System.nanoTime();
+        try {
+            if (!risky) {
+                return pattern.matcher(value).find() ? null : mismatch(value);
+            }
+            try {
+                return pattern.matcher(new BudgetedSequence(value, STEP_BUDGET_PER_CHARACTER *
+                        Math.max(value.length(), SchemaValidatorConstant.MIN_PATTERN_STEP_BUDGET_LENGTH)))
+                        .find() ? null : mismatch(value);
+            } catch (BudgetExceededException e) {
+                budgetExceeded.increment();
+                logger.warn("Evaluation of the pattern " + pattern.pattern() + " ran out of budget on a string of " +
+                        value.length() + " characters, the string is " + (failOpen ? "accepted" : "rejected"));
+                return failOpen ? null : mismatch(value);
+            }
+        } finally {
+            evaluationTime.record(System.nanoTime() - start);
+        }
+    }
+
+    public String getPattern() {
+        return pattern.pattern();
+    }
+
+    public boolean isRisky() {
+        return risky;
+    }
+
+    PatternStatistics snapshot() {
+        return new PatternStatistics(pattern.pattern(), risky, budgetExceeded.sum(), evaluationTime.snapshot());
+    }
+
+    void reset() {
+        evaluationTime.reset();
+        budgetExceeded.reset();
+    }
+
+    private String mismatch(String value) {
+        return "string [" + value + "] does not match pattern " + pattern.pattern();
+    }
+
+    /**
+     * Check whether a regular expression is prone to catastrophic backtracking: a repeated group which itself
+     * contains a repetition or an alternation, such as (a+)+ or (a|ab)*, or a back reference.
+     *
+     * @param regex Regular expression
+     * @return true if the pattern has to be evaluated with a step budget
+     */
+    static boolean isRisky(String regex) {
+        // Every open group records whether it contains a repetition and whether it contains an alternation.
+        Deque<boolean[]> groups = new ArrayDeque<>();
+        boolean inClass = false;
+        for (int i = 0; i < regex.length(); i++) {
+            char character = regex.charAt(i);
+            if (character == '\\') {
+                if (i + 1 < regex.length() && !inClass && (Character.isDigit(regex.charAt(i + 1)) &&
+                        regex.charAt(i + 1) != '0' || regex.charAt(i + 1) == 'k')) {
+                    return true;
+                }
+                i++;
+            } else if (inClass) {
+                inClass = character != ']';
+            } else if (character == '[') {
+                inClass = true;
+            } else if (character == '(') {
+                groups.push(new boolean[2]);
+            } else if (character == ')' && !groups.isEmpty()) {
+                boolean[] group = groups.pop();
+                boolean repeated = i + 1 < regex.length() && isRepetition(regex.charAt(i + 1));
+                if (repeated && (group[0] || group[1])) {
+                    return true;
+                }
+                if (!groups.isEmpty()) {
+                    groups.peek()[0] |= group[0] || repeated;
+                    groups.peek()[1] |= group[1];
+                }
+            } else if (isRepetition(character) && !groups.isEmpty()) {
+                groups.peek()[0] = true;
+            } else if (character == '|' && !groups.isEmpty()) {
+                groups.peek()[1] = true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isRepetition(char character) {
+        return character == '*' || character == '+' || character == '{';
+    }
+
+    /**
+     * Character sequence which fails the evaluation once the regex engine has read more characters than the
+     * budget allows. Backtracking re-reads the input, so the number of reads bounds the work of the evaluation.
+     */
+    private static final class BudgetedSequence implements CharSequence {
+
+        private final String value;
+        private long budget;
+
+        BudgetedSequence(String value, long budget) {
+            this.value = value;
+            this.budget = budget;
+        }
+
+        @Override
+        public int length() {
+            return value.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (--budget < 0) {
+                throw BudgetExceededException.INSTANCE;
+            }
+            return value.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return value.substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return value;
+        }
+    }
+
+    /**
+     * Stops an evaluation which has run out of budget.
+     */
+    private static final class BudgetExceededException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+        private static final BudgetExceededException INSTANCE = new BudgetExceededException();
+
+        private BudgetExceededException() {
+            super("Pattern evaluation budget exceeded", null, false, false);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Snapshot of the evaluation metrics of a schema pattern exposed through JMX.
+ */
+public class PatternStatistics {
+
+    private final String pattern;
+    private final boolean risky;
+    private final long budgetExceeded;
+    private final HistogramStatistics evaluationTime;
+
+    @ConstructorProperties({"pattern", "risky", "budgetExceeded", "evaluationTime"})
+    public PatternStatistics(String pattern, boolean risky, long budgetExceeded,
+                             HistogramStatistics evaluationTime) {
+        this.pattern = pattern;
+        this.risky = risky;
+        this.budgetExceeded = budgetExceeded;
+        this.evaluationTime = evaluationTime;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * @return true if the pattern is evaluated with a step budget
+     */
+    public boolean isRisky() {
+        return risky;
+    }
+
+    /**
+     * @return Number of evaluations which ran out of budget, whether the string was accepted or rejected
+     */
+    public long getBudgetExceeded() {
+        return budgetExceeded;
+    }
+
+    /**
+     * @return Time taken to evaluate the pattern, in nanoseconds
+     */
+    public HistogramStatistics getEvaluationTime() {
+        return evaluationTime;
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * Limits on the size and the shape of the JSON payloads, which are checked in a single pass over the token stream
+ * before the message is built, so an oversized or deeply nested payload is rejected without building it. A limit
+ * of 0 is not checked. Limits are immutable and are replaced as a whole when a limit of the handler is changed.
+ */
+final class PayloadLimits {
+
+    static final PayloadLimits NONE = new PayloadLimits(0, 0, 0, 0, 0);
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private final long maxBytes;
+    private final int maxDepth;
+    private final int maxArrayLength;
+    private final int maxStringLength;
+    private final int maxPropertyCount;
+
+    private PayloadLimits(long maxBytes, int maxDepth, int maxArrayLength, int maxStringLength,
+                          int maxPropertyCount) {
+        this.maxBytes = maxBytes;
+        this.maxDepth = maxDepth;
+        this.maxArrayLength = maxArrayLength;
+        this.maxStringLength = maxStringLength;
+        this.maxPropertyCount = maxPropertyCount;
+    }
+
+    PayloadLimits withMaxBytes(long bytes) {
+        return new PayloadLimits(bytes, maxDepth, maxArrayLength, maxStringLength, maxPropertyCount);
+    }
+
+    PayloadLimits withMaxDepth(int depth) {
+        return new PayloadLimits(maxBytes, depth, maxArrayLength, maxStringLength, maxPropertyCount);
+    }
+
+    PayloadLimits withMaxArrayLength(int arrayLength) {
+        return new PayloadLimits(maxBytes, maxDepth, arrayLength, maxStringLength, maxPropertyCount);
+    }
+
+    PayloadLimits withMaxStringLength(int stringLength) {
+        return new PayloadLimits(maxBytes, maxDepth, maxArrayLength, stringLength, maxPropertyCount);
+    }
+
+    PayloadLimits withMaxPropertyCount(int propertyCount) {
+        return new PayloadLimits(maxBytes, maxDepth, maxArrayLength, maxStringLength, propertyCount);
+    }
+
+    long getMaxBytes() {
+        return maxBytes;
+    }
+
+    int getMaxDepth() {
+        return maxDepth;
+    }
+
+    int getMaxArrayLength() {
+        return maxArrayLength;
+    }
+
+    int getMaxStringLength() {
+        return maxStringLength;
+    }
+
+    int getMaxPropertyCount() {
+        return maxPropertyCount;
+    }
+
+    /**
+     * Check whether any limit is set.
+     *
+     * @return true if the payloads have to be checked
+     */
+    boolean isEnabled() {
+        return maxBytes > 0 || hasStructureLimits();
+    }
+
+    /**
+     * Check the size of a payload against the size limit.
+     *
+     * @param bytes Size of the payload in bytes
+     * @return Description of the violated limit or null if the size is within the limit
+     */
+    String checkSize(long bytes) {
+        if (maxBytes > 0 && bytes > maxBytes) {
+            return "Payload exceeds the maximum size of " + maxBytes + " bytes";
+        }
+        return null;
+    }
+
+    /**
+     * Check a payload against the limits. The check stops at the first violated limit.
+     *
+     * @param payload Raw JSON payload
+     * @return Description of the violated limit or null if the payload is within the limits
+     * @throws JsonParseException Throws if the payload is not well-formed JSON
+     * @throws IOException        Throws if the payload cannot be read
+     */
+    String check(byte[] payload) throws IOException {
+        String violation = checkSize(payload.length);
+        if (violation != null || !hasStructureLimits()) {
+            return violation;
+        }
+        try (JsonParser parser = jsonFactory.createParser(payload)) {
+            int depth = 0;
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                JsonStreamContext context = parser.getParsingContext();
+                switch (token) {
+                    case START_OBJECT:
+                    case START_ARRAY:
+                        violation = checkArrayLength(context.getParent());
+                        if (violation == null && maxDepth > 0 && ++depth > maxDepth) {
+                            violation = "Payload exceeds the maximum nesting depth of " + maxDepth + " at " +
+                                    pointer(context.getParent());
+                        }
+                        break;
+                    case END_OBJECT:
+                    case END_ARRAY:
+                        depth--;
+                        break;
+                    case FIELD_NAME:
+                        if (maxPropertyCount > 0 && context.getCurrentIndex() >= maxPropertyCount) {
+                            violation = "Object exceeds the maximum property count of " + maxPropertyCount +
+                                    " at " + pointer(context.getParent());
+                        } else if (maxStringLength > 0 && parser.getCurrentName().length() > maxStringLength) {
+                            violation = "Property name exceeds the maximum string length of " + maxStringLength +
+                                    " at " + pointer(context.getParent());
+                        }
+                        break;
+                    case VALUE_STRING:
+                        violation = checkArrayLength(context);
+                        if (violation == null && maxStringLength > 0 && parser.getTextLength() > maxStringLength) {
+                            violation = "String exceeds the maximum length of " + maxStringLength + " at " +
+                                    pointer(context);
+                        }
+                        break;
+                    default:
+                        violation = checkArrayLength(context);
+                        break;
+                }
+                if (violation != null) {
+                    return violation;
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean hasStructureLimits() {
+        return maxDepth > 0 || maxArrayLength > 0 || maxStringLength > 0 || maxPropertyCount > 0;
+    }
+
+    /**
+     * Check the length of the array a value belongs to.
+     *
+     * @param context Parsing context of the value
+     * @return Description of the violated limit or null if the value is not in an array or is within the limit
+     */
+    private String checkArrayLength(JsonStreamContext context) {
+        if (maxArrayLength > 0 && context != null && context.inArray() &&
+                context.getCurrentIndex() >= maxArrayLength) {
+            return "Array exceeds the maximum length of " + maxArrayLength + " at " + pointer(context.getParent());
+        }
+        return null;
+    }
+
+    /**
+     * Render the JSON pointer of the container which holds a context.
+     *
+     * @param context Parsing context of the value
+     * @return JSON pointer such as #/tags/3
+     */
+    private static String pointer(JsonStreamContext context) {
+        StringBuilder pointer = new StringBuilder();
+        for (JsonStreamContext current = context; current != null && !current.inRoot();
+             current = current.getParent()) {
+            pointer.insert(0, current.inArray() ? String.valueOf(current.getCurrentIndex()) :
+                    current.getCurrentName()).insert(0, SchemaValidatorConstant.FORWARD_SLASH);
+        }
+        return pointer.insert(0, SchemaValidatorConstant.HASH).toString();
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Validates a request body streamed as newline delimited JSON or as a JSON text sequence record by record while the
+ * body is read. The bytes are passed through unchanged and only the record being read is kept, hence only one record
+ * is parsed at a time. The first record which is malformed, too large or violates the schema fails the read with a
+ * RecordViolationException, which is logged and counted as a request violation.
+ */
+final class RecordValidatingInputStream extends FilterInputStream {
+
+    private static final Log logger = LogFactory.getLog(RecordValidatingInputStream.class);
+    private static final byte LINE_FEED = '\n';
+    private static final byte RECORD_SEPARATOR = 0x1E;
+    private static final int INITIAL_RECORD_SIZE = 1024;
+
+    private final ValidationSchema schema;
+    private final ResourceMetrics metrics;
+    private final int maxViolations;
+    private final int maxRecordBytes;
+    private final byte delimiter;
+    private byte[] record = new byte[INITIAL_RECORD_SIZE];
+    private int recordLength;
+    private long recordCount;
+    private long bodySize;
+    private long validateTime;
+    private boolean finished;
+    private RecordViolationException violation;
+
+    /**
+     * Create a stream which validates the records of a body.
+     *
+     * @param in             Stream of the body
+     * @param schema         Compiled schema of a record
+     * @param metrics        Metrics of the elected resource
+     * @param maxViolations  Maximum number of violations reported for a record, or 0 for all of them
+     * @param maxRecordBytes Maximum size of a record in bytes
+     * @param sequence       true for a JSON text sequence, false for newline delimited JSON
+     */
+    RecordValidatingInputStream(InputStream in, ValidationSchema schema, ResourceMetrics metrics, int maxViolations,
+                                int maxRecordBytes, boolean sequence) {
+        super(in);
+        this.schema = schema;
+        this.metrics = metrics;
+        this.maxViolations = maxViolations;
+        this.maxRecordBytes = maxRecordBytes;
+        this.delimiter = sequence ? RECORD_SEPARATOR : LINE_FEED;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int length = read(single, 0, 1);
+        return length == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (violation != null) {
+            throw violation;
+        }
+        int read = super.read(buffer, offset, length);
+        if (read == -1) {
+            if (!finished) {
+                finished = true;
+                validateRecord();
+                metrics.recordValidate(validateTime);
+                metrics.recordPayloadSize(bodySize);
+            }
+            return -1;
+        }
+        bodySize += read;
+        for (int i = offset; i < offset + read; i++) {
+            if (buffer[i] == delimiter) {
+                validateRecord();
+            } else {
+                append(buffer[i]);
+            }
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(n, INITIAL_RECORD_SIZE)];
+        int read = read(buffer, 0, buffer.length);
+        return read == -1 ? 0 : read;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    /**
+     * Get the number of records validated so far.
+     *
+     * @return Number of records
+     */
+    long getRecordCount() {
+        return recordCount;
+    }
+
+    private void append(byte b) throws RecordViolationException {
+        if (recordLength == record.length) {
+            if (recordLength >= maxRecordBytes) {
+                fail("record " + (recordCount + 1) + " exceeds the maximum record size of " + maxRecordBytes +
+                        " bytes", null);
+            }
+            record = Arrays.copyOf(record, (int) Math.min((long) recordLength * 2, maxRecordBytes));
+        }
+        record[recordLength++] = b;
+    }
+
+    private void validateRecord() throws RecordViolationException {
+        int length = recordLength;
+        recordLength = 0;
+        if (isBlank(record, length)) {
+            return;
+        }
+        recordCount++;
+        long validateStart = System.nanoTime();
+        try {
+            ValidationResult result = schema.validate(Arrays.copyOf(record, length), maxViolations);
+            validateTime += System.nanoTime() - validateStart;
+            if (!result.isValid()) {
+                fail("record " + recordCount + ": " + SchemaValidator.describeViolations(result), null);
+            }
+        } catch (JsonProcessingException e) {
+            metrics.recordMalformedPayload();
+            fail("record " + recordCount + ": Malformed JSON payload", e);
+        } catch (RecordViolationException e) {
+            throw e;
+        } catch (IOException e) {
+            fail("record " + recordCount + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void fail(String violations, Exception e) throws RecordViolationException {
+        metrics.recordViolation(false);
+        metrics.recordValidate(validateTime);
+        metrics.recordPayloadSize(bodySize);
+        String description = "Schema validation failed in the Request :" + violations;
+        if (e != null && logger.isDebugEnabled()) {
+            logger.error(description, e);
+        } else {
+            logger.error(description);
+        }
+        violation = new RecordViolationException(description);
+        finished = true;
+        throw violation;
+    }
+
+    private static boolean isBlank(byte[] bytes, int length) {
+        for (int i = 0; i < length; i++) {
+            byte b = bytes[i];
+            if (b != ' ' && b != '\t' && b != '\r' && b != '\n' && b != RECORD_SEPARATOR) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Thrown when a record of the body is rejected. The stack trace is not filled in since the exception only ends
+     * the read of the body.
+     */
+    static final class RecordViolationException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        RecordViolationException(String message) {
+            super(message);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Validation metrics of an API resource. Recording is lock free and safe to be done by concurrent messages.
+ */
+final class ResourceMetrics {
+
+    private final String apiUUID;
+    private final String resource;
+    private final LongAdder requestViolations = new LongAdder();
+    private final LongAdder responseViolations = new LongAdder();
+    private final LongAdder malformedPayloads = new LongAdder();
+    private final LongAdder droppedValidations = new LongAdder();
+    private final LongAdder rejectedPayloads = new LongAdder();
+    private final LongAdder shadowValidations = new LongAdder();
+    private final LongAdder shadowVerdictDisagreements = new LongAdder();
+    private final LongAdder shadowViolationDisagreements = new LongAdder();
+    private final LatencyHistogram build = new LatencyHistogram();
+    private final LatencyHistogram schemaLookup = new LatencyHistogram();
+    private final LatencyHistogram validate = new LatencyHistogram();
+    private final LatencyHistogram parameterValidate = new LatencyHistogram();
+    private final LatencyHistogram payloadSize = new LatencyHistogram();
+    private final LatencyHistogram shadowValidate = new LatencyHistogram();
+    private final LatencyHistogram shadowLatencyRatio = new LatencyHistogram();
+
+    ResourceMetrics(String apiUUID, String resource) {
+        this.apiUUID = apiUUID;
+        this.resource = resource;
+    }
+
+    void recordBuild(long nanos) {
+        build.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    void recordSchemaLookup(long nanos) {
+        schemaLookup.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    void recordValidate(long nanos) {
+        validate.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    void recordParameterValidate(long nanos) {
+        parameterValidate.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    void recordPayloadSize(long bytes) {
+        payloadSize.record(bytes);
+    }
+
+    void recordViolation(boolean response) {
+        if (response) {
+            responseViolations.increment();
+        } else {
+            requestViolations.increment();
+        }
+    }
+
+    void recordMalformedPayload() {
+        malformedPayloads.increment();
+    }
+
+    void recordDroppedValidation() {
+        droppedValidations.increment();
+    }
+
+    void recordRejectedPayload() {
+        rejectedPayloads.increment();
+    }
+
+    /**
+     * Record a payload validated by the shadow engine.
+     *
+     * @param nanos           Time taken by the shadow engine to validate the payload
+     * @param primaryNanos    Time taken by the validation engine to validate the payload
+     * @param verdictAgrees   Whether both engines found the payload valid, invalid or malformed alike
+     * @param violationsAgree Whether both engines found the same violations in an invalid payload
+     */
+    void recordShadowValidation(long nanos, long primaryNanos, boolean verdictAgrees, boolean violationsAgree) {
+        shadowValidations.increment();
+        shadowValidate.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+        shadowLatencyRatio.record(primaryNanos > 0 ? nanos * 100 / primaryNanos : 0);
+        if (!verdictAgrees) {
+            shadowVerdictDisagreements.increment();
+        } else if (!violationsAgree) {
+            shadowViolationDisagreements.increment();
+        }
+    }
+
+    ResourceStatistics snapshot() {
+        return new ResourceStatistics(apiUUID, resource, requestViolations.sum(), responseViolations.sum(),
+                malformedPayloads.sum(), droppedValidations.sum(), rejectedPayloads.sum(), build.snapshot(),
+                schemaLookup.snapshot(), validate.snapshot(), parameterValidate.snapshot(), payloadSize.snapshot(),
+                shadowValidations.sum(), shadowVerdictDisagreements.sum(), shadowViolationDisagreements.sum(),
+                shadowValidate.snapshot(), shadowLatencyRatio.snapshot());
+    }
+
+    void reset() {
+        requestViolations.reset();
+        responseViolations.reset();
+        malformedPayloads.reset();
+        droppedValidations.reset();
+        rejectedPayloads.reset();
+        shadowValidations.reset();
+        shadowVerdictDisagreements.reset();
+        shadowViolationDisagreements.reset();
+        build.reset();
+        schemaLookup.reset();
+        validate.reset();
+        parameterValidate.reset();
+        payloadSize.reset();
+        shadowValidate.reset();
+        shadowLatencyRatio.reset();
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Snapshot of the validation metrics of an API resource exposed through JMX.
+ */
+public class ResourceStatistics {
+
+    private final String apiUUID;
+    private final String resource;
+    private final long requestViolations;
+    private final long responseViolations;
+    private final long malformedPayloads;
+    private final long droppedValidations;
+    private final long rejectedPayloads;
+    private final HistogramStatistics build;
+    private final HistogramStatistics schemaLookup;
+    private final HistogramStatistics validate;
+    private final HistogramStatistics parameterValidate;
+    private final HistogramStatistics payloadSize;
+    private final long shadowValidations;
+    private final long shadowVerdictDisagreements;
+    private final long shadowViolationDisagreements;
+    private final HistogramStatistics shadowValidate;
+    private final HistogramStatistics shadowLatencyRatio;
+
+    @ConstructorProperties({"apiUUID", "resource", "requestViolations", "responseViolations", "malformedPayloads",
+            "droppedValidations", "rejectedPayloads", "build", "schemaLookup", "validate", "parameterValidate",
+            "payloadSize", "shadowValidations", "shadowVerdictDisagreements", "shadowViolationDisagreements",
+            "shadowValidate", "shadowLatencyRatio"})
+    public ResourceStatistics(String apiUUID, String resource, long requestViolations, long responseViolations,
+                              long malformedPayloads, long droppedValidations, long rejectedPayloads,
+                              HistogramStatistics build, HistogramStatistics schemaLookup,
+                              HistogramStatistics validate, HistogramStatistics parameterValidate,
+                              HistogramStatistics payloadSize, long shadowValidations,
+                              long shadowVerdictDisagreements, long shadowViolationDisagreements,
+                              HistogramStatistics shadowValidate, HistogramStatistics shadowLatencyRatio) {
+        this.apiUUID = apiUUID;
+        this.resource = resource;
+        this.requestViolations = requestViolations;
+        this.responseViolations = responseViolations;
+        this.malformedPayloads = malformedPayloads;
+        this.droppedValidations = droppedValidations;
+        this.rejectedPayloads = rejectedPayloads;
+        this.build = build;
+        this.schemaLookup = schemaLookup;
+        this.validate = validate;
+        this.parameterValidate = parameterValidate;
+        this.payloadSize = payloadSize;
+        this.shadowValidations = shadowValidations;
+        this.shadowVerdictDisagreements = shadowVerdictDisagreements;
+        this.shadowViolationDisagreements = shadowViolationDisagreements;
+        this.shadowValidate = shadowValidate;
+        this.shadowLatencyRatio = shadowLatencyRatio;
+    }
+
+    public String getApiUUID() {
+        return apiUUID;
+    }
+
+    public String getResource() {
+        return resource;
+    }
+
+    public long getRequestViolations() {
+        return requestViolations;
+    }
+
+    public long getResponseViolations() {
+        return responseViolations;
+    }
+
+    public long getMalformedPayloads() {
+        return malformedPayloads;
+    }
+
+    /**
+     * @return Number of asynchronous and shadow validations dropped because the validation executor was saturated
+     */
+    public long getDroppedValidations() {
+        return droppedValidations;
+    }
+
+    /**
+     * @return Number of payloads rejected because they exceed the payload limits
+     */
+    public long getRejectedPayloads() {
+        return rejectedPayloads;
+    }
+
+    /**
+     * @return Time taken to build or read the message payload, in microseconds
+     */
+    public HistogramStatistics getBuild() {
+        return build;
+    }
+
+    /**
+     * @return Time taken to look up and compile the schema of the message, in microseconds
+     */
+    public HistogramStatistics getSchemaLookup() {
+        return schemaLookup;
+    }
+
+    /**
+     * @return Time taken to validate the payload against the schema, in microseconds
+     */
+    public HistogramStatistics getValidate() {
+        return validate;
+    }
+
+    /**
+     * @return Time taken to validate the path, query and header parameters of a request, in microseconds
+     */
+    public HistogramStatistics getParameterValidate() {
+        return parameterValidate;
+    }
+
+    /**
+     * @return Size of the validated payloads, in bytes
+     */
+    public HistogramStatistics getPayloadSize() {
+        return payloadSize;
+    }
+
+    /**
+     * @return Number of payloads validated by the shadow engine
+     */
+    public long getShadowValidations() {
+        return shadowValidations;
+    }
+
+    /**
+     * @return Number of payloads the shadow engine found valid, invalid or malformed unlike the validation engine
+     */
+    public long getShadowVerdictDisagreements() {
+        return shadowVerdictDisagreements;
+    }
+
+    /**
+     * @return Number of invalid payloads the shadow engine found different violations in than the validation engine
+     */
+    public long getShadowViolationDisagreements() {
+        return shadowViolationDisagreements;
+    }
+
+    /**
+     * @return Time taken by the shadow engine to validate the payload, in microseconds
+     */
+    public HistogramStatistics getShadowValidate() {
+        return shadowValidate;
+    }
+
+    /**
+     * @return Time taken by the shadow engine to validate the payload relative to the validation engine, in percent
+     */
+    public HistogramStatistics getShadowLatencyRatio() {
+        return shadowLatencyRatio;
+    }
+}
@@ -0,0 +1,388 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of compiled schemas shared by all the com.wso2.handler.SchemaValidator instances.
+ * The cache is typed by the compiled form of the schemas, so each validation engine keeps its own cache.
+ * Entries are spread over independently locked segments, each of which evicts its least recently used entry
+ * once it grows beyond its share of the maximum size. A cache created with a memory budget also charges the
+ * estimated size of its entries to the budget, which evicts the least recently used entries of all the caches
+ * sharing the budget once it is exceeded.
+ */
+public class SchemaCache<S> {
+
+    private static final int SEGMENT_COUNT = 16;
+
+    private final List<Segment> segments;
+    private final MemoryBudget budget;
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * Create a schema cache.
+     *
+     * @param maxSize Maximum number of compiled schemas to be kept in the cache
+     */
+    public SchemaCache(int maxSize) {
+        this(maxSize, null);
+    }
+
+    /**
+     * Create a schema cache which keeps within a memory budget.
+     *
+     * @param maxSize Maximum number of compiled schemas to be kept in the cache
+     * @param budget  Memory budget shared with other caches, or null if only the number of schemas is bounded
+     */
+    public SchemaCache(int maxSize, MemoryBudget budget) {
+        this.budget = budget;
+        int segmentSize = Math.max(1, (maxSize + SEGMENT_COUNT - 1) / SEGMENT_COUNT);
+        segments = new ArrayList<>(SEGMENT_COUNT);
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            Segment segment = new Segment(segmentSize);
+            segments.add(segment);
+            if (budget != null) {
+                budget.register(segment);
+            }
+        }
+    }
+
+    /**
+     * Get the compiled schema for the given key.
+     *
+     * @param key Cache key of the schema
+     * @return Compiled schema or null if it is not cached
+     */
+    public S get(Key key) {
+        S schema = segmentFor(key).get(key);
+        if (schema != null) {
+            hitCount.increment();
+        } else {
+            missCount.increment();
+        }
+        return schema;
+    }
+
+    /**
+     * Check whether a compiled schema is cached for the given key, without affecting the cache statistics or the
+     * eviction order.
+     *
+     * @param key Cache key of the schema
+     * @return true if the schema is cached
+     */
+    public boolean contains(Key key) {
+        return segmentFor(key).contains(key);
+    }
+
+    /**
+     * Add a compiled schema to the cache.
+     *
+     * @param key    Cache key of the schema
+     * @param schema Compiled schema
+     */
+    public void put(Key key, S schema) {
+        put(key, schema, 1);
+    }
+
+    /**
+     * Add a compiled schema to the cache and charge its size to the memory budget of the cache.
+     *
+     * @param key    Cache key of the schema
+     * @param schema Compiled schema
+     * @param weight Estimated size of the compiled schema in bytes
+     */
+    public void put(Key key, S schema, long weight) {
+        if (schema != null) {
+            charge(segmentFor(key).put(key, schema, Math.max(1, weight)));
+        }
+    }
+
+    /**
+     * Remove all the cached schemas.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            charge(-segment.clear());
+        }
+    }
+
+    /**
+     * Remove the schemas compiled by a validation engine. The schemas cached under the name of an engine are stale
+     * once an engine is registered, replaced or unregistered with that name, since they may have been compiled by the
+     * previous engine or by the default engine in the absence of one.
+     *
+     * @param engine Name of the engine
+     */
+    public void invalidateEngine(String engine) {
+        for (Segment segment : segments) {
+            charge(-segment.removeEngine(engine));
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    private void charge(long delta) {
+        if (budget != null && delta != 0) {
+            budget.charge(delta);
+        }
+    }
+
+    private Segment segmentFor(Key key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return segments.get(hash & (SEGMENT_COUNT - 1));
+    }
+
+    /**
+     * Access ordered map guarded by its own lock. The segment keeps the total size of its entries, and the changes
+     * of the size are charged to the memory budget by the cache once the lock is released.
+     */
+    private final class Segment implements MemoryBudget.Evictable {
+
+        private final LinkedHashMap<Key, Weighted<S>> entries;
+        private long evictedWeight;
+
+        Segment(final int maxEntries) {
+            entries = new LinkedHashMap<Key, Weighted<S>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, Weighted<S>> eldest) {
+                    if (size() > maxEntries) {
+                        evictionCount.increment();
+                        evictedWeight += eldest.getValue().weight;
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized S get(Key key) {
+            Weighted<S> entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            entry.accessTime = System.nanoTime();
+            return entry.schema;
+        }
+
+        synchronized boolean contains(Key key) {
+            return entries.containsKey(key);
+        }
+
+        /**
+         * @return Change of the size of the segment
+         */
+        synchronized long put(Key key, S schema, long weight) {
+            evictedWeight = 0;
+            Weighted<S> replaced = entries.put(key, new Weighted<>(schema, weight));
+            return weight - evictedWeight - (replaced != null ? replaced.weight : 0);
+        }
+
+        /**
+         * @return Size of the removed entries
+         */
+        synchronized long clear() {
+            long weight = 0;
+            for (Weighted<S> entry : entries.values()) {
+                weight += entry.weight;
+            }
+            entries.clear();
+            return weight;
+        }
+
+        /**
+         * @return Size of the removed entries
+         */
+        synchronized long removeEngine(String engine) {
+            long weight = 0;
+            Iterator<Map.Entry<Key, Weighted<S>>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Key, Weighted<S>> entry = iterator.next();
+                if (Key.equal(engine, entry.getKey().getEngine())) {
+                    weight += entry.getValue().weight;
+                    iterator.remove();
+                }
+            }
+            return weight;
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+
+        @Override
+        public synchronized long getEldestAccessTime() {
+            Iterator<Weighted<S>> eldest = entries.values().iterator();
+            return eldest.hasNext() ? eldest.next().accessTime : Long.MAX_VALUE;
+        }
+
+        @Override
+        public synchronized long evictEldest() {
+            Iterator<Weighted<S>> eldest = entries.values().iterator();
+            if (!eldest.hasNext()) {
+                return 0;
+            }
+            long weight = eldest.next().weight;
+            eldest.remove();
+            evictionCount.increment();
+            return weight;
+        }
+    }
+
+    /**
+     * Compiled schema with its estimated size and the time it was last accessed.
+     */
+    private static final class Weighted<S> {
+
+        private final S schema;
+        private final long weight;
+        private long accessTime = System.nanoTime();
+
+        Weighted(S schema, long weight) {
+            this.schema = schema;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Identifies a compiled schema by the API, the elected resource, the HTTP verb, the message direction,
+     * the response status code, the declared media type and the validation engine which compiled it. The revision of
+     * the swagger definition is part of the key so that the schemas of an updated definition are never served from the
+     * cache.
+     */
+    public static final class Key {
+
+        private final String apiUUID;
+        private final String resource;
+        private final String method;
+        private final boolean response;
+        private final String statusCode;
+        private final String mediaType;
+        private final int revision;
+        private final String engine;
+        private final int hash;
+
+        public Key(String apiUUID, String resource, String method, boolean response, String statusCode,
+                   String mediaType, int revision, String engine) {
+            this.apiUUID = apiUUID;
+            this.resource = resource;
+            this.method = method;
+            this.response = response;
+            this.statusCode = statusCode;
+            this.mediaType = mediaType;
+            this.revision = revision;
+            this.engine = engine;
+            int result = apiUUID != null ? apiUUID.hashCode() : 0;
+            result = 31 * result + (resource != null ? resource.hashCode() : 0);
+            result = 31 * result + (method != null ? method.hashCode() : 0);
+            result = 31 * result + (response ? 1 : 0);
+            result = 31 * result + (statusCode != null ? statusCode.hashCode() : 0);
+            result = 31 * result + (mediaType != null ? mediaType.hashCode() : 0);
+            result = 31 * result + revision;
+            result = 31 * result + (engine != null ? engine.hashCode() : 0);
+            this.hash = result;
+        }
+
+        public String getResource() {
+            return resource;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public boolean isResponse() {
+            return response;
+        }
+
+        public String getStatusCode() {
+            return statusCode;
+        }
+
+        public String getMediaType() {
+            return mediaType;
+        }
+
+        public String getEngine() {
+            return engine;
+        }
+
+        /**
+         * Get the key of the same schema compiled by another engine.
+         *
+         * @param engine Name of the validation engine
+         * @return Cache key
+         */
+        public Key withEngine(String engine) {
+            return new Key(apiUUID, resource, method, response, statusCode, mediaType, revision, engine);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return hash == key.hash && response == key.response && revision == key.revision &&
+                    equal(apiUUID, key.apiUUID) && equal(resource, key.resource) && equal(method, key.method) &&
+                    equal(statusCode, key.statusCode) && equal(mediaType, key.mediaType) && equal(engine, key.engine);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return apiUUID + ":" + method + " " + resource + (response ? " response " + statusCode : " request") +
+                    (mediaType != null ? " " + mediaType : "") + " (" + engine + ")";
+        }
+
+        private static boolean equal(String first, String second) {
+            return first == null ? second == null : first.equals(second);
+        }
+    }
+}
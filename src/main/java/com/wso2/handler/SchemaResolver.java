@@ -0,0 +1,354 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resolves the local $ref references of the schemas in a swagger and converts them to the JSON model used by the
+ * schema engine. Every referred schema is resolved once per swagger and the resolved node is shared by all the
+ * schemas that refer it. A reference back to a schema which is still being resolved is a recursive model; it is
+ * kept as a $ref to a definition which is added to the root of the operation schema, hence recursive and nested
+ * models are validated without being expanded infinitely. The discriminator of a oneOf or anyOf schema is resolved
+ * along with the references of its branches.
+ * A resolver is used by a single thread while the operation index is built.
+ */
+class SchemaResolver {
+
+    private static final Log logger = LogFactory.getLog(SchemaResolver.class);
+    private static final String RECURSIVE_DEFINITION_PREFIX = "#/" + SchemaValidatorConstant.DEFINITIONS + "/";
+
+    private final JsonNode rootNode;
+    private final Map<String, Resolved> resolvedReferences = new HashMap<>();
+    private final Map<String, String> recursiveDefinitionNames = new HashMap<>();
+    private final Deque<String> resolving = new ArrayDeque<>();
+
+    SchemaResolver(JsonNode rootNode) {
+        this.rootNode = rootNode;
+    }
+
+    /**
+     * Follow the $ref of a request body, parameter or response node. The referred node is not resolved any further,
+     * so a referred request body or response keeps its content.
+     *
+     * @param node Node which may be a reference
+     * @return Referenced node or null if the reference cannot be found
+     */
+    JsonNode dereference(JsonNode node) {
+        return dereference(node, false);
+    }
+
+    /**
+     * Follow the $ref of a schema node down to the referred schema.
+     *
+     * @param node Schema node which may be a reference
+     * @return Referenced schema or null if the reference cannot be found
+     */
+    JsonNode dereferenceSchema(JsonNode node) {
+        return dereference(node, true);
+    }
+
+    private JsonNode dereference(JsonNode node, boolean schema) {
+        Set<String> visited = null;
+        while (node != null && node.has(SchemaValidatorConstant.SCHEMA_REFERENCE)) {
+            String reference = node.get(SchemaValidatorConstant.SCHEMA_REFERENCE).asText();
+            if (visited == null) {
+                visited = new HashSet<>();
+            }
+            if (!visited.add(reference)) {
+                logger.error("Circular reference found in the swagger : " + reference);
+                return null;
+            }
+            node = schema ? lookupSchema(reference) : lookup(reference);
+        }
+        return node;
+    }
+
+    /**
+     * Resolve an operation schema. The recursive definitions used by the schema are added to the
+     * definitions of the returned schema.
+     *
+     * @param schema Schema node of the operation
+     * @return Resolved schema or null if the node is not a schema object
+     */
+    JSONObject resolveSchema(JsonNode schema) {
+        if (schema == null || !schema.isObject()) {
+            return null;
+        }
+        Set<String> recursiveReferences = new LinkedHashSet<>();
+        Object resolved = toJson(schema, recursiveReferences);
+        if (!(resolved instanceof JSONObject)) {
+            return null;
+        }
+        JSONObject resolvedSchema = (JSONObject) resolved;
+        if (recursiveReferences.isEmpty()) {
+            return resolvedSchema;
+        }
+        // The resolved node may be shared with other schemas, hence the definitions are added to a copy.
+        JSONObject rootSchema = new JSONObject();
+        for (String key : resolvedSchema.keySet()) {
+            rootSchema.put(key, resolvedSchema.get(key));
+        }
+        JSONObject definitions = new JSONObject();
+        JSONObject existingDefinitions = resolvedSchema.optJSONObject(SchemaValidatorConstant.DEFINITIONS);
+        if (existingDefinitions != null) {
+            for (String key : existingDefinitions.keySet()) {
+                definitions.put(key, existingDefinitions.get(key));
+            }
+        }
+        Deque<String> pending = new ArrayDeque<>(recursiveReferences);
+        Set<String> added = new HashSet<>();
+        while (!pending.isEmpty()) {
+            String reference = pending.poll();
+            if (!added.add(reference)) {
+                continue;
+            }
+            Resolved definition = resolvedReferences.get(reference);
+            definitions.put(recursiveDefinitionNames.get(reference), definition.json);
+            pending.addAll(definition.recursiveReferences);
+        }
+        rootSchema.put(SchemaValidatorConstant.DEFINITIONS, definitions);
+        return rootSchema;
+    }
+
+    /**
+     * Convert a schema node to the JSON model of the schema engine, resolving its references.
+     *
+     * @param node                Schema node
+     * @param recursiveReferences Collects the recursive references used by the node
+     * @return Converted node
+     */
+    private Object toJson(JsonNode node, Set<String> recursiveReferences) {
+        if (node.isObject()) {
+            JsonNode reference = node.get(SchemaValidatorConstant.SCHEMA_REFERENCE);
+            if (reference != null && reference.isTextual()) {
+                return resolveReference(reference.asText(), recursiveReferences);
+            }
+            JSONObject object = new JSONObject();
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                object.put(field.getKey(), toJson(field.getValue(), recursiveReferences));
+            }
+            JSONObject discriminator = resolveDiscriminator(node);
+            if (discriminator != null) {
+                object.put(SchemaValidatorConstant.DISCRIMINATOR, discriminator);
+            }
+            return object;
+        }
+        if (node.isArray()) {
+            JSONArray array = new JSONArray();
+            for (JsonNode element : node) {
+                array.put(toJson(element, recursiveReferences));
+            }
+            return array;
+        }
+        if (node.isTextual()) {
+            return node.textValue();
+        }
+        if (node.isBoolean()) {
+            return node.booleanValue();
+        }
+        if (node.isNumber()) {
+            return node.numberValue();
+        }
+        return JSONObject.NULL;
+    }
+
+    /**
+     * Resolve a $ref. Each reference is resolved once, and a reference to a schema which is still being resolved
+     * is replaced with a reference to its recursive definition.
+     *
+     * @param reference           Value of the $ref
+     * @param recursiveReferences Collects the recursive references used by the caller
+     * @return Resolved schema
+     */
+    private Object resolveReference(String reference, Set<String> recursiveReferences) {
+        Resolved resolved = resolvedReferences.get(reference);
+        if (resolved != null) {
+            recursiveReferences.addAll(resolved.recursiveReferences);
+            return resolved.json;
+        }
+        if (resolving.contains(reference)) {
+            recursiveReferences.add(reference);
+            JSONObject recursiveReference = new JSONObject();
+            recursiveReference.put(SchemaValidatorConstant.SCHEMA_REFERENCE,
+                    RECURSIVE_DEFINITION_PREFIX + recursiveDefinitionName(reference));
+            return recursiveReference;
+        }
+        JsonNode referred = lookupSchema(reference);
+        if (referred == null) {
+            logger.warn("Unable to resolve the schema reference " + reference + " in the swagger");
+            return new JSONObject();
+        }
+        resolving.push(reference);
+        Set<String> referredRecursiveReferences = new HashSet<>();
+        Object json;
+        try {
+            json = toJson(referred, referredRecursiveReferences);
+        } finally {
+            resolving.pop();
+        }
+        resolvedReferences.put(reference, new Resolved(json, referredRecursiveReferences));
+        recursiveReferences.addAll(referredRecursiveReferences);
+        return json;
+    }
+
+    /**
+     * Resolve the discriminator of a oneOf or anyOf schema. The references of the branches are resolved, so the
+     * mapping of the resolved discriminator refers every branch by its position instead, e.g. #/oneOf/2. Values
+     * mapped by the swagger are kept, and every other referred branch is mapped by the name of its schema.
+     *
+     * @param node Schema node
+     * @return Resolved discriminator or null if the node has no discriminator of its branches
+     */
+    private static JSONObject resolveDiscriminator(JsonNode node) {
+        JsonNode discriminator = node.get(SchemaValidatorConstant.DISCRIMINATOR);
+        if (discriminator == null || !discriminator.path(SchemaValidatorConstant.PROPERTY_NAME).isTextual()) {
+            return null;
+        }
+        String keyword = node.has(SchemaValidatorConstant.ONE_OF) ? SchemaValidatorConstant.ONE_OF :
+                SchemaValidatorConstant.ANY_OF;
+        JsonNode branches = node.get(keyword);
+        if (branches == null || !branches.isArray()) {
+            return null;
+        }
+        Map<String, Integer> branchIndexes = new HashMap<>();
+        for (int i = branches.size() - 1; i >= 0; i--) {
+            JsonNode reference = branches.get(i).get(SchemaValidatorConstant.SCHEMA_REFERENCE);
+            if (reference != null && reference.isTextual()) {
+                branchIndexes.put(reference.asText(), i);
+            }
+        }
+        JSONObject mapping = new JSONObject();
+        Set<Integer> mappedBranches = new HashSet<>();
+        Iterator<Map.Entry<String, JsonNode>> values = discriminator.path(SchemaValidatorConstant.MAPPING).fields();
+        while (values.hasNext()) {
+            Map.Entry<String, JsonNode> value = values.next();
+            Integer index = branchIndex(branchIndexes, value.getValue().asText());
+            if (index != null) {
+                mapping.put(value.getKey(), "#/" + keyword + "/" + index);
+                mappedBranches.add(index);
+            } else if (logger.isDebugEnabled()) {
+                logger.debug("Discriminator value " + value.getKey() + " is not mapped to a branch of the schema");
+            }
+        }
+        for (Map.Entry<String, Integer> branch : branchIndexes.entrySet()) {
+            String name = schemaName(branch.getKey());
+            if (!mappedBranches.contains(branch.getValue()) && !mapping.has(name)) {
+                mapping.put(name, "#/" + keyword + "/" + branch.getValue());
+            }
+        }
+        JSONObject resolved = new JSONObject();
+        resolved.put(SchemaValidatorConstant.PROPERTY_NAME,
+                discriminator.get(SchemaValidatorConstant.PROPERTY_NAME).asText());
+        resolved.put(SchemaValidatorConstant.MAPPING, mapping);
+        return resolved;
+    }
+
+    private static Integer branchIndex(Map<String, Integer> branchIndexes, String target) {
+        Integer index = branchIndexes.get(target);
+        if (index != null || target.isEmpty() || target.charAt(0) == SchemaValidatorConstant.HASH) {
+            return index;
+        }
+        // A mapping value which is not a reference is the name of a schema.
+        for (Map.Entry<String, Integer> branch : branchIndexes.entrySet()) {
+            if (schemaName(branch.getKey()).equals(target)) {
+                return branch.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static String schemaName(String reference) {
+        return reference.substring(reference.lastIndexOf(SchemaValidatorConstant.FORWARD_SLASH) + 1);
+    }
+
+    private String recursiveDefinitionName(String reference) {
+        String name = recursiveDefinitionNames.get(reference);
+        if (name == null) {
+            name = schemaName(reference).replaceAll("[^A-Za-z0-9_.-]", "_") + '_' + recursiveDefinitionNames.size();
+            recursiveDefinitionNames.put(reference, name);
+        }
+        return name;
+    }
+
+    /**
+     * Find the node referred by a local reference such as #/definitions/Pet, #/components/schemas/Pet or
+     * #/components/requestBodies/Pet. The referred node is returned as it is, hence a reference to a request body
+     * resolves to the request body with all its media types.
+     *
+     * @param reference Value of the $ref
+     * @return Referred node or null if the reference is not a local reference or cannot be found
+     */
+    JsonNode lookup(String reference) {
+        if (reference.isEmpty() || reference.charAt(0) != SchemaValidatorConstant.HASH) {
+            return null;
+        }
+        JsonNode node;
+        try {
+            node = rootNode.at(JsonPointer.compile(reference.substring(1)));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return node.isMissingNode() ? null : node;
+    }
+
+    /**
+     * Find the schema referred by the $ref of a schema. A schema which refers a request body is the schema of its
+     * JSON content.
+     *
+     * @param reference Value of the $ref
+     * @return Referred schema or null if the reference cannot be found
+     */
+    private JsonNode lookupSchema(String reference) {
+        JsonNode node = lookup(reference);
+        if (node != null && reference.startsWith(SchemaValidatorConstant.REQUEST_BODY_REFERENCE) &&
+                node.has(SchemaValidatorConstant.CONTENT)) {
+            JsonNode mediaType = node.get(SchemaValidatorConstant.CONTENT).get(SchemaValidatorConstant.APPLICATION_JSON);
+            return mediaType != null ? mediaType.get(SchemaValidatorConstant.SCHEMA) : null;
+        }
+        return node;
+    }
+
+    /**
+     * Resolved schema of a reference together with the recursive references it still depends on.
+     */
+    private static final class Resolved {
+
+        private final Object json;
+        private final Set<String> recursiveReferences;
+
+        Resolved(Object json, Set<String> recursiveReferences) {
+            this.json = json;
+            this.recursiveReferences = recursiveReferences;
+        }
+    }
+}
@@ -0,0 +1,376 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Store of the resolved schemas shared by the operation indexes of all the APIs, hosted by the
+ * SchemaValidatorComponent. Identical schema subtrees, such as the error, pagination and money models most APIs
+ * define, are interned by their content, so the indexes of different APIs share a single copy of them. The store
+ * only refers to the interned schemas weakly, so they are released with the last index which uses them, and they are
+ * not charged to the memory budget of the compiled schema caches the store also holds, since evicting them would not
+ * release any memory. Interned schemas must not be modified.
+ */
+public final class SchemaStore {
+
+    private static final SchemaStore instance = new SchemaStore(Long.getLong(
+            SchemaValidatorConstant.SCHEMA_MEMORY_BUDGET, SchemaValidatorConstant.DEFAULT_SCHEMA_MEMORY_BUDGET));
+
+    private static final int OBJECT_SIZE = 64;
+    private static final int ENTRY_SIZE = 48;
+    private static final int STRING_SIZE = 40;
+    private static final int NUMBER_SIZE = 24;
+
+    private final MemoryBudget budget;
+    private final InternTable internTable = new InternTable();
+    private final LongAdder internHitCount = new LongAdder();
+
+    private SchemaStore(long memoryBudget) {
+        this.budget = new MemoryBudget(memoryBudget);
+    }
+
+    public static SchemaStore getInstance() {
+        return instance;
+    }
+
+    /**
+     * Get the memory budget shared by the schema caches.
+     *
+     * @return Memory budget
+     */
+    public MemoryBudget getMemoryBudget() {
+        return budget;
+    }
+
+    /**
+     * Intern a resolved schema. Every object and array of the schema which is identical to an interned one is
+     * replaced by the interned one. The given schema is not modified; the objects and arrays which contain
+     * replaced values are copied.
+     *
+     * @param schema Resolved schema
+     * @return Interned schema
+     */
+    public JSONObject intern(JSONObject schema) {
+        if (schema == null) {
+            return null;
+        }
+        return (JSONObject) intern(schema, new IdentityHashMap<Object, Object>(),
+                new IdentityHashMap<Object, Integer>());
+    }
+
+    /**
+     * Estimate the size of a schema, counting values shared within the schema once.
+     *
+     * @param schema Schema
+     * @return Estimated size in bytes
+     */
+    public static long estimateSize(JSONObject schema) {
+        return schema != null ? estimateSize(schema, new IdentityHashMap<Object, Boolean>()) : 0;
+    }
+
+    public int getInternedCount() {
+        return internTable.size();
+    }
+
+    public long getInternHitCount() {
+        return internHitCount.sum();
+    }
+
+    /**
+     * Remove all the interned schemas. Schemas already interned stay shared by the indexes which use them.
+     */
+    public void clear() {
+        internTable.clear();
+    }
+
+    /**
+     * Intern a value bottom up, so the children of an object or array are interned before the object or array.
+     *
+     * @param value    Value of a schema
+     * @param interned Interned values of the schema being interned, by their identity
+     * @param hashes   Content hashes of the interned values of the schema, by their identity
+     * @return Interned value
+     */
+    private Object intern(Object value, Map<Object, Object> interned, Map<Object, Integer> hashes) {
+        if (!(value instanceof JSONObject || value instanceof JSONArray)) {
+            return value;
+        }
+        Object result = interned.get(value);
+        if (result != null) {
+            return result;
+        }
+        Object copy = value;
+        if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            for (String key : object.keySet()) {
+                Object child = object.get(key);
+                Object internedChild = intern(child, interned, hashes);
+                if (internedChild != child) {
+                    if (copy == value) {
+                        copy = new JSONObject(object, JSONObject.getNames(object));
+                    }
+                    ((JSONObject) copy).put(key, internedChild);
+                }
+            }
+        } else {
+            JSONArray array = (JSONArray) value;
+            for (int i = 0; i < array.length(); i++) {
+                Object child = array.get(i);
+                Object internedChild = intern(child, interned, hashes);
+                if (internedChild != child) {
+                    if (copy == value) {
+                        copy = new JSONArray();
+                        for (int j = 0; j < array.length(); j++) {
+                            ((JSONArray) copy).put(array.get(j));
+                        }
+                    }
+                    ((JSONArray) copy).put(i, internedChild);
+                }
+            }
+        }
+        Content content = new Content(copy, contentHash(copy, hashes));
+        Object existing = internTable.get(content);
+        if (existing != null) {
+            internHitCount.increment();
+            result = existing;
+        } else {
+            internTable.put(content);
+            result = copy;
+        }
+        interned.put(value, result);
+        hashes.put(result, content.hash);
+        return result;
+    }
+
+    /**
+     * Estimate the size of an object or array without the objects and arrays it contains.
+     */
+    private static long shallowSize(Object value) {
+        long size = OBJECT_SIZE;
+        if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            for (String key : object.keySet()) {
+                size += ENTRY_SIZE + STRING_SIZE + 2L * key.length() + leafSize(object.get(key));
+            }
+        } else {
+            JSONArray array = (JSONArray) value;
+            for (int i = 0; i < array.length(); i++) {
+                size += ENTRY_SIZE + leafSize(array.get(i));
+            }
+        }
+        return size;
+    }
+
+    private static long leafSize(Object value) {
+        if (value instanceof String) {
+            return STRING_SIZE + 2L * ((String) value).length();
+        }
+        return value instanceof Number ? NUMBER_SIZE : 0;
+    }
+
+    private static long estimateSize(Object value, Map<Object, Boolean> counted) {
+        if (!(value instanceof JSONObject || value instanceof JSONArray) || counted.put(value, Boolean.TRUE) != null) {
+            return 0;
+        }
+        long size = shallowSize(value);
+        if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            for (String key : object.keySet()) {
+                size += estimateSize(object.get(key), counted);
+            }
+        } else {
+            JSONArray array = (JSONArray) value;
+            for (int i = 0; i < array.length(); i++) {
+                size += estimateSize(array.get(i), counted);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Hash of the content of an object or array whose children are already interned, hence the hash of a child
+     * object or array is already known.
+     */
+    private static int contentHash(Object value, Map<Object, Integer> hashes) {
+        if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            int hash = 1;
+            for (String key : object.keySet()) {
+                // The order of the keys of an object is not significant.
+                hash += key.hashCode() ^ childHash(object.get(key), hashes);
+            }
+            return hash;
+        }
+        JSONArray array = (JSONArray) value;
+        int hash = 2;
+        for (int i = 0; i < array.length(); i++) {
+            hash = 31 * hash + childHash(array.get(i), hashes);
+        }
+        return hash;
+    }
+
+    private static int childHash(Object child, Map<Object, Integer> hashes) {
+        Integer hash = hashes.get(child);
+        if (hash != null) {
+            return hash;
+        }
+        return child != null ? child.hashCode() : 0;
+    }
+
+    /**
+     * Compare the children of two objects or arrays. Equal children which are objects or arrays are interned, so
+     * they are compared by their identity.
+     */
+    private static boolean equalChild(Object first, Object second) {
+        if (first instanceof JSONObject || first instanceof JSONArray) {
+            return first == second;
+        }
+        return first == null ? second == null : first.equals(second);
+    }
+
+    /**
+     * Key of an interned object or array, which is equal to the key of any object or array of the same content.
+     */
+    private static final class Content {
+
+        private final Object value;
+        private final int hash;
+
+        Content(Object value, int hash) {
+            this.value = value;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            Object other;
+            if (o instanceof Content) {
+                other = ((Content) o).value;
+            } else if (o instanceof WeakContent) {
+                other = ((WeakContent) o).get();
+            } else {
+                return false;
+            }
+            return other != null && hash == o.hashCode() && equalContent(other);
+        }
+
+        private boolean equalContent(Object otherValue) {
+            if (value instanceof JSONObject && otherValue instanceof JSONObject) {
+                JSONObject object = (JSONObject) value;
+                JSONObject other = (JSONObject) otherValue;
+                if (object.length() != other.length()) {
+                    return false;
+                }
+                for (String key : object.keySet()) {
+                    if (!other.has(key) || !equalChild(object.get(key), other.get(key))) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            if (value instanceof JSONArray && otherValue instanceof JSONArray) {
+                JSONArray array = (JSONArray) value;
+                JSONArray other = (JSONArray) otherValue;
+                if (array.length() != other.length()) {
+                    return false;
+                }
+                for (int i = 0; i < array.length(); i++) {
+                    if (!equalChild(array.get(i), other.get(i))) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Weak reference to an interned object or array, which keeps the content hash of the value. The reference is
+     * only equal to itself, and a Content key is equal to it while the value is reachable and has the same content.
+     */
+    private static final class WeakContent extends WeakReference<Object> {
+
+        private final int hash;
+
+        WeakContent(Content content, ReferenceQueue<Object> queue) {
+            super(content.value, queue);
+            this.hash = content.hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Interned values, referred to weakly so that the table never keeps a schema which no index uses. The references
+     * of released values are removed from the table whenever it is accessed.
+     */
+    private static final class InternTable {
+
+        private final Map<Object, WeakContent> entries = new HashMap<>(256);
+        private final ReferenceQueue<Object> releasedValues = new ReferenceQueue<>();
+
+        synchronized Object get(Content content) {
+            removeReleased();
+            WeakContent entry = entries.get(content);
+            return entry != null ? entry.get() : null;
+        }
+
+        synchronized void put(Content content) {
+            removeReleased();
+            WeakContent entry = new WeakContent(content, releasedValues);
+            entries.put(entry, entry);
+        }
+
+        synchronized void clear() {
+            entries.clear();
+            removeReleased();
+        }
+
+        synchronized int size() {
+            removeReleased();
+            return entries.size();
+        }
+
+        private void removeReleased() {
+            Reference<?> released;
+            while ((released = releasedValues.poll()) != null) {
+                entries.remove(released);
+            }
+        }
+    }
+}
@@ -14,677 +14,1552 @@
  * limitations under the License.
  */
 package com.wso2.handler;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.JsonNodeType;
-import com.jayway.jsonpath.JsonPath;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import org.apache.axiom.om.OMElement;
 import org.apache.axis2.AxisFault;
-import org.apache.commons.lang.ObjectUtils;
-import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.ManagedLifecycle;
 import org.apache.synapse.Mediator;
 import org.apache.synapse.MessageContext;
 import org.apache.synapse.commons.json.JsonUtil;
 import org.apache.synapse.config.Entry;
+import org.apache.synapse.config.SynapseConfiguration;
+import org.apache.synapse.core.SynapseEnvironment;
 import org.apache.synapse.core.axis2.Axis2MessageContext;
 import org.apache.synapse.rest.AbstractHandler;
 import org.apache.synapse.transport.passthru.util.RelayUtils;
-import org.everit.json.schema.Schema;
-import org.everit.json.schema.ValidationException;
-import org.everit.json.schema.loader.SchemaLoader;
-import org.json.JSONException;
 import org.json.JSONObject;
 import org.wso2.carbon.apimgt.api.APIManagementException;
 import org.wso2.carbon.apimgt.gateway.APIMgtGatewayConstants;
-import org.wso2.carbon.apimgt.gateway.utils.GatewayUtils;
 import org.wso2.carbon.apimgt.impl.APIConstants;
 
 import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
-import java.util.ArrayList;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Iterator;
-import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.ZipException;
 
 
 /**
  * This com.wso2.handler.SchemaValidator handler validates the request/response messages against schema defined in the swagger.
+ * A single handler instance serves concurrent messages, hence all the per message state is kept in local variables
+ * and the shared operation index and compiled schemas are immutable once published.
  */
-public class SchemaValidator extends AbstractHandler {
+public class SchemaValidator extends AbstractHandler implements ManagedLifecycle {
 
     private static final Log logger = LogFactory.getLog(SchemaValidator.class);
-    private String swagger = null;
-    private JsonNode rootNode;
-    private String requestMethod;
-    private String schemaContent = null;
-    private String apiUUID;
-    private String apiId;
-    Entry localEntryObj = null;
+    private static final SchemaCache<ValidationSchema> schemaCache = new SchemaCache<>(Integer.getInteger(
+            SchemaValidatorConstant.SCHEMA_CACHE_SIZE, SchemaValidatorConstant.DEFAULT_SCHEMA_CACHE_SIZE),
+            SchemaStore.getInstance().getMemoryBudget());
+    private static final SchemaCache<XmlSchema> xmlSchemaCache = new SchemaCache<>(Integer.getInteger(
+            SchemaValidatorConstant.SCHEMA_CACHE_SIZE, SchemaValidatorConstant.DEFAULT_SCHEMA_CACHE_SIZE),
+            SchemaStore.getInstance().getMemoryBudget());
+    private static final SchemaCache<ParallelArrayValidator> parallelValidatorCache = new SchemaCache<>(
+            Integer.getInteger(SchemaValidatorConstant.SCHEMA_CACHE_SIZE,
+                    SchemaValidatorConstant.DEFAULT_SCHEMA_CACHE_SIZE), SchemaStore.getInstance().getMemoryBudget());
+
+    static {
+        ValidationEngineRegistry.addSchemaCache(schemaCache);
+        ValidationEngineRegistry.addSchemaCache(parallelValidatorCache);
+    }
+
+    private final Object indexLock = new Object();
+    private volatile String apiUUID;
+    private volatile boolean streamingValidation;
+    private volatile String validationMode = SchemaValidatorConstant.VALIDATION_MODE_COLLECT_ALL;
+    private volatile int maxViolations;
+    private volatile boolean asyncResponseValidation;
+    private volatile String validationEngine = SchemaValidatorConstant.VALIDATION_ENGINE_EVERIT;
+    private volatile double responseSamplingRate = 1;
+    private volatile String shadowEngine;
+    private volatile double shadowSamplingRate = SchemaValidatorConstant.DEFAULT_SHADOW_SAMPLING_RATE;
+    private volatile int parallelValidationThreshold;
+    private volatile boolean parameterValidation;
+    private volatile boolean recordValidation;
+    private volatile boolean xmlValidation;
+    private volatile boolean compressedValidation;
+    private volatile long maxInflatedBytes = SchemaValidatorConstant.DEFAULT_MAX_INFLATED_BYTES;
+    private volatile int maxRecordBytes = SchemaValidatorConstant.DEFAULT_MAX_RECORD_BYTES;
+    private volatile PayloadLimits payloadLimits = PayloadLimits.NONE;
+    private volatile OperationIndex operationIndex;
+    private volatile SynapseConfiguration synapseConfiguration;
+    private volatile boolean warmedUp;
 
     public String getApiUUID() {
         return apiUUID;
     }
 
-    public void setApiUUID(String apiUUID) {
-        this.apiUUID = apiUUID;
+    public void setApiUUID(String apiUUID) {
+        this.apiUUID = apiUUID;
+        warmedUp = false;
+        if (synapseConfiguration != null) {
+            SchemaWarmUp.schedule(this);
+        }
+    }
+
+    public String getStreamingValidation() {
+        return String.valueOf(streamingValidation);
+    }
+
+    /**
+     * Enable validating the request payload straight from the relay buffer instead of building the message.
+     *
+     * @param streamingValidation true to enable the streaming validation
+     */
+    public void setStreamingValidation(String streamingValidation) {
+        this.streamingValidation = Boolean.parseBoolean(streamingValidation);
+    }
+
+    public String getValidationMode() {
+        return validationMode;
+    }
+
+    /**
+     * Set how many schema violations are reported in the threat description: failFast reports the first
+     * violation, collectAll reports every violation and collect&lt;N&gt;, e.g. collect10, reports the first N.
+     * The description is bounded in length in every mode.
+     *
+     * @param validationMode failFast, collectAll or collect&lt;N&gt;
+     */
+    public void setValidationMode(String validationMode) {
+        int violations = -1;
+        if (SchemaValidatorConstant.VALIDATION_MODE_FAIL_FAST.equals(validationMode)) {
+            violations = 1;
+        } else if (SchemaValidatorConstant.VALIDATION_MODE_COLLECT_ALL.equals(validationMode)) {
+            violations = 0;
+        } else if (validationMode != null &&
+                validationMode.startsWith(SchemaValidatorConstant.VALIDATION_MODE_COLLECT)) {
+            try {
+                violations = Integer.parseInt(validationMode.substring(
+                        SchemaValidatorConstant.VALIDATION_MODE_COLLECT.length()));
+            } catch (NumberFormatException e) {
+                violations = -1;
+            }
+        }
+        if (violations < 0 || (violations == 0 &&
+                !SchemaValidatorConstant.VALIDATION_MODE_COLLECT_ALL.equals(validationMode))) {
+            logger.warn("Invalid validation mode " + validationMode + ", the validation mode is not changed");
+            return;
+        }
+        this.maxViolations = violations;
+        this.validationMode = validationMode;
+    }
+
+    public String getResponseValidation() {
+        return asyncResponseValidation ? SchemaValidatorConstant.RESPONSE_VALIDATION_ASYNC :
+                SchemaValidatorConstant.RESPONSE_VALIDATION_SYNC;
+    }
+
+    /**
+     * Set how the responses are validated. In the sync mode an invalid response is replaced with a fault. In the
+     * async mode the response is passed through to the client straight away and a sample of the responses is
+     * validated by a background executor; violations are only reported through the metrics and the log.
+     *
+     * @param responseValidation sync or async
+     */
+    public void setResponseValidation(String responseValidation) {
+        if (SchemaValidatorConstant.RESPONSE_VALIDATION_ASYNC.equals(responseValidation)) {
+            asyncResponseValidation = true;
+        } else if (SchemaValidatorConstant.RESPONSE_VALIDATION_SYNC.equals(responseValidation)) {
+            asyncResponseValidation = false;
+        } else {
+            logger.warn("Invalid response validation mode " + responseValidation +
+                    ", the response validation mode is not changed");
+        }
+    }
+
+    public String getValidationEngine() {
+        return validationEngine;
+    }
+
+    /**
+     * Set the engine which validates the payloads of the API, by the name it is registered with in the
+     * ValidationEngineRegistry. The built-in engines are everit and compiled, which validates the payload straight
+     * from the JSON token stream. Schemas the engine cannot compile are validated by everit, and so is every schema
+     * while an engine of another bundle is not registered.
+     *
+     * @param validationEngine Name of the validation engine
+     */
+    public void setValidationEngine(String validationEngine) {
+        if (validationEngine == null || validationEngine.isEmpty()) {
+            logger.warn("Empty validation engine, the validation engine is not changed");
+            return;
+        }
+        if (ValidationEngineRegistry.getEngine(validationEngine) == null) {
+            logger.warn("Validation engine " + validationEngine + " is not registered, everit validates the " +
+                    "messages until it is registered");
+        }
+        this.validationEngine = validationEngine;
+    }
+
+    public String getResponseSamplingRate() {
+        return String.valueOf(responseSamplingRate);
+    }
+
+    /**
+     * Set the fraction of the responses which are validated in the async response validation mode.
+     *
+     * @param responseSamplingRate Sampling rate between 0 and 1
+     */
+    public void setResponseSamplingRate(String responseSamplingRate) {
+        try {
+            double rate = Double.parseDouble(responseSamplingRate);
+            if (rate >= 0 && rate <= 1) {
+                this.responseSamplingRate = rate;
+                return;
+            }
+        } catch (NumberFormatException e) {
+            // Logged below.
+        }
+        logger.warn("Invalid response sampling rate " + responseSamplingRate + ", the sampling rate is not changed");
+    }
+
+    public String getShadowEngine() {
+        return shadowEngine;
+    }
+
+    /**
+     * Set the candidate engine which validates a sample of the JSON payloads of the API in the shadow of the
+     * validation engine, by the name it is registered with in the ValidationEngineRegistry. The shadow validations
+     * run on the asynchronous validation executor and only record how often the candidate disagrees with the
+     * validation engine and how long it takes; the messages are handled by the verdict of the validation engine alone.
+     *
+     * @param shadowEngine Name of the candidate engine, or empty to disable the shadow validation
+     */
+    public void setShadowEngine(String shadowEngine) {
+        if (shadowEngine == null || shadowEngine.isEmpty()) {
+            this.shadowEngine = null;
+            return;
+        }
+        if (ValidationEngineRegistry.getEngine(shadowEngine) == null) {
+            logger.warn("Validation engine " + shadowEngine + " is not registered, the payloads are not shadowed " +
+                    "until it is registered");
+        }
+        this.shadowEngine = shadowEngine;
+    }
+
+    public String getShadowSamplingRate() {
+        return String.valueOf(shadowSamplingRate);
+    }
+
+    /**
+     * Set the fraction of the validated payloads which are also validated by the shadow engine.
+     *
+     * @param shadowSamplingRate Sampling rate between 0 and 1
+     */
+    public void setShadowSamplingRate(String shadowSamplingRate) {
+        try {
+            double rate = Double.parseDouble(shadowSamplingRate);
+            if (rate >= 0 && rate <= 1) {
+                this.shadowSamplingRate = rate;
+                return;
+            }
+        } catch (NumberFormatException e) {
+            // Logged below.
+        }
+        logger.warn("Invalid shadow sampling rate " + shadowSamplingRate + ", the sampling rate is not changed");
+    }
+
+    public String getParallelValidationThreshold() {
+        return String.valueOf(parallelValidationThreshold);
+    }
+
+    /**
+     * Set the number of items from which the items of a top-level array, or of an array property of the top-level
+     * object, are split into chunks which are validated in parallel. Smaller payloads, and all the payloads while
+     * the parallel validation pool is saturated, are validated on the mediation thread.
+     *
+     * @param parallelValidationThreshold Number of items, or 0 to disable the parallel validation
+     */
+    public void setParallelValidationThreshold(String parallelValidationThreshold) {
+        try {
+            int threshold = Integer.parseInt(parallelValidationThreshold.trim());
+            if (threshold >= 0) {
+                this.parallelValidationThreshold = threshold;
+                return;
+            }
+        } catch (NumberFormatException e) {
+            // Logged below.
+        }
+        logger.warn("Invalid parallel validation threshold " + parallelValidationThreshold +
+                ", the threshold is not changed");
+    }
+
+    public String getParameterValidation() {
+        return String.valueOf(parameterValidation);
+    }
+
+    /**
+     * Enable validating the path, query and header parameters of the requests against the parameters of the
+     * operation in the swagger. The parameters of every request are validated, including GET requests and requests
+     * without a body.
+     *
+     * @param parameterValidation true to enable the parameter validation
+     */
+    public void setParameterValidation(String parameterValidation) {
+        this.parameterValidation = Boolean.parseBoolean(parameterValidation);
+    }
+
+    public String getRecordValidation() {
+        return String.valueOf(recordValidation);
+    }
+
+    /**
+     * Enable validating request bodies streamed as newline delimited JSON or as a JSON text sequence record by
+     * record against the items schema of the request body. The body is held back until all its records are
+     * validated, and is relayed as the built message, hence the record media types have to be mapped to a relay
+     * message builder and formatter, such as the BinaryRelayBuilder and the ExpandingMessageFormatter, in the
+     * axis2.xml of the gateway.
+     *
+     * @param recordValidation true to enable the record validation
+     */
+    public void setRecordValidation(String recordValidation) {
+        this.recordValidation = Boolean.parseBoolean(recordValidation);
+    }
+
+    public String getMaxRecordBytes() {
+        return String.valueOf(maxRecordBytes);
+    }
+
+    /**
+     * Set the maximum size of a record of a streamed request body. A larger record is rejected, which bounds the
+     * memory used to validate a record.
+     *
+     * @param maxRecordBytes Size in bytes
+     */
+    public void setMaxRecordBytes(String maxRecordBytes) {
+        long limit = parseLimit(maxRecordBytes, "record size", Integer.MAX_VALUE);
+        if (limit > 0) {
+            this.maxRecordBytes = (int) limit;
+        }
+    }
+
+    public String getXmlValidation() {
+        return String.valueOf(xmlValidation);
+    }
+
+    /**
+     * Enable validating XML request and response bodies against the swagger schema with a StAX parser, instead of
+     * leaving XML requests unvalidated and converting XML responses to JSON.
+     *
+     * @param xmlValidation true to enable the XML validation
+     */
+    public void setXmlValidation(String xmlValidation) {
+        this.xmlValidation = Boolean.parseBoolean(xmlValidation);
+    }
+
+    public String getCompressedValidation() {
+        return String.valueOf(compressedValidation);
+    }
+
+    /**
+     * Enable validating gzip and deflate compressed request payloads while they are inflated, instead of building
+     * the inflated message. The compressed payload is relayed to the backend unchanged.
+     *
+     * @param compressedValidation true to enable the compressed payload validation
+     */
+    public void setCompressedValidation(String compressedValidation) {
+        this.compressedValidation = Boolean.parseBoolean(compressedValidation);
+    }
+
+    public String getMaxInflatedBytes() {
+        return String.valueOf(maxInflatedBytes);
+    }
+
+    /**
+     * Set the maximum inflated size of the compressed request payloads. A payload which inflates to more than the
+     * limit is rejected as soon as the limit is reached, which guards against compression bombs.
+     *
+     * @param maxInflatedBytes Size in bytes
+     */
+    public void setMaxInflatedBytes(String maxInflatedBytes) {
+        long limit = parseLimit(maxInflatedBytes, "inflated size", Long.MAX_VALUE);
+        if (limit > 0) {
+            this.maxInflatedBytes = limit;
+        }
+    }
+
+    public String getMaxPayloadBytes() {
+        return String.valueOf(payloadLimits.getMaxBytes());
+    }
+
+    /**
+     * Set the maximum size of the request payloads. Requests with a larger Content-Length are rejected without
+     * reading the body, and the body of other requests is read only up to the limit.
+     *
+     * @param maxPayloadBytes Size in bytes, or 0 for no limit
+     */
+    public void setMaxPayloadBytes(String maxPayloadBytes) {
+        long limit = parseLimit(maxPayloadBytes, "payload size", Long.MAX_VALUE);
+        if (limit >= 0) {
+            payloadLimits = payloadLimits.withMaxBytes(limit);
+        }
+    }
+
+    public String getMaxPayloadDepth() {
+        return String.valueOf(payloadLimits.getMaxDepth());
+    }
+
+    /**
+     * Set the maximum nesting depth of objects and arrays in the request payloads.
+     *
+     * @param maxPayloadDepth Nesting depth, or 0 for no limit
+     */
+    public void setMaxPayloadDepth(String maxPayloadDepth) {
+        long limit = parseLimit(maxPayloadDepth, "payload depth", Integer.MAX_VALUE);
+        if (limit >= 0) {
+            payloadLimits = payloadLimits.withMaxDepth((int) limit);
+        }
+    }
+
+    public String getMaxArrayLength() {
+        return String.valueOf(payloadLimits.getMaxArrayLength());
+    }
+
+    /**
+     * Set the maximum number of items of every array in the request payloads.
+     *
+     * @param maxArrayLength Number of items, or 0 for no limit
+     */
+    public void setMaxArrayLength(String maxArrayLength) {
+        long limit = parseLimit(maxArrayLength, "array length", Integer.MAX_VALUE);
+        if (limit >= 0) {
+            payloadLimits = payloadLimits.withMaxArrayLength((int) limit);
+        }
+    }
+
+    public String getMaxStringLength() {
+        return String.valueOf(payloadLimits.getMaxStringLength());
+    }
+
+    /**
+     * Set the maximum length of the string values and the property names in the request payloads.
+     *
+     * @param maxStringLength Number of characters, or 0 for no limit
+     */
+    public void setMaxStringLength(String maxStringLength) {
+        long limit = parseLimit(maxStringLength, "string length", Integer.MAX_VALUE);
+        if (limit >= 0) {
+            payloadLimits = payloadLimits.withMaxStringLength((int) limit);
+        }
+    }
+
+    public String getMaxPropertyCount() {
+        return String.valueOf(payloadLimits.getMaxPropertyCount());
+    }
+
+    /**
+     * Set the maximum number of properties of every object in the request payloads.
+     *
+     * @param maxPropertyCount Number of properties, or 0 for no limit
+     */
+    public void setMaxPropertyCount(String maxPropertyCount) {
+        long limit = parseLimit(maxPropertyCount, "property count", Integer.MAX_VALUE);
+        if (limit >= 0) {
+            payloadLimits = payloadLimits.withMaxPropertyCount((int) limit);
+        }
+    }
+
+    private static long parseLimit(String value, String limitName, long maxLimit) {
+        try {
+            long limit = Long.parseLong(value.trim());
+            if (limit >= 0 && limit <= maxLimit) {
+                return limit;
+            }
+        } catch (NumberFormatException e) {
+            // Logged below.
+        }
+        logger.warn("Invalid maximum " + limitName + " " + value + ", the limit is not changed");
+        return -1;
+    }
+
+    /**
+     * Initialize the handler with the API. The schemas of the API are precompiled in the background.
+     *
+     * @param synapseEnvironment Synapse environment of the API
+     */
+    @Override
+    public void init(SynapseEnvironment synapseEnvironment) {
+        synapseConfiguration = synapseEnvironment.getSynapseConfiguration();
+        SchemaWarmUp.schedule(this);
+    }
+
+    @Override
+    public void destroy() {
+        synapseConfiguration = null;
+        warmedUp = false;
+    }
+
+    /**
+     * Check whether the schemas of the API have been precompiled.
+     *
+     * @return true once the warm-up of the handler has finished
+     */
+    public boolean isWarmedUp() {
+        return warmedUp;
+    }
+
+    /**
+     * Index the swagger of the API and compile the request and response schemas of every operation into the
+     * schema cache, using the same cache keys as the messages of the operations. The index is loaded from its
+     * artifact if there is one.
+     *
+     * @return Number of compiled schemas
+     */
+    int warmUp() {
+        OperationIndex index = loadOperationIndex(synapseConfiguration);
+        if (index == null) {
+            return 0;
+        }
+        int compiled = 0;
+        for (Map.Entry<String, String> operation : index.getOperations()) {
+            String resource = operation.getKey();
+            String method = operation.getValue().toUpperCase(Locale.ENGLISH);
+            for (String mediaType : index.getRequestMediaTypes(resource, method)) {
+                compiled += warmUp(new SchemaCache.Key(index.getApiUUID(), resource, method, false, null, mediaType,
+                        index.getGeneration(), validationEngine), index.getRequestSchema(resource, method, mediaType));
+            }
+            if (recordValidation) {
+                compiled += warmUp(new SchemaCache.Key(index.getApiUUID(), resource, method, false,
+                        SchemaValidatorConstant.RECORD_SCHEMA, null, index.getGeneration(), validationEngine),
+                        index.getRequestRecordSchema(resource, method));
+            }
+            for (String statusCode : index.getResponseStatusCodes(resource, method)) {
+                // The default response is cached under the status codes of the actual responses.
+                if (SchemaValidatorConstant.DEFAULT_RESPONSE.equals(statusCode)) {
+                    continue;
+                }
+                for (String mediaType : index.getResponseMediaTypes(resource, method, statusCode)) {
+                    compiled += warmUp(new SchemaCache.Key(index.getApiUUID(), resource, method, true, statusCode,
+                            mediaType, index.getGeneration(), validationEngine),
+                            index.getResponseSchema(resource, method, statusCode, mediaType));
+                }
+            }
+        }
+        warmedUp = true;
+        return compiled;
+    }
+
+    private int warmUp(SchemaCache.Key cacheKey, JSONObject jsonSchema) {
+        if (jsonSchema == null || schemaCache.contains(cacheKey)) {
+            return 0;
+        }
+        ValidationSchema schema = ValidationEngineRegistry.compile(cacheKey.getEngine(), jsonSchema);
+        schemaCache.put(cacheKey, schema, SchemaStore.estimateSize(jsonSchema));
+        return schema != null ? 1 : 0;
+    }
+
+    /**
+     * Handle the API request message validation.
+     *
+     * @param messageContext Context of the message to be validated
+     * @return Continue true the handler chain
+     */
+    @Override
+    public boolean handleRequest(MessageContext messageContext) {
+        logger.debug("Validating the API request Body content..");
+        org.apache.axis2.context.MessageContext axis2MC = ((Axis2MessageContext)
+                messageContext).getAxis2MessageContext();
+        if (parameterValidation && !validateParameters(messageContext)) {
+            return true;
+        }
+
+        String contentType;
+        Object objContentType = axis2MC.getProperty(SchemaValidatorConstant.REST_CONTENT_TYPE);
+        if (objContentType == null) {
+            return true;
+        }
+        contentType = objContentType.toString();
+        if (logger.isDebugEnabled()) {
+            logger.debug("Content type of the request message :" + contentType);
+        }
+        try {
+            String requestMethod = messageContext.getProperty(SchemaValidatorConstant.
+                    ELECTED_REQUEST_METHOD).toString();
+            if (APIConstants.SupportedHTTPVerbs.GET.name().equals(requestMethod)) {
+                return true;
+            }
+            if (recordValidation && isRecordStream(contentType)) {
+                if (validateRecordStream(messageContext,
+                        MediaTypeTable.is(contentType, SchemaValidatorConstant.APPLICATION_JSON_SEQ))) {
+                    buildValidatedMessage(messageContext);
+                }
+                return true;
+            }
+            if (xmlValidation && isXml(contentType)) {
+                OperationIndex index = getOperationIndex(messageContext.getConfiguration());
+                if (index != null && hasSchema(messageContext, index)) {
+                    validateXmlPayload(messageContext, index, getResourceMetrics(messageContext, index));
+                    buildValidatedMessage(messageContext);
+                }
+                return true;
+            }
+            if (!MediaTypeTable.isJson(contentType)) {
+                return true;
+            }
+            OperationIndex index = getOperationIndex(messageContext.getConfiguration());
+            // The body is left untouched in pass-through mode if the operation does not define a schema.
+            if (index == null || !hasSchema(messageContext, index)) {
+                return true;
+            }
+            ResourceMetrics metrics = getResourceMetrics(messageContext, index);
+            PayloadLimits limits = payloadLimits;
+            String encoding = getContentEncoding(axis2MC);
+            if (compressedValidation && encoding != null && InflatingInputStream.isSupported(encoding) &&
+                    validateCompressedRequest(messageContext, index, encoding, limits, metrics)) {
+                buildValidatedMessage(messageContext);
+                return true;
+            }
+            if ((streamingValidation || limits.isEnabled()) &&
+                    validateRequestStream(messageContext, index, limits, metrics)) {
+                buildValidatedMessage(messageContext);
+                return true;
+            }
+            long buildStart = System.nanoTime();
+            RelayUtils.buildMessage(axis2MC);
+            logger.debug("Successfully built the request message");
+            byte[] payload = getMessageContent(messageContext, metrics);
+            metrics.recordBuild(System.nanoTime() - buildStart);
+            if (payload != null) {
+                validatePayload(messageContext, index, payload, metrics);
+            }
+        } catch (IOException e) {
+            logger.error("Error occurred while building the API request", e);
+        } catch (XMLStreamException e) {
+            logger.error("Error occurred while building the API request", e);
+        }
+        return true;
+    }
+
+    /**
+     * Validate the response message.
+     *
+     * @param messageContext Context of the API response
+     * @return Continue true the handler chain
+     */
+    @Override
+    public boolean handleResponse(MessageContext messageContext) {
+        logger.debug("Validating the API response  Body content..");
+        org.apache.axis2.context.MessageContext axis2MC = ((Axis2MessageContext) messageContext).
+                getAxis2MessageContext();
+        if (asyncResponseValidation) {
+            validateResponseAsync(messageContext);
+            return true;
+        }
+        Object objectResponse = axis2MC.getProperty(SchemaValidatorConstant.REST_CONTENT_TYPE);
+        if (objectResponse == null) {
+            return true;
+        }
+        OperationIndex index = getOperationIndex(messageContext.getConfiguration());
+        // The body is left untouched in pass-through mode if the status code of the operation has no schema.
+        if (index == null || !hasSchema(messageContext, index)) {
+            return true;
+        }
+        ResourceMetrics metrics = getResourceMetrics(messageContext, index);
+        if (xmlValidation && isXml(objectResponse.toString())) {
+            validateXmlPayload(messageContext, index, metrics);
+            try {
+                buildValidatedMessage(messageContext);
+            } catch (IOException e) {
+                logger.error("Error occurred while building the API response", e);
+            } catch (XMLStreamException e) {
+                logger.error("Error occurred while building the API response", e);
+            }
+            return true;
+        }
+        long buildStart = System.nanoTime();
+        try {
+            RelayUtils.buildMessage(axis2MC);
+            logger.debug("Successfully built the response message");
+        } catch (IOException e) {
+            logger.error("Error occurred while building the API response", e);
+            return true;
+        } catch (XMLStreamException e) {
+            logger.error("Error occurred while validating the API response", e);
+            return true;
+        }
+        byte[] payload = getMessageContent(messageContext, metrics);
+        metrics.recordBuild(System.nanoTime() - buildStart);
+        if (payload != null) {
+            validatePayload(messageContext, index, payload, metrics);
+        }
+        return true;
+    }
+
+    /**
+     * Hand a sample of the responses over to the asynchronous validation executor. The body is captured while the
+     * sender relays it from the built message, since the message builders only read the body once the message is
+     * written, and the validation is submitted once the whole body has been relayed. Hence the body is never read
+     * on the mediation thread, and only the compiled schema and a copy of the body are passed to the executor.
+     *
+     * @param messageContext Context of the API response
+     */
+    private void validateResponseAsync(MessageContext messageContext) {
+        double samplingRate = responseSamplingRate;
+        if (samplingRate < 1 && ThreadLocalRandom.current().nextDouble() >= samplingRate) {
+            return;
+        }
+        org.apache.axis2.context.MessageContext axis2MC = ((Axis2MessageContext) messageContext).
+                getAxis2MessageContext();
+        if (axis2MC.getProperty(SchemaValidatorConstant.REST_CONTENT_TYPE) == null) {
+            return;
+        }
+        OperationIndex index = getOperationIndex(messageContext.getConfiguration());
+        if (index == null || !hasSchema(messageContext, index)) {
+            return;
+        }
+        SchemaCache.Key cacheKey = getSchemaKey(messageContext, index);
+        if (cacheKey == null) {
+            return;
+        }
+        ResourceMetrics metrics = getResourceMetrics(messageContext, index);
+        long lookupStart = System.nanoTime();
+        ValidationSchema schema = getSchema(cacheKey, index);
+        metrics.recordSchemaLookup(System.nanoTime() - lookupStart);
+        if (schema == null) {
+            return;
+        }
+        String operation = index.getApiUUID() + " " + messageContext.getProperty(
+                SchemaValidatorConstant.API_ELECTED_RESOURCE);
+        InputStream inputStream = JsonPayloadReader.getRelayStream(axis2MC);
+        if (inputStream != null) {
+            JsonPayloadReader.setRelayStream(axis2MC, new ResponseCapture(inputStream, schema, metrics,
+                    maxViolations, operation));
+            try {
+                RelayUtils.buildMessage(axis2MC);
+            } catch (IOException e) {
+                logger.error("Error occurred while building the API response", e);
+            } catch (XMLStreamException e) {
+                logger.error("Error occurred while building the API response", e);
+            }
+            return;
+        }
+        // The response has already been built by another handler.
+        long buildStart = System.nanoTime();
+        byte[] payload = getMessageContent(messageContext, metrics);
+        metrics.recordBuild(System.nanoTime() - buildStart);
+        if (payload != null && !AsyncValidationExecutor.submit(new ResponseValidation(payload, schema, metrics,
+                maxViolations, operation))) {
+            metrics.recordDroppedValidation();
+        }
+    }
+
+    /**
+     * Get the schema cache shared by all the handler instances.
+     *
+     * @return Schema cache
+     */
+    static SchemaCache<ValidationSchema> getSchemaCache() {
+        return schemaCache;
+    }
+
+    /**
+     * Get the metrics of the elected resource of the message.
+     *
+     * @param messageContext Message context
+     * @param index          Operation index of the API swagger
+     * @return Metrics of the resource
+     */
+    private static ResourceMetrics getResourceMetrics(MessageContext messageContext, OperationIndex index) {
+        Object electedResource = messageContext.getProperty(SchemaValidatorConstant.API_ELECTED_RESOURCE);
+        return SchemaValidatorMetrics.getInstance().getResourceMetrics(index.getApiUUID(),
+                electedResource != null ? electedResource.toString() : SchemaValidatorConstant.EMPTY);
+    }
+
+    /**
+     * Get the operation index of the API swagger. The index is rebuilt only if the swagger local entry
+     * has changed since the index was built, and only one of the concurrent messages rebuilds it. The index is
+     * rebuilt in memory, since the operation index artifact is only read and written by the warm-up.
+     *
+     * @param synapseConfiguration Synapse configuration which holds the swagger local entry
+     * @return Operation index or null if there is no swagger for the API
+     */
+    private OperationIndex getOperationIndex(SynapseConfiguration synapseConfiguration) {
+        Entry localEntry = getSwaggerEntry(synapseConfiguration);
+        if (localEntry == null) {
+            return null;
+        }
+        OperationIndex index = operationIndex;
+        if (index != null && index.isBuiltFrom(localEntry)) {
+            return index;
+        }
+        synchronized (indexLock) {
+            index = operationIndex;
+            if (index == null || !index.isBuiltFrom(localEntry)) {
+                try {
+                    index = OperationIndex.build(localEntry);
+                } catch (APIManagementException e) {
+                    logger.error("Error occurred while indexing the swagger of the API " + apiUUID, e);
+                    return null;
+                }
+                operationIndex = index;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Get the operation index of the API swagger for the warm-up. An index which is not built from the current
+     * swagger is loaded from the operation index artifact, or built and stored in the artifact, outside the index
+     * lock, so the messages are never held back by the artifact I/O. The loaded index is only kept if no message
+     * has rebuilt the index in the meantime.
+     *
+     * @param synapseConfiguration Synapse configuration which holds the swagger local entry
+     * @return Operation index or null if there is no swagger for the API
+     */
+    private OperationIndex loadOperationIndex(SynapseConfiguration synapseConfiguration) {
+        Entry localEntry = getSwaggerEntry(synapseConfiguration);
+        if (localEntry == null) {
+            return null;
+        }
+        OperationIndex index = operationIndex;
+        if (index != null && index.isBuiltFrom(localEntry)) {
+            return index;
+        }
+        try {
+            index = OperationIndex.load(localEntry);
+        } catch (APIManagementException e) {
+            logger.error("Error occurred while indexing the swagger of the API " + apiUUID, e);
+            return null;
+        }
+        synchronized (indexLock) {
+            OperationIndex current = operationIndex;
+            if (current != null && current.isBuiltFrom(localEntry)) {
+                return current;
+            }
+            operationIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * Get the swagger local entry of the API.
+     *
+     * @param synapseConfiguration Synapse configuration which holds the swagger local entry
+     * @return Swagger local entry or null if there is no swagger for the API
+     */
+    private Entry getSwaggerEntry(SynapseConfiguration synapseConfiguration) {
+        String uuid = apiUUID;
+        if (uuid == null || synapseConfiguration == null) {
+            return null;
+        }
+        Entry localEntry = (Entry) synapseConfiguration.getLocalRegistry().get(uuid);
+        return localEntry != null && localEntry.getValue() != null ? localEntry : null;
+    }
+
+    /**
+     * Check the request payload against the payload limits and, in the streaming validation mode, validate it,
+     * reading the payload straight from the relay buffer without building the message. A payload which exceeds
+     * the limits is rejected before it is built.
+     *
+     * @param messageContext Message context of the request
+     * @param index          Operation index of the API swagger
+     * @param limits         Payload limits of the API
+     * @param metrics        Metrics of the elected resource
+     * @return false if the message has to be built and validated, true if it is rejected or validated already
+     * @throws IOException Throws if the payload cannot be read from the relay buffer
+     */
+    private boolean validateRequestStream(MessageContext messageContext, OperationIndex index, PayloadLimits limits,
+                                          ResourceMetrics metrics) throws IOException {
+        org.apache.axis2.context.MessageContext axis2MC = ((Axis2MessageContext)
+                messageContext).getAxis2MessageContext();
+        String violation = limits.checkSize(getContentLength(axis2MC));
+        if (violation != null) {
+            rejectPayload(messageContext, metrics, violation);
+            return true;
+        }
+        long buildStart = System.nanoTime();
+        byte[] payload = JsonPayloadReader.readRelayBuffer(axis2MC, limits.getMaxBytes());
+        if (payload == null) {
+            return false;
+        }
+        long readTime = System.nanoTime() - buildStart;
+        try {
+            violation = limits.check(payload);
+        } catch (JsonProcessingException e) {
+            metrics.recordMalformedPayload();
+            reportViolations(messageContext, metrics, "Malformed JSON payload", e);
+            return true;
+        }
+        if (violation != null) {
+            rejectPayload(messageContext, metrics, violation);
+            return true;
+        }
+        if (!streamingValidation) {
+            return false;
+        }
+        metrics.recordBuild(readTime);
+        metrics.recordPayloadSize(payload.length);
+        validatePayload(messageContext, index, payload, metrics);
+        return true;
+    }
+
+    /**
+     * Validate a request body streamed as newline delimited JSON or as a JSON text sequence. The body is read from
+     * the relay buffer and validated record by record before the message is built, hence no record is relayed to
+     * the backend before all the records are validated, and a rejected record is reported as a threat. Only the
+     * record being validated is parsed, the size of the body is bounded by the payload size limit.
+     *
+     * @param messageContext Message context of the request
+     * @param sequence       true for a JSON text sequence, false for newline delimited JSON
+     * @return true if the body has been read from the relay buffer
+     * @throws IOException Throws if the body cannot be read from the relay buffer
+     */
+    private boolean validateRecordStream(MessageContext messageContext, boolean sequence) throws IOException {
+        OperationIndex index = getOperationIndex(messageContext.getConfiguration());
+        String resource = getElectedResource(messageContext);
+        String httpMethod = getHttpMethod(messageContext);
+        if (index == null || resource == null || httpMethod == null ||
+                index.getRequestRecordSchema(resource, httpMethod) == null) {
+            return false;
+        }
+        ResourceMetrics metrics = getResourceMetrics(messageContext, index);
+        org.apache.axis2.context.MessageContext axis2MC = ((Axis2MessageContext)
+                messageContext).getAxis2MessageContext();
+        PayloadLimits limits = payloadLimits;
+        String violation = limits.checkSize(getContentLength(axis2MC));
+        if (violation != null) {
+            rejectPayload(messageContext, metrics, violation);
+            return false;
+        }
+        SchemaCache.Key cacheKey = new SchemaCache.Key(index.getApiUUID(), resource, httpMethod, false,
+                SchemaValidatorConstant.RECORD_SCHEMA, null, index.getGeneration(), validationEngine);
+        long lookupStart = System.nanoTime();
+        ValidationSchema schema = getSchema(cacheKey, index);
+        metrics.recordSchemaLookup(System.nanoTime() - lookupStart);
+        if (schema == null) {
+            return false;
+        }
+        long readStart = System.nanoTime();
+        byte[] payload = JsonPayloadReader.readRelayBuffer(axis2MC, limits.getMaxBytes());
+        if (payload == null) {
+            logger.debug("The request body is not available in the relay buffer, the records are not validated");
+            return false;
+        }
+        violation = limits.checkSize(payload.length);
+        if (violation != null) {
+            rejectPayload(messageContext, metrics, violation);
+            return true;
+        }
+        metrics.recordBuild(System.nanoTime() - readStart);
+        RecordValidatingInputStream records = new RecordValidatingInputStream(new ByteArrayInputStream(payload),
+                schema, metrics, maxViolations, maxRecordBytes, sequence);
+        try {
+            byte[] buffer = new byte[8192];
+            while (records.read(buffer) != -1) {
+                // The records are validated as they are read.
+            }
+        } catch (RecordValidatingInputStream.RecordViolationException e) {
+            // The violation has been logged and counted by the validating stream.
+            handleThreat(messageContext, APIMgtGatewayConstants.HTTP_SC_CODE, e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * Validate an XML request/response body with the StAX parser of the XML schema. The body is read from the relay
+     * buffer, or from the Axiom tree if the message has been built already, and is never converted to JSON. The size
+     * of a request body read from the relay buffer is checked against the payload size limit.
+     *
+     * @param messageContext Message context
+     * @param index          Operation index of the API swagger
+     * @param metrics        Metrics of the elected resource
+     */
+    private void validateXmlPayload(MessageContext messageContext, OperationIndex index, ResourceMetrics metrics) {
+        SchemaCache.Key cacheKey = getSchemaKey(messageContext, index);
+        if (cacheKey == null) {
+            return;
+        }
+        long lookupStart = System.nanoTime();
+        XmlSchema schema = xmlSchemaCache.get(cacheKey);
+        if (schema == null) {
+            JSONObject jsonSchema = getJsonSchema(cacheKey, index);
+            if (jsonSchema == null) {
+                return;
+            }
+            schema = XmlSchema.compile(jsonSchema);
+            xmlSchemaCache.put(cacheKey, schema, SchemaStore.estimateSize(jsonSchema));
+        }
+        metrics.recordSchemaLookup(System.nanoTime() - lookupStart);
+        org.apache.axis2.context.MessageContext axis2MC = ((Axis2MessageContext)
+                messageContext).getAxis2MessageContext();
+        boolean response = messageContext.isResponse();
+        PayloadLimits limits = response ? PayloadLimits.NONE : payloadLimits;
+        try {
+            String violation = limits.checkSize(getContentLength(axis2MC));
+            if (violation != null) {
+                rejectPayload(messageContext, metrics, violation);
+                return;
+            }
+            long readStart = System.nanoTime();
+            byte[] payload = JsonPayloadReader.readRelayBuffer(axis2MC, limits.getMaxBytes());
+            ValidationResult result;
+            if (payload != null) {
+                violation = limits.checkSize(payload.length);
+                if (violation != null) {
+                    rejectPayload(messageContext, metrics, violation);
+                    return;
+                }
+                metrics.recordBuild(System.nanoTime() - readStart);
+                metrics.recordPayloadSize(payload.length);
+                long validateStart = System.nanoTime();
+                result = schema.validate(payload, maxViolations);
+                metrics.recordValidate(System.nanoTime() - validateStart);
+            } else {
+                OMElement element = messageContext.getEnvelope().getBody() != null ?
+                        messageContext.getEnvelope().getBody().getFirstElement() : null;
+                if (element == null) {
+                    return;
+                }
+                long validateStart = System.nanoTime();
+                result = schema.validate(element.getXMLStreamReader(), maxViolations);
+                metrics.recordValidate(System.nanoTime() - validateStart);
+            }
+            if (!result.isValid()) {
+                reportViolations(messageContext, metrics, describeViolations(result), null);
+            }
+        } catch (XMLStreamException e) {
+            metrics.recordMalformedPayload();
+            reportViolations(messageContext, metrics, "Malformed XML payload", e);
+        } catch (IOException e) {
+            logger.error("Error occurred while reading the XML payload", e);
+        }
+    }
+
+    /**
+     * Build the message over the body read from the relay buffer for the validation. The sender relays the body
+     * straight from the pass-through pipe unless the message has been built, and the pipe is drained once the body
+     * is read, hence a message whose body has been read is built unless it is rejected. The message is built from
+     * the read bytes and is not built again if it has been built already.
+     *
+     * @param messageContext Message context
+     * @throws IOException        Throws if the message cannot be built
+     * @throws XMLStreamException Throws if the message cannot be built
+     */
+    private static void buildValidatedMessage(MessageContext messageContext) throws IOException, XMLStreamException {
+        if (Boolean.TRUE.equals(messageContext.getProperty(APIMgtGatewayConstants.THREAT_FOUND))) {
+            return;
+        }
+        RelayUtils.buildMessage(((Axis2MessageContext) messageContext).getAxis2MessageContext());
     }
 
     /**
-     * Handle the API request message validation.
+     * Check whether a content type is an XML media type.
      *
-     * @param messageContext Context of the message to be validated
-     * @return Continue true the handler chain
+     * @param contentType Content type of the message
+     * @return true if the body is XML
      */
-    @Override
-    public boolean handleRequest(MessageContext messageContext) {
-        logger.debug("Validating the API request Body content..");
+    private static boolean isXml(String contentType) {
+        return MediaTypeTable.is(contentType, SchemaValidatorConstant.TEXT_XML) ||
+                MediaTypeTable.is(contentType, SchemaValidatorConstant.APPLICATION_XML) ||
+                MediaTypeTable.hasSuffix(contentType, SchemaValidatorConstant.XML_SUFFIX);
+    }
+
+    /**
+     * Check whether a content type is one of the media types of the record streams.
+     *
+     * @param contentType Content type of the message
+     * @return true if the body is streamed as records
+     */
+    private static boolean isRecordStream(String contentType) {
+        for (String recordMediaType : SchemaValidatorConstant.RECORD_STREAM_MEDIA_TYPES) {
+            if (MediaTypeTable.is(contentType, recordMediaType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Validate a gzip or deflate compressed request payload in a single pass while it is inflated. The compressed
+     * payload is read from the relay buffer and put back unchanged, hence it is relayed to the backend as it was
+     * received. The compressed size is checked against the payload size limit, and the inflated size against the
+     * maximum inflated size. The inflated payload is only held when the payload limits check its structure.
+     *
+     * @param messageContext Message context of the request
+     * @param index          Operation index of the API swagger
+     * @param encoding       Content-Encoding of the payload
+     * @param limits         Payload limits of the API
+     * @param metrics        Metrics of the elected resource
+     * @return false if the message has to be built and validated, true if it is rejected or validated already
+     * @throws IOException Throws if the payload cannot be read from the relay buffer
+     */
+    private boolean validateCompressedRequest(MessageContext messageContext, OperationIndex index, String encoding,
+                                              PayloadLimits limits, ResourceMetrics metrics) throws IOException {
         org.apache.axis2.context.MessageContext axis2MC = ((Axis2MessageContext)
                 messageContext).getAxis2MessageContext();
-        if (apiUUID != null) {
-            localEntryObj = (Entry) messageContext.getConfiguration().getLocalRegistry().get(apiUUID);
+        String violation = limits.checkSize(getContentLength(axis2MC));
+        if (violation != null) {
+            rejectPayload(messageContext, metrics, violation);
+            return true;
         }
-        if (localEntryObj != null) {
-            swagger = localEntryObj.getValue().toString();
+        long readStart = System.nanoTime();
+        byte[] compressed = JsonPayloadReader.readRelayBuffer(axis2MC, limits.getMaxBytes());
+        if (compressed == null) {
+            return false;
         }
-
-        String contentType;
-        Object objContentType = axis2MC.getProperty(SchemaValidatorConstant.REST_CONTENT_TYPE);
-        if (objContentType == null) {
+        violation = limits.checkSize(compressed.length);
+        if (violation != null) {
+            rejectPayload(messageContext, metrics, violation);
             return true;
         }
-        contentType = objContentType.toString();
-        if (logger.isDebugEnabled()) {
-            logger.debug("Content type of the request message :" + contentType);
+        metrics.recordBuild(System.nanoTime() - readStart);
+        SchemaCache.Key cacheKey = getSchemaKey(messageContext, index);
+        if (cacheKey == null) {
+            return true;
+        }
+        long lookupStart = System.nanoTime();
+        ValidationSchema schema = getSchema(cacheKey, index);
+        metrics.recordSchemaLookup(System.nanoTime() - lookupStart);
+        if (schema == null) {
+            return true;
         }
+        InflatingInputStream payload = null;
         try {
-            ObjectMapper objectMapper = new ObjectMapper();
-            rootNode = objectMapper.readTree(swagger.getBytes());
-            requestMethod = messageContext.getProperty(SchemaValidatorConstant.
-                    ELECTED_REQUEST_METHOD).toString();
-            if (!SchemaValidatorConstant.APPLICATION_JSON.equals(contentType)) {
-                return true;
+            payload = InflatingInputStream.create(compressed, encoding, maxInflatedBytes);
+            long validateStart = System.nanoTime();
+            ValidationResult result;
+            if (limits.isEnabled()) {
+                byte[] inflated = readFully(payload);
+                violation = limits.check(inflated);
+                if (violation != null) {
+                    rejectPayload(messageContext, metrics, violation);
+                    return true;
+                }
+                result = schema.validate(inflated, maxViolations);
+            } else {
+                result = schema.validate(payload, maxViolations);
             }
-            if (swagger  == null) {
-                return true;
+            metrics.recordValidate(System.nanoTime() - validateStart);
+            metrics.recordPayloadSize(payload.getInflatedBytes());
+            if (!result.isValid()) {
+                reportViolations(messageContext, metrics, describeViolations(result), null);
             }
-            RelayUtils.buildMessage(axis2MC);
-            logger.debug("Successfully built the request message");
-
-
-            JSONObject payloadObject = getMessageContent(messageContext);
-            if (!APIConstants.SupportedHTTPVerbs.GET.name().equals(requestMethod) &&
-                    payloadObject != null && !SchemaValidatorConstant.EMPTY_ARRAY.equals(payloadObject)) {
-                try {
-                    validateRequest(messageContext);
-                } catch (APIManagementException e) {
-                    logger.error("Error occurred while validating the API request", e);
-                }
+        } catch (InflatingInputStream.InflatedSizeException e) {
+            rejectPayload(messageContext, metrics, e.getMessage());
+        } catch (JsonProcessingException e) {
+            metrics.recordMalformedPayload();
+            reportViolations(messageContext, metrics, "Malformed JSON payload", e);
+        } catch (ZipException e) {
+            metrics.recordMalformedPayload();
+            reportViolations(messageContext, metrics, "Malformed " + encoding + " payload", e);
+        } catch (EOFException e) {
+            metrics.recordMalformedPayload();
+            reportViolations(messageContext, metrics, "Truncated " + encoding + " payload", e);
+        } finally {
+            if (payload != null) {
+                payload.close();
             }
-        } catch (IOException e) {
-            logger.error("Error occurred while building the API request", e);
-        } catch (XMLStreamException e) {
-            logger.error("Error occurred while building the API request", e);
         }
         return true;
     }
 
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int length;
+        while ((length = inputStream.read(buffer)) != -1) {
+            bytes.write(buffer, 0, length);
+        }
+        return bytes.toByteArray();
+    }
+
     /**
-     * Validate the response message.
+     * Get the Content-Encoding of the request.
      *
-     * @param messageContext Context of the API response
-     * @return Continue true the handler chain
+     * @param axis2MC Axis2 message context
+     * @return Content-Encoding in lower case or null if the payload is not encoded
      */
-    @Override
-    public boolean handleResponse(MessageContext messageContext) {
-        logger.debug("Validating the API response  Body content..");
-        org.apache.axis2.context.MessageContext axis2MC = ((Axis2MessageContext) messageContext).
-                getAxis2MessageContext();
-        try {
-            RelayUtils.buildMessage(axis2MC);
-            logger.info("Successfully built the response message");
+    private static String getContentEncoding(org.apache.axis2.context.MessageContext axis2MC) {
+        String encoding = ParameterValidator.getTransportHeaders(axis2MC).get(SchemaValidatorConstant.CONTENT_ENCODING);
+        return encoding != null ? encoding.trim().toLowerCase(Locale.ROOT) : null;
+    }
 
-        } catch (IOException e) {
-            logger.error("Error occurred while building the API response", e);
-        } catch (XMLStreamException e) {
-            logger.error("Error occurred while validating the API response", e);
+    /**
+     * Get the Content-Length of the request.
+     *
+     * @param axis2MC Axis2 message context
+     * @return Content-Length or -1 if it is not known
+     */
+    private static long getContentLength(org.apache.axis2.context.MessageContext axis2MC) {
+        String contentLength = ParameterValidator.getTransportHeaders(axis2MC).get(
+                SchemaValidatorConstant.CONTENT_LENGTH);
+        if (contentLength != null) {
+            try {
+                return Long.parseLong(contentLength.trim());
+            } catch (NumberFormatException e) {
+                return -1;
+            }
         }
-        Object objectResponse = axis2MC.getProperty(SchemaValidatorConstant.REST_CONTENT_TYPE);
-        if (objectResponse == null) {
+        return -1;
+    }
+
+    /**
+     * Validate the path, query and header parameters of a request. Invalid parameters are reported as a threat.
+     *
+     * @param messageContext Message context of the request
+     * @return false if the parameters are invalid
+     */
+    private boolean validateParameters(MessageContext messageContext) {
+        OperationIndex index = getOperationIndex(messageContext.getConfiguration());
+        if (index == null) {
             return true;
         }
-            try {
-                validateResponse(messageContext);
-            } catch (APIManagementException e) {
-                logger.error("Error occurred while validating the API response", e);
-            }
-        return true;
+        ParameterValidator validator = index.getParameterValidator(getElectedResource(messageContext),
+                getHttpMethod(messageContext));
+        if (validator == null) {
+            return true;
+        }
+        ResourceMetrics metrics = getResourceMetrics(messageContext, index);
+        long validateStart = System.nanoTime();
+        ValidationResult result = validator.validate(messageContext, maxViolations);
+        metrics.recordParameterValidate(System.nanoTime() - validateStart);
+        if (result.isValid()) {
+            return true;
+        }
+        metrics.recordViolation(false);
+        String description = "Parameter validation failed in the Request :" + describeViolations(result);
+        logViolation(description, null);
+        handleThreat(messageContext, APIMgtGatewayConstants.HTTP_SC_CODE, description);
+        return false;
     }
 
     /**
-     * Validate the Request/response content.
+     * Validate a raw JSON payload with the validation engine of the API.
      *
-     * @param payloadObject  Request/response payload
-     * @param schemaString   Schema which uses to validate request/response messages
      * @param messageContext Message context
+     * @param index          Operation index of the API swagger
+     * @param payload        Raw JSON payload of the message
+     * @param metrics        Metrics of the elected resource
      */
-    private void validateContent(JSONObject payloadObject, String schemaString, MessageContext messageContext) {
-        logger.debug("Validating JSON content against the schema");
-        JSONObject jsonSchema = new JSONObject(schemaString);
-        Schema schema = SchemaLoader.load(jsonSchema);
+    private void validatePayload(MessageContext messageContext, OperationIndex index, byte[] payload,
+                                 ResourceMetrics metrics) {
+        SchemaCache.Key cacheKey = getSchemaKey(messageContext, index);
+        if (cacheKey == null) {
+            return;
+        }
+        long lookupStart = System.nanoTime();
+        ValidationSchema schema = getSchema(cacheKey, index);
+        metrics.recordSchemaLookup(System.nanoTime() - lookupStart);
         if (schema == null) {
             return;
         }
+        logger.debug("Validating JSON content against the schema");
+        long validateStart = System.nanoTime();
         try {
-            schema.validate(payloadObject);
-        } catch (ValidationException e) {
-            List<String> errorMessages =  e.getAllMessages();
-            String Finmessage = "";
-            for (String message: errorMessages) {
-                Finmessage += message + ", ";
-
+            int threshold = parallelValidationThreshold;
+            ValidationResult result = threshold > 0 ?
+                    validateParallel(cacheKey, index, payload, threshold) : null;
+            if (result == null) {
+                result = schema.validate(payload, maxViolations);
             }
-            if (messageContext.isResponse()) {
-
-                logger.error("Schema validation failed in the Response :" + Finmessage, e);
-                handleThreat(messageContext, "500", "Schema validation failed in the Response :" + Finmessage);
-            } else {
-                logger.error("Schema validation failed in the Request :" + Finmessage, e);
-                handleThreat(messageContext, APIMgtGatewayConstants.HTTP_SC_CODE,"Schema validation failed in the Request :" + Finmessage);
+            long validateTime = System.nanoTime() - validateStart;
+            metrics.recordValidate(validateTime);
+            validateShadow(cacheKey, index, payload, result, validateTime, metrics);
+            if (!result.isValid()) {
+                reportViolations(messageContext, metrics, describeViolations(result), null);
             }
-
-
+        } catch (JsonProcessingException e) {
+            validateShadow(cacheKey, index, payload, null, System.nanoTime() - validateStart, metrics);
+            metrics.recordMalformedPayload();
+            reportViolations(messageContext, metrics, "Malformed JSON payload", e);
+        } catch (IOException e) {
+            logger.error("Error occurred while reading the JSON payload", e);
         }
     }
 
     /**
-     * Validate the API Request JSON Body.
+     * Hand a sample of the validated payloads over to the shadow engine. Only the payload and the result of the
+     * validation engine are passed to the executor, hence the shadow validation never delays or changes the message.
      *
-     * @param messageContext Message context to be validate the request
+     * @param cacheKey     Cache key of the schema of the message
+     * @param index        Operation index of the API swagger
+     * @param payload      Raw JSON payload of the message
+     * @param result       Result of the validation engine, or null if it found the payload malformed
+     * @param validateTime Time taken by the validation engine to validate the payload
+     * @param metrics      Metrics of the elected resource
      */
-    private void validateRequest(MessageContext messageContext) throws APIManagementException {
-        //extract particular schema content.
-        String schema = getSchemaContent(messageContext);
-        //extract the request payload.
-        JSONObject payloadObject = getMessageContent(messageContext);
-        if (schema != null && !SchemaValidatorConstant.EMPTY.equals(schema) &&
-                payloadObject != null && !SchemaValidatorConstant.EMPTY_ARRAY.equals(payloadObject)) {
-            validateContent(payloadObject, schema, messageContext);
+    private void validateShadow(SchemaCache.Key cacheKey, OperationIndex index, byte[] payload,
+                                ValidationResult result, long validateTime, ResourceMetrics metrics) {
+        String engine = shadowEngine;
+        if (engine == null || engine.equals(cacheKey.getEngine())) {
+            return;
+        }
+        double samplingRate = shadowSamplingRate;
+        if (samplingRate < 1 && ThreadLocalRandom.current().nextDouble() >= samplingRate) {
+            return;
+        }
+        String operation = index.getApiUUID() + " " + cacheKey.getMethod() + " " + cacheKey.getResource();
+        if (!AsyncValidationExecutor.submit(new ShadowValidation(payload, cacheKey.withEngine(engine), index, metrics,
+                maxViolations, result, validateTime, operation))) {
+            metrics.recordDroppedValidation();
         }
     }
 
     /**
-     * Validate the API Response Body  which comes from the BE.
+     * Validate a payload with large arrays in parallel.
      *
-     * @param messageContext Message context to be validate the response
+     * @param cacheKey  Cache key of the schema of the message
+     * @param index     Operation index of the API swagger
+     * @param payload   Raw JSON payload of the message
+     * @param threshold Number of items from which an array is split
+     * @return Result of the validation or null if the payload has to be validated as a whole
+     * @throws IOException Throws if the payload is not well-formed JSON
      */
-    private void validateResponse(MessageContext messageContext) throws APIManagementException {
-        String responseSchema = getSchemaContent(messageContext);
-        try {
-            new JSONObject(responseSchema);
-        } catch (JSONException ex) {
-            return;
-        }
-        JSONObject payloadObject = getMessageContent(messageContext);
-        if (responseSchema != null && !SchemaValidatorConstant.EMPTY_ARRAY.equals(responseSchema) &&
-                payloadObject != null && !SchemaValidatorConstant.EMPTY_ARRAY.equals(payloadObject)) {
-            validateContent(payloadObject, responseSchema, messageContext);
+    private ValidationResult validateParallel(SchemaCache.Key cacheKey, OperationIndex index, byte[] payload,
+                                              int threshold) throws IOException {
+        ParallelArrayValidator validator = parallelValidatorCache.get(cacheKey);
+        if (validator == null) {
+            JSONObject jsonSchema = getJsonSchema(cacheKey, index);
+            if (jsonSchema == null) {
+                return null;
+            }
+            validator = ParallelArrayValidator.create(jsonSchema, cacheKey.getEngine());
+            parallelValidatorCache.put(cacheKey, validator, SchemaStore.estimateSize(jsonSchema));
         }
+        return validator.validate(payload, maxViolations, threshold);
     }
 
     /**
-     * Get the Request/Response messageContent as a JsonObject.
+     * Report the violations of a message as a threat.
      *
      * @param messageContext Message context
-     * @return JsonObject which contains the request/response message content
+     * @param metrics        Metrics of the elected resource
+     * @param violations     Description of the violations
+     * @param e              Exception which describes the violations, if any
      */
-    private JSONObject getMessageContent(MessageContext messageContext) {
-        org.apache.axis2.context.MessageContext axis2MC = ((Axis2MessageContext)
-                messageContext).getAxis2MessageContext();
-        String requestMethod;
-//        if (messageContext.isResponse()) {
-//            requestMethod = messageContext.getProperty(SchemaValidatorConstant.HTTP_RESPONSE_METHOD).toString();
-//        } else {
-//            requestMethod = axis2MC.getProperty(SchemaValidatorConstant.HTTP_REQUEST_METHOD).toString();
-//        }
-        JSONObject payloadObject = null;
-        if (messageContext.getEnvelope().getBody() != null) {
-            Object objFirstElement = messageContext.getEnvelope().getBody().getFirstElement();
-            if (objFirstElement != null) {
-                OMElement xmlResponse = messageContext.getEnvelope().getBody().getFirstElement();
-                try {
-                    payloadObject = new JSONObject(JsonUtil.toJsonString(xmlResponse).toString());
-                } catch (AxisFault axisFault) {
-                    logger.error(" Error occurred while converting the String payload to Json");
-                }
-            }
+    private static void reportViolations(MessageContext messageContext, ResourceMetrics metrics, String violations,
+                                         Exception e) {
+        metrics.recordViolation(messageContext.isResponse());
+        if (messageContext.isResponse()) {
+            String description = "Schema validation failed in the Response :" + violations;
+            logViolation(description, e);
+            handleThreat(messageContext, "500", description);
+        } else {
+            String description = "Schema validation failed in the Request :" + violations;
+            logViolation(description, e);
+            handleThreat(messageContext, APIMgtGatewayConstants.HTTP_SC_CODE, description);
         }
-        return payloadObject;
     }
 
     /**
-     * Extract the schema Object.
+     * Reject a request payload which exceeds the payload limits.
      *
-     * @param refNode JSON node to be extracted
-     * @return Extracted schema
+     * @param messageContext Message context
+     * @param metrics        Metrics of the elected resource
+     * @param violation      Description of the violated limit
      */
-    private JsonNode extractSchemaObject(JsonNode refNode) {
-        String[] val = refNode.toString().split("" + SchemaValidatorConstant.HASH);
-        String path = val[1].replace("\\{^\"|\"}", SchemaValidatorConstant.EMPTY)
-                .replaceAll(SchemaValidatorConstant.BACKWARD_SLASH, SchemaValidatorConstant.EMPTY);
-        return rootNode.at(path);
+    private static void rejectPayload(MessageContext messageContext, ResourceMetrics metrics, String violation) {
+        metrics.recordRejectedPayload();
+        String description = "Payload limit exceeded in the Request :" + violation;
+        logViolation(description, null);
+        handleThreat(messageContext, APIMgtGatewayConstants.HTTP_SC_CODE, description);
     }
 
     /**
-     * Get the relevant schema content for the  particular request/response messages.
+     * Build the description of the schema violations. The violations are described up to a fixed description
+     * length, so an invalid payload with a large number of violations is described in bounded time; the engines
+     * already limit the violations to the number of violations of the validation mode.
      *
-     * @param messageContext Message content
-     * @return particular schema content with its schema initialization pattern(key/schema)
+     * @param result Result of the validation
+     * @return Description of the violations
      */
-    private String getSchemaContent(MessageContext messageContext) throws APIManagementException {
-        String schemaKey;
-        if (!messageContext.isResponse()) {
-            schemaKey = extractSchemaFromRequest(messageContext);
-        } else {
-            schemaKey = extractResponse(messageContext);
+    static String describeViolations(ValidationResult result) {
+        StringBuilder description = new StringBuilder();
+        List<Violation> violations = result.getViolations();
+        int described = 0;
+        for (Violation violation : violations) {
+            String message = violation.toString();
+            if (described > 0 && description.length() + message.length() >
+                    SchemaValidatorConstant.MAX_VIOLATION_DESCRIPTION_LENGTH) {
+                break;
+            }
+            if (described > 0) {
+                description.append(SchemaValidatorConstant.VIOLATION_SEPARATOR);
+            }
+            description.append(message, 0, Math.min(message.length(),
+                    SchemaValidatorConstant.MAX_VIOLATION_DESCRIPTION_LENGTH));
+            described++;
+        }
+        int remaining = result.getViolationCount() - described;
+        if (remaining > 0) {
+            description.append(" and ").append(remaining).append(remaining == 1 ? " more violation" :
+                    " more violations");
         }
-        return schemaKey;
+        return description.toString();
     }
 
     /**
-     * Extract the relevant schema from the request.
+     * Log a schema violation. The stack trace of the validation exception only matters when debugging, hence it is
+     * not logged for every invalid message.
      *
-     * @param messageContext Message Context
-     * @return String Schema
+     * @param description Description of the violation
+     * @param e           Exception which describes the violation, if any
      */
-    private String extractSchemaFromRequest(MessageContext messageContext) {
-        org.apache.axis2.context.MessageContext axis2MC = ((Axis2MessageContext)
-                messageContext).getAxis2MessageContext();
-
-        String resourcePath = messageContext.getProperty(SchemaValidatorConstant.API_ELECTED_RESOURCE).toString();
-        String requestMethod = axis2MC.getProperty(SchemaValidatorConstant.HTTP_REQUEST_METHOD).toString();
-        String schema;
-        String Swagger = swagger;
-        String value = JsonPath.read(Swagger, SchemaValidatorConstant.JSON_PATH + ".openapi").toString();
-        if (value != null && !value.equals(SchemaValidatorConstant.EMPTY_ARRAY)) {
-            //refer schema
-            StringBuilder jsonPath = new StringBuilder();
-            jsonPath.append(SchemaValidatorConstant.PATHS)
-                    .append(resourcePath).append("..requestBody.content.application/json.schema");
-            schema = JsonPath.read(Swagger, jsonPath.toString()).toString();
-            if (schema == null | SchemaValidatorConstant.EMPTY_ARRAY.equals(schema)) {
-                // refer request bodies
-                StringBuilder requestBodyPath = new StringBuilder();
-                requestBodyPath.append(SchemaValidatorConstant.PATHS).append(resourcePath).
-                        append(SchemaValidatorConstant.JSONPATH_SEPARATE).
-                        append(requestMethod.toLowerCase()).append("..requestBody");
-                schema = JsonPath.read(Swagger, requestBodyPath.toString()).toString();
-            }
+    private static void logViolation(String description, Exception e) {
+        if (e != null && logger.isDebugEnabled()) {
+            logger.error(description, e);
         } else {
-            StringBuilder schemaPath = new StringBuilder();
-            schemaPath.append(SchemaValidatorConstant.PATHS).append(resourcePath).
-                    append(SchemaValidatorConstant.JSONPATH_SEPARATE)
-                    .append(requestMethod.toLowerCase()).append(".parameters..schema");
-            schema = JsonPath.read(Swagger, schemaPath.toString()).toString();
-        }
-        return extractReference(schema);
-    }
-
-    /**
-     * Extract the response schema from swagger according to the response code.
-     *
-     * @param messageContext message content
-     * @return response schema
-     * @throws APIManagementException wrap and throw IOException
-     */
-    private String extractResponse(MessageContext messageContext) throws APIManagementException {
-        Object resourceSchema;
-        Object resource;
-        Object content = null;
-        Object conSChema = null;
-        String nonSchema = "";
-        String schema;
-        String value = null;
-        String nodeVal;
-        String searchLast = null;
-        ObjectMapper mapper = new ObjectMapper();
-        String name;
-        String refString;
-        Object schem;
-        org.apache.axis2.context.MessageContext axis2MC = ((Axis2MessageContext)
-                messageContext).getAxis2MessageContext();
-        String electedResource = messageContext.getProperty(SchemaValidatorConstant.API_ELECTED_RESOURCE).toString();
-        String reqMethod = messageContext.getProperty(SchemaValidatorConstant.ELECTED_REQUEST_METHOD).toString();
-        String responseStatus = axis2MC.getProperty(SchemaValidatorConstant.HTTP_SC).toString();
-
-
-        StringBuilder responseSchemaPath = new StringBuilder();
-        responseSchemaPath.append(SchemaValidatorConstant.PATHS).append(electedResource).
-                append(SchemaValidatorConstant.JSONPATH_SEPARATE).append(reqMethod.toLowerCase()).
-                append(SchemaValidatorConstant.JSON_RESPONSES).append(responseStatus);
-        resource = JsonPath.read(swagger, responseSchemaPath.toString());
-
-        if (resource != null) {
-            responseSchemaPath.append(".content");
-            content= JsonPath.read(swagger, responseSchemaPath.toString());
-        }
-        if (content != null) {
-            responseSchemaPath.append(".application/json.schema.$ref");
-            conSChema = JsonPath.read(swagger, responseSchemaPath.toString());
+            logger.error(description);
         }
-        if (conSChema != null) {
-            if(!conSChema.toString().equals("[]")) {
-                return extractReference(conSChema.toString());
-
-            } else {
-                StringBuilder pathBuilder = new StringBuilder();
-                pathBuilder.append(SchemaValidatorConstant.PATHS).append(electedResource).
-                        append(SchemaValidatorConstant.JSONPATH_SEPARATE).append(reqMethod.toLowerCase()).
-                        append(SchemaValidatorConstant.JSON_RESPONSES).append(responseStatus).append(".content.application/json.schema");
-
-                schem = JsonPath.read(swagger, pathBuilder.toString()).toString();
-                JsonNode jsonNode = mapper.convertValue(schem, JsonNode.class);
-                if (jsonNode.get(0) != null) {
-                    value = jsonNode.get(0).toString();
-                } else {
-                    value = jsonNode.toString();
-                }
+    }
 
-                if (value.contains("items")) {
-
-                    StringBuilder requestSchemaPath = new StringBuilder();
-                    requestSchemaPath.append(SchemaValidatorConstant.PATHS).append(electedResource).
-                            append(SchemaValidatorConstant.JSONPATH_SEPARATE).append(reqMethod.toLowerCase()).
-                            append(SchemaValidatorConstant.JSON_RESPONSES).append(responseStatus).append(".content.application/json.schema.items");
-                    name = JsonPath.read(swagger, requestSchemaPath.toString()).toString();
-                    if (name.contains("$ref")) {
-                        requestSchemaPath.append(".$ref");
-                        extractReference(name);
-                        return JsonPath.read(swagger, requestSchemaPath.toString()).toString();
-                    }
-                    return value;
-                }
-            }
+    /**
+     * Get the cache key of the schema of the particular request/response message.
+     *
+     * @param messageContext Message context
+     * @param index          Operation index of the API swagger
+     * @return Cache key or null if the operation of the message is not known or does not define a schema for the
+     * content type of the message
+     */
+    private SchemaCache.Key getSchemaKey(MessageContext messageContext, OperationIndex index) {
+        boolean response = messageContext.isResponse();
+        String resource = getElectedResource(messageContext);
+        String httpMethod = getHttpMethod(messageContext);
+        String mediaType = getMediaType(messageContext, index, resource, httpMethod);
+        if (mediaType == null) {
+            return null;
         }
-
-///////////////////////////////////////////
-       // if (jsonNode.get(0) != null && !SchemaValidatorConstant.EMPTY_ARRAY.equals(jsonNode)) {
-//            value = jsonNode.get(0).toString();
-//        } else {
-//            value = jsonNode.toString();
-//        }
-//        if (value == null) {
-//            return nonSchema;
-//        }
-            StringBuilder resPath = new StringBuilder();
-            resPath.append(SchemaValidatorConstant.PATHS).append(electedResource).append(
-                    SchemaValidatorConstant.JSONPATH_SEPARATE).append(reqMethod.toLowerCase()).
-                    append(SchemaValidatorConstant.JSON_RESPONSES).append(responseStatus).append(".schema");
-            resource = JsonPath.read(swagger, resPath.toString());
-            JsonNode json = mapper.convertValue(resource, JsonNode.class);
-            if (json.get(0) != null && !SchemaValidatorConstant.EMPTY_ARRAY.equals(json.get(0))) {
-                value = json.get(0).toString();
-            } else {
-                value = json.toString();
-            }
-            if (value != null && !SchemaValidatorConstant.EMPTY_ARRAY.equals(value)) {
-                if (value.contains(SchemaValidatorConstant.SCHEMA_REFERENCE)) {
-                    byte[] bytes = value.getBytes();
-                    try {
-                        JsonNode node = mapper.readTree(bytes);
-                        Iterator<JsonNode> schemaNode = node.findParent(
-                                SchemaValidatorConstant.SCHEMA_REFERENCE).elements();
-                        return extractReference(schemaNode.next().toString());
-                    } catch (IOException e) {
-                        throw new APIManagementException("Error occurred while converting bytes from json node");
-                    }
-                } else {
-                    return value;
-                }
-            } else {
-                StringBuilder responseDefaultPath = new StringBuilder();
-                responseDefaultPath.append(SchemaValidatorConstant.PATHS).append(electedResource).
-                        append(SchemaValidatorConstant.JSONPATH_SEPARATE).append(reqMethod.toLowerCase()).
-                        append(".responses.default");
-                resourceSchema = JsonPath.read(swagger, responseDefaultPath.toString());
-                JsonNode jnode = mapper.convertValue(resourceSchema, JsonNode.class);
-                if (jnode.get(0) != null && !SchemaValidatorConstant.EMPTY_ARRAY.equals(jnode)) {
-                    value = jnode.get(0).toString();
-                } else {
-                    value = jnode.toString();
-                }
-                if (resourceSchema != null) {
-                    if (value.contains(SchemaValidatorConstant.SCHEMA_REFERENCE)) {
-                        byte[] bytes = value.getBytes();
-                        try {
-                            JsonNode node = mapper.readTree(bytes);
-                            if (node != null) {
-                                Iterator<JsonNode> schemaNode = node.findParent(
-                                        SchemaValidatorConstant.SCHEMA_REFERENCE).elements();
-                                return extractRef(schemaNode);
-                            }
-                        } catch (IOException e) {
-                            logger.error("Error occurred while reading the schema.", e);
-                            throw new APIManagementException(e);
-                        }
-                    } else {
-                        return value;
-                    }
-                } else {
-                    return value;
-                }
-            }
-
-        //////////////
-        return value;
+        return new SchemaCache.Key(index.getApiUUID(), resource, httpMethod, response,
+                response ? getStatusCode(messageContext) : null, mediaType, index.getGeneration(), validationEngine);
     }
 
     /**
-     * Replace $ref array elements.
+     * Get the declared media type the content type of the message dispatches to.
      *
-     * @param entry Array reference to be replaced from actual value
-     * @throws APIManagementException Throws
+     * @param messageContext Message context
+     * @param index          Operation index of the API swagger
+     * @param resource       Elected API resource
+     * @param httpMethod     HTTP method of the operation
+     * @return Normalized media type or null if the operation does not define a schema for the content type
      */
-    private void generateArraySchemas(Map.Entry<String, JsonNode> entry) throws APIManagementException {
-        JsonNode entryRef;
-        JsonNode schemaProperty;
-        if (entry.getValue() != null) {
-            schemaProperty = entry.getValue();
-            if (schemaProperty == null) {
-                return;
-            }
-            Iterator<JsonNode> arrayElements = schemaProperty.elements();
-            while (arrayElements.hasNext()) {
-                entryRef = arrayElements.next();
-                if (entryRef != null) {
-                    if (entryRef.has(SchemaValidatorConstant.SCHEMA_REFERENCE)) {
-                        entryRef = extractSchemaObject(entryRef);
-                        ObjectMapper mapper = new ObjectMapper();
-                        String[] str = schemaProperty.toString().split(",");
-                        if (str.length > 0) {
-                            List<String> schemaItems = Arrays.asList(str);
-                            ArrayList<String> convertedSchemaItems = new ArrayList(schemaItems);
-                            for (int x = 0; x < convertedSchemaItems.size(); x++) {
-                                String refItem = convertedSchemaItems.get(x);
-                                if (refItem.contains(SchemaValidatorConstant.SCHEMA_REFERENCE)) {
-                                    convertedSchemaItems.remove(refItem);
-                                    convertedSchemaItems.add(entryRef.toString());
-                                }
-                            }
-                            try {
-                                JsonNode actualObj = mapper.readTree(convertedSchemaItems.toString());
-                                entry.setValue(actualObj);
-                            } catch (IOException e) {
-                                throw new APIManagementException(
-                                        "Error occurred while converting string to json elements", e);
-                            }
-                        }
-                    }
-                }
-            }
+    private static String getMediaType(MessageContext messageContext, OperationIndex index, String resource,
+                                       String httpMethod) {
+        Object contentType = ((Axis2MessageContext) messageContext).getAxis2MessageContext().getProperty(
+                SchemaValidatorConstant.REST_CONTENT_TYPE);
+        if (resource == null || httpMethod == null || contentType == null) {
+            return null;
         }
+        return messageContext.isResponse() ?
+                index.getResponseMediaType(resource, httpMethod, getStatusCode(messageContext),
+                        contentType.toString()) :
+                index.getRequestMediaType(resource, httpMethod, contentType.toString());
     }
 
     /**
-     * Get Schema path from $ref.
+     * Get the compiled schema of the particular request/response message. Compiled schemas are served from the
+     * shared schema cache and the schema is only looked up in the operation index and compiled on a cache miss.
+     * Schemas the engine of the API cannot compile are compiled by the default engine and cached under the same
+     * key, so the engine attempts to compile them only once. So are the schemas of an engine which is not registered;
+     * the ValidationEngineRegistry removes them from the cache once an engine is registered with the name.
+     * The same resource, method and status code are used for the cache key and the lookup, so a schema is never
+     * cached against a different operation.
      *
-     * @param schemaNode Swagger schema content
-     * @return $ref path
+     * @param cacheKey Cache key of the schema of the message
+     * @param index    Operation index of the API swagger
+     * @return Compiled schema or null if there is no schema defined for the message
      */
-    private String extractRef(Iterator<JsonNode> schemaNode) {
-        while (schemaNode.hasNext()) {
-            String nodeVal = schemaNode.next().toString();
-            String[] val = nodeVal.split("" + SchemaValidatorConstant.HASH);
-            if (val.length > 0) {
-                String path = val[1].replaceAll("^\"|\"$", SchemaValidatorConstant.EMPTY);
-                if (StringUtils.isNotEmpty(path)) {
-                    int c = path.lastIndexOf(SchemaValidatorConstant.FORWARD_SLASH);
-                    return path.substring(c + 1);
-                }
+    private static ValidationSchema getSchema(SchemaCache.Key cacheKey, OperationIndex index) {
+        ValidationSchema schema = schemaCache.get(cacheKey);
+        if (schema == null) {
+            JSONObject jsonSchema = getJsonSchema(cacheKey, index);
+            if (jsonSchema == null) {
+                return null;
             }
-            return null;
+            schema = ValidationEngineRegistry.compile(cacheKey.getEngine(), jsonSchema);
+            schemaCache.put(cacheKey, schema, SchemaStore.estimateSize(jsonSchema));
         }
-        return null;
+        return schema;
     }
 
     /**
-     * Extract the reference.
+     * Get the resolved schema a cache key refers to.
      *
-     * @param schemaNode Schema node to be extracted
-     * @return extracted schema
+     * @param cacheKey Cache key of the schema
+     * @param index    Operation index of the API swagger
+     * @return Resolved schema or null if there is no schema defined for the key
      */
-    private String extractReference(String schemaNode) {
-        String[] val = schemaNode.split("" + SchemaValidatorConstant.HASH);
-        String path = val[1].replaceAll("\"|}|]|\\\\", "");
-        String searchLastIndex = null;
-        StringBuilder extractRefPath = null;
-        if (StringUtils.isNotEmpty(path)) {
-            int index = path.lastIndexOf(SchemaValidatorConstant.FORWARD_SLASH);
-            searchLastIndex = path.substring(index + 1);
+    static JSONObject getJsonSchema(SchemaCache.Key cacheKey, OperationIndex index) {
+        if (cacheKey.isResponse()) {
+            return index.getResponseSchema(cacheKey.getResource(), cacheKey.getMethod(), cacheKey.getStatusCode(),
+                    cacheKey.getMediaType());
         }
-        String nodeVal = path.replaceAll("" + SchemaValidatorConstant.FORWARD_SLASH, ".");
-        String name = null;
-        Object object = JsonPath.read(swagger, SchemaValidatorConstant.JSON_PATH + nodeVal);
-        ObjectMapper mapper = new ObjectMapper();
-        String value;
-        String res = null;
-        JsonNode jsonSchema = mapper.convertValue(object, JsonNode.class);
-        if (jsonSchema.get(0) != null) {
-            value = jsonSchema.get(0).toString();
-        } else {
-            value = jsonSchema.toString();
-        }
-        if (value.contains(SchemaValidatorConstant.SCHEMA_REFERENCE) && !nodeVal.contains("definitions")) {
-            extractRefPath = new StringBuilder();
-            extractRefPath.append(SchemaValidatorConstant.JSON_PATH).append(
-                    SchemaValidatorConstant.REQUESTBODY_SCHEMA).
-                    append(searchLastIndex).append(".content.application/json.schema");
-
-            Object ret = JsonPath.read(swagger, extractRefPath.toString());
-            if (ret != null) {
-                res = ret.toString();
-            }
-            //  String res = JsonPath.read(swagger, extractRefPath.toString()).toString();
-            if (res.contains("items")) {
-                StringBuilder requestSchemaPath = new StringBuilder();
-                requestSchemaPath.append(SchemaValidatorConstant.JSON_PATH).
-                        append(SchemaValidatorConstant.REQUESTBODY_SCHEMA).append(
-                        searchLastIndex).append(".content.application/json.schema.items.$ref");
-                name = JsonPath.read(swagger, requestSchemaPath.toString()).toString();
-                extractReference(name);
-            } else {
-                StringBuilder jsonSchemaRef = new StringBuilder();
-                jsonSchemaRef.append(SchemaValidatorConstant.JSON_PATH).append(
-                        SchemaValidatorConstant.REQUESTBODY_SCHEMA).append(searchLastIndex).append(
-                        ".content.application/json.schema.$ref");
-                name = JsonPath.read(swagger, jsonSchemaRef.toString()).toString();
-                if (name.contains("components/schemas")) {
-                    Object componentSchema = JsonPath.read(swagger, "$..components.schemas." + searchLastIndex);
-                    mapper = new ObjectMapper();
-                    try {
-                        JsonNode jsonNode = mapper.convertValue(componentSchema, JsonNode.class);
-                        generateSchema(jsonNode);
-                        if (jsonNode.get(0) != null) {
-                            name = jsonNode.get(0).toString();
-                        } else {
-                            name = jsonNode.toString();
-                        }
-                    } catch (APIManagementException e) {
-                        logger.error("Error occurred while generating the schema content for " +
-                                "the particular request", e);
-                    }
-                    schemaContent = name;
-                } else {
-                    extractReference(name);
-                }
-            }
-        } else if (nodeVal.contains("definitions")) {
-            StringBuilder requestSchemaPath = new StringBuilder();
-            requestSchemaPath.append("$.definitions.").append(searchLastIndex);
-           Object  nameObj = JsonPath.read(swagger, requestSchemaPath.toString());
-           mapper = new ObjectMapper();
+        // The record schema of a streamed request body is cached under the records marker as its status code.
+        return SchemaValidatorConstant.RECORD_SCHEMA.equals(cacheKey.getStatusCode()) ?
+                index.getRequestRecordSchema(cacheKey.getResource(), cacheKey.getMethod()) :
+                index.getRequestSchema(cacheKey.getResource(), cacheKey.getMethod(), cacheKey.getMediaType());
+    }
 
-            try {
-                JsonNode jsonNode = mapper.convertValue(nameObj, JsonNode.class);
-                generateSchema(jsonNode);
-                if (jsonNode.get(0) != null) {
-                    name = jsonNode.get(0).toString();
-                } else {
-                    name = jsonNode.toString();
-                }
-            } catch (APIManagementException e) {
-                logger.error("Error occurred while generating the schema content for " +
-                        "the particular request", e);
-            }
-            schemaContent = name;
+    /**
+     * Check whether the operation index defines a schema for the message. Operations, and status codes and media
+     * types of operations, without a schema are known from the index, so this is decided without touching the body.
+     *
+     * @param messageContext Message context
+     * @param index          Operation index of the API swagger
+     * @return true if there is a schema to validate the message against
+     */
+    private boolean hasSchema(MessageContext messageContext, OperationIndex index) {
+        return getMediaType(messageContext, index, getElectedResource(messageContext),
+                getHttpMethod(messageContext)) != null;
+    }
 
+    private static String getElectedResource(MessageContext messageContext) {
+        Object electedResource = messageContext.getProperty(SchemaValidatorConstant.API_ELECTED_RESOURCE);
+        return electedResource != null ? electedResource.toString() : null;
+    }
 
-        } else {
-            schemaContent = value;
-            return schemaContent;
-        }
-        return schemaContent;
+    /**
+     * Get the HTTP method of the operation, which is the elected method for responses and the method of the
+     * request for requests.
+     *
+     * @param messageContext Message context
+     * @return HTTP method or null if it is not known
+     */
+    private static String getHttpMethod(MessageContext messageContext) {
+        Object method = messageContext.isResponse() ?
+                messageContext.getProperty(SchemaValidatorConstant.ELECTED_REQUEST_METHOD) :
+                ((Axis2MessageContext) messageContext).getAxis2MessageContext().getProperty(
+                        SchemaValidatorConstant.HTTP_REQUEST_METHOD);
+        return method != null ? method.toString() : null;
+    }
+
+    private static String getStatusCode(MessageContext messageContext) {
+        Object responseStatus = ((Axis2MessageContext) messageContext).getAxis2MessageContext().getProperty(
+                SchemaValidatorConstant.HTTP_SC);
+        return responseStatus != null ? responseStatus.toString() : null;
     }
 
     /**
-     * Replace $ref references with relevant schemas and recreate the swagger definition.
+     * Get the Request/Response messageContent of a built message as JSON.
      *
-     * @param parent Swagger definition parent Node
-     * @throws APIManagementException Throws an APIManagement exception
+     * @param messageContext Message context
+     * @param metrics        Metrics of the elected resource, which records the size of the content
+     * @return UTF-8 encoded JSON content of the request/response message or null if there is no content
      */
-    private void generateSchema(JsonNode parent) throws APIManagementException {
-        JsonNode schemaProperty;
-        Iterator<Map.Entry<String, JsonNode>> schemaNode;
-        if (parent.get(0) != null) {
-            schemaNode = parent.get(0).fields();
-        } else {
-            schemaNode = parent.fields();
-        }
-        while (schemaNode.hasNext()) {
-            Map.Entry<String, JsonNode> entry = schemaNode.next();
-            if (entry.getValue().has(SchemaValidatorConstant.SCHEMA_REFERENCE)) {
-                JsonNode refNode = entry.getValue();
-                Iterator<Map.Entry<String, JsonNode>> refItems = refNode.fields();
-                while (refItems.hasNext()) {
-                    Map.Entry<String, JsonNode> entryRef = refItems.next();
-                    if (entryRef.getKey().equals(SchemaValidatorConstant.SCHEMA_REFERENCE)) {
-                        JsonNode schemaObject = extractSchemaObject(entryRef.getValue());
-                        if (schemaObject != null) {
-                            entry.setValue(schemaObject);
-                        }
-                    }
+    private byte[] getMessageContent(MessageContext messageContext, ResourceMetrics metrics) {
+        byte[] payload = null;
+        if (messageContext.getEnvelope().getBody() != null) {
+            Object objFirstElement = messageContext.getEnvelope().getBody().getFirstElement();
+            if (objFirstElement != null) {
+                OMElement xmlResponse = messageContext.getEnvelope().getBody().getFirstElement();
+                try {
+                    payload = JsonUtil.toJsonString(xmlResponse).toString().getBytes(StandardCharsets.UTF_8);
+                    metrics.recordPayloadSize(payload.length);
+                } catch (AxisFault axisFault) {
+                    logger.error(" Error occurred while converting the String payload to Json");
                 }
             }
-            schemaProperty = entry.getValue();
-            if (JsonNodeType.OBJECT == schemaProperty.getNodeType()) {
-                generateSchema(schemaProperty);
-            }
-            if (JsonNodeType.ARRAY == schemaProperty.getNodeType()) {
-                generateArraySchemas(entry);
-            }
         }
+        return payload;
     }
 
     /**
@@ -715,4 +1590,129 @@ public class SchemaValidator extends AbstractHandler {
         }
         return true;
     }
+
+    /**
+     * Validation of a response payload run by the asynchronous validation executor. Violations are reported
+     * through the metrics and the log instead of a fault.
+     */
+    private static final class ResponseValidation implements Runnable {
+
+        private final byte[] payload;
+        private final ValidationSchema schema;
+        private final ResourceMetrics metrics;
+        private final int maxViolations;
+        private final String operation;
+
+        ResponseValidation(byte[] payload, ValidationSchema schema, ResourceMetrics metrics, int maxViolations,
+                           String operation) {
+            this.payload = payload;
+            this.schema = schema;
+            this.metrics = metrics;
+            this.maxViolations = maxViolations;
+            this.operation = operation;
+        }
+
+        @Override
+        public void run() {
+            try {
+                long validateStart = System.nanoTime();
+                ValidationResult result = schema.validate(payload, maxViolations);
+                metrics.recordValidate(System.nanoTime() - validateStart);
+                if (!result.isValid()) {
+                    metrics.recordViolation(true);
+                    logViolation("Schema validation failed in the Response of " + operation + " :" +
+                            describeViolations(result), null);
+                }
+            } catch (JsonProcessingException e) {
+                metrics.recordMalformedPayload();
+                logger.warn("Malformed JSON payload in the Response of " + operation);
+            } catch (IOException e) {
+                logger.error("Error occurred while reading the Response of " + operation, e);
+            }
+        }
+    }
+
+    /**
+     * Copy of a response body taken while the body is relayed. The validation of the body is submitted to the
+     * asynchronous validation executor once the body has been relayed to the end. A body larger than the maximum
+     * size is not copied further, and its validation is counted as dropped.
+     */
+    private static final class ResponseCapture extends FilterInputStream {
+
+        private final ValidationSchema schema;
+        private final ResourceMetrics metrics;
+        private final int maxViolations;
+        private final String operation;
+        private ByteArrayOutputStream payload = new ByteArrayOutputStream(8192);
+        private boolean finished;
+
+        ResponseCapture(InputStream in, ValidationSchema schema, ResourceMetrics metrics, int maxViolations,
+                        String operation) {
+            super(in);
+            this.schema = schema;
+            this.metrics = metrics;
+            this.maxViolations = maxViolations;
+            this.operation = operation;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int length = read(single, 0, 1);
+            return length == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read == -1) {
+                finish();
+            } else if (payload != null) {
+                if (payload.size() + read > SchemaValidatorConstant.MAX_ASYNC_VALIDATION_BYTES) {
+                    payload = null;
+                } else {
+                    payload.write(buffer, offset, read);
+                }
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            int read = read(buffer, 0, buffer.length);
+            return read == -1 ? 0 : read;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public synchronized void mark(int readLimit) {
+        }
+
+        @Override
+        public synchronized void reset() throws IOException {
+            throw new IOException("mark/reset not supported");
+        }
+
+        private void finish() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            if (payload == null) {
+                metrics.recordDroppedValidation();
+                return;
+            }
+            metrics.recordPayloadSize(payload.size());
+            if (!AsyncValidationExecutor.submit(new ResponseValidation(payload.toByteArray(), schema, metrics,
+                    maxViolations, operation))) {
+                metrics.recordDroppedValidation();
+            }
+            payload = null;
+        }
+    }
 }
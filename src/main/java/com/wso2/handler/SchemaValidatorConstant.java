@@ -30,5 +30,73 @@ public class SchemaValidatorConstant {
     public static final String API_CONTEXT = "REST_API_CONTEXT";
     public static final String TEXT_XML = "text/xml";
     public static final String APPLICATION_XML = "application/xml";
+    public static final String XML_SUFFIX = "+xml";
+    public static final String JSON_SUFFIX = "+json";
+    public static final String CONSUMES = "consumes";
+    public static final String PRODUCES = "produces";
     public static final String TEXT_JSON = "text/json";
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+    public static final String APPLICATION_JSON_LINES = "application/jsonl";
+    public static final String APPLICATION_JSON_SEQ = "application/json-seq";
+    public static final String[] RECORD_STREAM_MEDIA_TYPES = {APPLICATION_NDJSON, APPLICATION_JSON_LINES,
+            APPLICATION_JSON_SEQ};
+    public static final String OPEN_API = "openapi";
+    public static final String SWAGGER_PATHS = "paths";
+    public static final String PARAMETERS = "parameters";
+    public static final String REQUEST_BODY = "requestBody";
+    public static final String RESPONSES = "responses";
+    public static final String DEFAULT_RESPONSE = "default";
+    public static final String CONTENT = "content";
+    public static final String SCHEMA = "schema";
+    public static final String DEFINITIONS = "definitions";
+    public static final String ITEMS = "items";
+    public static final String ONE_OF = "oneOf";
+    public static final String ANY_OF = "anyOf";
+    public static final String DISCRIMINATOR = "discriminator";
+    public static final String PROPERTY_NAME = "propertyName";
+    public static final String MAPPING = "mapping";
+    public static final String REQUEST_BODY_REFERENCE = "#/components/requestBodies/";
+    public static final String SCHEMA_CACHE_SIZE = "schema.validator.cache.size";
+    public static final int DEFAULT_SCHEMA_CACHE_SIZE = 1000;
+    public static final String VALIDATION_MODE_FAIL_FAST = "failFast";
+    public static final String VALIDATION_MODE_COLLECT_ALL = "collectAll";
+    public static final String VALIDATION_MODE_COLLECT = "collect";
+    public static final int MAX_VIOLATION_DESCRIPTION_LENGTH = 4096;
+    public static final String VIOLATION_SEPARATOR = ", ";
+    public static final String RESPONSE_VALIDATION_SYNC = "sync";
+    public static final String RESPONSE_VALIDATION_ASYNC = "async";
+    public static final String ASYNC_VALIDATION_THREADS = "schema.validator.async.threads";
+    public static final String ASYNC_VALIDATION_QUEUE_SIZE = "schema.validator.async.queue.size";
+    public static final int DEFAULT_ASYNC_VALIDATION_QUEUE_SIZE = 1000;
+    public static final long MAX_ASYNC_VALIDATION_BYTES = 10L * 1024 * 1024;
+    public static final String VALIDATION_ENGINE_EVERIT = "everit";
+    public static final String VALIDATION_ENGINE_COMPILED = "compiled";
+    public static final double DEFAULT_SHADOW_SAMPLING_RATE = 0.01;
+    public static final String CONTENT_LENGTH = "Content-Length";
+    public static final String CONTENT_ENCODING = "Content-Encoding";
+    public static final String GZIP = "gzip";
+    public static final String X_GZIP = "x-gzip";
+    public static final String DEFLATE = "deflate";
+    public static final String PARALLEL_VALIDATION_THREADS = "schema.validator.parallel.threads";
+    public static final String PARALLEL_VALIDATION_QUEUE_SIZE = "schema.validator.parallel.queue.size";
+    public static final int MIN_PARALLEL_CHUNK_ITEMS = 256;
+    public static final String WARM_UP_THREADS = "schema.validator.warmup.threads";
+    public static final long WARM_UP_THREAD_KEEP_ALIVE = 60;
+    public static final String PATTERN_CACHE_SIZE = "schema.validator.regex.cache.size";
+    public static final int DEFAULT_PATTERN_CACHE_SIZE = 1000;
+    public static final String PATTERN_STEP_BUDGET = "schema.validator.regex.step.budget";
+    public static final long DEFAULT_PATTERN_STEP_BUDGET = 1000;
+    public static final int MIN_PATTERN_STEP_BUDGET_LENGTH = 64;
+    public static final String PATTERN_BUDGET_POLICY = "schema.validator.regex.budget.policy";
+    public static final String PATTERN_BUDGET_FAIL_OPEN = "failOpen";
+    public static final String PATTERN_BUDGET_FAIL_CLOSED = "failClosed";
+    public static final String REST_FULL_REQUEST_PATH = "REST_FULL_REQUEST_PATH";
+    public static final String REST_URI_VARIABLE_PREFIX = "uri.var.";
+    public static final String ARTIFACT_DIRECTORY = "schema.validator.artifact.dir";
+    public static final String CARBON_HOME = "carbon.home";
+    public static final String SCHEMA_MEMORY_BUDGET = "schema.validator.memory.budget";
+    public static final long DEFAULT_SCHEMA_MEMORY_BUDGET = 128L * 1024 * 1024;
+    public static final String RECORD_SCHEMA = "records";
+    public static final int DEFAULT_MAX_RECORD_BYTES = 1024 * 1024;
+    public static final long DEFAULT_MAX_INFLATED_BYTES = 10L * 1024 * 1024;
 }
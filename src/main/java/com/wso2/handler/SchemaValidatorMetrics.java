@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Collects the validation metrics of all the SchemaValidator instances per API and resource. The metrics are
+ * exposed through JMX by the SchemaValidatorComponent.
+ */
+public final class SchemaValidatorMetrics implements SchemaValidatorMetricsMXBean {
+
+    public static final String OBJECT_NAME = "com.wso2.handler:type=SchemaValidatorMetrics";
+
+    private static final SchemaValidatorMetrics instance = new SchemaValidatorMetrics();
+
+    private final ConcurrentMap<String, ConcurrentMap<String, ResourceMetrics>> apis = new ConcurrentHashMap<>();
+
+    private SchemaValidatorMetrics() {
+    }
+
+    public static SchemaValidatorMetrics getInstance() {
+        return instance;
+    }
+
+    /**
+     * Get the metrics of a resource, creating them on the first message of the resource.
+     *
+     * @param apiUUID  UUID of the API
+     * @param resource Elected resource of the message
+     * @return Metrics of the resource
+     */
+    ResourceMetrics getResourceMetrics(String apiUUID, String resource) {
+        ConcurrentMap<String, ResourceMetrics> resources = apis.get(apiUUID);
+        if (resources == null) {
+            ConcurrentMap<String, ResourceMetrics> created = new ConcurrentHashMap<>();
+            resources = apis.putIfAbsent(apiUUID, created);
+            if (resources == null) {
+                resources = created;
+            }
+        }
+        ResourceMetrics metrics = resources.get(resource);
+        if (metrics == null) {
+            ResourceMetrics created = new ResourceMetrics(apiUUID, resource);
+            metrics = resources.putIfAbsent(resource, created);
+            if (metrics == null) {
+                metrics = created;
+            }
+        }
+        return metrics;
+    }
+
+    @Override
+    public List<ResourceStatistics> getResourceStatistics() {
+        List<ResourceStatistics> statistics = new ArrayList<>();
+        for (ConcurrentMap<String, ResourceMetrics> resources : apis.values()) {
+            for (ResourceMetrics metrics : resources.values()) {
+                statistics.add(metrics.snapshot());
+            }
+        }
+        return statistics;
+    }
+
+    @Override
+    public List<ResourceStatistics> getApiStatistics(String apiUUID) {
+        ConcurrentMap<String, ResourceMetrics> resources = apiUUID != null ? apis.get(apiUUID) : null;
+        if (resources == null) {
+            return Collections.emptyList();
+        }
+        List<ResourceStatistics> statistics = new ArrayList<>();
+        for (ResourceMetrics metrics : resources.values()) {
+            statistics.add(metrics.snapshot());
+        }
+        return statistics;
+    }
+
+    @Override
+    public int getSchemaCacheSize() {
+        return SchemaValidator.getSchemaCache().size();
+    }
+
+    @Override
+    public long getSchemaCacheHitCount() {
+        return SchemaValidator.getSchemaCache().getHitCount();
+    }
+
+    @Override
+    public long getSchemaCacheMissCount() {
+        return SchemaValidator.getSchemaCache().getMissCount();
+    }
+
+    @Override
+    public long getSchemaCacheEvictionCount() {
+        return SchemaValidator.getSchemaCache().getEvictionCount();
+    }
+
+    @Override
+    public double getSchemaCacheHitRatio() {
+        long hits = getSchemaCacheHitCount();
+        long lookups = hits + getSchemaCacheMissCount();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public long getSchemaMemoryBudget() {
+        return SchemaStore.getInstance().getMemoryBudget().getMaxWeight();
+    }
+
+    @Override
+    public long getSchemaMemoryUsage() {
+        return SchemaStore.getInstance().getMemoryBudget().getWeight();
+    }
+
+    @Override
+    public long getSchemaMemoryEvictionCount() {
+        return SchemaStore.getInstance().getMemoryBudget().getEvictionCount();
+    }
+
+    @Override
+    public int getInternedSchemaCount() {
+        return SchemaStore.getInstance().getInternedCount();
+    }
+
+    @Override
+    public long getInternedSchemaHitCount() {
+        return SchemaStore.getInstance().getInternHitCount();
+    }
+
+    @Override
+    public boolean isWarmUpComplete() {
+        return SchemaWarmUp.isComplete();
+    }
+
+    @Override
+    public int getPendingWarmUps() {
+        return SchemaWarmUp.getPendingCount();
+    }
+
+    @Override
+    public List<PatternStatistics> getPatternStatistics() {
+        return PatternCache.getStatistics();
+    }
+
+    @Override
+    public void reset() {
+        PatternCache.resetStatistics();
+        for (ConcurrentMap<String, ResourceMetrics> resources : apis.values()) {
+            for (ResourceMetrics metrics : resources.values()) {
+                metrics.reset();
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import java.util.List;
+
+/**
+ * JMX view of the schema validator metrics.
+ */
+public interface SchemaValidatorMetricsMXBean {
+
+    /**
+     * @return Metrics of every API resource which has been validated
+     */
+    List<ResourceStatistics> getResourceStatistics();
+
+    /**
+     * Get the metrics of the resources of an API.
+     *
+     * @param apiUUID UUID of the API
+     * @return Metrics of the validated resources of the API
+     */
+    List<ResourceStatistics> getApiStatistics(String apiUUID);
+
+    int getSchemaCacheSize();
+
+    long getSchemaCacheHitCount();
+
+    long getSchemaCacheMissCount();
+
+    long getSchemaCacheEvictionCount();
+
+    double getSchemaCacheHitRatio();
+
+    /**
+     * @return Memory budget of the schema caches in bytes, or 0 if the budget is unbounded
+     */
+    long getSchemaMemoryBudget();
+
+    /**
+     * @return Estimated size in bytes of the compiled schemas
+     */
+    long getSchemaMemoryUsage();
+
+    /**
+     * @return Number of schemas evicted to keep the schema caches within the memory budget
+     */
+    long getSchemaMemoryEvictionCount();
+
+    /**
+     * @return Number of distinct schema objects and arrays interned across all the APIs
+     */
+    int getInternedSchemaCount();
+
+    /**
+     * @return Number of schema objects and arrays found identical to an interned one
+     */
+    long getInternedSchemaHitCount();
+
+    /**
+     * @return true once the schemas of all the deployed APIs have been precompiled
+     */
+    boolean isWarmUpComplete();
+
+    int getPendingWarmUps();
+
+    /**
+     * @return Evaluation metrics of the cached schema patterns, the most expensive first
+     */
+    List<PatternStatistics> getPatternStatistics();
+
+    /**
+     * Reset all the metrics, including the pattern metrics. The schema cache statistics are not reset.
+     */
+    void reset();
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Precompiles the schemas of the deployed APIs in the background, so the first messages after an API is deployed
+ * or the gateway is restarted do not pay for parsing the swagger, resolving the references and compiling the
+ * schemas. The warm-up is complete when no handler is waiting to be warmed up.
+ */
+public final class SchemaWarmUp {
+
+    private static final Log logger = LogFactory.getLog(SchemaWarmUp.class);
+    private static final Set<SchemaValidator> validators =
+            Collections.newSetFromMap(new WeakHashMap<SchemaValidator, Boolean>());
+    private static final AtomicInteger pending = new AtomicInteger();
+    private static final Object lock = new Object();
+    private static volatile ExecutorService executor;
+
+    private SchemaWarmUp() {
+    }
+
+    /**
+     * Schedule the warm-up of a handler.
+     *
+     * @param validator Handler to be warmed up
+     */
+    static void schedule(SchemaValidator validator) {
+        synchronized (validators) {
+            validators.add(validator);
+        }
+        pending.incrementAndGet();
+        try {
+            getExecutor().execute(new WarmUp(validator));
+        } catch (RejectedExecutionException e) {
+            pending.decrementAndGet();
+        }
+    }
+
+    /**
+     * Schedule the warm-up of every known handler which is not warmed up yet.
+     */
+    public static void warmUpAll() {
+        List<SchemaValidator> coldValidators = new ArrayList<>();
+        synchronized (validators) {
+            for (SchemaValidator validator : validators) {
+                if (!validator.isWarmedUp()) {
+                    coldValidators.add(validator);
+                }
+            }
+        }
+        for (SchemaValidator validator : coldValidators) {
+            schedule(validator);
+        }
+    }
+
+    /**
+     * @return true once every scheduled warm-up has finished
+     */
+    public static boolean isComplete() {
+        return pending.get() == 0;
+    }
+
+    /**
+     * @return Number of handlers waiting to be warmed up
+     */
+    public static int getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * Stop the warm-up. Warm-ups which have not started are discarded.
+     */
+    public static void shutdown() {
+        synchronized (lock) {
+            if (executor != null) {
+                pending.addAndGet(-executor.shutdownNow().size());
+                executor = null;
+            }
+        }
+    }
+
+    private static ExecutorService getExecutor() {
+        ExecutorService current = executor;
+        if (current != null) {
+            return current;
+        }
+        synchronized (lock) {
+            if (executor == null) {
+                int threads = Integer.getInteger(SchemaValidatorConstant.WARM_UP_THREADS,
+                        Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+                ThreadPoolExecutor threadPool = new ThreadPoolExecutor(threads, threads,
+                        SchemaValidatorConstant.WARM_UP_THREAD_KEEP_ALIVE, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<Runnable>(), new WarmUpThreadFactory());
+                threadPool.allowCoreThreadTimeOut(true);
+                executor = threadPool;
+            }
+            return executor;
+        }
+    }
+
+    /**
+     * Warm-up of a single handler.
+     */
+    private static final class WarmUp implements Runnable {
+
+        private final SchemaValidator validator;
+
+        WarmUp(SchemaValidator validator) {
+            this.validator = validator;
+        }
+
+        @Override
+        public void run() {
+            long start = System.currentTimeMillis();
+            try {
+                int compiled = validator.warmUp();
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Precompiled " + compiled + " schemas of the API " + validator.getApiUUID() +
+                            " in " + (System.currentTimeMillis() - start) + " ms");
+                }
+            } catch (RuntimeException e) {
+                logger.error("Error occurred while precompiling the schemas of the API " + validator.getApiUUID(),
+                        e);
+            } finally {
+                if (pending.decrementAndGet() == 0) {
+                    logger.info("Schema validator warm-up is complete");
+                }
+            }
+        }
+    }
+
+    private static final class WarmUpThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "SchemaValidator-warmup-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Optional;
+
+/**
+ * Validation of a sampled payload by a candidate engine in the shadow of the validation engine of the API, run by
+ * the asynchronous validation executor once the payload has been validated on the mediation thread. The verdict
+ * and the violations of the candidate are compared with those of the validation engine and recorded in the metrics
+ * of the resource; they never affect the message. Violations are only compared when all of them are collected,
+ * since the engines may stop at different violations otherwise. Schemas the candidate engine cannot compile are
+ * not shadowed, as they would be validated by everit instead.
+ */
+final class ShadowValidation implements Runnable {
+
+    private static final Log logger = LogFactory.getLog(ShadowValidation.class);
+    private static final SchemaCache<Optional<ValidationSchema>> schemaCache = new SchemaCache<>(Integer.getInteger(
+            SchemaValidatorConstant.SCHEMA_CACHE_SIZE, SchemaValidatorConstant.DEFAULT_SCHEMA_CACHE_SIZE),
+            SchemaStore.getInstance().getMemoryBudget());
+
+    static {
+        ValidationEngineRegistry.addSchemaCache(schemaCache);
+    }
+
+    private final byte[] payload;
+    private final SchemaCache.Key cacheKey;
+    private final OperationIndex index;
+    private final ResourceMetrics metrics;
+    private final int maxViolations;
+    private final ValidationResult primaryResult;
+    private final long primaryNanos;
+    private final String operation;
+
+    /**
+     * Create a shadow validation.
+     *
+     * @param payload       Raw JSON payload, which is not modified
+     * @param cacheKey      Cache key of the schema of the message compiled by the candidate engine
+     * @param index         Operation index of the API swagger
+     * @param metrics       Metrics of the elected resource
+     * @param maxViolations Number of violations after which the validation stops, or 0 to find all the violations
+     * @param primaryResult Result of the validation engine, or null if it found the payload malformed
+     * @param primaryNanos  Time taken by the validation engine to validate the payload
+     * @param operation     Description of the operation of the message, for the log
+     */
+    ShadowValidation(byte[] payload, SchemaCache.Key cacheKey, OperationIndex index, ResourceMetrics metrics,
+                     int maxViolations, ValidationResult primaryResult, long primaryNanos, String operation) {
+        this.payload = payload;
+        this.cacheKey = cacheKey;
+        this.index = index;
+        this.metrics = metrics;
+        this.maxViolations = maxViolations;
+        this.primaryResult = primaryResult;
+        this.primaryNanos = primaryNanos;
+        this.operation = operation;
+    }
+
+    @Override
+    public void run() {
+        ValidationSchema schema = getSchema();
+        if (schema == null) {
+            return;
+        }
+        ValidationResult result;
+        long validateStart = System.nanoTime();
+        try {
+            result = schema.validate(payload, maxViolations);
+        } catch (JsonProcessingException e) {
+            result = null;
+        } catch (IOException | RuntimeException e) {
+            logger.error("Validation engine " + cacheKey.getEngine() + " failed to validate the payload of " +
+                    operation, e);
+            return;
+        }
+        long nanos = System.nanoTime() - validateStart;
+        boolean verdictAgrees = primaryResult == null ? result == null :
+                result != null && result.isValid() == primaryResult.isValid();
+        boolean violationsAgree = !verdictAgrees || primaryResult == null || primaryResult.isValid() ||
+                maxViolations != 0 || new HashSet<>(primaryResult.getViolations()).equals(
+                new HashSet<>(result.getViolations()));
+        metrics.recordShadowValidation(nanos, primaryNanos, verdictAgrees, violationsAgree);
+        if ((!verdictAgrees || !violationsAgree) && logger.isDebugEnabled()) {
+            logger.debug("Validation engine " + cacheKey.getEngine() + " disagrees on a payload of " + operation +
+                    " :" + describe(result) + " instead of " + describe(primaryResult));
+        }
+    }
+
+    /**
+     * Get the schema of the message compiled by the candidate engine. The schema is compiled by the engine itself
+     * rather than the ValidationEngineRegistry, which would fall back to everit.
+     *
+     * @return Compiled schema or null if the engine is not registered or cannot compile the schema
+     */
+    private ValidationSchema getSchema() {
+        Optional<ValidationSchema> schema = schemaCache.get(cacheKey);
+        if (schema == null) {
+            ValidationEngine engine = ValidationEngineRegistry.getEngine(cacheKey.getEngine());
+            JSONObject jsonSchema = SchemaValidator.getJsonSchema(cacheKey, index);
+            if (engine == null || jsonSchema == null) {
+                return null;
+            }
+            try {
+                schema = Optional.ofNullable(engine.compile(jsonSchema));
+            } catch (RuntimeException e) {
+                logger.error("Validation engine " + cacheKey.getEngine() + " failed to compile the schema", e);
+                schema = Optional.empty();
+            }
+            if (!schema.isPresent() && logger.isDebugEnabled()) {
+                logger.debug("Payloads of " + operation + " are not shadowed, validation engine " +
+                        cacheKey.getEngine() + " cannot compile the schema");
+            }
+            schemaCache.put(cacheKey, schema, schema.isPresent() ? SchemaStore.estimateSize(jsonSchema) : 0);
+        }
+        return schema.orElse(null);
+    }
+
+    private static String describe(ValidationResult result) {
+        if (result == null) {
+            return "malformed";
+        }
+        return result.isValid() ? "valid" : "[" + SchemaValidator.describeViolations(result) + "]";
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import org.json.JSONObject;
+
+/**
+ * Service provider interface of the JSON schema validation engines. An engine compiles the resolved schemas of the
+ * operation index once, and the compiled schemas validate the raw payloads of the messages. Engines are registered
+ * as OSGi services and are picked per API with the validationEngine property of the handler, using the name of the
+ * engine. Implementations must be thread safe.
+ */
+public interface ValidationEngine {
+
+    /**
+     * Get the name of the engine, which is used to select the engine in the handler configuration.
+     *
+     * @return Name of the engine
+     */
+    String getName();
+
+    /**
+     * Compile a resolved schema. Local references of the schema point to its definitions.
+     *
+     * @param schema Resolved schema from the operation index
+     * @return Compiled schema, or null if the engine cannot compile the schema, in which case the schema is
+     * validated by the default engine
+     */
+    ValidationSchema compile(JSONObject schema);
+}
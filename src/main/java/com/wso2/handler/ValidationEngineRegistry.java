@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Registry of the validation engines known to the handlers, by name. The built-in engines are always registered;
+ * engines of other bundles are registered by SchemaValidatorComponent when their OSGi services come up, and are
+ * unregistered when the services go away.
+ */
+public final class ValidationEngineRegistry {
+
+    private static final Log logger = LogFactory.getLog(ValidationEngineRegistry.class);
+    private static final ValidationEngine defaultEngine = new EveritValidationEngine();
+    private static final ValidationEngine compiledEngine = new CompiledValidationEngine();
+    private static final ConcurrentMap<String, ValidationEngine> engines = new ConcurrentHashMap<>();
+    private static final List<SchemaCache<?>> schemaCaches = new CopyOnWriteArrayList<>();
+
+    static {
+        engines.put(defaultEngine.getName(), defaultEngine);
+        engines.put(compiledEngine.getName(), compiledEngine);
+    }
+
+    private ValidationEngineRegistry() {
+    }
+
+    /**
+     * Get the engines which are built into the handler.
+     *
+     * @return Built-in engines
+     */
+    public static List<ValidationEngine> getBuiltInEngines() {
+        List<ValidationEngine> builtInEngines = new ArrayList<>(2);
+        builtInEngines.add(defaultEngine);
+        builtInEngines.add(compiledEngine);
+        return builtInEngines;
+    }
+
+    /**
+     * Add a cache of schemas compiled by the engines, keyed by the engine name. The schemas an engine name is cached
+     * with are removed from the cache whenever an engine is registered or unregistered with the name.
+     *
+     * @param schemaCache Schema cache
+     */
+    static void addSchemaCache(SchemaCache<?> schemaCache) {
+        schemaCaches.add(schemaCache);
+    }
+
+    /**
+     * Register a validation engine. An engine registered with the name of another engine replaces it, except for
+     * the default engine. The schemas compiled in place of the engine, by the default engine or by the replaced
+     * engine, are removed from the schema caches.
+     *
+     * @param engine Validation engine
+     */
+    public static void register(ValidationEngine engine) {
+        String name = engine.getName();
+        if (name == null || defaultEngine.getName().equals(name)) {
+            return;
+        }
+        ValidationEngine previous = engines.put(name, engine);
+        if (previous != engine) {
+            invalidate(name);
+        }
+        if (previous != null && previous != engine) {
+            logger.warn("Validation engine " + name + " is replaced by " + engine.getClass().getName());
+        } else if (logger.isDebugEnabled()) {
+            logger.debug("Registered the validation engine " + name);
+        }
+    }
+
+    /**
+     * Unregister a validation engine. The built-in engines are never unregistered. The schemas compiled by the
+     * engine are removed from the schema caches.
+     *
+     * @param engine Validation engine
+     */
+    public static void unregister(ValidationEngine engine) {
+        if (engine != defaultEngine && engine != compiledEngine && engine.getName() != null) {
+            if (engines.remove(engine.getName(), engine)) {
+                invalidate(engine.getName());
+            }
+            if (compiledEngine.getName().equals(engine.getName())) {
+                engines.putIfAbsent(compiledEngine.getName(), compiledEngine);
+            }
+        }
+    }
+
+    private static void invalidate(String name) {
+        for (SchemaCache<?> schemaCache : schemaCaches) {
+            schemaCache.invalidateEngine(name);
+        }
+    }
+
+    /**
+     * Get a validation engine.
+     *
+     * @param name Name of the engine
+     * @return Engine or null if there is no engine registered with the name
+     */
+    public static ValidationEngine getEngine(String name) {
+        return name != null ? engines.get(name) : null;
+    }
+
+    /**
+     * Get the default validation engine, which validates every schema the other engines cannot compile.
+     *
+     * @return Default engine
+     */
+    public static ValidationEngine getDefaultEngine() {
+        return defaultEngine;
+    }
+
+    /**
+     * Compile a schema with an engine. Schemas the engine cannot compile are compiled by the default engine, and so
+     * is every schema while the engine is not registered.
+     *
+     * @param name   Name of the engine
+     * @param schema Resolved schema
+     * @return Compiled schema or null if the schema cannot be compiled by the default engine either
+     */
+    public static ValidationSchema compile(String name, JSONObject schema) {
+        ValidationEngine engine = getEngine(name);
+        ValidationSchema compiledSchema = null;
+        if (engine != null && engine != defaultEngine) {
+            try {
+                compiledSchema = engine.compile(schema);
+            } catch (RuntimeException e) {
+                logger.error("Validation engine " + name + " failed to compile the schema", e);
+            }
+            if (compiledSchema == null && logger.isDebugEnabled()) {
+                logger.debug("Schema is validated by " + defaultEngine.getName() + " instead of " + name);
+            }
+        }
+        return compiledSchema != null ? compiledSchema : defaultEngine.compile(schema);
+    }
+
+    /**
+     * Get the names of the registered engines.
+     *
+     * @return Engine names
+     */
+    public static List<String> getEngineNames() {
+        List<String> names = new ArrayList<>(engines.keySet());
+        Collections.sort(names);
+        return names;
+    }
+}
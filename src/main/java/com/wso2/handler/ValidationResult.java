@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of validating a payload against a compiled schema.
+ */
+public final class ValidationResult {
+
+    /**
+     * Result of a valid payload.
+     */
+    public static final ValidationResult VALID = new ValidationResult(Collections.<Violation>emptyList(), 0);
+
+    private final List<Violation> violations;
+    private final int violationCount;
+
+    /**
+     * Create the result of an invalid payload.
+     *
+     * @param violations     Reported violations
+     * @param violationCount Number of violations found in the payload, which may be more than the reported
+     *                       violations if the engine knows about violations it did not report
+     */
+    public ValidationResult(List<Violation> violations, int violationCount) {
+        this.violations = Collections.unmodifiableList(violations);
+        this.violationCount = Math.max(violationCount, violations.size());
+    }
+
+    /**
+     * Create the result of an invalid payload with all the found violations.
+     *
+     * @param violations Reported violations
+     */
+    public ValidationResult(List<Violation> violations) {
+        this(violations, violations.size());
+    }
+
+    public boolean isValid() {
+        return violationCount == 0;
+    }
+
+    public List<Violation> getViolations() {
+        return violations;
+    }
+
+    public int getViolationCount() {
+        return violationCount;
+    }
+}
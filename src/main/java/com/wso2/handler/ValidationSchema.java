@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Schema compiled by a validation engine. A compiled schema is cached and shared by concurrent messages, hence it
+ * must be immutable.
+ */
+public interface ValidationSchema {
+
+    /**
+     * Validate a raw JSON payload. The validation may stop once the given number of violations is found.
+     *
+     * @param payload       Raw JSON payload
+     * @param maxViolations Number of violations to report, or 0 to report all the violations
+     * @return Result of the validation
+     * @throws com.fasterxml.jackson.core.JsonProcessingException Throws if the payload is not well-formed JSON
+     * @throws IOException                                        Throws if the payload cannot be read
+     */
+    ValidationResult validate(byte[] payload, int maxViolations) throws IOException;
+
+    /**
+     * Validate a JSON payload read from a stream, such as the stream of a compressed payload being inflated. The
+     * stream is read up to the end of the payload and is closed.
+     *
+     * @param payload       Stream of the JSON payload
+     * @param maxViolations Number of violations to report, or 0 to report all the violations
+     * @return Result of the validation
+     * @throws com.fasterxml.jackson.core.JsonProcessingException Throws if the payload is not well-formed JSON
+     * @throws IOException                                        Throws if the payload cannot be read
+     */
+    ValidationResult validate(InputStream payload, int maxViolations) throws IOException;
+}
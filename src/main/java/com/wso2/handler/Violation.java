@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+/**
+ * Schema violation found in a payload, reported in the same form by every validation engine.
+ */
+public final class Violation {
+
+    private final String pointer;
+    private final String message;
+
+    /**
+     * Create a violation.
+     *
+     * @param pointer JSON pointer of the invalid value, e.g. #/tags/0/name
+     * @param message Description of the violation
+     */
+    public Violation(String pointer, String message) {
+        this.pointer = pointer;
+        this.message = message;
+    }
+
+    public String getPointer() {
+        return pointer;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Violation)) {
+            return false;
+        }
+        Violation violation = (Violation) o;
+        return pointer.equals(violation.pointer) && message.equals(violation.message);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * pointer.hashCode() + message.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return pointer + ": " + message;
+    }
+}
@@ -0,0 +1,695 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import org.everit.json.schema.FormatValidator;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Schema of an XML payload, which validates the payload with a StAX pull parser against the resolved swagger schema,
+ * without building the Axiom tree of the payload or converting it to JSON. The elements and attributes are mapped to
+ * the schema the way the swagger xml object describes them: child elements are the properties of an object, unless
+ * the property is an attribute, the items of an array are repeated elements named after the property unless the
+ * array is wrapped, and xml.name renames an element or attribute. The text of an element is validated as the
+ * scalar type of its schema.
+ * The properties of allOf subschemas are merged into the schema; anyOf, oneOf and not are not validated.
+ * Violations are reported with the JSON pointers of the equivalent JSON payload. A schema is immutable and can be
+ * used by concurrent messages.
+ */
+public final class XmlSchema {
+
+    private static final XMLInputFactory xmlInputFactory = createInputFactory();
+    private static final String REFERENCE_PREFIX = "#/" + SchemaValidatorConstant.DEFINITIONS + "/";
+    private static final String XML = "xml";
+    private static final String NAME = "name";
+    private static final String ATTRIBUTE = "attribute";
+    private static final String WRAPPED = "wrapped";
+
+    private static final int OBJECT = 1;
+    private static final int ARRAY = 1 << 1;
+    private static final int STRING = 1 << 2;
+    private static final int INTEGER = 1 << 3;
+    private static final int NUMBER = 1 << 4;
+    private static final int BOOLEAN = 1 << 5;
+    private static final int NULL = 1 << 6;
+
+    private final String rootName;
+    private final Node root;
+
+    private XmlSchema(String rootName, Node root) {
+        this.rootName = rootName;
+        this.root = root;
+    }
+
+    /**
+     * Compile a resolved schema.
+     *
+     * @param schema Resolved schema from the operation index
+     * @return XML schema or null if there is no schema
+     */
+    public static XmlSchema compile(JSONObject schema) {
+        if (schema == null) {
+            return null;
+        }
+        Compiler compiler = new Compiler(schema);
+        JSONObject xml = compiler.dereference(schema).optJSONObject(XML);
+        return new XmlSchema(xml != null ? xml.optString(NAME, null) : null, compiler.compile(schema));
+    }
+
+    /**
+     * Validate an XML payload.
+     *
+     * @param payload       Raw XML payload
+     * @param maxViolations Number of violations after which the validation stops, or 0 to find all the violations
+     * @return Result of the validation
+     * @throws XMLStreamException Throws if the payload is not well-formed XML
+     */
+    public ValidationResult validate(byte[] payload, int maxViolations) throws XMLStreamException {
+        XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(new ByteArrayInputStream(payload));
+        try {
+            ValidationResult result = validate(reader, maxViolations);
+            while (reader.hasNext()) {
+                reader.next();
+            }
+            return result;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Validate the next element of an XML stream, which is the root element of the payload.
+     *
+     * @param reader        XML stream of the payload
+     * @param maxViolations Number of violations after which the validation stops, or 0 to find all the violations
+     * @return Result of the validation
+     * @throws XMLStreamException Throws if the payload is not well-formed XML
+     */
+    public ValidationResult validate(XMLStreamReader reader, int maxViolations) throws XMLStreamException {
+        while (reader.getEventType() != XMLStreamConstants.START_ELEMENT) {
+            if (!reader.hasNext()) {
+                return ValidationResult.VALID;
+            }
+            reader.next();
+        }
+        CompiledSchema.Violations violations = new CompiledSchema.Violations(maxViolations);
+        try {
+            if (rootName != null && !rootName.equals(reader.getLocalName())) {
+                violations.add("expected element: " + rootName + ", found: " + reader.getLocalName());
+                skipElement(reader);
+            } else {
+                root.validate(reader, violations);
+            }
+        } catch (CompiledSchema.ViolationLimitException e) {
+            return new ValidationResult(violations.getViolations());
+        }
+        return violations.getViolations().isEmpty() ? ValidationResult.VALID :
+                new ValidationResult(violations.getViolations());
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    /**
+     * Move the stream to the next child element or to the end of the current element, skipping the text, comments
+     * and processing instructions in between.
+     *
+     * @return START_ELEMENT or END_ELEMENT
+     */
+    private static int nextElement(XMLStreamReader reader) throws XMLStreamException {
+        int event;
+        do {
+            event = reader.next();
+        } while (event != XMLStreamConstants.START_ELEMENT && event != XMLStreamConstants.END_ELEMENT);
+        return event;
+    }
+
+    /**
+     * Skip the current element, leaving the stream at its end.
+     */
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Compiles the schema nodes. Each definition is compiled once, and a reference to a definition which is
+     * still being compiled links to the same node, hence recursive definitions compile to a cyclic tree.
+     */
+    private static final class Compiler {
+
+        private final JSONObject definitions;
+        private final Map<String, Node> definitionNodes = new HashMap<>();
+        private final Set<JSONObject> merging = Collections.newSetFromMap(new IdentityHashMap<JSONObject, Boolean>());
+
+        Compiler(JSONObject root) {
+            definitions = root.optJSONObject(SchemaValidatorConstant.DEFINITIONS);
+        }
+
+        Node compile(JSONObject schema) {
+            String reference = schema.optString(SchemaValidatorConstant.SCHEMA_REFERENCE, null);
+            if (reference == null) {
+                Node node = new Node();
+                compileInto(node, schema);
+                return node;
+            }
+            String name = definitionName(reference);
+            Node node = definitionNodes.get(name);
+            if (node == null) {
+                node = new Node();
+                definitionNodes.put(name, node);
+                compileInto(node, dereference(schema));
+            }
+            return node;
+        }
+
+        /**
+         * Get the definition a schema refers to, or the schema itself if it is not a reference.
+         */
+        JSONObject dereference(JSONObject schema) {
+            String reference = schema.optString(SchemaValidatorConstant.SCHEMA_REFERENCE, null);
+            if (reference == null) {
+                return schema;
+            }
+            JSONObject definition = definitions != null ? definitions.optJSONObject(definitionName(reference)) : null;
+            return definition != null ? definition : new JSONObject();
+        }
+
+        private static String definitionName(String reference) {
+            return reference.startsWith(REFERENCE_PREFIX) ? reference.substring(REFERENCE_PREFIX.length()) :
+                    reference;
+        }
+
+        /**
+         * Compile a schema into a node. The allOf subschemas are compiled into the same node, so the properties of
+         * all of them are validated together.
+         */
+        private void compileInto(Node node, JSONObject schema) {
+            if (!merging.add(schema)) {
+                return;
+            }
+            node.types |= compileTypes(schema.opt("type"));
+            JSONObject properties = schema.optJSONObject("properties");
+            if (properties != null) {
+                for (String name : properties.keySet()) {
+                    JSONObject property = properties.optJSONObject(name);
+                    if (property != null) {
+                        compileProperty(node, name, property);
+                    }
+                }
+            }
+            JSONArray required = schema.optJSONArray("required");
+            if (required != null) {
+                if (node.required == null) {
+                    node.required = new HashMap<>();
+                }
+                for (int i = 0; i < required.length(); i++) {
+                    if (!node.required.containsKey(required.getString(i))) {
+                        node.required.put(required.getString(i), node.required.size());
+                    }
+                }
+            }
+            Object additionalProperties = schema.opt("additionalProperties");
+            if (additionalProperties instanceof Boolean) {
+                node.additionalPropertiesAllowed = (Boolean) additionalProperties;
+            } else if (additionalProperties instanceof JSONObject) {
+                node.additionalProperties = compile((JSONObject) additionalProperties);
+            }
+            JSONObject items = schema.optJSONObject("items");
+            if (items != null) {
+                node.items = compile(items);
+            }
+            node.minItems = integer(schema, "minItems", node.minItems);
+            node.maxItems = integer(schema, "maxItems", node.maxItems);
+            node.minLength = integer(schema, "minLength", node.minLength);
+            node.maxLength = integer(schema, "maxLength", node.maxLength);
+            String pattern = schema.optString("pattern", null);
+            if (pattern != null) {
+                try {
+                    node.pattern = PatternCache.getPattern(pattern);
+                } catch (PatternSyntaxException e) {
+                    // The same schema is rejected by the JSON engines, the pattern is not validated.
+                }
+            }
+            FormatValidator format = CompiledSchema.getFormatValidator(schema.optString("format", null));
+            if (format != null) {
+                node.format = format;
+            }
+            node.minimum = decimal(schema, "minimum", node.minimum);
+            node.maximum = decimal(schema, "maximum", node.maximum);
+            node.exclusiveMinimum |= schema.optBoolean("exclusiveMinimum");
+            node.exclusiveMaximum |= schema.optBoolean("exclusiveMaximum");
+            JSONArray enumValues = schema.optJSONArray("enum");
+            if (enumValues != null) {
+                node.enumValues = new HashSet<>();
+                for (int i = 0; i < enumValues.length(); i++) {
+                    node.enumValues.add(enumValue(enumValues.get(i)));
+                }
+            }
+            JSONArray allOf = schema.optJSONArray("allOf");
+            if (allOf != null) {
+                for (int i = 0; i < allOf.length(); i++) {
+                    JSONObject subschema = allOf.optJSONObject(i);
+                    if (subschema != null) {
+                        compileInto(node, dereference(subschema));
+                    }
+                }
+            }
+            merging.remove(schema);
+        }
+
+        private void compileProperty(Node node, String name, JSONObject schema) {
+            JSONObject xml = schema.optJSONObject(XML);
+            JSONObject definition = dereference(schema);
+            String elementName = xml != null ? xml.optString(NAME, name) : name;
+            if (xml != null && xml.optBoolean(ATTRIBUTE)) {
+                if (node.attributes == null) {
+                    node.attributes = new HashMap<>();
+                }
+                node.attributes.put(elementName, new Property(name, compile(schema), false));
+                return;
+            }
+            boolean repeated = false;
+            if ("array".equals(definition.opt("type")) && (xml == null || !xml.optBoolean(WRAPPED))) {
+                // The items of an unwrapped array are repeated elements, named after the items if they have a name.
+                repeated = true;
+                JSONObject items = definition.optJSONObject("items");
+                JSONObject itemsXml = items != null ? items.optJSONObject(XML) : null;
+                if (itemsXml != null && itemsXml.has(NAME)) {
+                    elementName = itemsXml.getString(NAME);
+                }
+            }
+            if (node.elements == null) {
+                node.elements = new HashMap<>();
+            }
+            node.elements.put(elementName, new Property(name, compile(schema), repeated));
+        }
+
+        private static int compileTypes(Object type) {
+            if (type instanceof JSONArray) {
+                int types = 0;
+                for (Object element : (JSONArray) type) {
+                    types |= compileType(element);
+                }
+                return types;
+            }
+            return type != null ? compileType(type) : 0;
+        }
+
+        private static int compileType(Object type) {
+            switch (String.valueOf(type)) {
+                case "object":
+                    return OBJECT;
+                case "array":
+                    return ARRAY;
+                case "string":
+                    return STRING;
+                case "integer":
+                    return INTEGER;
+                case "number":
+                    return NUMBER | INTEGER;
+                case "boolean":
+                    return BOOLEAN;
+                case "null":
+                    return NULL;
+                default:
+                    return 0;
+            }
+        }
+
+        private static Integer integer(JSONObject schema, String keyword, Integer defaultValue) {
+            Object value = schema.opt(keyword);
+            return value instanceof Number ? Integer.valueOf(((Number) value).intValue()) : defaultValue;
+        }
+
+        private static BigDecimal decimal(JSONObject schema, String keyword, BigDecimal defaultValue) {
+            Object value = schema.opt(keyword);
+            return value instanceof Number ? new BigDecimal(value.toString()) : defaultValue;
+        }
+
+        private static Object enumValue(Object value) {
+            if (value instanceof Number) {
+                return new BigDecimal(value.toString()).stripTrailingZeros();
+            }
+            return value instanceof Boolean ? value : String.valueOf(value);
+        }
+    }
+
+    /**
+     * Element or attribute of an object.
+     */
+    private static final class Property {
+
+        private final String name;
+        private final Node node;
+        private final boolean repeated;
+
+        Property(String name, Node node, boolean repeated) {
+            this.name = name;
+            this.node = node;
+            this.repeated = repeated;
+        }
+    }
+
+    /**
+     * Validator of a single schema. Nodes are only modified while the schema is compiled.
+     */
+    private static final class Node {
+
+        private int types;
+        private Set<Object> enumValues;
+        private Map<String, Property> elements;
+        private Map<String, Property> attributes;
+        private Map<String, Integer> required;
+        private boolean additionalPropertiesAllowed = true;
+        private Node additionalProperties;
+        private Node items;
+        private Integer minItems;
+        private Integer maxItems;
+        private Integer minLength;
+        private Integer maxLength;
+        private PatternMatcher pattern;
+        private FormatValidator format;
+        private BigDecimal minimum;
+        private BigDecimal maximum;
+        private boolean exclusiveMinimum;
+        private boolean exclusiveMaximum;
+
+        /**
+         * Validate the current element of the stream, leaving the stream at the end of the element.
+         */
+        void validate(XMLStreamReader reader, CompiledSchema.Violations violations) throws XMLStreamException,
+                CompiledSchema.ViolationLimitException {
+            if ((types & OBJECT) != 0 || (types == 0 && (elements != null || attributes != null))) {
+                validateObject(reader, violations);
+            } else if ((types & ARRAY) != 0 || (types == 0 && items != null)) {
+                validateItems(reader, violations);
+            } else {
+                String text = readText(reader, violations);
+                if (text != null) {
+                    validateText(text, violations);
+                }
+            }
+        }
+
+        private void validateObject(XMLStreamReader reader, CompiledSchema.Violations violations)
+                throws XMLStreamException, CompiledSchema.ViolationLimitException {
+            boolean[] found = required != null ? new boolean[required.size()] : null;
+            if (attributes != null) {
+                for (int i = 0; i < reader.getAttributeCount(); i++) {
+                    Property attribute = attributes.get(reader.getAttributeLocalName(i));
+                    if (attribute != null) {
+                        markFound(attribute.name, found);
+                        violations.push(attribute.name);
+                        attribute.node.validateText(reader.getAttributeValue(i), violations);
+                        violations.pop();
+                    }
+                }
+            }
+            Map<Property, Integer> counts = null;
+            while (nextElement(reader) == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+                Property element = elements != null ? elements.get(name) : null;
+                if (element == null) {
+                    if (!additionalPropertiesAllowed) {
+                        violations.add("extraneous key [" + name + "] is not permitted");
+                        skipElement(reader);
+                    } else if (additionalProperties != null) {
+                        violations.push(name);
+                        additionalProperties.validate(reader, violations);
+                        violations.pop();
+                    } else {
+                        skipElement(reader);
+                    }
+                    continue;
+                }
+                markFound(element.name, found);
+                if (counts == null) {
+                    counts = new HashMap<>();
+                }
+                Integer count = counts.get(element);
+                counts.put(element, count == null ? 1 : count + 1);
+                violations.push(element.name);
+                if (element.repeated) {
+                    violations.push(count == null ? 0 : count);
+                    if (element.node.items != null) {
+                        element.node.items.validate(reader, violations);
+                    } else {
+                        skipElement(reader);
+                    }
+                    violations.pop();
+                } else if (count != null) {
+                    violations.add("element [" + name + "] is not permitted more than once");
+                    skipElement(reader);
+                } else {
+                    element.node.validate(reader, violations);
+                }
+                violations.pop();
+            }
+            if (counts != null) {
+                for (Map.Entry<Property, Integer> count : counts.entrySet()) {
+                    if (count.getKey().repeated) {
+                        violations.push(count.getKey().name);
+                        count.getKey().node.validateItemCount(count.getValue(), violations);
+                        violations.pop();
+                    }
+                }
+            }
+            if (found != null) {
+                for (Map.Entry<String, Integer> requiredProperty : required.entrySet()) {
+                    if (!found[requiredProperty.getValue()]) {
+                        violations.add("required key [" + requiredProperty.getKey() + "] not found");
+                    }
+                }
+            }
+        }
+
+        private void markFound(String name, boolean[] found) {
+            if (found != null) {
+                Integer requiredIndex = required.get(name);
+                if (requiredIndex != null) {
+                    found[requiredIndex] = true;
+                }
+            }
+        }
+
+        private void validateItems(XMLStreamReader reader, CompiledSchema.Violations violations)
+                throws XMLStreamException, CompiledSchema.ViolationLimitException {
+            int itemCount = 0;
+            while (nextElement(reader) == XMLStreamConstants.START_ELEMENT) {
+                if (items != null) {
+                    violations.push(itemCount);
+                    items.validate(reader, violations);
+                    violations.pop();
+                } else {
+                    skipElement(reader);
+                }
+                itemCount++;
+            }
+            validateItemCount(itemCount, violations);
+        }
+
+        private void validateItemCount(int itemCount, CompiledSchema.Violations violations)
+                throws CompiledSchema.ViolationLimitException {
+            if (minItems != null && itemCount < minItems) {
+                violations.add("expected minimum item count: " + minItems + ", found: " + itemCount);
+            }
+            if (maxItems != null && itemCount > maxItems) {
+                violations.add("expected maximum item count: " + maxItems + ", found: " + itemCount);
+            }
+        }
+
+        /**
+         * Read the text of an element which is expected to have no child elements.
+         *
+         * @return Text of the element or null if the element has child elements
+         */
+        private String readText(XMLStreamReader reader, CompiledSchema.Violations violations)
+                throws XMLStreamException, CompiledSchema.ViolationLimitException {
+            StringBuilder text = new StringBuilder();
+            int event;
+            while ((event = reader.next()) != XMLStreamConstants.END_ELEMENT) {
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    if (types != 0) {
+                        violations.add("expected type: " + typeNames(types) + ", found: JSONObject");
+                    }
+                    skipElement(reader);
+                    while (reader.next() != XMLStreamConstants.END_ELEMENT) {
+                        if (reader.getEventType() == XMLStreamConstants.START_ELEMENT) {
+                            skipElement(reader);
+                        }
+                    }
+                    return null;
+                }
+                if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA ||
+                        event == XMLStreamConstants.SPACE) {
+                    text.append(reader.getText());
+                }
+            }
+            return text.toString();
+        }
+
+        /**
+         * Validate the text of an element or the value of an attribute as the scalar type of the schema.
+         */
+        private void validateText(String text, CompiledSchema.Violations violations)
+                throws CompiledSchema.ViolationLimitException {
+            if ((types & INTEGER) != 0 && isInteger(text)) {
+                validateNumber(text, new BigDecimal(text.trim()), violations);
+            } else if ((types & NUMBER) != 0 && decimal(text) != null) {
+                validateNumber(text, decimal(text), violations);
+            } else if ((types & BOOLEAN) != 0 && ("true".equals(text.trim()) || "false".equals(text.trim()))) {
+                validateEnum(Boolean.valueOf(text.trim()), text, violations);
+            } else if ((types & NULL) != 0 && text.isEmpty()) {
+                return;
+            } else if (types == 0 || (types & STRING) != 0) {
+                validateString(text, violations);
+            } else {
+                violations.add("expected type: " + typeNames(types) + ", found: String");
+            }
+        }
+
+        private void validateString(String value, CompiledSchema.Violations violations)
+                throws CompiledSchema.ViolationLimitException {
+            if (minLength != null || maxLength != null) {
+                int length = value.codePointCount(0, value.length());
+                if (minLength != null && length < minLength) {
+                    violations.add("expected minLength: " + minLength + ", actual: " + length);
+                }
+                if (maxLength != null && length > maxLength) {
+                    violations.add("expected maxLength: " + maxLength + ", actual: " + length);
+                }
+            }
+            if (pattern != null) {
+                String patternViolation = pattern.validate(value);
+                if (patternViolation != null) {
+                    violations.add(patternViolation);
+                }
+            }
+            if (format != null) {
+                Optional<String> formatViolation = format.validate(value);
+                if (formatViolation.isPresent()) {
+                    violations.add(formatViolation.get());
+                }
+            }
+            validateEnum(value, value, violations);
+        }
+
+        private void validateNumber(String text, BigDecimal value, CompiledSchema.Violations violations)
+                throws CompiledSchema.ViolationLimitException {
+            if (minimum != null) {
+                int comparison = value.compareTo(minimum);
+                if (exclusiveMinimum ? comparison <= 0 : comparison < 0) {
+                    violations.add(text + (exclusiveMinimum ? " is not higher than " :
+                            " is not higher or equal to ") + minimum);
+                }
+            }
+            if (maximum != null) {
+                int comparison = value.compareTo(maximum);
+                if (exclusiveMaximum ? comparison >= 0 : comparison > 0) {
+                    violations.add(text + (exclusiveMaximum ? " is not lower than " :
+                            " is not lower or equal to ") + maximum);
+                }
+            }
+            validateEnum(value.stripTrailingZeros(), text, violations);
+        }
+
+        private void validateEnum(Object value, String text, CompiledSchema.Violations violations)
+                throws CompiledSchema.ViolationLimitException {
+            if (enumValues != null && !enumValues.contains(value)) {
+                violations.add(text + " is not a valid enum value");
+            }
+        }
+
+        private static boolean isInteger(String text) {
+            try {
+                new BigInteger(text.trim());
+                return true;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        private static BigDecimal decimal(String text) {
+            try {
+                return new BigDecimal(text.trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        private static String typeNames(int types) {
+            List<String> names = new ArrayList<>();
+            for (int type = OBJECT; type <= NULL; type <<= 1) {
+                // Integer is implied by Number.
+                if ((types & type) != 0 && !(type == INTEGER && (types & NUMBER) != 0)) {
+                    names.add(typeName(type));
+                }
+            }
+            return names.size() == 1 ? names.get(0) : names.toString();
+        }
+
+        private static String typeName(int type) {
+            switch (type) {
+                case OBJECT:
+                    return "JSONObject";
+                case ARRAY:
+                    return "JSONArray";
+                case STRING:
+                    return "String";
+                case INTEGER:
+                    return "Integer";
+                case NUMBER:
+                    return "Number";
+                case BOOLEAN:
+                    return "Boolean";
+                default:
+                    return "Null";
+            }
+        }
+    }
+}
@@ -1,19 +1,47 @@
 package com.wso2.handler.internal;
 
+import com.wso2.handler.AsyncValidationExecutor;
+import com.wso2.handler.ParallelValidationExecutor;
+import com.wso2.handler.SchemaStore;
+import com.wso2.handler.SchemaValidatorMetrics;
+import com.wso2.handler.SchemaWarmUp;
+import com.wso2.handler.ValidationEngine;
+import com.wso2.handler.ValidationEngineRegistry;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.component.ComponentContext;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 @Component(name = "com.wso2.handler.SchemaValidator", immediate = true)
 public class SchemaValidatorComponent {
+    private static final String ENGINE_NAME_PROPERTY = "validation.engine.name";
     private static Log log = LogFactory.getLog(SchemaValidatorComponent.class);
+    private final List<ServiceRegistration<ValidationEngine>> engineRegistrations = new ArrayList<>();
+    private ServiceRegistration<SchemaStore> schemaStoreRegistration;
 
     @Activate
     protected void activate(ComponentContext context) {
 
+        registerMetrics();
+        registerBuiltInEngines(context.getBundleContext());
+        schemaStoreRegistration = context.getBundleContext().registerService(SchemaStore.class,
+                SchemaStore.getInstance(), null);
+        SchemaWarmUp.warmUpAll();
         if (log.isDebugEnabled()) {
             log.debug("OB Publisher Executor component is activated ");
         }
@@ -22,9 +50,96 @@ public class SchemaValidatorComponent {
     @Deactivate
     protected void deactivate(ComponentContext ctxt) {
 
+        unregisterMetrics();
+        unregisterBuiltInEngines();
+        unregisterSchemaStore();
+        AsyncValidationExecutor.shutdown();
+        ParallelValidationExecutor.shutdown();
+        SchemaWarmUp.shutdown();
         if (log.isDebugEnabled()) {
             log.debug("OB Publisher Executor is deactivated");
         }
     }
-}
 
+    /**
+     * Make the validation engines of other bundles available to the handlers.
+     *
+     * @param engine Validation engine service
+     */
+    @Reference(name = "validation.engine", service = ValidationEngine.class,
+            cardinality = ReferenceCardinality.MULTIPLE, policy = ReferencePolicy.DYNAMIC,
+            unbind = "unsetValidationEngine")
+    protected void setValidationEngine(ValidationEngine engine) {
+        ValidationEngineRegistry.register(engine);
+    }
+
+    protected void unsetValidationEngine(ValidationEngine engine) {
+        ValidationEngineRegistry.unregister(engine);
+    }
+
+    /**
+     * Publish the built-in validation engines as OSGi services, so other bundles can use them the same way.
+     *
+     * @param bundleContext Bundle context of the handler
+     */
+    private void registerBuiltInEngines(BundleContext bundleContext) {
+        for (ValidationEngine engine : ValidationEngineRegistry.getBuiltInEngines()) {
+            Hashtable<String, Object> properties = new Hashtable<>();
+            properties.put(ENGINE_NAME_PROPERTY, engine.getName());
+            engineRegistrations.add(bundleContext.registerService(ValidationEngine.class, engine, properties));
+        }
+    }
+
+    private void unregisterBuiltInEngines() {
+        for (ServiceRegistration<ValidationEngine> registration : engineRegistrations) {
+            try {
+                registration.unregister();
+            } catch (IllegalStateException e) {
+                // The service is already unregistered with the bundle.
+            }
+        }
+        engineRegistrations.clear();
+    }
+
+    /**
+     * Withdraw the schema store service and release the interned schemas of the undeployed APIs.
+     */
+    private void unregisterSchemaStore() {
+        if (schemaStoreRegistration != null) {
+            try {
+                schemaStoreRegistration.unregister();
+            } catch (IllegalStateException e) {
+                // The service is already unregistered with the bundle.
+            }
+            schemaStoreRegistration = null;
+        }
+        SchemaStore.getInstance().clear();
+    }
+
+    /**
+     * Expose the schema validator metrics through the platform MBean server.
+     */
+    private void registerMetrics() {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = new ObjectName(SchemaValidatorMetrics.OBJECT_NAME);
+            if (!mBeanServer.isRegistered(objectName)) {
+                mBeanServer.registerMBean(SchemaValidatorMetrics.getInstance(), objectName);
+            }
+        } catch (JMException e) {
+            log.error("Error occurred while registering the schema validator metrics MBean", e);
+        }
+    }
+
+    private void unregisterMetrics() {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = new ObjectName(SchemaValidatorMetrics.OBJECT_NAME);
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            log.error("Error occurred while unregistering the schema validator metrics MBean", e);
+        }
+    }
+}
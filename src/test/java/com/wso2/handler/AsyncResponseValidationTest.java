@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.config.SynapseConfiguration;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the asynchronous, sampled validation of the responses.
+ */
+public class AsyncResponseValidationTest {
+
+    private static final byte[] INVALID = "{\"id\":\"1\"}".getBytes(StandardCharsets.UTF_8);
+
+    private static SynapseConfiguration configuration;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        configuration = MessageContexts.configuration(
+                Swaggers.entry("async-api", Swaggers.read("request-bodies-openapi3.json")),
+                Swaggers.entry("unsampled-api", Swaggers.read("request-bodies-openapi3.json")));
+    }
+
+    private static SchemaValidator validator(String apiUUID, String samplingRate) {
+        SchemaValidator validator = new SchemaValidator();
+        validator.setApiUUID(apiUUID);
+        validator.setResponseValidation(SchemaValidatorConstant.RESPONSE_VALIDATION_ASYNC);
+        validator.setResponseSamplingRate(samplingRate);
+        return validator;
+    }
+
+    private static ResourceStatistics statistics(String apiUUID) {
+        for (ResourceStatistics statistics : SchemaValidatorMetrics.getInstance().getApiStatistics(apiUUID)) {
+            if ("/pets".equals(statistics.getResource())) {
+                return statistics;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testViolationsRecordedWithoutFault() throws Exception {
+        SchemaValidator validator = validator("async-api", "1");
+        MessageContext messageContext = MessageContexts.response(configuration, "/pets", "POST", "201",
+                "application/json", INVALID);
+        assertTrue(validator.handleResponse(messageContext));
+        assertFalse("An asynchronously validated response is faulted", MessageContexts.isRejected(messageContext));
+        assertArrayEquals(INVALID, MessageContexts.relayedBody(messageContext));
+        for (int i = 0; i < 250 && (statistics("async-api") == null ||
+                statistics("async-api").getResponseViolations() == 0); i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(1, statistics("async-api").getResponseViolations());
+        assertEquals(0, statistics("async-api").getRequestViolations());
+    }
+
+    @Test
+    public void testUnsampledResponsesSkipped() throws Exception {
+        SchemaValidator validator = validator("unsampled-api", "0");
+        for (int i = 0; i < 10; i++) {
+            validator.handleResponse(MessageContexts.response(configuration, "/pets", "POST", "201",
+                    "application/json", INVALID));
+        }
+        ResourceStatistics statistics = statistics("unsampled-api");
+        assertTrue(statistics == null || statistics.getSchemaLookup().getCount() == 0);
+    }
+
+    @Test
+    public void testInvalidSamplingRateIgnored() {
+        SchemaValidator validator = validator("async-api", "0.25");
+        validator.setResponseSamplingRate("1.5");
+        validator.setResponseSamplingRate("often");
+        assertEquals("0.25", validator.getResponseSamplingRate());
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the compiled validation engine gives the same verdicts and violation pointers as everit.
+ */
+public class CompiledValidationEngineTest {
+
+    private static final EveritValidationEngine everit = new EveritValidationEngine();
+    private static final CompiledValidationEngine compiled = new CompiledValidationEngine();
+
+    private static final String PET = "{\"type\":\"object\",\"required\":[\"name\"],\"additionalProperties\":false," +
+            "\"properties\":{\"id\":{\"type\":\"integer\",\"minimum\":1},\"name\":{\"type\":\"string\"," +
+            "\"minLength\":1,\"maxLength\":8},\"tag\":{\"type\":\"string\",\"enum\":[\"cat\",\"dog\"]}," +
+            "\"weight\":{\"type\":\"number\",\"maximum\":100,\"exclusiveMaximum\":true}," +
+            "\"code\":{\"type\":\"string\",\"pattern\":\"^[A-Z]{3}$\"},\"owner\":{\"type\":\"object\"," +
+            "\"required\":[\"email\"],\"properties\":{\"email\":{\"type\":\"string\",\"format\":\"email\"}}}," +
+            "\"photos\":{\"type\":\"array\",\"minItems\":1,\"maxItems\":3,\"items\":{\"type\":\"string\"}}," +
+            "\"vaccinated\":{\"type\":\"boolean\"},\"note\":{\"type\":[\"string\",\"null\"]}}}";
+
+    private static final String[] PET_PAYLOADS = {
+            "{\"name\":\"Rex\"}",
+            "{}",
+            "{\"name\":\"\"}",
+            "{\"name\":\"Alexander the Great\"}",
+            "{\"name\":1}",
+            "{\"name\":\"Rex\",\"id\":0}",
+            "{\"name\":\"Rex\",\"id\":1.5}",
+            "{\"name\":\"Rex\",\"tag\":\"cow\"}",
+            "{\"name\":\"Rex\",\"weight\":100}",
+            "{\"name\":\"Rex\",\"weight\":99.9}",
+            "{\"name\":\"Rex\",\"code\":\"ABC\"}",
+            "{\"name\":\"Rex\",\"code\":\"abc\"}",
+            "{\"name\":\"Rex\",\"owner\":{}}",
+            "{\"name\":\"Rex\",\"owner\":{\"email\":\"rex\"}}",
+            "{\"name\":\"Rex\",\"owner\":{\"email\":\"rex@example.com\"}}",
+            "{\"name\":\"Rex\",\"photos\":[]}",
+            "{\"name\":\"Rex\",\"photos\":[\"a\",\"b\",\"c\",\"d\"]}",
+            "{\"name\":\"Rex\",\"photos\":[\"a\",2]}",
+            "{\"name\":\"Rex\",\"vaccinated\":\"yes\"}",
+            "{\"name\":\"Rex\",\"note\":null}",
+            "{\"name\":\"Rex\",\"note\":1}",
+            "{\"name\":\"Rex\",\"color\":\"black\"}",
+            "{\"id\":0,\"tag\":\"cow\",\"photos\":[1],\"owner\":{}}",
+            "[]",
+            "\"Rex\""
+    };
+
+    private static final String[][] SCHEMAS_AND_PAYLOADS = {
+            {"{\"type\":\"array\",\"items\":{\"$ref\":\"#/definitions/Pet\"},\"definitions\":{\"Pet\":" +
+                    "{\"type\":\"object\",\"required\":[\"name\"]}}}",
+                    "[{\"name\":\"a\"},{\"name\":\"b\"}]", "[{\"name\":\"a\"},{}]", "[{},{},3]"},
+            {"{\"$ref\":\"#/definitions/Node\",\"definitions\":{\"Node\":{\"type\":\"object\",\"properties\":" +
+                    "{\"value\":{\"type\":\"integer\"},\"next\":{\"$ref\":\"#/definitions/Node\"}}}}}",
+                    "{\"value\":1,\"next\":{\"value\":2,\"next\":{\"value\":3}}}",
+                    "{\"value\":1,\"next\":{\"value\":2,\"next\":{\"value\":\"3\"}}}"},
+            {"{\"type\":\"object\",\"minProperties\":1,\"maxProperties\":2,\"additionalProperties\":" +
+                    "{\"type\":\"integer\"}}",
+                    "{\"a\":1}", "{}", "{\"a\":1,\"b\":2,\"c\":3}", "{\"a\":\"1\"}"},
+            {"{\"oneOf\":[{\"type\":\"string\"},{\"type\":\"integer\"}]}", "\"a\"", "1", "1.5", "null"},
+            {"{\"oneOf\":[{\"type\":\"number\"},{\"type\":\"integer\"}]}", "1.5", "1"},
+            {"{\"anyOf\":[{\"type\":\"string\",\"maxLength\":2},{\"type\":\"integer\"}]}", "\"ab\"", "\"abc\"", "2"},
+            {"{\"type\":\"integer\",\"minimum\":1,\"exclusiveMinimum\":true,\"maximum\":10}", "1", "2", "10", "11"},
+            {"{\"enum\":[1,\"one\",true,null]}", "1", "\"one\"", "true", "null", "2", "\"two\""},
+            {"{\"type\":\"string\",\"format\":\"date-time\"}", "\"2019-10-18T10:00:00Z\"", "\"yesterday\""},
+            {"{\"type\":\"string\",\"format\":\"uuid-like\"}", "\"anything\""}
+    };
+
+    private static ValidationResult validate(ValidationSchema schema, String payload) throws IOException {
+        return schema.validate(payload.getBytes(StandardCharsets.UTF_8), 0);
+    }
+
+    /**
+     * Everit reports a value which matches none of the types of a type array once for every type, hence the
+     * engines are compared on the distinct pointers of their violations.
+     */
+    private static Set<String> pointers(ValidationResult result) {
+        Set<String> pointers = new TreeSet<>();
+        for (Violation violation : result.getViolations()) {
+            pointers.add(violation.getPointer());
+        }
+        return pointers;
+    }
+
+    private static void assertParity(String schema, String payload) throws IOException {
+        ValidationSchema compiledSchema = compiled.compile(new JSONObject(schema));
+        assertNotNull("The schema is not compiled: " + schema, compiledSchema);
+        ValidationResult expected = validate(everit.compile(new JSONObject(schema)), payload);
+        ValidationResult actual = validate(compiledSchema, payload);
+        assertEquals("Verdict of " + payload + " against " + schema, expected.isValid(), actual.isValid());
+        assertEquals("Violations of " + payload + " against " + schema, pointers(expected), pointers(actual));
+    }
+
+    @Test
+    public void testParityWithEverit() throws IOException {
+        for (String payload : PET_PAYLOADS) {
+            assertParity(PET, payload);
+        }
+        for (String[] schemaAndPayloads : SCHEMAS_AND_PAYLOADS) {
+            for (int i = 1; i < schemaAndPayloads.length; i++) {
+                assertParity(schemaAndPayloads[0], schemaAndPayloads[i]);
+            }
+        }
+    }
+
+    @Test
+    public void testStreamedPayload() throws IOException {
+        ValidationSchema schema = compiled.compile(new JSONObject(PET));
+        for (String payload : PET_PAYLOADS) {
+            ValidationResult streamed = schema.validate(
+                    new ByteArrayInputStream(payload.getBytes(StandardCharsets.UTF_8)), 0);
+            assertEquals(pointers(validate(schema, payload)), pointers(streamed));
+        }
+    }
+
+    @Test
+    public void testViolationLimit() throws IOException {
+        ValidationSchema schema = compiled.compile(new JSONObject(PET));
+        ValidationResult result = schema.validate(
+                "{\"id\":0,\"tag\":\"cow\",\"photos\":[1],\"owner\":{}}".getBytes(StandardCharsets.UTF_8), 2);
+        assertFalse(result.isValid());
+        assertEquals(2, result.getViolations().size());
+    }
+
+    @Test
+    public void testUnsupportedKeywordsLeftToEverit() throws IOException {
+        assertNull(compiled.compile(new JSONObject("{\"allOf\":[{\"type\":\"string\"}]}")));
+        assertNull(compiled.compile(new JSONObject("{\"type\":\"array\",\"uniqueItems\":true}")));
+        assertNull(compiled.compile(new JSONObject("{\"not\":{\"type\":\"string\"}}")));
+        assertNull(compiled.compile(new JSONObject("{\"$ref\":\"#/definitions/Missing\"}")));
+        assertTrue(compiled.compile(new JSONObject("{\"type\":\"string\"}")).validate(
+                "\"a\"".getBytes(StandardCharsets.UTF_8), 0).isValid());
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.config.SynapseConfiguration;
+import org.apache.synapse.core.axis2.Axis2MessageContext;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the validation of gzip and deflate compressed request payloads.
+ */
+public class CompressedValidationTest {
+
+    private static final byte[] VALID = "{\"name\":\"Rex\",\"id\":1}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] INVALID = "{\"id\":\"1\"}".getBytes(StandardCharsets.UTF_8);
+
+    private static SynapseConfiguration configuration;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        configuration = MessageContexts.configuration(
+                Swaggers.entry("compressed-api", Swaggers.read("request-bodies-openapi3.json")));
+    }
+
+    private static byte[] gzip(byte[] payload) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream outputStream = new GZIPOutputStream(bytes)) {
+            outputStream.write(payload);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] payload, boolean raw) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, raw);
+        try (DeflaterOutputStream outputStream = new DeflaterOutputStream(bytes, deflater)) {
+            outputStream.write(payload);
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] inflate(byte[] payload, String encoding, long maxInflatedBytes) throws IOException {
+        try (InputStream inputStream = InflatingInputStream.create(payload, encoding, maxInflatedBytes)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[5];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toByteArray();
+        }
+    }
+
+    /**
+     * A well-formed payload with a long string of zeros, which inflates to about a thousand times its compressed
+     * size.
+     */
+    private static byte[] bomb(int inflatedBytes) {
+        byte[] prefix = "{\"name\":\"".getBytes(StandardCharsets.UTF_8);
+        byte[] payload = new byte[inflatedBytes];
+        Arrays.fill(payload, (byte) '0');
+        System.arraycopy(prefix, 0, payload, 0, prefix.length);
+        payload[payload.length - 2] = '"';
+        payload[payload.length - 1] = '}';
+        return payload;
+    }
+
+    private static SchemaValidator validator() {
+        SchemaValidator validator = new SchemaValidator();
+        validator.setApiUUID("compressed-api");
+        validator.setCompressedValidation("true");
+        return validator;
+    }
+
+    private static MessageContext request(String encoding, byte[] body) throws Exception {
+        MessageContext messageContext = MessageContexts.request(configuration, "/pets", "POST",
+                "application/json", body);
+        Map<String, String> headers = new HashMap<>();
+        headers.put(SchemaValidatorConstant.CONTENT_ENCODING, encoding);
+        ((Axis2MessageContext) messageContext).getAxis2MessageContext().setProperty(
+                org.apache.axis2.context.MessageContext.TRANSPORT_HEADERS, headers);
+        return messageContext;
+    }
+
+    @Test
+    public void testInflate() throws IOException {
+        assertArrayEquals(VALID, inflate(gzip(VALID), SchemaValidatorConstant.GZIP, 1024));
+        assertArrayEquals(VALID, inflate(gzip(VALID), SchemaValidatorConstant.X_GZIP, 1024));
+        assertArrayEquals(VALID, inflate(deflate(VALID, false), SchemaValidatorConstant.DEFLATE, 1024));
+        assertArrayEquals("Raw deflate stream is not inflated", VALID,
+                inflate(deflate(VALID, true), SchemaValidatorConstant.DEFLATE, 1024));
+        assertArrayEquals(VALID, inflate(gzip(VALID), SchemaValidatorConstant.GZIP, VALID.length));
+    }
+
+    @Test
+    public void testSupportedEncodings() throws IOException {
+        assertTrue(InflatingInputStream.isSupported(SchemaValidatorConstant.GZIP));
+        assertTrue(InflatingInputStream.isSupported(SchemaValidatorConstant.DEFLATE));
+        assertFalse(InflatingInputStream.isSupported("br"));
+        assertNull(InflatingInputStream.create(VALID, "br", 1024));
+    }
+
+    @Test
+    public void testInflatedSizeLimit() throws IOException {
+        byte[] bomb = gzip(bomb(1 << 20));
+        assertTrue(bomb.length < 4096);
+        try {
+            inflate(bomb, SchemaValidatorConstant.GZIP, 64 * 1024);
+            fail("The payload inflated beyond the limit");
+        } catch (InflatingInputStream.InflatedSizeException e) {
+            assertEquals("Payload inflates to more than the maximum size of 65536 bytes", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testCompressedRequests() throws Exception {
+        SchemaValidator validator = validator();
+        byte[] body = gzip(VALID);
+        MessageContext messageContext = request("GZIP", body);
+        assertTrue(validator.handleRequest(messageContext));
+        assertFalse(MessageContexts.isRejected(messageContext));
+        assertArrayEquals("The message is not built over the inflated body", VALID,
+                MessageContexts.relayedBody(messageContext));
+
+        body = deflate(INVALID, false);
+        messageContext = request(SchemaValidatorConstant.DEFLATE, body);
+        assertTrue(validator.handleRequest(messageContext));
+        assertTrue(MessageContexts.isRejected(messageContext));
+        assertTrue(MessageContexts.threatDescription(messageContext).contains("required key [name] not found"));
+    }
+
+    @Test
+    public void testCompressionBombRejected() throws Exception {
+        SchemaValidator validator = validator();
+        validator.setMaxInflatedBytes("65536");
+        MessageContext messageContext = request(SchemaValidatorConstant.GZIP, gzip(bomb(1 << 20)));
+        assertTrue(validator.handleRequest(messageContext));
+        assertTrue(MessageContexts.isRejected(messageContext));
+        assertTrue(MessageContexts.threatDescription(messageContext).endsWith(
+                "Payload inflates to more than the maximum size of 65536 bytes"));
+    }
+
+    @Test
+    public void testTruncatedPayload() throws Exception {
+        byte[] body = gzip(VALID);
+        MessageContext messageContext = request(SchemaValidatorConstant.GZIP,
+                Arrays.copyOf(body, body.length - 12));
+        assertTrue(validator().handleRequest(messageContext));
+        assertTrue(MessageContexts.isRejected(messageContext));
+        assertTrue(MessageContexts.threatDescription(messageContext).contains("Truncated gzip payload"));
+    }
+
+    @Test
+    public void testMalformedPayload() throws Exception {
+        MessageContext messageContext = request(SchemaValidatorConstant.GZIP, VALID);
+        assertTrue(validator().handleRequest(messageContext));
+        assertTrue(MessageContexts.isRejected(messageContext));
+        assertTrue(MessageContexts.threatDescription(messageContext).contains("Malformed gzip payload"));
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.json.JSONObject;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Tests the dispatch of oneOf and anyOf schemas on their OpenAPI discriminator.
+ */
+public class DiscriminatorTest {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final String DEFINITIONS = "{\"definitions\":{" +
+            "\"Pet\":{\"oneOf\":[{\"$ref\":\"#/definitions/Cat\"},{\"$ref\":\"#/definitions/Dog\"}," +
+            "{\"$ref\":\"#/definitions/Lizard\"}],\"discriminator\":{\"propertyName\":\"petType\",\"mapping\":" +
+            "{\"cat\":\"#/definitions/Cat\",\"doggie\":\"Dog\",\"cow\":\"#/definitions/Cow\"}}}," +
+            "\"Cat\":{\"type\":\"object\",\"required\":[\"petType\",\"huntingSkill\"],\"properties\":{\"petType\":" +
+            "{\"enum\":[\"cat\"]},\"huntingSkill\":{\"type\":\"string\"}}}," +
+            "\"Dog\":{\"type\":\"object\",\"required\":[\"petType\",\"packSize\"],\"properties\":{\"petType\":" +
+            "{\"enum\":[\"doggie\"]},\"packSize\":{\"type\":\"integer\"},\"owner\":{\"type\":\"object\"," +
+            "\"required\":[\"name\"]}}}," +
+            "\"Lizard\":{\"type\":\"object\",\"required\":[\"petType\"],\"properties\":{\"petType\":" +
+            "{\"enum\":[\"Lizard\"]},\"lovesRocks\":{\"type\":\"boolean\"}}}," +
+            "\"Kennel\":{\"type\":\"object\",\"properties\":{\"pets\":{\"type\":\"array\",\"items\":" +
+            "{\"$ref\":\"#/definitions/Pet\"}}}}," +
+            "\"Shape\":{\"oneOf\":[{\"type\":\"object\",\"required\":[\"radius\"]},{\"type\":\"object\"," +
+            "\"required\":[\"side\"]}]}}}";
+
+    private static final String[] PAYLOADS = {
+            "{\"petType\":\"cat\",\"huntingSkill\":\"lazy\"}",
+            "{\"petType\":\"cat\"}",
+            "{\"petType\":\"doggie\",\"packSize\":3}",
+            "{\"packSize\":3,\"owner\":{\"name\":\"Ann\"},\"petType\":\"doggie\"}",
+            "{\"packSize\":\"many\",\"owner\":{},\"petType\":\"doggie\"}",
+            "{\"petType\":\"Lizard\",\"lovesRocks\":true}",
+            "{\"petType\":\"Lizard\",\"lovesRocks\":\"yes\"}",
+            "{\"petType\":\"Dog\",\"packSize\":3}",
+            "{\"petType\":\"cow\"}",
+            "{\"huntingSkill\":\"lazy\"}",
+            "{\"petType\":1}",
+            "\"cat\""
+    };
+
+    private static JSONObject pet;
+    private static JSONObject kennel;
+    private static JSONObject shape;
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        SchemaResolver resolver = new SchemaResolver(mapper.readTree(DEFINITIONS));
+        pet = resolver.resolveSchema(mapper.readTree("{\"$ref\":\"#/definitions/Pet\"}"));
+        kennel = resolver.resolveSchema(mapper.readTree("{\"$ref\":\"#/definitions/Kennel\"}"));
+        shape = resolver.resolveSchema(mapper.readTree("{\"$ref\":\"#/definitions/Shape\"}"));
+    }
+
+    private static List<String> violations(ValidationResult result) {
+        List<String> violations = new ArrayList<>();
+        for (Violation violation : result.getViolations()) {
+            violations.add(violation.getPointer() + ": " + violation.getMessage());
+        }
+        return violations;
+    }
+
+    private static List<String> validate(JSONObject schema, String payload) throws IOException {
+        ValidationSchema compiled = CompiledSchema.compile(schema);
+        assertNotNull("The schema is not compiled", compiled);
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        List<String> violations = violations(compiled.validate(bytes, 0));
+        assertEquals("The streamed payload is validated differently", violations,
+                violations(compiled.validate(new ByteArrayInputStream(bytes), 0)));
+        return violations;
+    }
+
+    @Test
+    public void testResolvedMapping() {
+        JSONObject mapping = pet.getJSONObject(SchemaValidatorConstant.DISCRIMINATOR)
+                .getJSONObject(SchemaValidatorConstant.MAPPING);
+        assertEquals("#/oneOf/0", mapping.getString("cat"));
+        assertEquals("#/oneOf/1", mapping.getString("doggie"));
+        assertEquals("Branch without a mapping is not mapped by its schema name", "#/oneOf/2",
+                mapping.getString("Lizard"));
+        assertFalse("A mapped branch is also mapped by its schema name", mapping.has("Dog"));
+        assertFalse("A value mapped to a schema which is not a branch is mapped", mapping.has("cow"));
+    }
+
+    @Test
+    public void testDispatchToMappedBranch() throws IOException {
+        assertEquals(Collections.<String>emptyList(), validate(pet, PAYLOADS[0]));
+        assertEquals(Arrays.asList("#: required key [huntingSkill] not found"), validate(pet, PAYLOADS[1]));
+        assertEquals(Collections.<String>emptyList(), validate(pet, PAYLOADS[2]));
+        assertEquals(Arrays.asList("#/lovesRocks: expected type: Boolean, found: String"),
+                validate(pet, PAYLOADS[6]));
+    }
+
+    @Test
+    public void testDiscriminatorAfterOtherProperties() throws IOException {
+        assertEquals(Collections.<String>emptyList(), validate(pet, PAYLOADS[3]));
+        assertEquals(Arrays.asList("#/packSize: expected type: Integer, found: String",
+                "#/owner: required key [name] not found"), validate(pet, PAYLOADS[4]));
+    }
+
+    @Test
+    public void testNestedDispatch() throws IOException {
+        assertEquals(Arrays.asList("#/pets/1: required key [packSize] not found"), validate(kennel,
+                "{\"pets\":[" + PAYLOADS[0] + ",{\"petType\":\"doggie\"}," + PAYLOADS[5] + "]}"));
+    }
+
+    @Test
+    public void testUnmappedDiscriminator() throws IOException {
+        assertEquals(Arrays.asList("#: 0 subschemas matched instead of one"), validate(pet, PAYLOADS[7]));
+        assertEquals(Arrays.asList("#: 0 subschemas matched instead of one"), validate(pet, PAYLOADS[8]));
+        assertEquals(Arrays.asList("#: 0 subschemas matched instead of one"), validate(pet, PAYLOADS[9]));
+    }
+
+    @Test
+    public void testOneOfWithoutDiscriminator() throws IOException {
+        assertEquals(Collections.<String>emptyList(), validate(shape, "{\"radius\":1}"));
+        assertEquals(Arrays.asList("#: 2 subschemas matched instead of one"),
+                validate(shape, "{\"radius\":1,\"side\":2}"));
+        assertEquals(Arrays.asList("#: 0 subschemas matched instead of one"), validate(shape, "{}"));
+    }
+
+    @Test
+    public void testParityWithEverit() throws IOException {
+        ValidationSchema everit = new EveritValidationEngine().compile(pet);
+        for (String payload : PAYLOADS) {
+            assertEquals("Verdict of " + payload, everit.validate(payload.getBytes(StandardCharsets.UTF_8), 0)
+                    .isValid(), validate(pet, payload).isEmpty());
+        }
+    }
+}
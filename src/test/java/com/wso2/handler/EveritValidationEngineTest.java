@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the everit validation engine.
+ */
+public class EveritValidationEngineTest {
+
+    private static final EveritValidationEngine engine = new EveritValidationEngine();
+
+    private static ValidationResult validate(String schema, String payload) throws IOException {
+        return engine.compile(new JSONObject(schema)).validate(payload.getBytes(StandardCharsets.UTF_8), 0);
+    }
+
+    @Test
+    public void testPattern() throws IOException {
+        String schema = "{\"type\":\"object\",\"properties\":{\"code\":{\"type\":\"string\",\"pattern\":" +
+                "\"^[A-Z]{3}$\"}}}";
+        assertTrue(validate(schema, "{\"code\":\"ABC\"}").isValid());
+        ValidationResult result = validate(schema, "{\"code\":\"abcd\"}");
+        assertFalse(result.isValid());
+        assertEquals("#/code", result.getViolations().get(0).getPointer());
+    }
+
+    @Test
+    public void testPatternsOfNestedSchemas() throws IOException {
+        String schema = "{\"type\":\"array\",\"items\":{\"anyOf\":[{\"type\":\"string\",\"pattern\":\"^a+$\"}," +
+                "{\"type\":\"string\",\"pattern\":\"^b+$\"}]}}";
+        assertTrue(validate(schema, "[\"aaa\",\"bb\"]").isValid());
+        assertFalse(validate(schema, "[\"aaa\",\"ab\"]").isValid());
+    }
+
+    @Test
+    public void testPatternWithFormat() throws IOException {
+        String schema = "{\"type\":\"string\",\"format\":\"email\",\"pattern\":\"@example\\\\.com$\"}";
+        assertTrue(validate(schema, "\"a@example.com\"").isValid());
+        assertFalse("The pattern is not validated", validate(schema, "\"a@example.org\"").isValid());
+        assertFalse("The format is not validated", validate(schema, "\"not an email@example.com\"").isValid());
+    }
+
+    @Test
+    public void testSchemaNotModified() {
+        JSONObject schema = new JSONObject("{\"type\":\"string\",\"pattern\":\"^x$\"}");
+        engine.compile(schema);
+        assertEquals("The compiled schema is modified", "^x$", schema.getString("pattern"));
+    }
+}
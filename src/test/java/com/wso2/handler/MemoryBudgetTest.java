@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the memory budget shared by the schema caches.
+ */
+public class MemoryBudgetTest {
+
+    private static SchemaCache.Key key(String resource) {
+        return new SchemaCache.Key("budget-api", resource, "POST", false, null, "application/json", 1,
+                SchemaValidatorConstant.VALIDATION_ENGINE_EVERIT);
+    }
+
+    /**
+     * Put a schema after the previous access, so every entry has a distinct access time.
+     */
+    private static void put(SchemaCache<String> cache, String resource, long weight) throws InterruptedException {
+        Thread.sleep(2);
+        cache.put(key(resource), resource, weight);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvictedAcrossCaches() throws InterruptedException {
+        MemoryBudget budget = new MemoryBudget(300);
+        SchemaCache<String> first = new SchemaCache<>(64, budget);
+        SchemaCache<String> second = new SchemaCache<>(64, budget);
+        put(first, "/a", 100);
+        put(first, "/b", 100);
+        put(second, "/c", 100);
+        assertEquals(300, budget.getWeight());
+        Thread.sleep(2);
+        first.get(key("/a"));
+        put(second, "/d", 100);
+        assertTrue(first.contains(key("/a")));
+        assertFalse("The least recently used schema is not evicted", first.contains(key("/b")));
+        assertTrue(second.contains(key("/c")));
+        assertTrue(second.contains(key("/d")));
+        assertEquals(300, budget.getWeight());
+        assertEquals(1, budget.getEvictionCount());
+        assertEquals(1, first.getEvictionCount());
+        assertEquals(0, second.getEvictionCount());
+    }
+
+    @Test
+    public void testOversizedEntryEvictsEverything() throws InterruptedException {
+        MemoryBudget budget = new MemoryBudget(300);
+        SchemaCache<String> cache = new SchemaCache<>(64, budget);
+        put(cache, "/a", 100);
+        put(cache, "/b", 100);
+        put(cache, "/c", 500);
+        assertEquals(0, cache.size());
+        assertEquals(0, budget.getWeight());
+    }
+
+    @Test
+    public void testRemovedEntriesReleased() throws InterruptedException {
+        MemoryBudget budget = new MemoryBudget(1000);
+        SchemaCache<String> cache = new SchemaCache<>(64, budget);
+        put(cache, "/a", 100);
+        put(cache, "/b", 200);
+        assertEquals(300, budget.getWeight());
+        cache.invalidateEngine(SchemaValidatorConstant.VALIDATION_ENGINE_EVERIT);
+        assertEquals(0, budget.getWeight());
+        put(cache, "/a", 100);
+        cache.clear();
+        assertEquals(0, budget.getWeight());
+        assertEquals(0, budget.getEvictionCount());
+    }
+
+    @Test
+    public void testUnboundedBudget() throws InterruptedException {
+        MemoryBudget budget = new MemoryBudget(0);
+        SchemaCache<String> cache = new SchemaCache<>(64, budget);
+        for (int i = 0; i < 10; i++) {
+            put(cache, "/" + i, 1000000);
+        }
+        assertEquals(10, cache.size());
+        assertEquals(10000000, budget.getWeight());
+        assertEquals(0, budget.getEvictionCount());
+    }
+}
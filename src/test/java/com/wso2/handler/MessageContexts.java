@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import org.apache.axiom.om.OMElement;
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.commons.json.JsonUtil;
+import org.apache.synapse.config.Entry;
+import org.apache.synapse.config.SynapseConfiguration;
+import org.apache.synapse.core.SynapseEnvironment;
+import org.apache.synapse.core.axis2.Axis2MessageContext;
+import org.apache.synapse.mediators.base.SequenceMediator;
+import org.apache.synapse.transport.passthru.PassThroughConstants;
+import org.apache.synapse.transport.passthru.Pipe;
+import org.apache.synapse.transport.passthru.util.ControlledByteBuffer;
+import org.wso2.carbon.apimgt.gateway.APIMgtGatewayConstants;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * Creates the message contexts the gateway hands to the handler, with the body in the pass-through pipe of an
+ * unbuilt message.
+ */
+final class MessageContexts {
+
+    private static final QName BINARY_PAYLOAD = new QName("http://ws.apache.org/commons/ns/payload", "binary");
+
+    private MessageContexts() {
+    }
+
+    /**
+     * Create a synapse configuration which holds the given swagger local entries, and an empty threat fault sequence
+     * in place of the one the gateway deploys.
+     *
+     * @param entries Swagger local entries keyed by the API UUID
+     * @return Synapse configuration
+     */
+    static SynapseConfiguration configuration(Entry... entries) {
+        SynapseConfiguration configuration = new SynapseConfiguration();
+        SequenceMediator threatFault = new SequenceMediator();
+        threatFault.setName(APIMgtGatewayConstants.THREAT_FAULT);
+        configuration.addSequence(APIMgtGatewayConstants.THREAT_FAULT, threatFault);
+        for (Entry entry : entries) {
+            configuration.addEntry(entry.getKey(), entry);
+        }
+        return configuration;
+    }
+
+    /**
+     * Create a synapse environment which only provides the given configuration, the only part of the environment the
+     * handler uses.
+     *
+     * @param configuration Synapse configuration of the environment
+     * @return Synapse environment
+     */
+    static SynapseEnvironment environment(final SynapseConfiguration configuration) {
+        return (SynapseEnvironment) Proxy.newProxyInstance(SynapseEnvironment.class.getClassLoader(),
+                new Class<?>[]{SynapseEnvironment.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("getSynapseConfiguration".equals(method.getName())) {
+                            return configuration;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    /**
+     * Create the message context of a request whose body has not been built.
+     *
+     * @param configuration Synapse configuration which holds the swagger of the API
+     * @param resource      Elected resource of the API
+     * @param method        HTTP method of the request
+     * @param contentType   Content type of the body
+     * @param body          Body of the request
+     * @return Message context of the request
+     * @throws Exception Throws if the message context cannot be created
+     */
+    static MessageContext request(SynapseConfiguration configuration, String resource, String method,
+                                  String contentType, byte[] body) throws Exception {
+        org.apache.axis2.context.MessageContext axis2MC = new org.apache.axis2.context.MessageContext();
+        axis2MC.setProperty(SchemaValidatorConstant.HTTP_REQUEST_METHOD, method);
+        axis2MC.setProperty(SchemaValidatorConstant.REST_CONTENT_TYPE, contentType);
+        axis2MC.setProperty(PassThroughConstants.PASS_THROUGH_PIPE, pipe(body));
+        MessageContext messageContext = new Axis2MessageContext(axis2MC, configuration, null);
+        messageContext.setProperty(SchemaValidatorConstant.API_ELECTED_RESOURCE, resource);
+        messageContext.setProperty(SchemaValidatorConstant.ELECTED_REQUEST_METHOD, method);
+        return messageContext;
+    }
+
+    /**
+     * Create the message context of a response whose body has not been built.
+     *
+     * @param configuration Synapse configuration which holds the swagger of the API
+     * @param resource      Elected resource of the API
+     * @param method        HTTP method of the request
+     * @param statusCode    Status code of the response
+     * @param contentType   Content type of the body
+     * @param body          Body of the response
+     * @return Message context of the response
+     * @throws Exception Throws if the message context cannot be created
+     */
+    static MessageContext response(SynapseConfiguration configuration, String resource, String method,
+                                   String statusCode, String contentType, byte[] body) throws Exception {
+        MessageContext messageContext = request(configuration, resource, method, contentType, body);
+        messageContext.setResponse(true);
+        ((Axis2MessageContext) messageContext).getAxis2MessageContext().setProperty(SchemaValidatorConstant.HTTP_SC,
+                statusCode);
+        return messageContext;
+    }
+
+    /**
+     * Check whether the handler reported a threat for the message.
+     *
+     * @param messageContext Message context
+     * @return true if the message was rejected
+     */
+    static boolean isRejected(MessageContext messageContext) {
+        return Boolean.TRUE.equals(messageContext.getProperty(APIMgtGatewayConstants.THREAT_FOUND));
+    }
+
+    /**
+     * Get the description of the threat the handler reported for the message.
+     *
+     * @param messageContext Message context
+     * @return Threat description or null if the message was not rejected
+     */
+    static String threatDescription(MessageContext messageContext) {
+        Object description = messageContext.getProperty(APIMgtGatewayConstants.THREAT_DESC);
+        return description != null ? description.toString() : null;
+    }
+
+    /**
+     * Read the body the sender would relay. The pipe of an unbuilt message is relayed as it is. A built message is
+     * written by the formatter of its content type instead: a JSON payload as JSON, a binary relay payload as its raw
+     * bytes and any other payload as XML.
+     *
+     * @param messageContext Message context
+     * @return Relayed body
+     * @throws IOException Throws if the relayed body cannot be read
+     */
+    static byte[] relayedBody(MessageContext messageContext) throws IOException {
+        org.apache.axis2.context.MessageContext axis2MC = ((Axis2MessageContext) messageContext)
+                .getAxis2MessageContext();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        if (!Boolean.TRUE.equals(axis2MC.getProperty(PassThroughConstants.MESSAGE_BUILDER_INVOKED))) {
+            InputStream inputStream = ((Pipe) axis2MC.getProperty(PassThroughConstants.PASS_THROUGH_PIPE))
+                    .getInputStream();
+            byte[] buffer = new byte[7];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+            return outputStream.toByteArray();
+        }
+        OMElement payload = axis2MC.getEnvelope().getBody().getFirstElement();
+        if (payload == null) {
+            return outputStream.toByteArray();
+        }
+        if (JsonUtil.hasAJsonPayload(axis2MC)) {
+            JsonUtil.writeAsJson(axis2MC, outputStream);
+        } else if (BINARY_PAYLOAD.equals(payload.getQName())) {
+            outputStream.write(Base64.getDecoder().decode(payload.getText()));
+        } else {
+            try {
+                payload.serialize(outputStream);
+            } catch (XMLStreamException e) {
+                throw new IOException(e);
+            }
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Create the pass-through pipe of a body which has been received in full.
+     *
+     * @param body Body of the message
+     * @return Pipe which holds the body
+     * @throws IOException Throws if the body cannot be written to the pipe
+     */
+    private static Pipe pipe(byte[] body) throws IOException {
+        Pipe pipe = new Pipe(new ControlledByteBuffer(ByteBuffer.allocate(Math.max(body.length, 1))),
+                "test", null);
+        OutputStream outputStream = pipe.getOutputStream();
+        outputStream.write(body);
+        outputStream.close();
+        pipe.setSerializationComplete(true);
+        return pipe;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import org.apache.synapse.config.Entry;
+import org.json.JSONObject;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the body of the operation index artifacts written and read by the OperationIndex.
+ */
+public class OperationIndexArtifactTest {
+
+    private static Entry entry;
+    private static OperationIndex index;
+    private static byte[] body;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        entry = Swaggers.entry("artifact-api", Swaggers.read("request-bodies-openapi3.json"));
+        index = OperationIndex.build(entry);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(outputStream)) {
+            index.writeTo(output);
+        }
+        body = outputStream.toByteArray();
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        OperationIndex restored = OperationIndex.readFrom(entry, ByteBuffer.wrap(body));
+        assertEquals(index.getOperations().size(), restored.getOperations().size());
+        assertTrue(restored.isBuiltFrom(entry));
+        for (Map.Entry<String, String> operation : index.getOperations()) {
+            String resource = operation.getKey();
+            String method = operation.getValue();
+            assertEquals(index.getRequestMediaTypes(resource, method),
+                    restored.getRequestMediaTypes(resource, method));
+            for (String mediaType : index.getRequestMediaTypes(resource, method)) {
+                assertSameSchema(index.getRequestSchema(resource, method, mediaType),
+                        restored.getRequestSchema(resource, method, mediaType));
+            }
+            assertSameSchema(index.getRequestRecordSchema(resource, method),
+                    restored.getRequestRecordSchema(resource, method));
+            assertEquals(index.getResponseStatusCodes(resource, method),
+                    restored.getResponseStatusCodes(resource, method));
+            for (String statusCode : index.getResponseStatusCodes(resource, method)) {
+                assertSameSchema(index.getResponseSchema(resource, method, statusCode),
+                        restored.getResponseSchema(resource, method, statusCode));
+            }
+            assertEquals(index.getParameterValidator(resource, method) == null,
+                    restored.getParameterValidator(resource, method) == null);
+        }
+    }
+
+    @Test
+    public void testOversizedLengthRejected() {
+        // The string count follows the OpenAPI flag.
+        assertCorrupt(withInt(1, Integer.MAX_VALUE));
+        assertCorrupt(withInt(1, -1));
+        // The length of the first string follows the string count.
+        assertCorrupt(withInt(5, Integer.MAX_VALUE));
+        assertCorrupt(withInt(5, -2));
+    }
+
+    @Test
+    public void testTruncatedBodyRejected() {
+        for (int length = 0; length < body.length; length++) {
+            assertCorrupt(Arrays.copyOf(body, length));
+        }
+    }
+
+    @Test
+    public void testCorruptIntsRejected() {
+        for (int position = 1; position + 4 <= body.length; position += 4) {
+            for (int value : new int[]{Integer.MIN_VALUE, -2, body.length, Integer.MAX_VALUE}) {
+                try {
+                    OperationIndex.readFrom(entry, ByteBuffer.wrap(withInt(position, value)));
+                } catch (IOException | BufferUnderflowException e) {
+                    // The artifact is ignored as stale.
+                }
+            }
+        }
+    }
+
+    private static void assertCorrupt(byte[] corrupt) {
+        try {
+            OperationIndex.readFrom(entry, ByteBuffer.wrap(corrupt));
+            fail("A corrupt artifact of " + corrupt.length + " bytes is read");
+        } catch (IOException | BufferUnderflowException e) {
+            // The artifact is ignored as stale.
+        }
+    }
+
+    private static byte[] withInt(int position, int value) {
+        byte[] corrupt = body.clone();
+        ByteBuffer.wrap(corrupt).putInt(position, value);
+        return corrupt;
+    }
+
+    private static void assertSameSchema(JSONObject expected, JSONObject actual) {
+        if (expected == null) {
+            assertEquals(null, actual);
+            return;
+        }
+        assertNotNull(actual);
+        assertTrue(expected + " != " + actual, expected.similar(actual));
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import org.apache.synapse.config.Entry;
+import org.json.JSONObject;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the operations and schemas indexed from a swagger.
+ */
+public class OperationIndexTest {
+
+    private static final String OPENAPI3 = "{\"openapi\":\"3.0.1\",\"components\":{\"schemas\":{\"Pet\":" +
+            "{\"type\":\"object\",\"required\":[\"name\"]}}},\"paths\":{\"/pets\":{\"post\":{\"requestBody\":" +
+            "{\"content\":{\"application/json\":{\"schema\":{\"$ref\":\"#/components/schemas/Pet\"}}}}," +
+            "\"responses\":{\"201\":{\"content\":{\"application/json\":{\"schema\":{\"$ref\":" +
+            "\"#/components/schemas/Pet\"}}}}}}}}}";
+
+    private static OperationIndex requestBodies;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        requestBodies = Swaggers.index("request-bodies-openapi3.json");
+    }
+
+    @Test
+    public void testReferencedRequestBody() {
+        JSONObject schema = requestBodies.getRequestSchema("/pets", "POST");
+        assertNotNull("Referenced request body has no schema", schema);
+        assertEquals("object", schema.getString("type"));
+        assertEquals("name", schema.getJSONArray("required").getString(0));
+    }
+
+    @Test
+    public void testChainedRequestBodyReference() {
+        JSONObject schema = requestBodies.getRequestSchema("/pets/{petId}", "PUT");
+        assertNotNull("Request body referred through another request body has no schema", schema);
+        assertEquals("name", schema.getJSONArray("required").getString(0));
+    }
+
+    @Test
+    public void testSchemaReferringRequestBody() {
+        JSONObject schema = requestBodies.getRequestSchema("/pets/legacy", "POST");
+        assertNotNull("Schema referring a request body has no schema", schema);
+        assertEquals("object", schema.getString("type"));
+    }
+
+    @Test
+    public void testReferencedResponse() {
+        JSONObject schema = requestBodies.getResponseSchema("/pets", "POST", "201");
+        assertNotNull("Referenced response has no schema", schema);
+        assertEquals("name", schema.getJSONArray("required").getString(0));
+    }
+
+    @Test
+    public void testReferencedRequestBodyMediaTypes() {
+        assertEquals(Arrays.asList("application/json", "application/xml"),
+                requestBodies.getRequestMediaTypes("/pets", "POST"));
+        assertEquals(Arrays.asList("application/json", "application/xml"),
+                requestBodies.getRequestMediaTypes("/pets/{petId}", "PUT"));
+    }
+
+    @Test
+    public void testReferencedRequestBodyDispatch() {
+        assertEquals("application/xml",
+                requestBodies.getRequestMediaType("/pets", "POST", "application/xml; charset=UTF-8"));
+        JSONObject xmlSchema = requestBodies.getRequestSchema("/pets", "POST", "application/xml");
+        assertNotNull(xmlSchema);
+        assertEquals(2, xmlSchema.getJSONArray("required").length());
+        JSONObject jsonSchema = requestBodies.getRequestSchema("/pets/{petId}", "PUT", "application/json");
+        assertNotNull(jsonSchema);
+        assertEquals(1, jsonSchema.getJSONArray("required").length());
+        assertNull(requestBodies.getRequestMediaType("/pets", "POST", "text/plain"));
+    }
+
+    @Test
+    public void testReferencedRecordSchema() {
+        JSONObject streamSchema = requestBodies.getRequestRecordSchema("/pets/stream", "POST");
+        assertNotNull("Referenced record stream body has no record schema", streamSchema);
+        assertEquals("name", streamSchema.getJSONArray("required").getString(0));
+        JSONObject batchSchema = requestBodies.getRequestRecordSchema("/pets/batch", "POST");
+        assertNotNull("Referenced array body has no record schema", batchSchema);
+        assertEquals("object", batchSchema.getString("type"));
+    }
+
+    @Test
+    public void testOpenAPI3() throws Exception {
+        OperationIndex index = OperationIndex.build(Swaggers.entry("openapi3-api", OPENAPI3));
+        assertEquals("name", index.getRequestSchema("/pets", "POST").getJSONArray("required").getString(0));
+        assertEquals("name", index.getResponseSchema("/pets", "POST", "201").getJSONArray("required").getString(0));
+        assertNull(index.getResponseSchema("/pets", "POST", "500"));
+        assertNull(index.getRequestSchema("/owners", "POST"));
+    }
+
+    @Test
+    public void testSchemaPresence() {
+        assertTrue(requestBodies.hasRequestSchema("/pets", "POST", "application/json"));
+        assertTrue(requestBodies.hasRequestSchema("/pets/{petId}", "PUT", "application/xml"));
+        assertFalse(requestBodies.hasRequestSchema("/pets/batch", "POST", "application/xml"));
+        assertFalse(requestBodies.hasRequestSchema("/pets", "DELETE", "application/json"));
+        assertFalse(requestBodies.hasRequestSchema("/owners", "POST", "application/json"));
+        assertTrue(requestBodies.hasResponseSchema("/pets", "POST", "201", "application/json"));
+        assertFalse(requestBodies.hasResponseSchema("/pets", "POST", "500", "application/json"));
+        assertFalse(requestBodies.hasResponseSchema("/pets/batch", "POST", "204", "application/json"));
+    }
+
+    @Test
+    public void testSwagger2() throws Exception {
+        String swagger = "{\"swagger\":\"2.0\",\"definitions\":{\"Pet\":{\"type\":\"object\",\"required\":" +
+                "[\"name\"]}},\"paths\":{\"/pets\":{\"post\":{\"parameters\":[{\"in\":\"body\",\"name\":" +
+                "\"pet\",\"schema\":{\"$ref\":\"#/definitions/Pet\"}}],\"responses\":{\"200\":{\"schema\":" +
+                "{\"type\":\"array\",\"items\":{\"$ref\":\"#/definitions/Pet\"}}}}}}}}";
+        OperationIndex index = OperationIndex.build(Swaggers.entry("swagger2-api", swagger));
+        assertEquals(1, index.getOperations().size());
+        assertEquals("name", index.getRequestSchema("/pets", "POST").getJSONArray("required").getString(0));
+        assertEquals("array", index.getResponseSchema("/pets", "POST", "200").getString("type"));
+        assertNull(index.getResponseSchema("/pets", "POST", "404"));
+        assertNull(index.getRequestSchema("/pets", "GET"));
+    }
+
+    @Test
+    public void testBuiltFromLocalEntry() throws Exception {
+        Entry entry = Swaggers.entry("built-from-api", OPENAPI3);
+        OperationIndex index = OperationIndex.build(entry);
+        assertTrue(index.isBuiltFrom(entry));
+        assertTrue("An index is rebuilt for an equal swagger", index.isBuiltFrom(
+                Swaggers.entry("built-from-api", new String(OPENAPI3.toCharArray()))));
+        entry.setValue(OPENAPI3.replace("\"name\"", "\"title\""));
+        assertFalse("An index is not rebuilt for a changed swagger", index.isBuiltFrom(entry));
+        OperationIndex rebuilt = OperationIndex.build(entry);
+        assertTrue(rebuilt.getGeneration() != index.getGeneration());
+        assertEquals("title", rebuilt.getRequestSchema("/pets", "POST").getJSONArray("required").getString(0));
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the parallel validation of the items of large arrays.
+ */
+public class ParallelArrayValidatorTest {
+
+    private static final String PET = "{\"type\":\"object\",\"required\":[\"name\"],\"properties\":{\"name\":" +
+            "{\"type\":\"string\"},\"id\":{\"type\":\"integer\"}}}";
+    private static final String PET_ARRAY = "{\"type\":\"array\",\"maxItems\":5000,\"items\":" + PET + "}";
+    private static final String PET_PAGE = "{\"type\":\"object\",\"required\":[\"total\"],\"properties\":" +
+            "{\"total\":{\"type\":\"integer\"},\"pets\":{\"type\":\"array\",\"items\":{\"$ref\":" +
+            "\"#/definitions/Pet\"}}},\"definitions\":{\"Pet\":" + PET + "}}";
+    private static final int THRESHOLD = 1000;
+
+    private static String pets(int count, int... invalidItems) {
+        StringBuilder payload = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                payload.append(',');
+            }
+            boolean invalid = false;
+            for (int invalidItem : invalidItems) {
+                invalid |= invalidItem == i;
+            }
+            payload.append(invalid ? "{\"id\":\"" + i + "\"}" : "{\"name\":\"pet" + i + "\",\"id\":" + i + "}");
+        }
+        return payload.append(']').toString();
+    }
+
+    /**
+     * The violations of the payload without the split array come before the violations of the chunks, hence the
+     * violations are compared in sorted order.
+     */
+    private static List<String> violations(ValidationResult result) {
+        List<String> violations = new ArrayList<>();
+        for (Violation violation : result.getViolations()) {
+            violations.add(violation.getPointer() + ": " + violation.getMessage());
+        }
+        Collections.sort(violations);
+        return violations;
+    }
+
+    private static void assertSameResult(String schema, String engine, String payload) throws IOException {
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        ValidationResult parallel = ParallelArrayValidator.create(new JSONObject(schema), engine)
+                .validate(bytes, 0, THRESHOLD);
+        assertNotNull("The payload is not split", parallel);
+        ValidationResult whole = ValidationEngineRegistry.compile(engine, new JSONObject(schema)).validate(bytes, 0);
+        assertEquals(whole.isValid(), parallel.isValid());
+        assertEquals(violations(whole), violations(parallel));
+    }
+
+    @Test
+    public void testTopLevelArray() throws IOException {
+        for (String engine : new String[]{SchemaValidatorConstant.VALIDATION_ENGINE_EVERIT,
+                SchemaValidatorConstant.VALIDATION_ENGINE_COMPILED}) {
+            assertSameResult(PET_ARRAY, engine, pets(3000));
+            assertSameResult(PET_ARRAY, engine, pets(3000, 0, 700, 1499, 1500, 2999));
+        }
+    }
+
+    @Test
+    public void testArrayProperty() throws IOException {
+        for (String engine : new String[]{SchemaValidatorConstant.VALIDATION_ENGINE_EVERIT,
+                SchemaValidatorConstant.VALIDATION_ENGINE_COMPILED}) {
+            assertSameResult(PET_PAGE, engine, "{\"total\":3000,\"pets\":" + pets(3000) + "}");
+            assertSameResult(PET_PAGE, engine, "{\"pets\":" + pets(3000, 10, 2500) + ",\"total\":\"many\"}");
+        }
+    }
+
+    @Test
+    public void testEnvelopeKeywordsValidated() throws IOException {
+        assertSameResult(PET_ARRAY, SchemaValidatorConstant.VALIDATION_ENGINE_COMPILED, pets(5001, 5000));
+    }
+
+    @Test
+    public void testItemCountValidated() throws IOException {
+        String schema = PET_PAGE.replace("{\"type\":\"array\",",
+                "{\"type\":\"array\",\"minItems\":2000,\"maxItems\":2500,");
+        for (String engine : new String[]{SchemaValidatorConstant.VALIDATION_ENGINE_EVERIT,
+                SchemaValidatorConstant.VALIDATION_ENGINE_COMPILED}) {
+            assertSameResult(schema, engine, "{\"total\":1500,\"pets\":" + pets(1500) + "}");
+            assertSameResult(schema, engine, "{\"total\":2200,\"pets\":" + pets(2200, 7) + "}");
+        }
+        assertSameResult(schema, SchemaValidatorConstant.VALIDATION_ENGINE_COMPILED,
+                "{\"total\":3000,\"pets\":" + pets(3000) + "}");
+    }
+
+    @Test
+    public void testItemDependentKeywordsNotSplit() {
+        assertTrue(ParallelArrayValidator.create(new JSONObject(PET_ARRAY.replace("\"maxItems\"",
+                "\"uniqueItems\":true,\"maxItems\"")), SchemaValidatorConstant.VALIDATION_ENGINE_COMPILED)
+                .isEmpty());
+        assertTrue(ParallelArrayValidator.create(new JSONObject(PET_PAGE.replace("\"required\"",
+                "\"not\":{\"required\":[\"pets\"]},\"required\"")),
+                SchemaValidatorConstant.VALIDATION_ENGINE_COMPILED).isEmpty());
+    }
+
+    @Test
+    public void testViolationLimit() throws IOException {
+        ValidationResult result = ParallelArrayValidator.create(new JSONObject(PET_ARRAY),
+                SchemaValidatorConstant.VALIDATION_ENGINE_COMPILED)
+                .validate(pets(3000, 1, 2, 1600, 2900).getBytes(StandardCharsets.UTF_8), 2, THRESHOLD);
+        assertNotNull(result);
+        assertFalse(result.isValid());
+        assertEquals(2, result.getViolations().size());
+        for (Violation violation : result.getViolations()) {
+            assertTrue(violation.getPointer(), violation.getPointer().matches("#/1(/id)?"));
+        }
+    }
+
+    @Test
+    public void testSmallArrayNotSplit() throws IOException {
+        ParallelArrayValidator validator = ParallelArrayValidator.create(new JSONObject(PET_ARRAY),
+                SchemaValidatorConstant.VALIDATION_ENGINE_COMPILED);
+        assertFalse(validator.isEmpty());
+        assertNull(validator.validate(pets(THRESHOLD - 1).getBytes(StandardCharsets.UTF_8), 0, THRESHOLD));
+        assertNull(validator.validate("{}".getBytes(StandardCharsets.UTF_8), 0, 1));
+    }
+
+    @Test
+    public void testSchemaWithoutArray() {
+        assertTrue(ParallelArrayValidator.create(new JSONObject(PET),
+                SchemaValidatorConstant.VALIDATION_ENGINE_COMPILED).isEmpty());
+    }
+
+    @Test(expected = JsonProcessingException.class)
+    public void testMalformedPayload() throws IOException {
+        String payload = pets(3000);
+        ParallelArrayValidator.create(new JSONObject(PET_ARRAY), SchemaValidatorConstant.VALIDATION_ENGINE_COMPILED)
+                .validate(payload.substring(0, payload.length() / 2).getBytes(StandardCharsets.UTF_8), 0,
+                        THRESHOLD);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.config.SynapseConfiguration;
+import org.apache.synapse.core.axis2.Axis2MessageContext;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the validation of the path, query and header parameters of a request.
+ */
+public class ParameterValidatorTest {
+
+    private static final String SWAGGER = "{\"swagger\":\"2.0\",\"parameters\":{\"Limit\":{\"name\":\"limit\"," +
+            "\"in\":\"query\",\"type\":\"integer\",\"format\":\"int32\",\"minimum\":1,\"maximum\":100}}," +
+            "\"paths\":{\"/pets/{id}\":{\"parameters\":[{\"name\":\"id\",\"in\":\"path\",\"required\":true," +
+            "\"type\":\"string\",\"pattern\":\"^[0-9a-f]{4}$\"}],\"get\":{\"parameters\":[{\"$ref\":" +
+            "\"#/parameters/Limit\"},{\"name\":\"status\",\"in\":\"query\",\"type\":\"array\",\"items\":" +
+            "{\"type\":\"string\",\"enum\":[\"a\",\"b\"]}},{\"name\":\"X-Request-Id\",\"in\":\"header\"," +
+            "\"required\":true,\"type\":\"string\",\"format\":\"email\"}],\"responses\":{}}}}}";
+
+    private static ParameterValidator validator;
+    private static SynapseConfiguration configuration;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        validator = OperationIndex.build(Swaggers.entry("parameter-api", SWAGGER))
+                .getParameterValidator("/pets/{id}", "GET");
+        configuration = MessageContexts.configuration();
+    }
+
+    private static List<String> validate(String id, String path, Map<String, String> headers) throws Exception {
+        MessageContext messageContext = MessageContexts.request(configuration, "/pets/{id}", "GET",
+                "application/json", new byte[0]);
+        messageContext.setProperty(SchemaValidatorConstant.REST_FULL_REQUEST_PATH, path);
+        messageContext.setProperty(SchemaValidatorConstant.REST_URI_VARIABLE_PREFIX + "id", id);
+        ((Axis2MessageContext) messageContext).getAxis2MessageContext().setProperty(
+                org.apache.axis2.context.MessageContext.TRANSPORT_HEADERS, headers);
+        List<String> violations = new ArrayList<>();
+        for (Violation violation : validator.validate(messageContext, 0).getViolations()) {
+            violations.add(violation.getPointer() + ": " + violation.getMessage());
+        }
+        return violations;
+    }
+
+    private static Map<String, String> header(String name, String value) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put(name, value);
+        return headers;
+    }
+
+    @Test
+    public void testValidParameters() throws Exception {
+        assertEquals(new ArrayList<String>(), validate("abcd", "/pets/abcd?limit=5&status=a,b",
+                header("X-Request-Id", "a@example.com")));
+    }
+
+    @Test
+    public void testHeaderNameIgnoresCase() throws Exception {
+        assertEquals(new ArrayList<String>(), validate("abcd", "/pets/abcd",
+                header("x-request-id", "a@example.com")));
+    }
+
+    @Test
+    public void testInvalidParameters() throws Exception {
+        List<String> violations = validate("zz", "/pets/zz?limit=0&status=a,c", new HashMap<String, String>());
+        assertEquals(violations.toString(), 4, violations.size());
+        assertTrue(violations.toString(), violations.contains(
+                "header parameter X-Request-Id: required parameter is missing"));
+    }
+
+    @Test
+    public void testFormatOfReferencedParameter() throws Exception {
+        List<String> violations = validate("abcd", "/pets/abcd?limit=3000000000",
+                header("X-Request-Id", "a@example.com"));
+        assertEquals(violations.toString(), 1, violations.size());
+        assertTrue(violations.get(0), violations.get(0).contains("int32"));
+    }
+}
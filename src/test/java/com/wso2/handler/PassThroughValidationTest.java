@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.config.SynapseConfiguration;
+import org.apache.synapse.core.axis2.Axis2MessageContext;
+import org.apache.synapse.transport.passthru.PassThroughConstants;
+import org.apache.synapse.transport.passthru.Pipe;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the messages of operations without a schema are passed through without being read or built.
+ */
+public class PassThroughValidationTest {
+
+    private static final byte[] INVALID = "{\"id\":\"1\"}".getBytes(StandardCharsets.UTF_8);
+
+    private static SynapseConfiguration configuration;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        configuration = MessageContexts.configuration(
+                Swaggers.entry("pass-through-api", Swaggers.read("request-bodies-openapi3.json")));
+    }
+
+    private static SchemaValidator validator() {
+        SchemaValidator validator = new SchemaValidator();
+        validator.setApiUUID("pass-through-api");
+        validator.setStreamingValidation("true");
+        return validator;
+    }
+
+    private static Pipe pipe(MessageContext messageContext) {
+        return (Pipe) ((Axis2MessageContext) messageContext).getAxis2MessageContext()
+                .getProperty(PassThroughConstants.PASS_THROUGH_PIPE);
+    }
+
+    private static void assertPassedThrough(MessageContext messageContext, Pipe pipe) throws Exception {
+        org.apache.axis2.context.MessageContext axis2MC = ((Axis2MessageContext) messageContext)
+                .getAxis2MessageContext();
+        assertFalse(MessageContexts.isRejected(messageContext));
+        assertSame("The pipe was replaced", pipe, pipe(messageContext));
+        assertNull("The pipe was read", axis2MC.getProperty(PassThroughConstants.BUFFERED_INPUT_STREAM));
+        assertNull("The message was built", axis2MC.getProperty(PassThroughConstants.MESSAGE_BUILDER_INVOKED));
+        assertArrayEquals(INVALID, MessageContexts.relayedBody(messageContext));
+    }
+
+    private static boolean hasStatistics(String resource) {
+        for (ResourceStatistics statistics : SchemaValidatorMetrics.getInstance()
+                .getApiStatistics("pass-through-api")) {
+            if (resource.equals(statistics.getResource())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testUnknownOperationPassedThrough() throws Exception {
+        MessageContext messageContext = MessageContexts.request(configuration, "/owners", "POST",
+                "application/json", INVALID);
+        Pipe pipe = pipe(messageContext);
+        assertTrue(validator().handleRequest(messageContext));
+        assertPassedThrough(messageContext, pipe);
+        assertFalse(hasStatistics("/owners"));
+    }
+
+    @Test
+    public void testMediaTypeWithoutSchemaPassedThrough() throws Exception {
+        SchemaValidator validator = validator();
+        validator.setXmlValidation("true");
+        MessageContext messageContext = MessageContexts.request(configuration, "/pets/batch", "POST",
+                "application/xml", INVALID);
+        Pipe pipe = pipe(messageContext);
+        assertTrue(validator.handleRequest(messageContext));
+        assertPassedThrough(messageContext, pipe);
+    }
+
+    @Test
+    public void testResponseWithoutSchemaPassedThrough() throws Exception {
+        MessageContext messageContext = MessageContexts.response(configuration, "/pets/stream", "POST", "204",
+                "application/json", INVALID);
+        Pipe pipe = pipe(messageContext);
+        assertTrue(validator().handleResponse(messageContext));
+        assertPassedThrough(messageContext, pipe);
+        assertFalse(hasStatistics("/pets/stream"));
+    }
+
+    @Test
+    public void testOperationWithSchemaValidated() throws Exception {
+        MessageContext messageContext = MessageContexts.request(configuration, "/pets", "POST",
+                "application/json", INVALID);
+        assertTrue(validator().handleRequest(messageContext));
+        assertTrue("A request violating the schema is not rejected", MessageContexts.isRejected(messageContext));
+        assertTrue(hasStatistics("/pets"));
+    }
+}
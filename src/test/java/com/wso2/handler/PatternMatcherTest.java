@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import org.junit.Test;
+
+import java.util.regex.PatternSyntaxException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the shared, budgeted evaluation of the schema patterns.
+ */
+public class PatternMatcherTest {
+
+    private static PatternStatistics statistics(String regex) {
+        for (PatternStatistics statistics : PatternCache.getStatistics()) {
+            if (regex.equals(statistics.getPattern())) {
+                return statistics;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testRiskyPatterns() {
+        assertTrue(PatternMatcher.isRisky("^(a+)+$"));
+        assertTrue(PatternMatcher.isRisky("^(a|ab)*c$"));
+        assertTrue(PatternMatcher.isRisky("^((ab)*x)+$"));
+        assertTrue(PatternMatcher.isRisky("^(a)\\1$"));
+        assertTrue(PatternMatcher.isRisky("^(?<x>a)\\k<x>$"));
+        assertFalse(PatternMatcher.isRisky("^[A-Z]{3}$"));
+        assertFalse(PatternMatcher.isRisky("^(ab)+$"));
+        assertFalse(PatternMatcher.isRisky("^[(a+)+]$"));
+        assertFalse(PatternMatcher.isRisky("^\\(a+\\)+$"));
+        assertFalse(PatternMatcher.isRisky("^a\\0101$"));
+    }
+
+    @Test
+    public void testValidate() {
+        PatternMatcher matcher = new PatternMatcher("[0-9]{3}");
+        assertNull(matcher.validate("ab123"));
+        assertEquals("string [ab12] does not match pattern [0-9]{3}", matcher.validate("ab12"));
+    }
+
+    @Test
+    public void testHostileInputStopsWithinBudget() {
+        String regex = "^((a+)+)+$";
+        PatternMatcher matcher = PatternCache.getPattern(regex);
+        assertTrue(matcher.isRisky());
+        assertNull(matcher.validate("aaaa"));
+        StringBuilder hostile = new StringBuilder();
+        for (int i = 0; i < 64; i++) {
+            hostile.append('a');
+        }
+        hostile.append('!');
+        long start = System.nanoTime();
+        String violation = matcher.validate(hostile.toString());
+        assertTrue("The evaluation was not bounded", System.nanoTime() - start < 10000000000L);
+        assertEquals("string [" + hostile + "] does not match pattern " + regex, violation);
+        PatternStatistics statistics = statistics(regex);
+        assertNotNull(statistics);
+        assertTrue(statistics.isRisky());
+        assertTrue(statistics.getBudgetExceeded() >= 1);
+        assertTrue(statistics.getEvaluationTime().getCount() >= 2);
+    }
+
+    @Test
+    public void testBudgetPolicy() {
+        String regex = "^((b+)+)+$";
+        PatternMatcher matcher = PatternCache.getPattern(regex);
+        StringBuilder hostile = new StringBuilder();
+        for (int i = 0; i < 64; i++) {
+            hostile.append('b');
+        }
+        hostile.append('!');
+        long budgetExceeded = statistics(regex).getBudgetExceeded();
+        assertNull("The string is rejected when the budget fails open", matcher.validate(hostile.toString(), true));
+        assertEquals("string [" + hostile + "] does not match pattern " + regex,
+                matcher.validate(hostile.toString(), false));
+        assertEquals(budgetExceeded + 2, statistics(regex).getBudgetExceeded());
+        assertEquals("A mismatch within the budget is accepted", "string [a] does not match pattern " + regex,
+                matcher.validate("a", true));
+        assertEquals(budgetExceeded + 2, statistics(regex).getBudgetExceeded());
+    }
+
+    @Test
+    public void testPatternsShared() {
+        PatternMatcher matcher = PatternCache.getPattern("^shared-[0-9]+$");
+        assertSame(matcher, PatternCache.getPattern("^shared-[0-9]+$"));
+        assertTrue(PatternCache.size() >= 1);
+        matcher.validate("shared-1");
+        assertTrue(statistics("^shared-[0-9]+$").getEvaluationTime().getCount() >= 1);
+    }
+
+    @Test(expected = PatternSyntaxException.class)
+    public void testInvalidPattern() {
+        PatternCache.getPattern("^(unclosed$");
+    }
+}
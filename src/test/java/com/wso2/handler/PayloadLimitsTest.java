@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.config.SynapseConfiguration;
+import org.apache.synapse.core.axis2.Axis2MessageContext;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the size and structure limits of the request payloads.
+ */
+public class PayloadLimitsTest {
+
+    private static SynapseConfiguration configuration;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        configuration = MessageContexts.configuration(
+                Swaggers.entry("limited-api", Swaggers.read("request-bodies-openapi3.json")));
+    }
+
+    private static String check(PayloadLimits limits, String payload) throws IOException {
+        return limits.check(payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long rejectedPayloads() {
+        long rejected = 0;
+        for (ResourceStatistics statistics : SchemaValidatorMetrics.getInstance().getApiStatistics("limited-api")) {
+            rejected += statistics.getRejectedPayloads();
+        }
+        return rejected;
+    }
+
+    @Test
+    public void testNoLimits() throws IOException {
+        assertFalse(PayloadLimits.NONE.isEnabled());
+        assertNull(check(PayloadLimits.NONE, "[[[[{\"a\":[1,2,3]}]]]]"));
+        assertNull(PayloadLimits.NONE.checkSize(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testMaxBytes() throws IOException {
+        PayloadLimits limits = PayloadLimits.NONE.withMaxBytes(10);
+        assertTrue(limits.isEnabled());
+        assertNull(check(limits, "{\"a\":\"b\"}"));
+        assertEquals("Payload exceeds the maximum size of 10 bytes", check(limits, "{\"a\":\"bcdef\"}"));
+        assertNull(limits.checkSize(-1));
+    }
+
+    @Test
+    public void testMaxDepth() throws IOException {
+        PayloadLimits limits = PayloadLimits.NONE.withMaxDepth(2);
+        assertNull(check(limits, "{\"a\":[1]}"));
+        assertEquals("Payload exceeds the maximum nesting depth of 2 at #/a/0",
+                check(limits, "{\"a\":[{\"b\":1}]}"));
+    }
+
+    @Test
+    public void testMaxArrayLength() throws IOException {
+        PayloadLimits limits = PayloadLimits.NONE.withMaxArrayLength(2);
+        assertNull(check(limits, "{\"a\":[1,\"b\"]}"));
+        assertEquals("Array exceeds the maximum length of 2 at #/a", check(limits, "{\"a\":[1,\"b\",null]}"));
+        assertEquals("Array exceeds the maximum length of 2 at #", check(limits, "[[],[],{}]"));
+    }
+
+    @Test
+    public void testMaxStringLength() throws IOException {
+        PayloadLimits limits = PayloadLimits.NONE.withMaxStringLength(3);
+        assertNull(check(limits, "{\"abc\":\"def\"}"));
+        assertEquals("String exceeds the maximum length of 3 at #/a", check(limits, "{\"a\":\"defg\"}"));
+        assertEquals("Property name exceeds the maximum string length of 3 at #",
+                check(limits, "{\"abcd\":1}"));
+    }
+
+    @Test
+    public void testMaxPropertyCount() throws IOException {
+        PayloadLimits limits = PayloadLimits.NONE.withMaxPropertyCount(2);
+        assertNull(check(limits, "{\"a\":1,\"b\":{\"c\":1,\"d\":2}}"));
+        assertEquals("Object exceeds the maximum property count of 2 at #/b",
+                check(limits, "{\"a\":1,\"b\":{\"c\":1,\"d\":2,\"e\":3}}"));
+    }
+
+    @Test(expected = JsonProcessingException.class)
+    public void testMalformedPayload() throws IOException {
+        check(PayloadLimits.NONE.withMaxDepth(4), "{\"a\":[1,}");
+    }
+
+    @Test
+    public void testContentLengthRejectedBeforeRead() throws Exception {
+        SchemaValidator validator = new SchemaValidator();
+        validator.setApiUUID("limited-api");
+        validator.setMaxPayloadBytes("16");
+        byte[] body = "{\"name\":\"a pet with a long name\"}".getBytes(StandardCharsets.UTF_8);
+        MessageContext messageContext = MessageContexts.request(configuration, "/pets", "POST",
+                "application/json", body);
+        Map<String, String> headers = new HashMap<>();
+        headers.put(SchemaValidatorConstant.CONTENT_LENGTH, String.valueOf(body.length));
+        ((Axis2MessageContext) messageContext).getAxis2MessageContext().setProperty(
+                org.apache.axis2.context.MessageContext.TRANSPORT_HEADERS, headers);
+        long rejected = rejectedPayloads();
+        assertTrue(validator.handleRequest(messageContext));
+        assertTrue(MessageContexts.isRejected(messageContext));
+        assertTrue(MessageContexts.threatDescription(messageContext).endsWith(
+                "Payload exceeds the maximum size of 16 bytes"));
+        assertArrayEquals("The relay buffer was read", body, MessageContexts.relayedBody(messageContext));
+        assertEquals(rejected + 1, rejectedPayloads());
+    }
+
+    @Test
+    public void testStructureLimitRejected() throws Exception {
+        SchemaValidator validator = new SchemaValidator();
+        validator.setApiUUID("limited-api");
+        validator.setStreamingValidation("true");
+        validator.setMaxArrayLength("2");
+        long rejected = rejectedPayloads();
+        MessageContext messageContext = MessageContexts.request(configuration, "/pets/batch", "POST",
+                "application/json", "[{\"name\":\"a\"},{\"name\":\"b\"},{\"name\":\"c\"}]".getBytes(
+                        StandardCharsets.UTF_8));
+        assertTrue(validator.handleRequest(messageContext));
+        assertTrue(MessageContexts.isRejected(messageContext));
+        assertTrue(MessageContexts.threatDescription(messageContext).endsWith(
+                "Array exceeds the maximum length of 2 at #"));
+        assertEquals(rejected + 1, rejectedPayloads());
+
+        messageContext = MessageContexts.request(configuration, "/pets/batch", "POST", "application/json",
+                "[{\"name\":\"a\"},{\"name\":\"b\"}]".getBytes(StandardCharsets.UTF_8));
+        assertTrue(validator.handleRequest(messageContext));
+        assertFalse(MessageContexts.isRejected(messageContext));
+    }
+
+    @Test
+    public void testInvalidLimitIgnored() {
+        SchemaValidator validator = new SchemaValidator();
+        validator.setMaxPayloadDepth("8");
+        validator.setMaxPayloadDepth("-1");
+        validator.setMaxPayloadDepth("deep");
+        assertEquals("8", validator.getMaxPayloadDepth());
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.config.SynapseConfiguration;
+import org.apache.synapse.core.axis2.Axis2MessageContext;
+import org.apache.synapse.transport.passthru.PassThroughConstants;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the validation of request bodies streamed as records.
+ */
+public class RecordValidatingInputStreamTest {
+
+    private static final String API_UUID = "record-api";
+    private static final String NDJSON = "application/x-ndjson";
+
+    private static SynapseConfiguration configuration;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        configuration = MessageContexts.configuration(Swaggers.entry(API_UUID,
+                Swaggers.read("request-bodies-openapi3.json")));
+    }
+
+    private static SchemaValidator recordValidator() {
+        SchemaValidator validator = new SchemaValidator();
+        validator.setApiUUID(API_UUID);
+        validator.setRecordValidation("true");
+        return validator;
+    }
+
+    @Test
+    public void testRelayedBodyUnchanged() throws Exception {
+        byte[] body = "{\"id\":1,\"name\":\"a\"}\n{\"id\":2,\"name\":\"b\"}\r\n\n{\"id\":3,\"name\":\"c\"}"
+                .getBytes(StandardCharsets.UTF_8);
+        MessageContext messageContext = MessageContexts.request(configuration, "/pets/stream", "POST", NDJSON, body);
+
+        assertTrue(recordValidator().handleRequest(messageContext));
+        assertFalse(MessageContexts.isRejected(messageContext));
+        assertArrayEquals(body, MessageContexts.relayedBody(messageContext));
+    }
+
+    @Test
+    public void testInvalidRecordRejected() throws Exception {
+        byte[] body = "{\"id\":1,\"name\":\"a\"}\n{\"id\":\"x\"}\n{\"id\":3,\"name\":\"c\"}\n"
+                .getBytes(StandardCharsets.UTF_8);
+        MessageContext messageContext = MessageContexts.request(configuration, "/pets/stream", "POST", NDJSON, body);
+
+        assertTrue(recordValidator().handleRequest(messageContext));
+        assertTrue("An invalid record is relayed", MessageContexts.isRejected(messageContext));
+        assertTrue(MessageContexts.threatDescription(messageContext).contains("record 2"));
+        assertNull("The rejected message is built", ((Axis2MessageContext) messageContext).getAxis2MessageContext()
+                .getProperty(PassThroughConstants.MESSAGE_BUILDER_INVOKED));
+    }
+
+    @Test
+    public void testJsonTextSequence() throws Exception {
+        ValidationSchema schema = ValidationEngineRegistry.compile(SchemaValidatorConstant.VALIDATION_ENGINE_EVERIT,
+                Swaggers.index("request-bodies-openapi3.json").getRequestRecordSchema("/pets/stream", "POST"));
+        String body = "\u001e{\"id\":1,\"name\":\"a\"}\n\u001e{\"id\":2,\"name\":\"b\"}\n";
+        RecordValidatingInputStream inputStream = new RecordValidatingInputStream(
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), schema,
+                SchemaValidatorMetrics.getInstance().getResourceMetrics(API_UUID, "/pets/stream"), 0, 1024, true);
+        byte[] buffer = new byte[body.length()];
+        int length = 0;
+        int read;
+        while ((read = inputStream.read(buffer, length, buffer.length - length)) > 0) {
+            length += read;
+        }
+        assertEquals(body, new String(buffer, 0, length, StandardCharsets.UTF_8));
+        assertEquals(2, inputStream.getRecordCount());
+    }
+
+    @Test
+    public void testOversizedRecord() throws Exception {
+        ValidationSchema schema = ValidationEngineRegistry.compile(SchemaValidatorConstant.VALIDATION_ENGINE_EVERIT,
+                Swaggers.index("request-bodies-openapi3.json").getRequestRecordSchema("/pets/stream", "POST"));
+        StringBuilder body = new StringBuilder("{\"id\":1,\"name\":\"");
+        for (int i = 0; i < 2048; i++) {
+            body.append('a');
+        }
+        body.append("\"}\n");
+        RecordValidatingInputStream inputStream = new RecordValidatingInputStream(
+                new ByteArrayInputStream(body.toString().getBytes(StandardCharsets.UTF_8)), schema,
+                SchemaValidatorMetrics.getInstance().getResourceMetrics(API_UUID, "/pets/stream"), 0, 1024, false);
+        try {
+            while (inputStream.read() != -1) {
+                // Relay the body.
+            }
+            fail("An oversized record is relayed");
+        } catch (RecordValidatingInputStream.RecordViolationException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("maximum record size"));
+        }
+    }
+}
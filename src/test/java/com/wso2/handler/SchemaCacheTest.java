@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the compiled schema cache.
+ */
+public class SchemaCacheTest {
+
+    private static SchemaCache.Key key(String apiUUID, String resource, String method, boolean response,
+                                       String statusCode) {
+        return new SchemaCache.Key(apiUUID, resource, method, response, statusCode, "application/json", 1,
+                SchemaValidatorConstant.VALIDATION_ENGINE_EVERIT);
+    }
+
+    @Test
+    public void testKeyIdentifiesOperation() {
+        SchemaCache.Key key = key("api", "/pets", "POST", true, "200");
+        assertEquals(key, key("api", "/pets", "POST", true, "200"));
+        assertEquals(key.hashCode(), key("api", "/pets", "POST", true, "200").hashCode());
+        assertNotEquals(key, key("other-api", "/pets", "POST", true, "200"));
+        assertNotEquals(key, key("api", "/pets/{petId}", "POST", true, "200"));
+        assertNotEquals(key, key("api", "/pets", "PUT", true, "200"));
+        assertNotEquals(key, key("api", "/pets", "POST", false, "200"));
+        assertNotEquals(key, key("api", "/pets", "POST", true, "201"));
+        assertNotEquals(key, new SchemaCache.Key("api", "/pets", "POST", true, "200", "application/xml", 1,
+                SchemaValidatorConstant.VALIDATION_ENGINE_EVERIT));
+        assertNotEquals(key, new SchemaCache.Key("api", "/pets", "POST", true, "200", "application/json", 2,
+                SchemaValidatorConstant.VALIDATION_ENGINE_EVERIT));
+        assertNotEquals(key, key.withEngine(SchemaValidatorConstant.VALIDATION_ENGINE_COMPILED));
+        assertEquals(key, key.withEngine(SchemaValidatorConstant.VALIDATION_ENGINE_EVERIT));
+    }
+
+    @Test
+    public void testGetAndPut() {
+        SchemaCache<String> cache = new SchemaCache<>(16);
+        SchemaCache.Key key = key("api", "/pets", "POST", false, null);
+        assertNull(cache.get(key));
+        cache.put(key, "schema");
+        assertSame("schema", cache.get(key));
+        assertTrue(cache.contains(key));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        cache.clear();
+        assertFalse(cache.contains(key));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testNullSchemaNotCached() {
+        SchemaCache<String> cache = new SchemaCache<>(16);
+        SchemaCache.Key key = key("api", "/pets", "POST", false, null);
+        cache.put(key, null);
+        assertFalse(cache.contains(key));
+    }
+
+    @Test
+    public void testBoundedSize() {
+        SchemaCache<String> cache = new SchemaCache<>(32);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(key("api", "/pets/" + i, "GET", true, "200"), "schema" + i);
+        }
+        assertTrue("The cache holds " + cache.size() + " schemas", cache.size() <= 32);
+        assertEquals(1000 - cache.size(), cache.getEvictionCount());
+        // The schema added last is never the least recently used one.
+        assertEquals("schema999", cache.get(key("api", "/pets/999", "GET", true, "200")));
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the resolution of the schema references of a swagger.
+ */
+public class SchemaResolverTest {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final String DEFINITIONS = "{\"definitions\":{" +
+            "\"Pet\":{\"type\":\"object\",\"required\":[\"name\"],\"properties\":{\"name\":{\"type\":\"string\"}," +
+            "\"owner\":{\"$ref\":\"#/definitions/Owner\"}}}," +
+            "\"Owner\":{\"type\":\"object\",\"properties\":{\"pets\":{\"type\":\"array\",\"items\":" +
+            "{\"$ref\":\"#/definitions/Pet\"}}}}," +
+            "\"Tree\":{\"type\":\"object\",\"required\":[\"value\"],\"properties\":{\"value\":{\"type\":" +
+            "\"integer\"},\"children\":{\"type\":\"array\",\"items\":{\"$ref\":\"#/definitions/Tree\"}}}}," +
+            "\"Alias\":{\"$ref\":\"#/definitions/Loop\"},\"Loop\":{\"$ref\":\"#/definitions/Alias\"}," +
+            "\"Missing\":{\"type\":\"object\",\"properties\":{\"value\":{\"$ref\":\"#/definitions/Nowhere\"}}}}}";
+
+    private static SchemaResolver resolver() throws IOException {
+        return new SchemaResolver(mapper.readTree(DEFINITIONS));
+    }
+
+    private static JsonNode reference(String name) throws IOException {
+        return mapper.readTree("{\"$ref\":\"#/definitions/" + name + "\"}");
+    }
+
+    private static boolean isValid(JSONObject schema, String payload) throws IOException {
+        return ValidationEngineRegistry.getDefaultEngine().compile(schema)
+                .validate(payload.getBytes(StandardCharsets.UTF_8), 0).isValid();
+    }
+
+    @Test
+    public void testSharedReferenceResolvedOnce() throws IOException {
+        SchemaResolver resolver = resolver();
+        JSONObject first = resolver.resolveSchema(mapper.readTree("{\"type\":\"array\",\"items\":" +
+                "{\"$ref\":\"#/definitions/Tree\"}}"));
+        JSONObject second = resolver.resolveSchema(mapper.readTree("{\"type\":\"object\",\"properties\":" +
+                "{\"tree\":{\"$ref\":\"#/definitions/Tree\"}}}"));
+        assertSame(first.getJSONObject("items").getJSONObject("properties"),
+                second.getJSONObject("properties").getJSONObject("tree").getJSONObject("properties"));
+    }
+
+    @Test
+    public void testRecursiveSchema() throws IOException {
+        JSONObject schema = resolver().resolveSchema(reference("Tree"));
+        assertTrue(schema.has(SchemaValidatorConstant.DEFINITIONS));
+        assertTrue(isValid(schema, "{\"value\":1,\"children\":[{\"value\":2,\"children\":[{\"value\":3}]}]}"));
+        assertFalse(isValid(schema, "{\"value\":1,\"children\":[{\"value\":2,\"children\":[{}]}]}"));
+    }
+
+    @Test
+    public void testMutuallyRecursiveSchemas() throws IOException {
+        JSONObject schema = resolver().resolveSchema(reference("Pet"));
+        assertTrue(isValid(schema, "{\"name\":\"a\",\"owner\":{\"pets\":[{\"name\":\"b\"}]}}"));
+        assertFalse(isValid(schema, "{\"name\":\"a\",\"owner\":{\"pets\":[{\"owner\":{}}]}}"));
+    }
+
+    @Test
+    public void testCircularReference() throws IOException {
+        assertNull(resolver().dereferenceSchema(reference("Alias")));
+    }
+
+    @Test
+    public void testMissingReference() throws IOException {
+        SchemaResolver resolver = resolver();
+        assertNull(resolver.dereferenceSchema(reference("Nowhere")));
+        JSONObject schema = resolver.resolveSchema(reference("Missing"));
+        assertEquals(0, schema.getJSONObject("properties").getJSONObject("value").length());
+    }
+
+    @Test
+    public void testNonLocalReference() throws IOException {
+        SchemaResolver resolver = resolver();
+        assertNull(resolver.lookup("http://example.com/schemas/Pet.json"));
+        assertNull(resolver.lookup(""));
+    }
+}
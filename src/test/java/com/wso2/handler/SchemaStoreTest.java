@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the interning of the schemas shared by the operation indexes.
+ */
+public class SchemaStoreTest {
+
+    private static final String ERROR = "{\"type\":\"object\",\"required\":[\"code\",\"message\"],\"properties\":" +
+            "{\"code\":{\"type\":\"integer\"},\"message\":{\"type\":\"string\"},\"store\":{\"const\":\"%s\"}}}";
+
+    @Test
+    public void testInternSharesIdenticalSubtrees() {
+        SchemaStore store = SchemaStore.getInstance();
+        String error = String.format(ERROR, "shared");
+        JSONObject first = store.intern(new JSONObject("{\"type\":\"array\",\"items\":" + error + "}"));
+        JSONObject second = store.intern(new JSONObject("{\"type\":\"object\",\"properties\":{\"error\":" + error +
+                "}}"));
+        assertNotSame(first, second);
+        assertSame(first.get("items"), second.getJSONObject("properties").get("error"));
+    }
+
+    @Test
+    public void testInternedSchemasNotCharged() {
+        SchemaStore store = SchemaStore.getInstance();
+        MemoryBudget budget = store.getMemoryBudget();
+        long weight = budget.getWeight();
+        JSONObject schema = store.intern(new JSONObject(String.format(ERROR, "charged")));
+        assertEquals("Interned schemas are charged to the memory budget", weight, budget.getWeight());
+        assertSame(schema, store.intern(new JSONObject(String.format(ERROR, "charged"))));
+    }
+
+    @Test
+    public void testReleasedSchemasRemoved() throws InterruptedException {
+        SchemaStore store = SchemaStore.getInstance();
+        int count = store.getInternedCount();
+        JSONObject schema = store.intern(new JSONObject(String.format(ERROR, "released")));
+        assertTrue(store.getInternedCount() > count);
+        schema = null;
+        for (int i = 0; i < 50 && store.getInternedCount() > count; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertTrue("Interned schemas no index uses are kept", store.getInternedCount() <= count);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import org.apache.synapse.config.SynapseConfiguration;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the metrics of the validated messages.
+ */
+public class SchemaValidatorMetricsTest {
+
+    @Test
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        histogram.record(-1);
+        HistogramStatistics statistics = histogram.snapshot();
+        assertEquals(101, statistics.getCount());
+        assertEquals(100, statistics.getMax());
+        assertEquals(5050 / 101.0, statistics.getMean(), 1e-9);
+        // The percentiles are the upper bounds of the power of two buckets.
+        assertEquals(63, statistics.getP50());
+        assertEquals(127, statistics.getP90());
+        assertEquals(127, statistics.getP99());
+        histogram.reset();
+        assertEquals(0, histogram.snapshot().getCount());
+    }
+
+    @Test
+    public void testResourceMetrics() throws Exception {
+        SynapseConfiguration configuration = MessageContexts.configuration(Swaggers.entry("metrics-api",
+                Swaggers.read("request-bodies-openapi3.json")));
+        SchemaValidator validator = new SchemaValidator();
+        validator.setApiUUID("metrics-api");
+        validator.setStreamingValidation("true");
+        String[] payloads = {"{\"name\":\"a\"}", "{\"name\":\"b\"}", "{\"name\":\"c\"}", "{}", "{\"name\":1}",
+                "{\"name\":"};
+        for (String payload : payloads) {
+            validator.handleRequest(MessageContexts.request(configuration, "/pets", "POST", "application/json",
+                    payload.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        List<ResourceStatistics> statistics = SchemaValidatorMetrics.getInstance().getApiStatistics("metrics-api");
+        assertEquals(1, statistics.size());
+        ResourceStatistics resource = statistics.get(0);
+        assertEquals("/pets", resource.getResource());
+        assertEquals(3, resource.getRequestViolations());
+        assertEquals(1, resource.getMalformedPayloads());
+        assertEquals(0, resource.getResponseViolations());
+        assertEquals(payloads.length, resource.getPayloadSize().getCount());
+        assertEquals(payloads.length, resource.getSchemaLookup().getCount());
+        assertTrue(resource.getValidate().getCount() >= payloads.length - 1);
+        assertTrue(SchemaValidatorMetrics.getInstance().getSchemaCacheHitCount() > 0);
+        assertEquals(0, SchemaValidatorMetrics.getInstance().getApiStatistics("unknown-api").size());
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.config.Entry;
+import org.apache.synapse.config.SynapseConfiguration;
+import org.apache.synapse.core.axis2.Axis2MessageContext;
+import org.apache.synapse.transport.passthru.PassThroughConstants;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the validation of the messages of several APIs by the handler.
+ */
+public class SchemaValidatorTest {
+
+    private static final int API_COUNT = 8;
+    private static final int THREAD_COUNT = 8;
+    private static final int MESSAGE_COUNT = 4000;
+
+    /**
+     * The APIs define the same resources with different schemas, so a schema cached or indexed for the wrong API
+     * accepts the payloads of the other APIs.
+     */
+    @Test
+    public void testConcurrentApisWithOverlappingResources() throws Exception {
+        Entry[] entries = new Entry[API_COUNT];
+        final SchemaValidator[] validators = new SchemaValidator[API_COUNT];
+        for (int i = 0; i < API_COUNT; i++) {
+            String apiUUID = "overlapping-api-" + i;
+            entries[i] = Swaggers.entry(apiUUID, swagger(i));
+            validators[i] = new SchemaValidator();
+            validators[i].setApiUUID(apiUUID);
+            validators[i].setStreamingValidation(i % 2 == 0 ? "true" : "false");
+            validators[i].setValidationEngine(i % 4 < 2 ? SchemaValidatorConstant.VALIDATION_ENGINE_EVERIT :
+                    SchemaValidatorConstant.VALIDATION_ENGINE_COMPILED);
+        }
+        final SynapseConfiguration configuration = MessageContexts.configuration(entries);
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        try {
+            List<Future<String>> results = new ArrayList<>(MESSAGE_COUNT);
+            for (int m = 0; m < MESSAGE_COUNT; m++) {
+                final int api = m % API_COUNT;
+                final int payloadApi = (m / API_COUNT) % API_COUNT;
+                final String resource = m % 3 == 0 ? "/items/{itemId}" : "/items";
+                results.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        MessageContext messageContext = MessageContexts.request(configuration, resource,
+                                resource.equals("/items") ? "POST" : "PUT", "application/json",
+                                ("{\"field" + payloadApi + "\":1}").getBytes(StandardCharsets.UTF_8));
+                        assertTrue(validators[api].handleRequest(messageContext));
+                        boolean rejected = MessageContexts.isRejected(messageContext);
+                        return rejected == (api != payloadApi) ? null : "API " + api + " " +
+                                (rejected ? "rejected" : "accepted") + " the " + resource + " payload of API " +
+                                payloadApi;
+                    }
+                }));
+            }
+            List<String> mismatches = new ArrayList<>();
+            for (Future<String> result : results) {
+                String mismatch = result.get();
+                if (mismatch != null) {
+                    mismatches.add(mismatch);
+                }
+            }
+            assertEquals(new ArrayList<String>(), mismatches);
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testIndexRebuiltWhenSwaggerChanges() throws Exception {
+        Entry entry = Swaggers.entry("changing-api", swagger(0));
+        SynapseConfiguration configuration = MessageContexts.configuration(entry);
+        SchemaValidator validator = new SchemaValidator();
+        validator.setApiUUID("changing-api");
+        validator.setStreamingValidation("true");
+        byte[] payload = "{\"field1\":1}".getBytes(StandardCharsets.UTF_8);
+
+        MessageContext messageContext = MessageContexts.request(configuration, "/items", "POST",
+                "application/json", payload);
+        validator.handleRequest(messageContext);
+        assertTrue(MessageContexts.isRejected(messageContext));
+
+        entry.setValue(swagger(1));
+        messageContext = MessageContexts.request(configuration, "/items", "POST", "application/json", payload);
+        validator.handleRequest(messageContext);
+        assertFalse("The payload is validated against the schema of the previous swagger",
+                MessageContexts.isRejected(messageContext));
+    }
+
+    @Test
+    public void testStreamingValidation() throws Exception {
+        SynapseConfiguration configuration = MessageContexts.configuration(Swaggers.entry("streaming-api",
+                Swaggers.read("request-bodies-openapi3.json")));
+        SchemaValidator validator = new SchemaValidator();
+        validator.setApiUUID("streaming-api");
+        validator.setStreamingValidation("true");
+
+        byte[] valid = "{\"id\":1,\"name\":\"a\"}".getBytes(StandardCharsets.UTF_8);
+        MessageContext messageContext = MessageContexts.request(configuration, "/pets", "POST",
+                "application/json", valid);
+        assertTrue(validator.handleRequest(messageContext));
+        assertFalse(MessageContexts.isRejected(messageContext));
+        assertEquals("The message is not built over the read body", Boolean.TRUE,
+                ((Axis2MessageContext) messageContext).getAxis2MessageContext()
+                        .getProperty(PassThroughConstants.MESSAGE_BUILDER_INVOKED));
+        assertArrayEquals(valid, MessageContexts.relayedBody(messageContext));
+
+        messageContext = MessageContexts.request(configuration, "/pets", "POST", "application/json",
+                "{\"id\":\"1\"}".getBytes(StandardCharsets.UTF_8));
+        validator.handleRequest(messageContext);
+        assertTrue(MessageContexts.isRejected(messageContext));
+
+        messageContext = MessageContexts.request(configuration, "/pets", "POST", "application/json",
+                "{\"id\":1,".getBytes(StandardCharsets.UTF_8));
+        validator.handleRequest(messageContext);
+        assertTrue(MessageContexts.threatDescription(messageContext).endsWith("Malformed JSON payload"));
+    }
+
+    @Test
+    public void testValidationModes() throws Exception {
+        SynapseConfiguration configuration = MessageContexts.configuration(Swaggers.entry("mode-api",
+                requiredKeysSwagger("a", "b", "c")));
+        for (String engine : new String[]{SchemaValidatorConstant.VALIDATION_ENGINE_EVERIT,
+                SchemaValidatorConstant.VALIDATION_ENGINE_COMPILED}) {
+            SchemaValidator validator = new SchemaValidator();
+            validator.setApiUUID("mode-api");
+            validator.setStreamingValidation("true");
+            validator.setValidationEngine(engine);
+            assertEquals(3, countViolations(validator, configuration));
+            validator.setValidationMode(SchemaValidatorConstant.VALIDATION_MODE_FAIL_FAST);
+            assertEquals(1, countViolations(validator, configuration));
+            validator.setValidationMode("collect2");
+            assertEquals(2, countViolations(validator, configuration));
+            validator.setValidationMode("collect-1");
+            assertEquals("collect2", validator.getValidationMode());
+            validator.setValidationMode(SchemaValidatorConstant.VALIDATION_MODE_COLLECT_ALL);
+            assertEquals(3, countViolations(validator, configuration));
+        }
+    }
+
+    @Test
+    public void testViolationDescription() throws Exception {
+        String[] keys = new String[3];
+        for (int i = 0; i < keys.length; i++) {
+            StringBuilder key = new StringBuilder();
+            for (int j = 0; j < SchemaValidatorConstant.MAX_VIOLATION_DESCRIPTION_LENGTH * 3 / 4; j++) {
+                key.append((char) ('a' + i));
+            }
+            keys[i] = key.toString();
+        }
+        SynapseConfiguration configuration = MessageContexts.configuration(Swaggers.entry("description-api",
+                requiredKeysSwagger(keys)));
+        SchemaValidator validator = new SchemaValidator();
+        validator.setApiUUID("description-api");
+        validator.setStreamingValidation("true");
+        String description = violationDescription(validator, configuration);
+        assertTrue(description, description.endsWith(" and 2 more violations"));
+    }
+
+    private static int countViolations(SchemaValidator validator, SynapseConfiguration configuration)
+            throws Exception {
+        return violationDescription(validator, configuration).split("required key").length - 1;
+    }
+
+    private static String violationDescription(SchemaValidator validator, SynapseConfiguration configuration)
+            throws Exception {
+        MessageContext messageContext = MessageContexts.request(configuration, "/items", "POST",
+                "application/json", "{}".getBytes(StandardCharsets.UTF_8));
+        validator.handleRequest(messageContext);
+        return MessageContexts.threatDescription(messageContext);
+    }
+
+    private static String requiredKeysSwagger(String... keys) {
+        StringBuilder required = new StringBuilder();
+        for (String key : keys) {
+            required.append(required.length() > 0 ? "," : "").append('"').append(key).append('"');
+        }
+        return "{\"openapi\":\"3.0.1\",\"paths\":{\"/items\":{\"post\":{\"requestBody\":{\"content\":" +
+                "{\"application/json\":{\"schema\":{\"type\":\"object\",\"required\":[" + required +
+                "]}}}},\"responses\":{}}}}}";
+    }
+
+    private static String swagger(int api) {
+        String schema = "{\"type\":\"object\",\"required\":[\"field" + api + "\"],\"properties\":{\"field" + api +
+                "\":{\"type\":\"integer\"}}}";
+        return "{\"openapi\":\"3.0.1\",\"paths\":{" +
+                "\"/items\":{\"post\":{\"requestBody\":{\"content\":{\"application/json\":{\"schema\":" + schema +
+                "}}},\"responses\":{\"201\":{\"description\":\"Created\"}}}}," +
+                "\"/items/{itemId}\":{\"put\":{\"requestBody\":{\"content\":{\"application/json\":{\"schema\":" +
+                schema + "}}},\"responses\":{\"200\":{\"description\":\"Updated\"}}}}}}";
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import org.apache.synapse.config.SynapseConfiguration;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the background precompilation of the schemas of the deployed APIs.
+ */
+public class SchemaWarmUpTest {
+
+    private static SynapseConfiguration configuration;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        configuration = MessageContexts.configuration(
+                Swaggers.entry("warm-api", Swaggers.read("request-bodies-openapi3.json")),
+                Swaggers.entry("direct-warm-api", Swaggers.read("request-bodies-openapi3.json")));
+    }
+
+    private static void awaitWarmUp(SchemaValidator validator) throws InterruptedException {
+        for (int i = 0; i < 250 && !validator.isWarmedUp(); i++) {
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    public void testInitSchedulesWarmUp() throws Exception {
+        SchemaValidator validator = new SchemaValidator();
+        validator.setApiUUID("warm-api");
+        assertFalse(validator.isWarmedUp());
+        validator.init(MessageContexts.environment(configuration));
+        awaitWarmUp(validator);
+        assertTrue("The handler is not warmed up", validator.isWarmedUp());
+        assertEquals("The warm-up compiled the schemas again", 0, validator.warmUp());
+        validator.destroy();
+        assertFalse(validator.isWarmedUp());
+    }
+
+    @Test
+    public void testWarmUpCompilesEveryOperation() throws Exception {
+        SchemaValidator validator = new SchemaValidator();
+        validator.setApiUUID("direct-warm-api");
+        validator.init(MessageContexts.environment(configuration));
+        awaitWarmUp(validator);
+        validator.setValidationEngine(SchemaValidatorConstant.VALIDATION_ENGINE_COMPILED);
+        validator.setRecordValidation("true");
+        int compiled = validator.warmUp();
+        // Seven request body media types, the record schemas of the five operations and two response schemas.
+        assertEquals(14, compiled);
+        assertEquals(0, validator.warmUp());
+    }
+
+    @Test
+    public void testApiWithoutSwaggerNotWarmedUp() throws Exception {
+        SchemaValidator validator = new SchemaValidator();
+        validator.setApiUUID("undeployed-api");
+        validator.init(MessageContexts.environment(configuration));
+        for (int i = 0; i < 250 && !SchemaWarmUp.isComplete(); i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, validator.warmUp());
+        assertFalse(validator.isWarmedUp());
+    }
+
+    @Test
+    public void testWarmUpAllCompletes() throws Exception {
+        SchemaWarmUp.warmUpAll();
+        for (int i = 0; i < 250 && !SchemaWarmUp.isComplete(); i++) {
+            Thread.sleep(20);
+        }
+        assertTrue(SchemaWarmUp.isComplete());
+        assertEquals(0, SchemaWarmUp.getPendingCount());
+    }
+}
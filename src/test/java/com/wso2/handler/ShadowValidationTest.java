@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.config.SynapseConfiguration;
+import org.json.JSONObject;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the sampled validation of the payloads by a candidate engine in the shadow of the validation engine.
+ */
+public class ShadowValidationTest {
+
+    private static final byte[] VALID = "{\"id\":1,\"name\":\"Rex\"}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] INVALID = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+
+    private static SynapseConfiguration configuration;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        String swagger = Swaggers.read("request-bodies-openapi3.json");
+        configuration = MessageContexts.configuration(Swaggers.entry("shadow-api", swagger),
+                Swaggers.entry("disagreeing-shadow-api", swagger), Swaggers.entry("unsampled-shadow-api", swagger),
+                Swaggers.entry("same-shadow-api", swagger), Swaggers.entry("late-shadow-api", swagger));
+    }
+
+    private static SchemaValidator validator(String apiUUID, String shadowEngine, String samplingRate) {
+        SchemaValidator validator = new SchemaValidator();
+        validator.setApiUUID(apiUUID);
+        validator.setStreamingValidation("true");
+        validator.setShadowEngine(shadowEngine);
+        validator.setShadowSamplingRate(samplingRate);
+        return validator;
+    }
+
+    private static boolean isRejected(SchemaValidator validator, byte[] payload) throws Exception {
+        MessageContext messageContext = MessageContexts.request(configuration, "/pets", "POST", "application/json",
+                payload);
+        assertTrue(validator.handleRequest(messageContext));
+        return MessageContexts.isRejected(messageContext);
+    }
+
+    private static ResourceStatistics statistics(String apiUUID) {
+        for (ResourceStatistics statistics : SchemaValidatorMetrics.getInstance().getApiStatistics(apiUUID)) {
+            if ("/pets".equals(statistics.getResource())) {
+                return statistics;
+            }
+        }
+        return null;
+    }
+
+    private static ResourceStatistics awaitShadowValidations(String apiUUID, long count) throws InterruptedException {
+        for (int i = 0; i < 250 && statistics(apiUUID).getShadowValidations() < count; i++) {
+            Thread.sleep(20);
+        }
+        return statistics(apiUUID);
+    }
+
+    @Test
+    public void testAgreeingEngine() throws Exception {
+        SchemaValidator validator = validator("shadow-api", SchemaValidatorConstant.VALIDATION_ENGINE_COMPILED, "1");
+        for (int i = 0; i < 3; i++) {
+            assertFalse(isRejected(validator, VALID));
+            assertTrue(isRejected(validator, INVALID));
+        }
+        ResourceStatistics statistics = awaitShadowValidations("shadow-api", 6);
+        assertEquals(6, statistics.getShadowValidations());
+        assertEquals(0, statistics.getShadowVerdictDisagreements());
+        assertEquals(0, statistics.getShadowViolationDisagreements());
+        assertEquals(6, statistics.getShadowValidate().getCount());
+    }
+
+    @Test
+    public void testDisagreeingEngine() throws Exception {
+        ValidationEngine engine = new RejectingEngine("shadow-rejecting");
+        ValidationEngineRegistry.register(engine);
+        try {
+            SchemaValidator validator = validator("disagreeing-shadow-api", "shadow-rejecting", "1");
+            assertFalse("The shadow engine affected the message", isRejected(validator, VALID));
+            assertFalse("The shadow engine affected the message", isRejected(validator, VALID));
+            assertTrue(isRejected(validator, INVALID));
+            ResourceStatistics statistics = awaitShadowValidations("disagreeing-shadow-api", 3);
+            assertEquals(3, statistics.getShadowValidations());
+            assertEquals(2, statistics.getShadowVerdictDisagreements());
+            assertEquals(1, statistics.getShadowViolationDisagreements());
+        } finally {
+            ValidationEngineRegistry.unregister(engine);
+        }
+    }
+
+    @Test
+    public void testUnsampledPayloadsNotShadowed() throws Exception {
+        SchemaValidator validator = validator("unsampled-shadow-api",
+                SchemaValidatorConstant.VALIDATION_ENGINE_COMPILED, "0");
+        for (int i = 0; i < 10; i++) {
+            isRejected(validator, VALID);
+        }
+        SchemaValidator sameEngine = validator("same-shadow-api", SchemaValidatorConstant.VALIDATION_ENGINE_EVERIT,
+                "1");
+        for (int i = 0; i < 10; i++) {
+            isRejected(sameEngine, VALID);
+        }
+        Thread.sleep(200);
+        assertEquals(0, statistics("unsampled-shadow-api").getShadowValidations());
+        assertEquals(0, statistics("same-shadow-api").getShadowValidations());
+    }
+
+    @Test
+    public void testEngineShadowsOnceRegistered() throws Exception {
+        SchemaValidator validator = validator("late-shadow-api", "late-engine", "1");
+        assertFalse(isRejected(validator, VALID));
+        Thread.sleep(200);
+        assertEquals(0, statistics("late-shadow-api").getShadowValidations());
+        ValidationEngine engine = new RejectingEngine("late-engine");
+        ValidationEngineRegistry.register(engine);
+        try {
+            assertFalse(isRejected(validator, VALID));
+            ResourceStatistics statistics = awaitShadowValidations("late-shadow-api", 1);
+            assertEquals(1, statistics.getShadowValidations());
+            assertEquals(1, statistics.getShadowVerdictDisagreements());
+        } finally {
+            ValidationEngineRegistry.unregister(engine);
+        }
+    }
+
+    @Test
+    public void testInvalidSamplingRateIgnored() {
+        SchemaValidator validator = new SchemaValidator();
+        validator.setShadowSamplingRate("0.5");
+        validator.setShadowSamplingRate("2");
+        validator.setShadowSamplingRate("sometimes");
+        assertEquals("0.5", validator.getShadowSamplingRate());
+    }
+
+    /**
+     * Engine whose schemas reject every payload.
+     */
+    private static final class RejectingEngine implements ValidationEngine {
+
+        private static final ValidationResult REJECTED = new ValidationResult(Collections.singletonList(
+                new Violation("#", "rejected")));
+
+        private final String name;
+
+        RejectingEngine(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public ValidationSchema compile(JSONObject schema) {
+            return new ValidationSchema() {
+                @Override
+                public ValidationResult validate(byte[] payload, int maxViolations) {
+                    return REJECTED;
+                }
+
+                @Override
+                public ValidationResult validate(InputStream payload, int maxViolations) {
+                    return REJECTED;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import org.apache.synapse.config.Entry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Loads the swagger fixtures of the tests from the test resources.
+ */
+final class Swaggers {
+
+    private Swaggers() {
+    }
+
+    /**
+     * Read a swagger fixture.
+     *
+     * @param name Name of the fixture under the swagger resource directory
+     * @return Content of the fixture
+     * @throws IOException Throws if the fixture cannot be read
+     */
+    static String read(String name) throws IOException {
+        try (InputStream inputStream = Swaggers.class.getResourceAsStream("/swagger/" + name)) {
+            if (inputStream == null) {
+                throw new IOException("Swagger fixture " + name + " does not exist");
+            }
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+            return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Wrap a swagger in a local entry the way the gateway stores it.
+     *
+     * @param key     Key of the local entry
+     * @param swagger Content of the swagger
+     * @return Local entry of the swagger
+     */
+    static Entry entry(String key, String swagger) {
+        Entry entry = new Entry(key);
+        entry.setValue(swagger);
+        return entry;
+    }
+
+    /**
+     * Build the operation index of a swagger fixture.
+     *
+     * @param name Name of the fixture under the swagger resource directory
+     * @return Operation index of the fixture
+     * @throws Exception Throws if the fixture cannot be read or indexed
+     */
+    static OperationIndex index(String name) throws Exception {
+        return OperationIndex.build(entry(name, read(name)));
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.config.SynapseConfiguration;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the registration of validation engines and the schemas cached for them.
+ */
+public class ValidationEngineRegistryTest {
+
+    private static final byte[] PET = "{\"id\":1,\"name\":\"a\"}".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testFallbackWhileEngineIsAbsent() throws Exception {
+        SchemaValidator validator = validator("absent-api", "absent-engine");
+        SynapseConfiguration configuration = configuration("absent-api");
+        MessageContext messageContext = MessageContexts.request(configuration, "/pets", "POST", "application/json",
+                "{\"id\":\"1\"}".getBytes(StandardCharsets.UTF_8));
+        validator.handleRequest(messageContext);
+        assertTrue("The default engine does not validate the schema of an absent engine",
+                MessageContexts.isRejected(messageContext));
+    }
+
+    @Test
+    public void testRegisterEvictsFallback() throws Exception {
+        SchemaValidator validator = validator("register-api", "register-engine");
+        SynapseConfiguration configuration = configuration("register-api");
+        assertFalse("The default engine rejects a valid payload", isRejected(validator, configuration));
+
+        ValidationEngine engine = new RejectingEngine("register-engine");
+        ValidationEngineRegistry.register(engine);
+        try {
+            assertTrue("The schema compiled by the default engine is served after the engine is registered",
+                    isRejected(validator, configuration));
+        } finally {
+            ValidationEngineRegistry.unregister(engine);
+        }
+        assertFalse("The schema of the unregistered engine is served after it is unregistered",
+                isRejected(validator, configuration));
+    }
+
+    @Test
+    public void testReplacedEngineEvicted() throws Exception {
+        SchemaValidator validator = validator("replace-api", "replace-engine");
+        SynapseConfiguration configuration = configuration("replace-api");
+        ValidationEngine accepting = new ForwardingEngine("replace-engine");
+        ValidationEngine rejecting = new RejectingEngine("replace-engine");
+        ValidationEngineRegistry.register(accepting);
+        try {
+            assertFalse(isRejected(validator, configuration));
+            ValidationEngineRegistry.register(rejecting);
+            assertTrue("The schema of the replaced engine is served", isRejected(validator, configuration));
+        } finally {
+            ValidationEngineRegistry.unregister(rejecting);
+        }
+    }
+
+    @Test
+    public void testInvalidateEngine() {
+        SchemaCache<String> cache = new SchemaCache<>(16);
+        SchemaCache.Key first = new SchemaCache.Key("api", "/pets", "POST", false, null, null, 0, "first");
+        SchemaCache.Key second = new SchemaCache.Key("api", "/pets", "POST", false, null, null, 0, "second");
+        cache.put(first, "first");
+        cache.put(second, "second");
+        cache.invalidateEngine("first");
+        assertFalse(cache.contains(first));
+        assertSame("second", cache.get(second));
+    }
+
+    private static SchemaValidator validator(String apiUUID, String engine) {
+        SchemaValidator validator = new SchemaValidator();
+        validator.setApiUUID(apiUUID);
+        validator.setStreamingValidation("true");
+        validator.setValidationEngine(engine);
+        return validator;
+    }
+
+    private static SynapseConfiguration configuration(String apiUUID) throws IOException {
+        return MessageContexts.configuration(Swaggers.entry(apiUUID, Swaggers.read("request-bodies-openapi3.json")));
+    }
+
+    private static boolean isRejected(SchemaValidator validator, SynapseConfiguration configuration)
+            throws Exception {
+        MessageContext messageContext = MessageContexts.request(configuration, "/pets", "POST", "application/json",
+                PET);
+        validator.handleRequest(messageContext);
+        return MessageContexts.isRejected(messageContext);
+    }
+
+    /**
+     * Engine which compiles the schemas with the default engine.
+     */
+    private static class ForwardingEngine implements ValidationEngine {
+
+        private final String name;
+
+        ForwardingEngine(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public ValidationSchema compile(JSONObject schema) {
+            return ValidationEngineRegistry.getDefaultEngine().compile(schema);
+        }
+    }
+
+    /**
+     * Engine whose schemas reject every payload.
+     */
+    private static final class RejectingEngine extends ForwardingEngine {
+
+        private static final ValidationResult REJECTED = new ValidationResult(Collections.singletonList(
+                new Violation("#", "rejected")));
+
+        RejectingEngine(String name) {
+            super(name);
+        }
+
+        @Override
+        public ValidationSchema compile(JSONObject schema) {
+            return new ValidationSchema() {
+                @Override
+                public ValidationResult validate(byte[] payload, int maxViolations) {
+                    return REJECTED;
+                }
+
+                @Override
+                public ValidationResult validate(InputStream payload, int maxViolations) {
+                    return REJECTED;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wso2.handler;
+
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.config.SynapseConfiguration;
+import org.json.JSONObject;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.xml.stream.XMLStreamException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the validation of XML payloads with a StAX parser.
+ */
+public class XmlSchemaTest {
+
+    private static final String PET = "{\"type\":\"object\",\"xml\":{\"name\":\"pet\"},\"required\":[\"name\"]," +
+            "\"additionalProperties\":false,\"properties\":{\"id\":{\"type\":\"integer\",\"xml\":{\"attribute\":" +
+            "true}},\"name\":{\"type\":\"string\",\"minLength\":1},\"weight\":{\"type\":\"number\",\"maximum\":100}," +
+            "\"vaccinated\":{\"type\":\"boolean\"},\"tags\":{\"type\":\"array\",\"maxItems\":2,\"xml\":{\"wrapped\":" +
+            "true},\"items\":{\"type\":\"string\",\"xml\":{\"name\":\"tag\"}}},\"photos\":{\"type\":\"array\"," +
+            "\"items\":{\"type\":\"string\"}},\"owner\":{\"$ref\":\"#/definitions/Owner\"}},\"definitions\":" +
+            "{\"Owner\":{\"type\":\"object\",\"xml\":{\"name\":\"person\"},\"required\":[\"email\"],\"properties\":" +
+            "{\"email\":{\"type\":\"string\",\"format\":\"email\"}}}}}";
+
+    private static SynapseConfiguration configuration;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        configuration = MessageContexts.configuration(
+                Swaggers.entry("xml-api", Swaggers.read("request-bodies-openapi3.json")));
+    }
+
+    private static List<String> validate(String schema, String payload) throws XMLStreamException {
+        ValidationResult result = XmlSchema.compile(new JSONObject(schema))
+                .validate(payload.getBytes(StandardCharsets.UTF_8), 0);
+        List<String> violations = new ArrayList<>();
+        for (Violation violation : result.getViolations()) {
+            violations.add(violation.getPointer() + ": " + violation.getMessage());
+        }
+        assertEquals(violations.isEmpty(), result.isValid());
+        return violations;
+    }
+
+    @Test
+    public void testValidPayload() throws XMLStreamException {
+        assertEquals(new ArrayList<String>(), validate(PET, "<?xml version=\"1.0\"?><pet id=\"7\"><name>Rex</name>" +
+                "<weight>12.5</weight><vaccinated>true</vaccinated><tags><tag>a</tag><tag>b</tag></tags>" +
+                "<photos>1.png</photos><photos>2.png</photos><owner><email>rex@example.com</email></owner>" +
+                "<!-- comment --></pet>"));
+    }
+
+    @Test
+    public void testViolationPointers() throws XMLStreamException {
+        assertEquals(Arrays.asList(
+                "#/id: expected type: Integer, found: String",
+                "#/weight: 120 is not lower or equal to 100",
+                "#/tags: expected maximum item count: 2, found: 3",
+                "#/owner/email: [rex] is not a valid email address",
+                "#: required key [name] not found"),
+                validate(PET, "<pet id=\"x\"><weight>120</weight><tags><tag>a</tag><tag>b</tag><tag>c</tag>" +
+                        "</tags><owner><email>rex</email></owner></pet>"));
+    }
+
+    @Test
+    public void testUnknownElement() throws XMLStreamException {
+        assertEquals(Arrays.asList("#: extraneous key [color] is not permitted"),
+                validate(PET, "<pet><name>Rex</name><color>black</color></pet>"));
+    }
+
+    @Test
+    public void testRepeatedElement() throws XMLStreamException {
+        assertEquals(Arrays.asList("#/name: element [name] is not permitted more than once"),
+                validate(PET, "<pet><name>Rex</name><name>Max</name></pet>"));
+    }
+
+    @Test
+    public void testRootElementName() throws XMLStreamException {
+        assertEquals(Arrays.asList("#: expected element: pet, found: dog"),
+                validate(PET, "<dog><name>Rex</name></dog>"));
+    }
+
+    @Test
+    public void testViolationLimit() throws XMLStreamException {
+        ValidationResult result = XmlSchema.compile(new JSONObject(PET)).validate(("<pet id=\"x\"><weight>120" +
+                "</weight><color/></pet>").getBytes(StandardCharsets.UTF_8), 1);
+        assertFalse(result.isValid());
+        assertEquals(1, result.getViolations().size());
+    }
+
+    @Test(expected = XMLStreamException.class)
+    public void testMalformedPayload() throws XMLStreamException {
+        validate(PET, "<pet><name>Rex</pet>");
+    }
+
+    @Test(expected = XMLStreamException.class)
+    public void testDoctypeRejected() throws XMLStreamException {
+        validate(PET, "<?xml version=\"1.0\"?><!DOCTYPE pet [<!ENTITY name SYSTEM \"file:///etc/passwd\">]>" +
+                "<pet><name>&name;</name></pet>");
+    }
+
+    @Test
+    public void testNoSchema() {
+        assertNull(XmlSchema.compile(null));
+    }
+
+    @Test
+    public void testRequestValidated() throws Exception {
+        SchemaValidator validator = new SchemaValidator();
+        validator.setApiUUID("xml-api");
+        validator.setXmlValidation("true");
+        byte[] valid = "<Pet><name>Rex</name><tag>dog</tag></Pet>".getBytes(StandardCharsets.UTF_8);
+        MessageContext messageContext = MessageContexts.request(configuration, "/pets", "POST",
+                "application/xml; charset=UTF-8", valid);
+        assertTrue(validator.handleRequest(messageContext));
+        assertFalse(MessageContexts.isRejected(messageContext));
+        assertArrayEquals("The relayed body is changed", valid, MessageContexts.relayedBody(messageContext));
+
+        messageContext = MessageContexts.request(configuration, "/pets", "POST", "application/xml",
+                "<Pet><name>Rex</name></Pet>".getBytes(StandardCharsets.UTF_8));
+        assertTrue(validator.handleRequest(messageContext));
+        assertTrue(MessageContexts.isRejected(messageContext));
+        assertTrue(MessageContexts.threatDescription(messageContext).contains("required key [tag] not found"));
+
+        messageContext = MessageContexts.request(configuration, "/pets", "POST", "application/xml",
+                "<Pet><name>Rex".getBytes(StandardCharsets.UTF_8));
+        assertTrue(validator.handleRequest(messageContext));
+        assertTrue(MessageContexts.isRejected(messageContext));
+        assertTrue(MessageContexts.threatDescription(messageContext).contains("Malformed XML payload"));
+    }
+}